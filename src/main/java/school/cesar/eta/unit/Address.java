@@ -1,5 +1,6 @@
 package school.cesar.eta.unit;
 
+import java.util.Comparator;
 import java.util.Objects;
 import java.util.regex.Pattern;
 
@@ -9,6 +10,9 @@ import java.util.regex.Pattern;
 public class Address {
     // Brazilian ZIP code pattern: XXXXX-XXX or US pattern: XXXXX or XXXXX-XXXX
     private static final Pattern ZIP_CODE_PATTERN = Pattern.compile("^(\\d{5}(-\\d{3})?|\\d{5}(-\\d{4})?)$");
+    private static final Pattern ZIP_CODE_PREFIX_PATTERN = Pattern.compile("^(\\d{1,5}|\\d{5}-\\d{0,4})$");
+    private static final int ZIP_CODE_DIGITS = 9;
+    private static final int ZIP_CODE_SPAN = 1_000_000_000;
 
     private final String street;
     private final String number;
@@ -17,6 +21,7 @@ public class Address {
     private final String city;
     private final String state;
     private final String zipCode;
+    private final int zipCodeValue;
     private final String country;
 
     private Address(Builder builder) {
@@ -28,6 +33,7 @@ public class Address {
         this.state = builder.state;
         this.zipCode = builder.zipCode;
         this.country = builder.country;
+        this.zipCodeValue = ZipCodeKind.of(builder.country).offset + digitsValue(builder.zipCode);
     }
 
     /**
@@ -164,6 +170,16 @@ public class Address {
         return Objects.equals(this.city, other.city) && Objects.equals(this.state, other.state);
     }
 
+    /**
+     * Returns the city and state of this address as a key, equal for any two addresses that are
+     * {@link #isSameCity(Address) in the same city}.
+     *
+     * @return the city key
+     */
+    public City getCityKey() {
+        return new City(city, state);
+    }
+
     // Getters
     public String getStreet() {
         return street;
@@ -193,6 +209,117 @@ public class Address {
         return zipCode;
     }
 
+    /**
+     * Returns the kind of the ZIP code, which depends on the country: a Brazilian address has a CEP.
+     *
+     * @return the ZIP code kind
+     */
+    public ZipCodeKind getZipCodeKind() {
+        return ZipCodeKind.of(country);
+    }
+
+    /**
+     * Returns the ZIP code as a number that sorts like the code itself. The digits are read without the hyphen and
+     * padded with zeros on the right to nine digits, so "50000-000" is {@code 500000000}, "12345" is {@code 123450000}
+     * and "12345-6789" is {@code 123456789}. CEPs keep that value, while the codes of other countries are moved past
+     * every CEP by {@link ZipCodeKind#ZIP}'s offset, so the US ZIP code "12345" never matches the CEP "12345-000".
+     *
+     * @return the numeric ZIP code
+     */
+    public int getZipCodeValue() {
+        return zipCodeValue;
+    }
+
+    /**
+     * Converts a CEP to the number returned by {@link #getZipCodeValue()}.
+     *
+     * @param zipCode
+     *            the CEP, in any format accepted by the builder
+     * @return the numeric ZIP code
+     * @throws IllegalArgumentException
+     *             if zipCode is null or not a valid ZIP code
+     */
+    public static int zipCodeValue(String zipCode) {
+        return zipCodeValue(zipCode, ZipCodeKind.CEP);
+    }
+
+    /**
+     * Converts a ZIP code of the given kind to the number returned by {@link #getZipCodeValue()}.
+     *
+     * @param zipCode
+     *            the ZIP code, in any format accepted by the builder
+     * @param kind
+     *            the kind of ZIP code
+     * @return the numeric ZIP code
+     * @throws IllegalArgumentException
+     *             if zipCode is null or not a valid ZIP code, or kind is null
+     */
+    public static int zipCodeValue(String zipCode, ZipCodeKind kind) {
+        if (zipCode == null || !ZIP_CODE_PATTERN.matcher(zipCode).matches()) {
+            throw new IllegalArgumentException("Invalid zip code format");
+        }
+        if (kind == null) {
+            throw new IllegalArgumentException("Zip code kind cannot be null");
+        }
+        return kind.offset + digitsValue(zipCode);
+    }
+
+    /**
+     * Returns the range of numeric CEPs starting with a prefix, such as "50" or "50000-1".
+     *
+     * @param prefix
+     *            the first digits of a CEP, with the hyphen after the fifth digit if more digits follow
+     * @return the lowest numeric ZIP code with the prefix and the first one past the range
+     * @throws IllegalArgumentException
+     *             if prefix is null or not the start of a valid ZIP code
+     */
+    static int[] zipCodePrefixRange(String prefix) {
+        return zipCodePrefixRange(prefix, ZipCodeKind.CEP);
+    }
+
+    /**
+     * Returns the range of numeric ZIP codes of the given kind starting with a prefix, such as "50" or "50000-1".
+     *
+     * @param prefix
+     *            the first digits of a ZIP code, with the hyphen after the fifth digit if more digits follow
+     * @param kind
+     *            the kind of ZIP code
+     * @return the lowest numeric ZIP code with the prefix and the first one past the range
+     * @throws IllegalArgumentException
+     *             if prefix is null or not the start of a valid ZIP code, or kind is null
+     */
+    static int[] zipCodePrefixRange(String prefix, ZipCodeKind kind) {
+        if (prefix == null || !ZIP_CODE_PREFIX_PATTERN.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("Invalid zip code prefix");
+        }
+        if (kind == null) {
+            throw new IllegalArgumentException("Zip code kind cannot be null");
+        }
+        int digits = prefix.length() - (prefix.indexOf('-') >= 0 ? 1 : 0);
+        int from = kind.offset + digitsValue(prefix);
+        int width = 1;
+        for (int i = digits; i < ZIP_CODE_DIGITS; i++) {
+            width *= 10;
+        }
+        return new int[] { from, from + width };
+    }
+
+    private static int digitsValue(String zipCode) {
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < zipCode.length(); i++) {
+            char c = zipCode.charAt(i);
+            if (c != '-') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+        }
+        for (; digits < ZIP_CODE_DIGITS; digits++) {
+            value *= 10;
+        }
+        return value;
+    }
+
     public String getCountry() {
         return country;
     }
@@ -220,4 +347,108 @@ public class Address {
         return "Address{" + "street='" + street + '\'' + ", number='" + number + '\'' + ", city='" + city + '\''
                 + ", state='" + state + '\'' + ", zipCode='" + zipCode + '\'' + '}';
     }
-}
\ No newline at end of file
+
+    /**
+     * Kind of a ZIP code. Each kind has its own range of {@link Address#getZipCodeValue() numeric values}, so range
+     * queries over one kind never return codes of the other, even when the digits are the same.
+     */
+    public enum ZipCodeKind {
+        /**
+         * Brazilian CEP, the kind of addresses in Brazil and of addresses without a country.
+         */
+        CEP(0),
+        /**
+         * ZIP code of any other country, such as a US ZIP code.
+         */
+        ZIP(ZIP_CODE_SPAN);
+
+        private final int offset;
+
+        ZipCodeKind(int offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the kind of ZIP code used in a country.
+         *
+         * @param country
+         *            the country, may be null
+         * @return {@link #CEP} for Brazil or no country, {@link #ZIP} otherwise
+         */
+        public static ZipCodeKind of(String country) {
+            if (country == null || country.equalsIgnoreCase("Brazil") || country.equalsIgnoreCase("Brasil")
+                    || country.equalsIgnoreCase("BR")) {
+                return CEP;
+            }
+            return ZIP;
+        }
+    }
+
+    /**
+     * City and state pair identifying a city, used as the key of city indexes. Cities are ordered by state and then by
+     * city name.
+     */
+    public static final class City implements Comparable<City> {
+        private static final Comparator<City> BY_STATE_AND_NAME = Comparator.comparing((City c) -> c.state)
+                .thenComparing(c -> c.name);
+
+        private final String name;
+        private final String state;
+
+        private City(String name, String state) {
+            this.name = name;
+            this.state = state;
+        }
+
+        /**
+         * Creates a city key.
+         *
+         * @param name
+         *            the city name, as stored in {@link Address#getCity()}
+         * @param state
+         *            the state, as stored in {@link Address#getState()}
+         * @return the city key
+         * @throws IllegalArgumentException
+         *             if name or state is null
+         */
+        public static City of(String name, String state) {
+            if (name == null || state == null) {
+                throw new IllegalArgumentException("City and state cannot be null");
+            }
+            return new City(name, state);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        @Override
+        public int compareTo(City other) {
+            return BY_STATE_AND_NAME.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            City other = (City) o;
+            return name.equals(other.name) && state.equals(other.state);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, state);
+        }
+
+        @Override
+        public String toString() {
+            return name + "/" + state;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link PersonRepository}. Every operation returns at once with a future that completes
+ * with the result, or exceptionally with the exception the blocking operation would have thrown, so a caller can serve
+ * many requests without parking a thread on each one.
+ *
+ * <p>
+ * {@link AsyncPersonRepositoryAdapter} turns any blocking {@link PersonRepository} into an asynchronous one.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * AsyncPersonRepository repository = new AsyncPersonRepositoryAdapter(new IndexedPersonRepository());
+ * repository.save(person).thenCompose(saved -> repository.findByLastName(saved.getLastName()))
+ *         .thenAccept(relatives -> System.out.println(relatives.size()));
+ * }</pre>
+ */
+public interface AsyncPersonRepository {
+
+    /**
+     * Saves a person to the repository.
+     *
+     * @param person
+     *            the person to save
+     * @return future of the saved person with generated ID
+     * @see PersonRepository#save(Person)
+     */
+    CompletableFuture<Person> save(Person person);
+
+    /**
+     * Saves a batch of persons.
+     *
+     * @param persons
+     *            the persons to save
+     * @return future of the saved persons
+     * @see PersonRepository#saveAll(Collection)
+     */
+    CompletableFuture<List<Person>> saveAll(Collection<Person> persons);
+
+    /**
+     * Finds a person by ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of an Optional containing the person if found
+     * @see PersonRepository#findById(Long)
+     */
+    CompletableFuture<Optional<Person>> findById(Long id);
+
+    /**
+     * Finds a person by primitive ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of an Optional containing the person if found
+     * @see PersonRepository#findById(long)
+     */
+    CompletableFuture<Optional<Person>> findById(long id);
+
+    /**
+     * Finds the persons with the given IDs.
+     *
+     * @param ids
+     *            the person IDs
+     * @return future of the persons found
+     * @see PersonRepository#findAllById(Collection)
+     */
+    CompletableFuture<List<Person>> findAllById(Collection<Long> ids);
+
+    /**
+     * Finds all persons by last name.
+     *
+     * @param lastName
+     *            the last name to search
+     * @return future of the persons with matching last name
+     * @see PersonRepository#findByLastName(String)
+     */
+    CompletableFuture<List<Person>> findByLastName(String lastName);
+
+    /**
+     * Finds one page of the persons with the given last name, in ascending ID order.
+     *
+     * @param lastName
+     *            the last name to search
+     * @param cursor
+     *            the cursor from the previous page, or null for the first page
+     * @param limit
+     *            the maximum number of persons in the page
+     * @return future of the page, with the cursor for the next one
+     * @see PersonRepository#findByLastName(String, String, int)
+     */
+    CompletableFuture<Page<Person>> findByLastName(String lastName, String cursor, int limit);
+
+    /**
+     * Finds all persons whose last name starts with the given prefix, ignoring case and accents.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @return future of the persons with a matching last name
+     * @see PersonRepository#findByLastNameStartingWith(String)
+     */
+    CompletableFuture<List<Person>> findByLastNameStartingWith(String prefix);
+
+    /**
+     * Finds all persons whose normalized last name is in the range {@code [fromInclusive, toExclusive)}.
+     *
+     * @param fromInclusive
+     *            the lowest last name to include
+     * @param toExclusive
+     *            the first last name past the range
+     * @return future of the persons with a last name in the range
+     * @see PersonRepository#findByLastNameBetween(String, String)
+     */
+    CompletableFuture<List<Person>> findByLastNameBetween(String fromInclusive, String toExclusive);
+
+    /**
+     * Finds all persons.
+     *
+     * @return future of all persons
+     * @see PersonRepository#findAll()
+     */
+    CompletableFuture<List<Person>> findAll();
+
+    /**
+     * Finds the persons with an ID greater than {@code afterId}, in ascending ID order.
+     *
+     * @param afterId
+     *            the ID after which the page starts, such as 0 for the first page
+     * @param limit
+     *            the maximum number of persons to return
+     * @return future of the persons in the page, an empty list after the last page
+     * @see PersonRepository#findPage(long, int)
+     */
+    CompletableFuture<List<Person>> findPage(long afterId, int limit);
+
+    /**
+     * Finds persons born on or before a date, oldest first and in ID order within a day.
+     *
+     * @param date
+     *            the latest birthdate to include
+     * @return future of the persons born on or before that date
+     * @see PersonRepository#findBornOnOrBefore(LocalDate)
+     */
+    CompletableFuture<List<Person>> findBornOnOrBefore(LocalDate date);
+
+    /**
+     * Deletes a person by ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of true if deleted, false if not found
+     * @see PersonRepository#deleteById(Long)
+     */
+    CompletableFuture<Boolean> deleteById(Long id);
+
+    /**
+     * Deletes a person by primitive ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of true if deleted, false if not found
+     * @see PersonRepository#deleteById(long)
+     */
+    CompletableFuture<Boolean> deleteById(long id);
+
+    /**
+     * Deletes the persons with the given IDs.
+     *
+     * @param ids
+     *            the person IDs
+     * @return future of the number of persons deleted
+     * @see PersonRepository#deleteAllById(Collection)
+     */
+    CompletableFuture<Integer> deleteAllById(Collection<Long> ids);
+
+    /**
+     * Counts total number of persons.
+     *
+     * @return future of the total count
+     * @see PersonRepository#count()
+     */
+    CompletableFuture<Long> count();
+
+    /**
+     * Checks if a person exists by ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of true if exists
+     * @see PersonRepository#existsById(Long)
+     */
+    CompletableFuture<Boolean> existsById(Long id);
+
+    /**
+     * Checks if a person exists by primitive ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of true if exists
+     * @see PersonRepository#existsById(long)
+     */
+    CompletableFuture<Boolean> existsById(long id);
+
+    /**
+     * Finds persons with birthday today.
+     *
+     * @return future of the persons with birthday today
+     * @see PersonRepository#findBirthdayToday()
+     */
+    CompletableFuture<List<Person>> findBirthdayToday();
+}
@@ -0,0 +1,197 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncPersonRepository} that runs the operations of a blocking {@link PersonRepository} on an executor.
+ *
+ * <p>
+ * By default each operation runs on its own virtual thread when the JVM supports them (JDK 21 and later), so a blocked
+ * operation, such as a save waiting for a write-ahead log sync, costs a few hundred bytes of stack instead of a
+ * platform thread. On older JVMs the operations run on a cached pool of daemon threads. Operations may also run on a
+ * caller-supplied executor, which the adapter then leaves for the caller to shut down.
+ *
+ * <p>
+ * The adapter adds no synchronization: concurrent operations reach the blocking repository concurrently, so it must be
+ * thread-safe, as {@link IndexedPersonRepository} and the other repositories in this package are.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * try (AsyncPersonRepositoryAdapter repository = new AsyncPersonRepositoryAdapter(new IndexedPersonRepository())) {
+ *     Person saved = repository.save(person).join();
+ * }
+ * }</pre>
+ */
+public class AsyncPersonRepositoryAdapter implements AsyncPersonRepository, AutoCloseable {
+
+    private final PersonRepository repository;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Creates an adapter that runs each operation on a new virtual thread, or on a cached pool of daemon threads before
+     * JDK 21.
+     *
+     * @param repository
+     *            the blocking repository
+     * @throws IllegalArgumentException
+     *             if repository is null
+     */
+    public AsyncPersonRepositoryAdapter(PersonRepository repository) {
+        this(repository, VirtualThreads.newPerTaskExecutor("async-person-repository"), true);
+    }
+
+    /**
+     * Creates an adapter that runs the operations on the given executor.
+     *
+     * @param repository
+     *            the blocking repository
+     * @param executor
+     *            the executor that runs the operations; {@link #close()} does not shut it down
+     * @throws IllegalArgumentException
+     *             if repository or executor is null
+     */
+    public AsyncPersonRepositoryAdapter(PersonRepository repository, Executor executor) {
+        this(repository, executor, false);
+    }
+
+    private AsyncPersonRepositoryAdapter(PersonRepository repository, Executor executor, boolean owned) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.repository = repository;
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+    }
+
+    /**
+     * Tells whether adapters created without an executor run operations on virtual threads in this JVM.
+     *
+     * @return true on JDK 21 and later
+     */
+    public static boolean usesVirtualThreads() {
+        return VirtualThreads.isAvailable();
+    }
+
+    @Override
+    public CompletableFuture<Person> save(Person person) {
+        return run(() -> repository.save(person));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> saveAll(Collection<Person> persons) {
+        return run(() -> repository.saveAll(persons));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Person>> findById(Long id) {
+        return run(() -> repository.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Person>> findById(long id) {
+        return run(() -> repository.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findAllById(Collection<Long> ids) {
+        return run(() -> repository.findAllById(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findByLastName(String lastName) {
+        return run(() -> repository.findByLastName(lastName));
+    }
+
+    @Override
+    public CompletableFuture<Page<Person>> findByLastName(String lastName, String cursor, int limit) {
+        return run(() -> repository.findByLastName(lastName, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findByLastNameStartingWith(String prefix) {
+        return run(() -> repository.findByLastNameStartingWith(prefix));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        return run(() -> repository.findByLastNameBetween(fromInclusive, toExclusive));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findAll() {
+        return run(repository::findAll);
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findPage(long afterId, int limit) {
+        return run(() -> repository.findPage(afterId, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findBornOnOrBefore(LocalDate date) {
+        return run(() -> repository.findBornOnOrBefore(date));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteById(Long id) {
+        return run(() -> repository.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteById(long id) {
+        return run(() -> repository.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteAllById(Collection<Long> ids) {
+        return run(() -> repository.deleteAllById(ids));
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return run(repository::count);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsById(Long id) {
+        return run(() -> repository.existsById(id));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsById(long id) {
+        return run(() -> repository.existsById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> findBirthdayToday() {
+        return run(repository::findBirthdayToday);
+    }
+
+    /**
+     * Shuts down the executor the adapter created, letting running operations finish. An executor passed to the
+     * constructor is left running. The blocking repository is not closed.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(operation, executor);
+    }
+}
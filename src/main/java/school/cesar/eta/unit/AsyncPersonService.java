@@ -0,0 +1,232 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link PersonService}, built on an {@link AsyncPersonRepository}.
+ *
+ * <p>
+ * Each method applies the same rules as its {@link PersonService} equivalent and returns a future instead of blocking.
+ * Invalid arguments and missing persons complete the future exceptionally with the same exceptions
+ * {@link PersonService} throws. Emails are sent by the thread that completes the repository operation.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * AsyncPersonService service = new AsyncPersonService(new AsyncPersonRepositoryAdapter(new IndexedPersonRepository()),
+ *         emailService);
+ * service.findPerson(id).thenAccept(person -> System.out.println(person.getName()));
+ * }</pre>
+ */
+public class AsyncPersonService {
+
+    private final AsyncPersonRepository repository;
+    private final EmailService emailService;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param repository
+     *            the asynchronous person repository
+     * @param emailService
+     *            the email service
+     */
+    public AsyncPersonService(AsyncPersonRepository repository, EmailService emailService) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null");
+        }
+        if (emailService == null) {
+            throw new IllegalArgumentException("Email service cannot be null");
+        }
+        this.repository = repository;
+        this.emailService = emailService;
+    }
+
+    /**
+     * Creates a new person with validation.
+     *
+     * @param person
+     *            the person to create
+     * @return future of the created person
+     * @see PersonService#createPerson(Person)
+     */
+    public CompletableFuture<Person> createPerson(Person person) {
+        try {
+            PersonService.validatePerson(person);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return repository.save(person).thenApply(saved -> {
+            emailService.sendWelcomeEmail(PersonService.generateEmail(person), person.getName());
+            return saved;
+        });
+    }
+
+    /**
+     * Creates a batch of persons with validation.
+     *
+     * @param persons
+     *            the persons to create
+     * @return future of the created persons
+     * @see PersonService#createPersons(List)
+     */
+    public CompletableFuture<List<Person>> createPersons(List<Person> persons) {
+        try {
+            if (persons == null) {
+                throw new IllegalArgumentException("Persons cannot be null");
+            }
+            persons.forEach(PersonService::validatePerson);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return repository.saveAll(persons).thenApply(saved -> {
+            for (Person person : saved) {
+                emailService.sendWelcomeEmail(PersonService.generateEmail(person), person.getName());
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Finds a person by ID.
+     *
+     * @param id
+     *            the person ID
+     * @return future of the person, completed with {@link PersonNotFoundException} if not found
+     * @see PersonService#findPerson(Long)
+     */
+    public CompletableFuture<Person> findPerson(Long id) {
+        return repository.findById(id).thenApply(
+                person -> person.orElseThrow(() -> new PersonNotFoundException("Person not found with id: " + id)));
+    }
+
+    /**
+     * Finds persons by ID.
+     *
+     * @param ids
+     *            the person IDs
+     * @return future of the persons, completed with {@link PersonNotFoundException} if any ID is not found
+     * @see PersonService#findPersons(Collection)
+     */
+    public CompletableFuture<List<Person>> findPersons(Collection<Long> ids) {
+        if (ids == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("IDs cannot be null"));
+        }
+        return repository.findAllById(ids).thenApply(found -> PersonService.checkAllFound(ids, found));
+    }
+
+    /**
+     * Updates a person's information.
+     *
+     * @param id
+     *            the person ID
+     * @param updatedPerson
+     *            the updated information
+     * @return future of the updated person
+     * @see PersonService#updatePerson(Long, Person)
+     */
+    public CompletableFuture<Person> updatePerson(Long id, Person updatedPerson) {
+        return findPerson(id).thenCompose(existing -> {
+            if (updatedPerson.getFirstName() != null) {
+                existing.setFirstName(updatedPerson.getFirstName());
+            }
+            if (updatedPerson.getLastName() != null) {
+                existing.setLastName(updatedPerson.getLastName());
+            }
+            if (updatedPerson.getBirthday() != null) {
+                existing.setBirthday(updatedPerson.getBirthday());
+            }
+            return repository.save(existing);
+        });
+    }
+
+    /**
+     * Deletes a person.
+     *
+     * @param id
+     *            the person ID
+     * @return future completed when the person is deleted, or with {@link PersonNotFoundException} if not found
+     * @see PersonService#deletePerson(Long)
+     */
+    public CompletableFuture<Void> deletePerson(Long id) {
+        return repository.deleteById(id).thenAccept(deleted -> {
+            if (!deleted) {
+                throw new PersonNotFoundException("Person not found with id: " + id);
+            }
+        });
+    }
+
+    /**
+     * Finds all adults (18+ years old), oldest first, with a range query on birthdates.
+     *
+     * @return future of the adult persons
+     * @see PersonService#findAdults()
+     */
+    public CompletableFuture<List<Person>> findAdults() {
+        return repository.findBornOnOrBefore(PersonService.adultCutoff(LocalDate.now()));
+    }
+
+    /**
+     * Sends birthday greetings to all persons with birthday today.
+     *
+     * @return future of the number of greetings sent
+     * @see PersonService#sendBirthdayGreetings()
+     */
+    public CompletableFuture<Integer> sendBirthdayGreetings() {
+        return repository.findBirthdayToday().thenApply(birthdayPeople -> {
+            for (Person person : birthdayPeople) {
+                emailService.sendBirthdayGreeting(PersonService.generateEmail(person), person.getName(),
+                        PersonService.calculateAge(person));
+            }
+            return birthdayPeople.size();
+        });
+    }
+
+    /**
+     * Finds family members of a person.
+     *
+     * @param personId
+     *            the person ID
+     * @return future of the family members
+     * @see PersonService#findFamilyMembers(Long)
+     */
+    public CompletableFuture<List<Person>> findFamilyMembers(Long personId) {
+        return findPerson(personId).thenApply(Person::getFamily);
+    }
+
+    /**
+     * Adds a family member relationship.
+     *
+     * @param personId
+     *            the person ID
+     * @param familyMemberId
+     *            the family member ID
+     * @return future completed when both persons are saved
+     * @see PersonService#addFamilyMember(Long, Long)
+     */
+    public CompletableFuture<Void> addFamilyMember(Long personId, Long familyMemberId) {
+        if (personId.equals(familyMemberId)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot add self as family member"));
+        }
+        return findPersons(Arrays.asList(personId, familyMemberId)).thenCompose(persons -> {
+            persons.get(0).addToFamily(persons.get(1));
+            return repository.saveAll(persons);
+        }).thenAccept(saved -> {
+        });
+    }
+
+    /**
+     * Gets statistics about persons in repository.
+     *
+     * @return future of the statistics
+     * @see PersonService#getStatistics()
+     */
+    public CompletableFuture<PersonService.PersonStatistics> getStatistics() {
+        return repository.findAll().thenApply(persons -> PersonService.statisticsOf(persons.stream()));
+    }
+}
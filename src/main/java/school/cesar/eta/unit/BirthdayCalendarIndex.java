@@ -0,0 +1,135 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.Arrays;
+
+/**
+ * Index of birthdays by month and day, with one bucket for each of the 366 days of a leap year.
+ *
+ * <p>
+ * Keys are primitive {@code long}s chosen by the owner, such as person IDs or storage row numbers. Each key sits in the
+ * bucket of its birthday, and a {@link LongLongMap} remembers where, so moving or removing a key costs O(1): the last
+ * key of the bucket takes its place. Finding the persons born on a given day therefore touches only that day's keys,
+ * about 1/365 of the repository, instead of every stored person.
+ *
+ * <p>
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+public final class BirthdayCalendarIndex {
+
+    private static final int DAYS = 366;
+    private static final long[] NO_KEYS = new long[0];
+    private static final long NOT_INDEXED = -1L;
+
+    private final long[][] buckets = new long[DAYS][];
+    private final int[] sizes = new int[DAYS];
+    private final LongLongMap positions = new LongLongMap();
+
+    /**
+     * Indexes a key under a birthday, moving it if it was indexed under another one.
+     *
+     * @param key
+     *            the key
+     * @param birthday
+     *            the birthday, or null to remove the key
+     */
+    public void put(long key, LocalDate birthday) {
+        if (birthday == null) {
+            remove(key);
+            return;
+        }
+        int day = dayOf(MonthDay.from(birthday));
+        long position = positions.get(key, NOT_INDEXED);
+        if (position != NOT_INDEXED && dayOf(position) == day) {
+            return;
+        }
+        remove(key);
+        long[] bucket = buckets[day];
+        if (bucket == null) {
+            bucket = buckets[day] = new long[4];
+        } else if (sizes[day] == bucket.length) {
+            bucket = buckets[day] = Arrays.copyOf(bucket, bucket.length * 2);
+        }
+        int index = sizes[day]++;
+        bucket[index] = key;
+        positions.put(key, position(day, index));
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key
+     *            the key
+     * @return true if the key was indexed
+     */
+    public boolean remove(long key) {
+        long position = positions.get(key, NOT_INDEXED);
+        if (position == NOT_INDEXED) {
+            return false;
+        }
+        positions.remove(key);
+        int day = dayOf(position);
+        int index = (int) position;
+        int last = --sizes[day];
+        if (index != last) {
+            long moved = buckets[day][last];
+            buckets[day][index] = moved;
+            positions.put(moved, position(day, index));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the keys indexed under a month and day.
+     *
+     * @param day
+     *            the month and day
+     * @return the keys, in ascending order
+     * @throws IllegalArgumentException
+     *             if day is null
+     */
+    public long[] keysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        int bucket = dayOf(day);
+        if (sizes[bucket] == 0) {
+            return NO_KEYS;
+        }
+        long[] keys = Arrays.copyOf(buckets[bucket], sizes[bucket]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Returns the number of indexed keys.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Removes every key.
+     */
+    public void clear() {
+        Arrays.fill(buckets, null);
+        Arrays.fill(sizes, 0);
+        positions.clear();
+    }
+
+    private static int dayOf(MonthDay day) {
+        // 2000 is a leap year, so every month and day has a day of year
+        return day.atYear(2000).getDayOfYear() - 1;
+    }
+
+    private static int dayOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static long position(int day, int index) {
+        return (long) day << 32 | index;
+    }
+}
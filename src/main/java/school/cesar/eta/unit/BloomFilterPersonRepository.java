@@ -0,0 +1,467 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link PersonRepository} decorator that answers lookups of IDs that were never saved without touching the delegate.
+ *
+ * <p>
+ * Every ID saved through the decorator, plus every ID already in the delegate when it was built, is added to a
+ * {@link LongBloomFilter}. {@link #findById(long)}, {@link #existsById(long)}, {@link #deleteById(long)} and their
+ * batch versions first ask the filter, and an ID it has certainly not seen is reported absent straight away. Stale
+ * links and made-up IDs therefore cost a few memory reads instead of a storage lookup. IDs the filter only probably
+ * saw, a small fraction of absent ones, go to the delegate as before.
+ *
+ * <p>
+ * A Bloom filter cannot forget keys, so deleted IDs keep passing the filter until it is rebuilt, and IDs saved beyond
+ * its capacity raise its false positive rate. Once the saves and deletes since the last rebuild exceed the capacity,
+ * the thread that noticed rebuilds the filter from {@link PersonRepository#streamAll()}, sized for twice the current
+ * count. Lookups and saves carry on meanwhile: saves made during the rebuild go into both filters. {@link #rebuild()}
+ * does the same on demand.
+ *
+ * <p>
+ * All writes must go through the decorator; a person saved directly in the delegate is invisible to lookups until the
+ * next rebuild.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * BloomFilterPersonRepository repository = new BloomFilterPersonRepository.Builder().delegate(mappedRepository)
+ *         .expectedPersons(10_000_000).falsePositiveRate(0.001).build();
+ * }</pre>
+ */
+public class BloomFilterPersonRepository implements PersonRepository {
+
+    private static final int REBUILD_CHUNK = 4096;
+
+    private final PersonRepository delegate;
+    private final long expectedPersons;
+    private final double falsePositiveRate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final LongAdder filteredCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+    private LongBloomFilter filter;
+    private LongBloomFilter rebuilding;
+    private long capacity;
+    private long changesSinceRebuild;
+
+    private BloomFilterPersonRepository(Builder builder) {
+        this.delegate = builder.delegate;
+        this.expectedPersons = builder.expectedPersons;
+        this.falsePositiveRate = builder.falsePositiveRate;
+        this.filter = new LongBloomFilter(expectedPersons, falsePositiveRate);
+        this.capacity = expectedPersons;
+        rebuild();
+    }
+
+    /**
+     * Builder for {@link BloomFilterPersonRepository}.
+     */
+    public static class Builder {
+        private PersonRepository delegate;
+        private long expectedPersons = 1024;
+        private double falsePositiveRate = 0.01;
+
+        public Builder delegate(PersonRepository delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets the smallest number of IDs the filter is sized for; rebuilds size it for at least this many.
+         */
+        public Builder expectedPersons(long expectedPersons) {
+            this.expectedPersons = expectedPersons;
+            return this;
+        }
+
+        /**
+         * Sets the wanted share of absent IDs that still reach the delegate. Smaller rates take more memory: about 10
+         * bits per ID for 1%, 14 bits for 0.1%.
+         */
+        public Builder falsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+            return this;
+        }
+
+        /**
+         * Creates the decorator, adding the IDs already in the delegate to the filter.
+         *
+         * @return the filtered repository
+         * @throws IllegalArgumentException
+         *             if a setting is missing or invalid
+         */
+        public BloomFilterPersonRepository build() {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate repository is required");
+            }
+            if (expectedPersons <= 0) {
+                throw new IllegalArgumentException("Expected persons must be positive");
+            }
+            if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+                throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+            }
+            return new BloomFilterPersonRepository(this);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        Person saved = delegate.save(person);
+        recordChanges(List.of(saved), 0);
+        return saved;
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> saved = delegate.saveAll(persons);
+        recordChanges(saved, 0);
+        return saved;
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        if (!mightContain(id)) {
+            return Optional.empty();
+        }
+        Optional<Person> person = delegate.findById(id);
+        if (person.isEmpty()) {
+            falsePositiveCount.increment();
+        }
+        return person;
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        return delegate.findByCpf(cpf);
+    }
+
+    /**
+     * Only asks the delegate for the IDs the filter may have seen.
+     */
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        List<Long> candidates = candidates(ids);
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Person> found = delegate.findAllById(candidates);
+        falsePositiveCount.add(candidates.size() - found.size());
+        return found;
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return delegate.findByLastName(lastName);
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        return delegate.findByLastName(lastName, cursor, limit);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        return delegate.findByNormalizedLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        return delegate.findByLastNameStartingWith(prefix);
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        return delegate.suggestLastNames(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        return delegate.findByLastNameBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        if (!mightContain(id)) {
+            return false;
+        }
+        if (!delegate.deleteById(id)) {
+            falsePositiveCount.increment();
+            return false;
+        }
+        recordChanges(List.of(), 1);
+        return true;
+    }
+
+    /**
+     * Only asks the delegate to delete the IDs the filter may have seen.
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        List<Long> candidates = candidates(ids);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        int deleted = delegate.deleteAllById(candidates);
+        falsePositiveCount.add(candidates.size() - deleted);
+        recordChanges(List.of(), deleted);
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        if (!mightContain(id)) {
+            return false;
+        }
+        boolean exists = delegate.existsById(id);
+        if (!exists) {
+            falsePositiveCount.increment();
+        }
+        return exists;
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return delegate.findBirthdayToday();
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        return delegate.findBirthdaysOn(day);
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        return delegate.findBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        return delegate.findBornBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        return delegate.countBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        return delegate.findByCity(city, state);
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        return delegate.groupByCity();
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        return delegate.findByZipCodeValueBetween(fromInclusive, toExclusive);
+    }
+
+    /**
+     * Replaces the filter with one holding exactly the IDs now in the delegate, sized for twice their number and at
+     * least the expected persons. Forgets deleted IDs and brings the false positive rate back to the configured one.
+     * Lookups and saves are not blocked while the delegate is scanned.
+     */
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            long size = Math.max(expectedPersons, 2 * delegate.count());
+            LongBloomFilter next = new LongBloomFilter(size, falsePositiveRate);
+            lock.writeLock().lock();
+            try {
+                // From here on saves also go into the new filter, so none is missed by the scan below
+                rebuilding = next;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try (Stream<Person> persons = delegate.streamAll()) {
+                long[] chunk = new long[REBUILD_CHUNK];
+                int length = 0;
+                Iterator<Person> iterator = persons.iterator();
+                while (iterator.hasNext()) {
+                    chunk[length++] = iterator.next().getId();
+                    if (length == chunk.length || !iterator.hasNext()) {
+                        putAll(next, chunk, length);
+                        length = 0;
+                    }
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                filter = next;
+                capacity = size;
+                changesSinceRebuild = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the false positive rate the filter is expected to have now, estimated from how full it is. Deleted IDs
+     * still in the filter are not included; {@link #getObservedFalsePositiveRate()} accounts for them.
+     *
+     * @return the estimated probability that an ID never saved reaches the delegate
+     */
+    public double getExpectedFalsePositiveRate() {
+        lock.readLock().lock();
+        try {
+            return filter.expectedFalsePositiveRate();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the share of lookups for absent IDs that the filter let through to the delegate, since the decorator was
+     * created.
+     *
+     * @return the observed false positive rate, or 0 if no absent ID was looked up
+     */
+    public double getObservedFalsePositiveRate() {
+        long falsePositives = falsePositiveCount.sum();
+        long absent = falsePositives + filteredCount.sum();
+        return absent == 0 ? 0.0 : (double) falsePositives / absent;
+    }
+
+    /**
+     * Returns the number of IDs reported absent without asking the delegate.
+     *
+     * @return the number of filtered lookups
+     */
+    public long getFilteredCount() {
+        return filteredCount.sum();
+    }
+
+    /**
+     * Returns the number of absent IDs that passed the filter and were looked up in the delegate.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.sum();
+    }
+
+    private boolean mightContain(long id) {
+        boolean mightContain;
+        lock.readLock().lock();
+        try {
+            mightContain = filter.mightContain(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!mightContain) {
+            filteredCount.increment();
+        }
+        return mightContain;
+    }
+
+    private List<Long> candidates(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        List<Long> candidates = new ArrayList<>(distinct.length);
+        for (long id : distinct) {
+            if (mightContain(id)) {
+                candidates.add(id);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds saved IDs to the filter and counts the changes since the last rebuild, rebuilding once they exceed the
+     * capacity unless another thread is already doing so.
+     */
+    private void recordChanges(List<Person> saved, int deleted) {
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            for (Person person : saved) {
+                filter.put(person.getId());
+                if (rebuilding != null) {
+                    rebuilding.put(person.getId());
+                }
+            }
+            changesSinceRebuild += saved.size() + deleted;
+            full = changesSinceRebuild > capacity;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full && rebuildLock.tryLock()) {
+            try {
+                rebuild();
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+    }
+
+    private void putAll(LongBloomFilter target, long[] ids, int length) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < length; i++) {
+                target.put(ids[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
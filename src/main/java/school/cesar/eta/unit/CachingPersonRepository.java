@@ -0,0 +1,703 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * {@link PersonRepository} decorator that keeps frequently read persons in memory, bounded by entry count or weight.
+ *
+ * <p>
+ * Lookups by ID are answered from a {@link ConcurrentHashMap} without locking. Which entries to keep is decided by a
+ * W-TinyLFU policy: new entries enter a small LRU window (1% of the capacity), and an entry leaving the window only
+ * replaces the least recently used entry of the main area if a {@link FrequencySketch} says it has been requested more
+ * often recently. The main area is a segmented LRU, where entries read again are promoted from a probation segment to a
+ * protected one holding 80% of it. A one-off scan therefore cannot flush the hot entries, which keeps the hit rate high
+ * for skewed traffic.
+ *
+ * <p>
+ * Readers never wait for each other: a hit records the access in a lossy ring buffer, and whichever thread finds the
+ * buffer filling up and the eviction lock free applies the recorded accesses to the policy. If the buffer is full the
+ * access is dropped, which only makes the policy slightly less precise. Loads after a miss, saves and deletes update
+ * the policy under the lock.
+ *
+ * <p>
+ * Saves and deletes are written through to the delegate and then invalidate the cached entry, so the next read loads
+ * the stored person again. A load that overlaps a write to the same person does not cache what it read; writes are
+ * tracked in striped epochs keyed by ID, so writes to other persons do not stop concurrent loads from being cached.
+ * Other queries go straight to the delegate.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * CachingPersonRepository repository = new CachingPersonRepository.Builder().delegate(mappedRepository)
+ *         .maximumSize(100_000).build();
+ * }</pre>
+ */
+public class CachingPersonRepository implements PersonRepository {
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final int DRAIN_THRESHOLD = ReadBuffer.SIZE / 4;
+    private static final int EPOCH_STRIPE_BITS = 8;
+
+    private final PersonRepository delegate;
+    private final ToIntFunction<Person> weigher;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ConcurrentHashMap<Long, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedSegment = new AccessOrderDeque();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLongArray writeEpochs = new AtomicLongArray(1 << EPOCH_STRIPE_BITS);
+    private long windowWeight;
+    private long protectedWeight;
+    private long weightedSize;
+
+    private CachingPersonRepository(Builder builder) {
+        this.delegate = builder.delegate;
+        this.weigher = builder.weigher;
+        this.maximumWeight = builder.maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = Math.max(0, maximumWeight - windowMaximum) * 4 / 5;
+        this.sketch = new FrequencySketch(maximumWeight);
+    }
+
+    /**
+     * Builder for {@link CachingPersonRepository}.
+     */
+    public static class Builder {
+        private PersonRepository delegate;
+        private long maximumWeight = -1;
+        private ToIntFunction<Person> weigher;
+
+        public Builder delegate(PersonRepository delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Bounds the cache to the given number of persons.
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumWeight = maximumSize;
+            this.weigher = person -> 1;
+            return this;
+        }
+
+        /**
+         * Bounds the cache to the given total weight, as computed by the weigher when a person is loaded.
+         */
+        public Builder maximumWeight(long maximumWeight, ToIntFunction<Person> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Creates the cache.
+         *
+         * @return the caching repository
+         * @throws IllegalArgumentException
+         *             if the delegate or bound is missing or invalid
+         */
+        public CachingPersonRepository build() {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate repository is required");
+            }
+            if (weigher == null) {
+                throw new IllegalArgumentException("Maximum size or weight is required");
+            }
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Maximum size or weight cannot be negative");
+            }
+            return new CachingPersonRepository(this);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        Person saved = delegate.save(person);
+        invalidate(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> saved = delegate.saveAll(persons);
+        evictionLock.lock();
+        try {
+            for (Person person : saved) {
+                invalidateLocked(person.getId());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        Node node = data.get(id);
+        if (node != null) {
+            hits.increment();
+            afterRead(node);
+            return Optional.of(node.person);
+        }
+        misses.increment();
+        long epoch = writeEpochs.get(epochStripe(id));
+        Optional<Person> loaded = delegate.findById(id);
+        if (loaded.isPresent()) {
+            evictionLock.lock();
+            try {
+                insertLocked(id, loaded.get(), epoch);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        return delegate.findByCpf(cpf);
+    }
+
+    /**
+     * Answers the IDs that are cached without touching the delegate, and loads the rest with one batch call.
+     */
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        Person[] found = new Person[distinct.length];
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < distinct.length; i++) {
+            Node node = data.get(distinct[i]);
+            if (node != null) {
+                hits.increment();
+                afterRead(node);
+                found[i] = node.person;
+            } else {
+                misses.increment();
+                missing.add(distinct[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            LongLongMap epochs = new LongLongMap(missing.size());
+            for (long id : missing) {
+                epochs.put(id, writeEpochs.get(epochStripe(id)));
+            }
+            List<Person> fetched = delegate.findAllById(missing);
+            LongObjectMap<Person> loaded = new LongObjectMap<>(fetched.size());
+            evictionLock.lock();
+            try {
+                for (Person person : fetched) {
+                    loaded.put(person.getId(), person);
+                    insertLocked(person.getId(), person, epochs.get(person.getId(), -1));
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            for (int i = 0; i < distinct.length; i++) {
+                if (found[i] == null) {
+                    found[i] = loaded.get(distinct[i]);
+                }
+            }
+        }
+        List<Person> result = new ArrayList<>(distinct.length);
+        for (Person person : found) {
+            if (person != null) {
+                result.add(person);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return delegate.findByLastName(lastName);
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        return delegate.findByLastName(lastName, cursor, limit);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        return delegate.findByNormalizedLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        return delegate.findByLastNameStartingWith(prefix);
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        return delegate.suggestLastNames(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        return delegate.findByLastNameBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        boolean deleted = delegate.deleteById(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        int deleted = delegate.deleteAllById(ids);
+        evictionLock.lock();
+        try {
+            for (Long id : ids) {
+                if (id != null) {
+                    invalidateLocked(id);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return data.containsKey(id) || delegate.existsById(id);
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return delegate.findBirthdayToday();
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        return delegate.findBirthdaysOn(day);
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        return delegate.findBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        return delegate.findBornBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        return delegate.countBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        return delegate.findByCity(city, state);
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        return delegate.groupByCity();
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        return delegate.findByZipCodeValueBetween(fromInclusive, toExclusive);
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to read the delegate.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries removed to keep the cache within its bound. Invalidations are not counted.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of persons currently cached.
+     *
+     * @return the number of cached persons
+     */
+    public long estimatedSize() {
+        return data.size();
+    }
+
+    /**
+     * Returns the total weight of the cached persons, which equals their number when the cache is bounded by size.
+     *
+     * @return the weighted size
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the reads recorded since the last maintenance to the eviction policy. Happens on its own as the cache is
+     * used; calling it only makes the policy up to date sooner.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            readBuffer.drainTo(this::onAccess);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void afterRead(Node node) {
+        if (readBuffer.offer(node) >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                readBuffer.drainTo(this::onAccess);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void invalidate(long id) {
+        evictionLock.lock();
+        try {
+            invalidateLocked(id);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes an entry after a write. Loads of the same person that started before the write see the epoch of its
+     * stripe change and do not cache what they read, since it may predate the write. Must be called while holding the
+     * eviction lock.
+     */
+    private void invalidateLocked(long id) {
+        writeEpochs.incrementAndGet(epochStripe(id));
+        Node node = data.remove(id);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Caches a loaded person unless a write to its epoch stripe happened since the load started or another thread
+     * cached it first. Must be called while holding the eviction lock.
+     */
+    private void insertLocked(long id, Person person, long epoch) {
+        if (epoch != writeEpochs.get(epochStripe(id)) || data.containsKey(id)) {
+            return;
+        }
+        int weight = weigher.applyAsInt(person);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight cannot be negative");
+        }
+        readBuffer.drainTo(this::onAccess);
+        Node node = new Node(id, person, weight);
+        data.put(id, node);
+        sketch.increment(id);
+        node.queue = WINDOW;
+        window.addLast(node);
+        windowWeight += weight;
+        weightedSize += weight;
+        evict();
+    }
+
+    /**
+     * Returns the write epoch stripe of an ID, mixing the bits so that IDs with a common stride spread over the
+     * stripes.
+     */
+    private static int epochStripe(long id) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) >>> (Integer.SIZE - EPOCH_STRIPE_BITS);
+    }
+
+    /**
+     * Updates the policy for a cache hit. Must be called while holding the eviction lock.
+     */
+    private void onAccess(Node node) {
+        if (node.removed) {
+            return;
+        }
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROTECTED) {
+            protectedSegment.moveToBack(node);
+        } else {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedSegment.addLast(node);
+            protectedWeight += node.weight;
+            while (protectedWeight > protectedMaximum && protectedSegment.peekFirst() != node) {
+                Node demoted = protectedSegment.pollFirst();
+                protectedWeight -= demoted.weight;
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        }
+    }
+
+    /**
+     * Moves entries that overflow the window to probation as candidates, then evicts until the cache fits its bound.
+     * Each candidate competes with the least recently used entry of probation, and the one the sketch has seen less
+     * often is evicted. Must be called while holding the eviction lock.
+     */
+    private void evict() {
+        int candidates = 0;
+        while (windowWeight > windowMaximum && window.peekFirst() != null) {
+            Node node = window.pollFirst();
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            candidates++;
+        }
+        while (weightedSize > maximumWeight) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst() != null ? protectedSegment.peekFirst() : window.peekFirst();
+                evictNode(victim);
+                continue;
+            }
+            Node candidate = candidates > 0 ? probation.peekLast() : null;
+            if (candidate == null) {
+                evictNode(victim);
+            } else if (candidate == victim) {
+                evictNode(victim);
+                candidates--;
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    private void evictNode(Node node) {
+        unlink(node);
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    /**
+     * Removes a node from its segment and from the weight totals. Must be called while holding the eviction lock.
+     */
+    private void unlink(Node node) {
+        if (node.queue == WINDOW) {
+            window.remove(node);
+            windowWeight -= node.weight;
+        } else if (node.queue == PROTECTED) {
+            protectedSegment.remove(node);
+            protectedWeight -= node.weight;
+        } else {
+            probation.remove(node);
+        }
+        weightedSize -= node.weight;
+        node.removed = true;
+    }
+
+    /**
+     * A cached person, linked into the segment it currently belongs to.
+     */
+    private static final class Node {
+        final long key;
+        final Person person;
+        final int weight;
+        byte queue;
+        boolean removed;
+        Node previous;
+        Node next;
+
+        Node(long key, Person person, int weight) {
+            this.key = key;
+            this.person = person;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes in access order, least recent first, linking the nodes themselves so moves allocate
+     * nothing.
+     */
+    private static final class AccessOrderDeque {
+        private Node first;
+        private Node last;
+
+        Node peekFirst() {
+            return first;
+        }
+
+        Node peekLast() {
+            return last;
+        }
+
+        Node pollFirst() {
+            Node node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void addLast(Node node) {
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * Bounded multi-producer ring buffer of recent hits, drained by the thread holding the eviction lock. Producers
+     * never block: when the buffer is full or another producer wins the slot, the access is dropped.
+     */
+    private static final class ReadBuffer {
+        static final int SIZE = 128;
+        private static final int MASK = SIZE - 1;
+
+        private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        /**
+         * Records a node, returning the number of recorded nodes waiting to be drained.
+         */
+        int offer(Node node) {
+            long write = writeCounter.get();
+            long pending = write - readCounter;
+            if (pending < SIZE && writeCounter.compareAndSet(write, write + 1)) {
+                slots.lazySet((int) (write & MASK), node);
+                pending++;
+            }
+            return (int) pending;
+        }
+
+        /**
+         * Passes the recorded nodes to the action. Must be called while holding the eviction lock.
+         */
+        void drainTo(Consumer<Node> action) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            for (; read < write; read++) {
+                int index = (int) (read & MASK);
+                Node node = slots.get(index);
+                if (node == null) {
+                    // The producer has claimed the slot but not filled it yet
+                    break;
+                }
+                slots.lazySet(index, null);
+                action.accept(node);
+            }
+            readCounter = read;
+        }
+    }
+}
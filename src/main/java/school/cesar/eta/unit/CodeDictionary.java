@@ -0,0 +1,139 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary that assigns a dense {@code int} code to each distinct value.
+ *
+ * <p>
+ * Storage backends use it to keep repeated values such as names and cities once, and store only their codes per record.
+ * {@code null} is always encoded as {@link #NO_CODE}.
+ *
+ * <p>
+ * A dictionary is used in one of two ways. Values added with {@link #encode(Object)} keep their code for the lifetime
+ * of the dictionary, which suits small domains such as cities. Values added with {@link #acquire(Object)} are counted
+ * instead: each {@link #release(int)} gives one reference back, and a value whose last reference is released is removed
+ * and its code reused, so stores whose values change over time do not grow without bound.
+ *
+ * <p>
+ * This class is not thread-safe; callers guard it with their own lock.
+ *
+ * @param <T>
+ *            the value type
+ */
+final class CodeDictionary<T> {
+
+    /**
+     * Code used for {@code null} and for values that are not in the dictionary.
+     */
+    static final int NO_CODE = -1;
+
+    private final Map<T, Integer> codes = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+    private int[] references = new int[16];
+    private int[] freeCodes = new int[16];
+    private int freeCount;
+
+    /**
+     * Returns the code of the given value, adding the value if it is not known yet.
+     *
+     * @param value
+     *            the value, may be null
+     * @return the value code, or {@link #NO_CODE} for null
+     */
+    int encode(T value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    /**
+     * Returns the code of the given value, adding the value if it is not known yet, and takes a reference to it.
+     *
+     * @param value
+     *            the value, may be null
+     * @return the value code, or {@link #NO_CODE} for null
+     */
+    int acquire(T value) {
+        int code = encode(value);
+        if (code != NO_CODE) {
+            references[code]++;
+        }
+        return code;
+    }
+
+    /**
+     * Gives back a reference taken by {@link #acquire(Object)}, removing the value once it has no references left.
+     *
+     * @param code
+     *            the value code, ignored if {@link #NO_CODE}
+     */
+    void release(int code) {
+        if (code == NO_CODE || --references[code] > 0) {
+            return;
+        }
+        codes.remove(values.get(code));
+        values.set(code, null);
+        if (freeCount == freeCodes.length) {
+            freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+        }
+        freeCodes[freeCount++] = code;
+    }
+
+    /**
+     * Returns the code of the given value without adding it.
+     *
+     * @param value
+     *            the value, may be null
+     * @return the value code, or {@link #NO_CODE} if the value is null or unknown
+     */
+    int codeOf(T value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NO_CODE;
+    }
+
+    /**
+     * Returns the value for the given code.
+     *
+     * @param code
+     *            the code
+     * @return the value, or null for {@link #NO_CODE}
+     */
+    T decode(int code) {
+        return code == NO_CODE ? null : values.get(code);
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return the number of values
+     */
+    int size() {
+        return codes.size();
+    }
+
+    private int add(T value) {
+        int code;
+        if (freeCount > 0) {
+            code = freeCodes[--freeCount];
+            values.set(code, value);
+        } else {
+            code = values.size();
+            values.add(value);
+            if (code == references.length) {
+                references = Arrays.copyOf(references, code * 2);
+            }
+        }
+        codes.put(value, code);
+        return code;
+    }
+}
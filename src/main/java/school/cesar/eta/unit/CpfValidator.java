@@ -134,6 +134,67 @@ public class CpfValidator {
         return cpf.replaceAll("[^0-9]", "");
     }
 
+    /**
+     * Packs the 11 digits of a CPF into a {@code long}.
+     *
+     * <p>
+     * Formatting characters are ignored, so {@code "123.456.789-09"} and {@code "12345678909"} pack to the same value.
+     * Check digits are not verified; use {@link #isValid(String)} for that. The packed form is what storage backends
+     * and indexes keep instead of the formatted string.
+     *
+     * @param cpf
+     *            the CPF, formatted or not
+     * @return the CPF digits as a number
+     * @throws IllegalArgumentException
+     *             if the CPF does not have exactly 11 digits
+     */
+    public static long toLong(String cpf) {
+        if (cpf == null) {
+            throw new IllegalArgumentException("CPF cannot be null");
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+        }
+        if (digits != 11) {
+            throw new IllegalArgumentException("CPF must have 11 digits: " + cpf);
+        }
+        return value;
+    }
+
+    /**
+     * Formats a CPF packed by {@link #toLong(String)} to the standard format XXX.XXX.XXX-XX.
+     *
+     * @param cpf
+     *            the packed CPF digits
+     * @return the formatted CPF
+     * @throws IllegalArgumentException
+     *             if the value does not fit in 11 digits
+     */
+    public static String fromLong(long cpf) {
+        if (cpf < 0 || cpf > 99_999_999_999L) {
+            throw new IllegalArgumentException("CPF must have 11 digits: " + cpf);
+        }
+        char[] chars = new char[14];
+        long remaining = cpf;
+        for (int i = chars.length - 1; i >= 0; i--) {
+            if (i == 3 || i == 7) {
+                chars[i] = '.';
+            } else if (i == 11) {
+                chars[i] = '-';
+            } else {
+                chars[i] = (char) ('0' + remaining % 10);
+                remaining /= 10;
+            }
+        }
+        return new String(chars);
+    }
+
     /**
      * Generates a valid random CPF for testing purposes.
      *
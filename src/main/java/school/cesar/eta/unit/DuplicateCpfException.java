@@ -0,0 +1,17 @@
+package school.cesar.eta.unit;
+
+/**
+ * Exception thrown when saving a person would give it the CPF of another stored person.
+ */
+public class DuplicateCpfException extends RuntimeException {
+
+    /**
+     * Constructs a new exception for the given CPF.
+     *
+     * @param cpf
+     *            the CPF that is already taken
+     */
+    public DuplicateCpfException(String cpf) {
+        super("CPF already registered: " + cpf);
+    }
+}
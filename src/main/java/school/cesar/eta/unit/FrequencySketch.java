@@ -0,0 +1,115 @@
+package school.cesar.eta.unit;
+
+/**
+ * Count-min sketch of how often {@code long} keys were seen recently, used by {@link CachingPersonRepository} to decide
+ * which entries are worth keeping.
+ *
+ * <p>
+ * Counters are 4 bits wide, sixteen to a {@code long}, and each key is counted in four of them; its frequency is the
+ * smallest of the four, which can overestimate but never underestimates. Once the number of increments reaches ten
+ * times the table size, every counter is halved, so the sketch follows changes in popularity instead of remembering old
+ * favourites forever. The table takes 8 bytes per tracked key however many distinct keys are seen.
+ *
+ * <p>
+ * This class is not thread-safe; the cache only touches it while holding its eviction lock.
+ */
+final class FrequencySketch {
+
+    /**
+     * Largest value a counter can reach.
+     */
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch sized to track the given number of keys.
+     *
+     * @param expectedKeys
+     *            the number of keys expected to be tracked at a time
+     */
+    FrequencySketch(long expectedKeys) {
+        int length = Integer.highestOneBit((int) Math.min(Math.max(expectedKeys, 16), 1 << 24) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of the key, at most {@link #MAX_FREQUENCY}.
+     *
+     * @param key
+     *            the key
+     * @return the estimated frequency
+     */
+    int frequency(long key) {
+        long hash = mix64(key);
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, counter(hash, i));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one occurrence of the key, halving every counter once enough occurrences have been recorded.
+     *
+     * @param key
+     *            the key
+     */
+    void increment(long key) {
+        long hash = mix64(key);
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(hash, i);
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private int counter(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        int index = (int) (h >>> 32) & tableMask;
+        int shift = ((int) h & 15) << 2;
+        return (int) (table[index] >>> shift) & 15;
+    }
+
+    private boolean incrementAt(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        int index = (int) (h >>> 32) & tableMask;
+        int shift = ((int) h & 15) << 2;
+        long mask = 15L << shift;
+        if ((table[index] & mask) == mask) {
+            return false;
+        }
+        table[index] += 1L << shift;
+        return true;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & 0x1111111111111111L);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private static long mix64(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,872 @@
+package school.cesar.eta.unit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory implementation of {@link PersonRepository} with secondary indexes.
+ *
+ * <p>
+ * Persons are kept in a primary {@link LongObjectMap} keyed by primitive ID, so ID lookups do not box. Last names and
+ * birthdays (month and day) are kept in secondary indexes so that {@link #findByLastName(String)} and
+ * {@link #findBirthdayToday()} only touch the matching persons instead of scanning the whole repository.
+ *
+ * <p>
+ * The indexes reflect a person as it was when last saved. Changes made to a stored instance are picked up by the
+ * indexes on the next call to {@link #save(Person)}, which is what {@link PersonService#updatePerson} already does.
+ *
+ * <p>
+ * Reads share a read lock and writes take the write lock, so the primary map and the indexes are always updated
+ * together.
+ *
+ * <p>
+ * Persons are also kept in ID order, and each last name bucket is ordered by ID, so {@link #findPage(long, int)} and
+ * {@link #findByLastName(String, String, int)} seek straight to the start of a page and cost O(log n + limit).
+ *
+ * <p>
+ * Last names are also kept in a {@link LastNameTrie} under their {@link NameNormalizer normalized} form, so
+ * {@link #findByNormalizedLastName(String)}, {@link #findByLastNameStartingWith(String)} and
+ * {@link #suggestLastNames(String, int)} ignore case and accents and cost O(length of the name) plus the matches.
+ *
+ * <p>
+ * Full birthdates are kept in a sorted index keyed by epoch day, so {@link #findBornOnOrBefore(LocalDate)} and
+ * {@link #findBornBetween(LocalDate, LocalDate)} cost one binary search plus a scan of the matching persons, and a
+ * count of persons per birth year lets {@link #countBornOnOrBefore(LocalDate)} add up whole years instead of visiting
+ * every person.
+ *
+ * <p>
+ * ZIP codes are kept in a sorted index keyed by their {@link Address#getZipCodeValue() numeric value}, so
+ * {@link #findByZipRange(String, String)} and {@link #findByZipPrefix(String)} are one binary search plus a scan of the
+ * matching persons.
+ *
+ * <p>
+ * CPFs are unique. Each CPF is kept {@link CpfValidator#toLong(String) packed} into a {@code long} in a primitive hash
+ * map to the ID of its owner, so {@link #findByCpf(String)} is a single lookup and {@link #save(Person)} rejects a CPF
+ * owned by another person with a {@link DuplicateCpfException} under the same write lock that stores the person.
+ *
+ * <p>
+ * The city and state of each address are interned in a {@link CodeDictionary}, and the persons of each city are kept in
+ * a bucket under its code, so {@link #findByCity(String, String)} only touches the persons of that city and
+ * {@link #groupByCity()} copies IDs out of the buckets without loading any person.
+ *
+ * <p>
+ * {@link #writeSnapshot(Path)} saves the whole repository to a binary snapshot, and {@link #loadSnapshot(Path, Clock)}
+ * restores it on startup by decoding the snapshot segments in parallel and building the indexes in bulk: the persons
+ * are sorted by ID once and each index is built from the sorted buckets, instead of saving the persons again one by
+ * one.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * PersonRepository repository = new IndexedPersonRepository();
+ * PersonService service = new PersonService(repository, emailService);
+ * }</pre>
+ */
+public class IndexedPersonRepository implements PersonRepository {
+
+    private static final NavigableSet<Entry> NO_ENTRIES = Collections
+            .unmodifiableNavigableSet(new TreeSet<>(Entry.BY_ID));
+
+    private final LongObjectMap<Entry> entries = new LongObjectMap<>();
+    private final NavigableSet<Entry> byId = new TreeSet<>(Entry.BY_ID);
+    private final Map<String, NavigableSet<Entry>> byLastName = new HashMap<>();
+    private final LastNameTrie byNormalizedLastName = new LastNameTrie();
+    private final Map<MonthDay, NavigableSet<Entry>> byBirthday = new HashMap<>();
+    private final NavigableMap<Long, NavigableSet<Entry>> byBirthdate = new TreeMap<>();
+    private final NavigableMap<Integer, Integer> birthYearCounts = new TreeMap<>();
+    private final CodeDictionary<Address.City> cities = new CodeDictionary<>();
+    private final Map<Integer, NavigableSet<Entry>> byCity = new HashMap<>();
+    private final NavigableMap<Integer, NavigableSet<Entry>> byZipCode = new TreeMap<>();
+    private final LongLongMap byCpf = new LongLongMap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Clock clock;
+    private final LeapDayPolicy leapDayPolicy;
+    private long nextId = 1;
+
+    /**
+     * Creates an empty repository using the system clock to decide which birthdays are today.
+     */
+    public IndexedPersonRepository() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates an empty repository using the given clock to decide which birthdays are today.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @throws IllegalArgumentException
+     *             if clock is null
+     */
+    public IndexedPersonRepository(Clock clock) {
+        this(clock, LeapDayPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates an empty repository using the given clock and leap day policy to decide which birthdays are today.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param leapDayPolicy
+     *            when {@link #findBirthdayToday()} includes persons born on February 29 in common years
+     * @throws IllegalArgumentException
+     *             if clock or leapDayPolicy is null
+     */
+    public IndexedPersonRepository(Clock clock, LeapDayPolicy leapDayPolicy) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (leapDayPolicy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        this.clock = clock;
+        this.leapDayPolicy = leapDayPolicy;
+    }
+
+    /**
+     * Creates a repository from a snapshot written by {@link #writeSnapshot(Path)}, with the same persons, family links
+     * and ID sequence.
+     *
+     * @param file
+     *            the snapshot file
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @return the restored repository
+     * @throws IOException
+     *             if the snapshot cannot be read or is corrupt
+     * @throws IllegalArgumentException
+     *             if the file is not a snapshot or clock is null
+     */
+    public static IndexedPersonRepository loadSnapshot(Path file, Clock clock) throws IOException {
+        IndexedPersonRepository repository = new IndexedPersonRepository(clock);
+        PersonSnapshot snapshot = PersonSnapshot.read(file);
+        List<PersonRecordCodec.PersonRecord> records = new ArrayList<>(snapshot.size());
+        snapshot.forEachRecord(records::add);
+        repository.restore(records, snapshot.getNextId());
+        return repository;
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        long cpf = PersonBatch.cpfOf(person);
+        lock.writeLock().lock();
+        try {
+            if (cpf != PersonBatch.NO_CPF) {
+                PersonBatch.checkCpfOwner(person, byCpf.get(cpf, PersonBatch.NO_OWNER));
+            }
+            if (person.getId() == null) {
+                person.setId(nextId++);
+            } else {
+                nextId = Math.max(nextId, person.getId() + 1);
+            }
+            Entry entry = entries.get(person.getId());
+            if (entry == null) {
+                entry = new Entry(person.getId());
+                entries.put(person.getId(), entry);
+                byId.add(entry);
+            } else {
+                unindex(entry);
+            }
+            capture(entry, person, cpf);
+            index(entry);
+            return person;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        lock.writeLock().lock();
+        try {
+            PersonBatch.checkUniqueCpfs(batch, cpf -> byCpf.get(cpf, PersonBatch.NO_OWNER));
+            return PersonRepository.super.saveAll(batch);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry != null ? Optional.of(entry.person) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            return PersonRepository.super.findAllById(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        lock.readLock().lock();
+        try {
+            return toPersons(byLastName.getOrDefault(lastName, NO_ENTRIES));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        long afterId = PageCursor.decode(cursor, lastName);
+        return PageCursor.toPage(findByLastNameAfter(lastName, afterId, PageCursor.fetchSize(limit)), limit, lastName);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byNormalizedLastName.idsOf(lastName));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the matching persons ordered by normalized last name and then by ID.
+     */
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byNormalizedLastName.idsWithPrefix(prefix));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        List<LastNameSuggestion> suggestions = suggestLastNameOwners(prefix, limit);
+        List<String> result = new ArrayList<>(suggestions.size());
+        for (LastNameSuggestion suggestion : suggestions) {
+            result.add(suggestion.lastName);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first normalized last names starting with a prefix, each with the lowest ID stored under it and the
+     * last name as that person spells it, all read under one lock.
+     */
+    List<LastNameSuggestion> suggestLastNameOwners(String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        lock.readLock().lock();
+        try {
+            List<String> names = byNormalizedLastName.complete(prefix, limit);
+            List<LastNameSuggestion> result = new ArrayList<>(names.size());
+            for (String name : names) {
+                long id = byNormalizedLastName.firstIdOf(name, PersonBatch.NO_OWNER);
+                result.add(new LastNameSuggestion(name, id, entries.get(id).lastName));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        lock.readLock().lock();
+        try {
+            return firstPersons(byId, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Person> result = new ArrayList<>(entries.size());
+            entries.forEachValue(entry -> result.add(entry.person));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the persons a page at a time in ID order, taking the read lock once per page.
+     */
+    @Override
+    public Stream<Person> streamAll() {
+        return PageSpliterator.stream(this::findPage, count());
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return false;
+            }
+            byId.remove(entry);
+            unindex(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.deleteAllById(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return findBirthdaysCelebratedOn(LocalDate.now(clock), leapDayPolicy);
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byBirthday.getOrDefault(day, NO_ENTRIES));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byBirthdate.headMap(date.toEpochDay(), true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        if (!fromInclusive.isBefore(toExclusive)) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byBirthdate.subMap(fromInclusive.toEpochDay(), true, toExclusive.toEpochDay(), false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds up the per-year counts of the earlier birth years, then only visits the days of the date's own year.
+     */
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int yearCount : birthYearCounts.headMap(date.getYear(), false).values()) {
+                count += yearCount;
+            }
+            long startOfYear = date.withDayOfYear(1).toEpochDay();
+            for (NavigableSet<Entry> bucket : byBirthdate.subMap(startOfYear, true, date.toEpochDay(), true).values()) {
+                count += bucket.size();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        Address.City key = Address.City.of(city, state);
+        lock.readLock().lock();
+        try {
+            int code = cities.codeOf(key);
+            return code == CodeDictionary.NO_CODE ? new ArrayList<>()
+                    : toPersons(byCity.getOrDefault(code, NO_ENTRIES));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        lock.readLock().lock();
+        try {
+            TreeMap<Address.City, long[]> result = new TreeMap<>();
+            for (Map.Entry<Integer, NavigableSet<Entry>> bucket : byCity.entrySet()) {
+                long[] ids = new long[bucket.getValue().size()];
+                int i = 0;
+                for (Entry entry : bucket.getValue()) {
+                    ids[i++] = entry.id;
+                }
+                result.put(cities.decode(bucket.getKey()), ids);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        long key = CpfValidator.toLong(cpf);
+        lock.readLock().lock();
+        try {
+            long id = byCpf.get(key, PersonBatch.NO_OWNER);
+            return id != PersonBatch.NO_OWNER ? Optional.of(entries.get(id).person) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        if (fromInclusive >= toExclusive) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return toPersons(byZipCode.subMap(fromInclusive, true, toExclusive, false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a point-in-time snapshot of the repository. Writes are blocked while the snapshot is written; reads are
+     * not.
+     *
+     * @param file
+     *            the snapshot file, replaced atomically if it exists
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            PersonSnapshot.write(file, findAll(), nextId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds decoded records in bulk, under a single write lock, then links their family members. Records replace stored
+     * persons with the same ID. An empty repository, as on startup, builds its indexes from the records in bulk.
+     *
+     * @param records
+     *            the records to add, each with a different ID
+     * @param minNextId
+     *            a lower bound for the next ID to assign
+     * @throws DuplicateCpfException
+     *             if two records, or a record and a stored person, share a CPF
+     */
+    void restore(List<PersonRecordCodec.PersonRecord> records, long minNextId) {
+        lock.writeLock().lock();
+        try {
+            if (entries.size() == 0) {
+                buildIndexes(records);
+            } else {
+                entries.ensureCapacity(entries.size() + records.size());
+                for (PersonRecordCodec.PersonRecord record : records) {
+                    save(record.getPerson());
+                }
+            }
+            for (PersonRecordCodec.PersonRecord record : records) {
+                for (long memberId : record.getFamilyIds()) {
+                    Entry member = entries.get(memberId);
+                    if (member != null) {
+                        record.getPerson().addToFamily(member.person);
+                    }
+                }
+            }
+            nextId = Math.max(nextId, minNextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ID of the person stored with a packed CPF.
+     *
+     * @param cpf
+     *            the CPF {@link CpfValidator#toLong(String) packed} into a {@code long}
+     * @return the owner ID, or {@link PersonBatch#NO_OWNER} if no person has the CPF
+     */
+    long findIdByCpf(long cpf) {
+        lock.readLock().lock();
+        try {
+            return byCpf.get(cpf, PersonBatch.NO_OWNER);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} persons with the given last name and an ID greater than {@code afterId}, in ID order.
+     */
+    List<Person> findByLastNameAfter(String lastName, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            return firstPersons(byLastName.getOrDefault(lastName, NO_ENTRIES), afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the primary map and every index of an empty repository. The entries are sorted by ID once and grouped into
+     * buckets in that order, so each ID-ordered set is built from sorted input in linear time instead of by one tree
+     * insertion per person and index. Must be called while holding the write lock.
+     */
+    private void buildIndexes(List<PersonRecordCodec.PersonRecord> records) {
+        entries.ensureCapacity(records.size());
+        List<Entry> sorted = new ArrayList<>(records.size());
+        for (PersonRecordCodec.PersonRecord record : records) {
+            Person person = record.getPerson();
+            long cpf = PersonBatch.cpfOf(person);
+            if (cpf != PersonBatch.NO_CPF && !byCpf.put(cpf, person.getId())) {
+                throw new DuplicateCpfException(person.getCpf());
+            }
+            Entry entry = new Entry(person.getId());
+            entries.put(entry.id, entry);
+            capture(entry, person, cpf);
+            sorted.add(entry);
+        }
+        sorted.sort(Entry.BY_ID);
+        if (!sorted.isEmpty()) {
+            nextId = Math.max(nextId, sorted.get(sorted.size() - 1).id + 1);
+        }
+        byId.addAll(new SortedEntries(sorted));
+        buildIndex(byLastName, sorted, entry -> entry.lastName);
+        buildIndex(byBirthday, sorted, entry -> entry.birthday);
+        buildIndex(byBirthdate, sorted, entry -> entry.birthdate);
+        buildIndex(byCity, sorted, entry -> entry.city);
+        buildIndex(byZipCode, sorted, entry -> entry.zipCode);
+        for (Entry entry : sorted) {
+            // Names receive their IDs in ascending order, so each one is appended
+            if (entry.lastName != null) {
+                byNormalizedLastName.add(entry.lastName, entry.id);
+            }
+            if (entry.birthdate != null) {
+                birthYearCounts.merge(LocalDate.ofEpochDay(entry.birthdate).getYear(), 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Fills an index from entries sorted by ID, grouping them by key first so each bucket is built from sorted input.
+     */
+    private static <K> void buildIndex(Map<K, NavigableSet<Entry>> index, List<Entry> sorted, Function<Entry, K> key) {
+        Map<K, List<Entry>> buckets = new HashMap<>();
+        for (Entry entry : sorted) {
+            K value = key.apply(entry);
+            if (value != null) {
+                buckets.computeIfAbsent(value, k -> new ArrayList<>()).add(entry);
+            }
+        }
+        buckets.forEach((value, bucket) -> index.put(value, new TreeSet<>(new SortedEntries(bucket))));
+    }
+
+    /**
+     * Records the index keys of a person in its entry.
+     */
+    private void capture(Entry entry, Person person, long cpf) {
+        entry.person = person;
+        entry.lastName = person.getLastName();
+        entry.birthday = person.getBirthday() != null ? MonthDay.from(person.getBirthday()) : null;
+        entry.birthdate = person.getBirthday() != null ? person.getBirthday().toEpochDay() : null;
+        entry.city = person.getAddress() != null ? cities.encode(person.getAddress().getCityKey()) : null;
+        entry.zipCode = person.getAddress() != null ? person.getAddress().getZipCodeValue() : null;
+        entry.cpf = cpf;
+    }
+
+    private void index(Entry entry) {
+        addToIndex(byLastName, entry.lastName, entry);
+        if (entry.lastName != null) {
+            byNormalizedLastName.add(entry.lastName, entry.id);
+        }
+        addToIndex(byBirthday, entry.birthday, entry);
+        addToIndex(byCity, entry.city, entry);
+        addToIndex(byZipCode, entry.zipCode, entry);
+        if (entry.cpf != PersonBatch.NO_CPF) {
+            byCpf.put(entry.cpf, entry.id);
+        }
+        addToIndex(byBirthdate, entry.birthdate, entry);
+        if (entry.birthdate != null) {
+            birthYearCounts.merge(LocalDate.ofEpochDay(entry.birthdate).getYear(), 1, Integer::sum);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        removeFromIndex(byCity, entry.city, entry);
+        removeFromIndex(byZipCode, entry.zipCode, entry);
+        if (entry.cpf != PersonBatch.NO_CPF) {
+            byCpf.remove(entry.cpf);
+        }
+        removeFromIndex(byLastName, entry.lastName, entry);
+        if (entry.lastName != null) {
+            byNormalizedLastName.remove(entry.lastName, entry.id);
+        }
+        removeFromIndex(byBirthday, entry.birthday, entry);
+        removeFromIndex(byBirthdate, entry.birthdate, entry);
+        if (entry.birthdate != null) {
+            birthYearCounts.computeIfPresent(LocalDate.ofEpochDay(entry.birthdate).getYear(),
+                    (year, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, NavigableSet<Entry>> index, K key, Entry entry) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new TreeSet<>(Entry.BY_ID)).add(entry);
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, NavigableSet<Entry>> index, K key, Entry entry) {
+        if (key == null) {
+            return;
+        }
+        NavigableSet<Entry> bucket = index.get(key);
+        if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static List<Person> firstPersons(NavigableSet<Entry> source, long afterId, int limit) {
+        List<Person> result = new ArrayList<>(Math.min(limit, source.size()));
+        Iterator<Entry> iterator = source.tailSet(Entry.probe(afterId), false).iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next().person);
+        }
+        return result;
+    }
+
+    private List<Person> toPersons(long[] ids) {
+        List<Person> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(entries.get(id).person);
+        }
+        return result;
+    }
+
+    /**
+     * Flattens the buckets of a key range, keeping key order and ID order within each key.
+     */
+    private static List<Person> toPersons(NavigableMap<?, NavigableSet<Entry>> range) {
+        List<Person> result = new ArrayList<>();
+        for (NavigableSet<Entry> bucket : range.values()) {
+            for (Entry entry : bucket) {
+                result.add(entry.person);
+            }
+        }
+        return result;
+    }
+
+    private static List<Person> toPersons(Collection<Entry> source) {
+        List<Person> result = new ArrayList<>(source.size());
+        for (Entry entry : source) {
+            result.add(entry.person);
+        }
+        return result;
+    }
+
+    /**
+     * A last name suggestion: the normalized name, the lowest ID stored under it and that person's spelling.
+     */
+    static final class LastNameSuggestion {
+        final String normalized;
+        final long firstId;
+        final String lastName;
+
+        LastNameSuggestion(String normalized, long firstId, String lastName) {
+            this.normalized = normalized;
+            this.firstId = firstId;
+            this.lastName = lastName;
+        }
+    }
+
+    /**
+     * Read-only view of entries already sorted by ID. {@link TreeSet} builds itself in linear time from a
+     * {@link SortedSet} with the same comparator, instead of inserting each element.
+     */
+    private static final class SortedEntries extends AbstractSet<Entry> implements SortedSet<Entry> {
+        private final List<Entry> sorted;
+
+        private SortedEntries(List<Entry> sorted) {
+            this.sorted = sorted;
+        }
+
+        @Override
+        public Comparator<? super Entry> comparator() {
+            return Entry.BY_ID;
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return Collections.unmodifiableList(sorted).iterator();
+        }
+
+        @Override
+        public int size() {
+            return sorted.size();
+        }
+
+        @Override
+        public Entry first() {
+            return sorted.get(0);
+        }
+
+        @Override
+        public Entry last() {
+            return sorted.get(sorted.size() - 1);
+        }
+
+        @Override
+        public SortedSet<Entry> subSet(Entry fromElement, Entry toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Entry> headSet(Entry toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Entry> tailSet(Entry fromElement) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Stored person together with its ID and the index keys it was saved under. Index buckets order entries by the ID
+     * captured at creation, so they never depend on the (mutable) state of the person itself.
+     */
+    private static final class Entry {
+        private static final Comparator<Entry> BY_ID = Comparator.comparingLong(entry -> entry.id);
+
+        private final long id;
+        private Person person;
+        private String lastName;
+        private MonthDay birthday;
+        private Long birthdate;
+        private Integer city;
+        private Integer zipCode;
+        private long cpf = PersonBatch.NO_CPF;
+
+        private Entry(long id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns an entry that is only used to position searches in the ID-ordered sets.
+         */
+        private static Entry probe(long id) {
+            return new Entry(id);
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package school.cesar.eta.unit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Paged on-disk B+tree mapping normalized last names to person IDs.
+ *
+ * <p>
+ * Every entry is a single key made of the {@link NameNormalizer normalized} last name in UTF-8, a zero byte and the
+ * person ID in big-endian order. Keys are compared as unsigned bytes, so all IDs for one name are adjacent, names sort
+ * in code point order and a prefix of a name is a prefix of its keys. Exact, prefix and range lookups are then all
+ * range scans: one descent from the root to the first leaf in range followed by a walk along the linked leaves.
+ *
+ * <p>
+ * The file is a sequence of fixed-size pages. Page 0 is the header:
+ *
+ * <pre>
+ * magic (int) | version (int) | page size (int) | root page (int) | page count (int) | clean flag (byte)
+ * </pre>
+ *
+ * and every other page is a node:
+ *
+ * <pre>
+ * leaf:     type (byte) | key count (short) | next leaf (int) | key count x [length (short) | key]
+ * internal: type (byte) | key count (short) | first child (int) | key count x [length (short) | key | child (int)]
+ * </pre>
+ *
+ * <p>
+ * Nodes split when their encoded form outgrows a page. Removal is lazy: keys are taken out of their leaf, but
+ * under-full pages are never merged, which keeps lookups correct at the cost of some wasted space after heavy deletes.
+ *
+ * <p>
+ * Pages are read through an LRU cache of decoded nodes holding a bounded number of pages. Modified pages are written
+ * back when evicted and on {@link #flush()}, so a lookup touches O(log n) pages even when the tree does not fit in
+ * memory. The header records whether the tree was closed cleanly; {@link #wasClosedCleanly()} lets the owner rebuild
+ * the index after a crash instead of trusting pages that may be half written.
+ *
+ * <p>
+ * All public operations are synchronized, since even lookups update the page cache.
+ */
+final class LastNameBTree implements Closeable {
+
+    /**
+     * Size of each page in bytes.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * Default number of pages kept in the cache.
+     */
+    static final int DEFAULT_CACHE_PAGES = 1024;
+
+    /**
+     * Longest name prefix stored in a key, in UTF-8 bytes. Longer names share a key prefix, so callers must re-check
+     * the names of the persons they load.
+     */
+    static final int MAX_NAME_BYTES = 256;
+
+    private static final int MAGIC = 0x504C4E42; // "PLNB"
+    private static final int VERSION = 2;
+    private static final int MIN_CACHE_PAGES = 16;
+    private static final int NO_PAGE = -1;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NODE_HEADER_BYTES = 1 + Short.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final Map<Integer, Node> cache;
+    private final boolean closedCleanly;
+    private int root;
+    private int pageCount;
+    private boolean headerDirty;
+    private long pageReads;
+
+    /**
+     * Opens the tree stored in the given file, creating an empty one if the file does not exist.
+     *
+     * @param file
+     *            the index file
+     * @param cachePages
+     *            the maximum number of pages kept in memory, raised to a small minimum
+     * @throws IOException
+     *             if the file cannot be opened
+     * @throws IllegalArgumentException
+     *             if the file exists but is not a last name index
+     */
+    LastNameBTree(Path file, int cachePages) throws IOException {
+        int capacity = Math.max(MIN_CACHE_PAGES, cachePages);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                if (eldest.getValue().dirty) {
+                    writeNode(eldest.getValue());
+                }
+                return true;
+            }
+        };
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                this.closedCleanly = false;
+                initialize();
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+                LogEntries.readFully(channel, header, 0);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IllegalArgumentException("Not a last name index file: " + file);
+                }
+                int version = header.getInt(Integer.BYTES);
+                if (version > VERSION || header.getInt(2 * Integer.BYTES) != PAGE_SIZE) {
+                    throw new IllegalArgumentException("Unsupported last name index version: " + version);
+                }
+                if (version < VERSION) {
+                    // Older key layout, start over and let the owner rebuild the entries
+                    this.closedCleanly = false;
+                    channel.truncate(0);
+                    initialize();
+                } else {
+                    this.root = header.getInt(3 * Integer.BYTES);
+                    this.pageCount = header.getInt(4 * Integer.BYTES);
+                    this.closedCleanly = header.get(5 * Integer.BYTES) == 1;
+                }
+            }
+            writeHeader(false);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tells whether the tree was closed with {@link #close()} the last time it was used. A tree that was not, including
+     * a newly created one, may be missing updates and should be rebuilt by its owner.
+     *
+     * @return true if the previous session closed the tree cleanly
+     */
+    boolean wasClosedCleanly() {
+        return closedCleanly;
+    }
+
+    /**
+     * Adds an entry. Adding an entry that is already present has no effect.
+     *
+     * @param lastName
+     *            the last name
+     * @param id
+     *            the person ID
+     */
+    synchronized void insert(String lastName, long id) {
+        byte[] key = key(lastName, id);
+        Split split = insert(node(root), key);
+        if (split != null) {
+            Node newRoot = allocate(INTERNAL);
+            newRoot.keys.add(split.separator);
+            newRoot.children = new int[] { root, split.right };
+            root = newRoot.page;
+            headerDirty = true;
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param lastName
+     *            the last name
+     * @param id
+     *            the person ID
+     * @return true if the entry was present
+     */
+    synchronized boolean remove(String lastName, long id) {
+        byte[] key = key(lastName, id);
+        Node leaf = findLeaf(key);
+        int index = search(leaf.keys, key);
+        if (index < 0) {
+            return false;
+        }
+        leaf.keys.remove(index);
+        markDirty(leaf);
+        return true;
+    }
+
+    /**
+     * Removes every entry and shrinks the file back to an empty tree.
+     */
+    synchronized void clear() {
+        cache.clear();
+        try {
+            channel.truncate(0);
+            initialize();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Passes the IDs stored under the given last name to the action, in ascending order.
+     *
+     * @param lastName
+     *            the last name
+     * @param action
+     *            receives each ID
+     */
+    synchronized void findExact(String lastName, LongConsumer action) {
+        byte[] name = nameBytes(lastName);
+        byte[] from = Arrays.copyOf(name, name.length + 1);
+        byte[] to = Arrays.copyOf(name, name.length + 1);
+        to[name.length] = 1;
+        scan(from, to, action);
+    }
+
+    /**
+     * Passes the IDs stored under the given last name that are greater than {@code afterId} to the action, in ID order,
+     * stopping after {@code limit} IDs. Since a key holds at most {@link #MAX_NAME_BYTES} of the name, the IDs may
+     * include persons whose longer last names share that prefix, so the caller must re-check the names.
+     *
+     * @param lastName
+     *            the last name
+     * @param afterId
+     *            only IDs greater than this are returned
+     * @param limit
+     *            the maximum number of IDs to return
+     * @param action
+     *            receives each ID
+     * @return the number of IDs passed to the action
+     */
+    synchronized int findExact(String lastName, long afterId, int limit, LongConsumer action) {
+        if (afterId == Long.MAX_VALUE) {
+            return 0;
+        }
+        byte[] to = nameBytes(lastName);
+        to = Arrays.copyOf(to, to.length + 1);
+        to[to.length - 1] = 1;
+        return scan(key(lastName, afterId + 1), to, limit, action);
+    }
+
+    /**
+     * Passes the IDs stored under every last name that starts with the given prefix to the action, ordered by name and
+     * then by ID.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @param action
+     *            receives each ID
+     */
+    synchronized void findPrefix(String prefix, LongConsumer action) {
+        byte[] from = nameBytes(prefix);
+        scan(from, successor(from), action);
+    }
+
+    /**
+     * Passes the IDs stored under every last name in {@code [fromInclusive, toExclusive)} to the action, ordered by
+     * name and then by ID.
+     *
+     * @param fromInclusive
+     *            the lowest last name to include
+     * @param toExclusive
+     *            the first last name past the range
+     * @param action
+     *            receives each ID
+     */
+    synchronized void findRange(String fromInclusive, String toExclusive, LongConsumer action) {
+        scan(nameBytes(fromInclusive), nameBytes(toExclusive), action);
+    }
+
+    /**
+     * Returns the number of levels in the tree, counting the leaves.
+     *
+     * @return the tree height
+     */
+    synchronized int height() {
+        int height = 1;
+        Node node = node(root);
+        while (node.type == INTERNAL) {
+            node = node(node.children[0]);
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Returns the number of pages read from the file since the tree was opened, which excludes cache hits.
+     *
+     * @return the page read count
+     */
+    synchronized long getPageReads() {
+        return pageReads;
+    }
+
+    /**
+     * Writes every modified page and the header to the file.
+     */
+    synchronized void flush() {
+        for (Node node : cache.values()) {
+            if (node.dirty) {
+                writeNode(node);
+            }
+        }
+        if (headerDirty) {
+            try {
+                writeHeader(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the tree, marks it as closed cleanly and closes the file.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+            channel.force(true);
+            writeHeader(true);
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private Split insert(Node node, byte[] key) {
+        if (node.type == LEAF) {
+            int index = search(node.keys, key);
+            if (index >= 0) {
+                return null;
+            }
+            node.keys.add(-index - 1, key);
+            markDirty(node);
+            if (node.encodedSize() <= PAGE_SIZE) {
+                return null;
+            }
+            Node right = allocate(LEAF);
+            int middle = node.splitIndex();
+            List<byte[]> upper = node.keys.subList(middle, node.keys.size());
+            right.keys.addAll(upper);
+            upper.clear();
+            right.next = node.next;
+            node.next = right.page;
+            return new Split(right.keys.get(0), right.page);
+        }
+
+        int childIndex = childIndex(node, key);
+        Split split = insert(node(node.children[childIndex]), key);
+        if (split == null) {
+            return null;
+        }
+        node.keys.add(childIndex, split.separator);
+        node.children = insertAt(node.children, childIndex + 1, split.right);
+        markDirty(node);
+        if (node.encodedSize() <= PAGE_SIZE) {
+            return null;
+        }
+        Node right = allocate(INTERNAL);
+        int middle = node.splitIndex();
+        byte[] separator = node.keys.get(middle);
+        List<byte[]> upper = node.keys.subList(middle + 1, node.keys.size());
+        right.keys.addAll(upper);
+        upper.clear();
+        node.keys.remove(middle);
+        right.children = Arrays.copyOfRange(node.children, middle + 1, node.children.length);
+        node.children = Arrays.copyOf(node.children, middle + 1);
+        return new Split(separator, right.page);
+    }
+
+    private void scan(byte[] from, byte[] to, LongConsumer action) {
+        scan(from, to, Integer.MAX_VALUE, action);
+    }
+
+    private int scan(byte[] from, byte[] to, int limit, LongConsumer action) {
+        int count = 0;
+        Node leaf = findLeaf(from);
+        int index = search(leaf.keys, from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        while (true) {
+            for (; index < leaf.keys.size(); index++) {
+                byte[] key = leaf.keys.get(index);
+                if (count == limit || to != null && Arrays.compareUnsigned(key, to) >= 0) {
+                    return count;
+                }
+                action.accept(idOf(key));
+                count++;
+            }
+            if (leaf.next == NO_PAGE) {
+                return count;
+            }
+            leaf = node(leaf.next);
+            index = 0;
+        }
+    }
+
+    private Node findLeaf(byte[] key) {
+        Node node = node(root);
+        while (node.type == INTERNAL) {
+            node = node(node.children[childIndex(node, key)]);
+        }
+        return node;
+    }
+
+    private Node node(int page) {
+        Node node = cache.get(page);
+        if (node != null) {
+            return node;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        try {
+            LogEntries.readFully(channel, buffer, (long) page * PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pageReads++;
+        buffer.flip();
+        node = Node.decode(page, buffer);
+        cache.put(page, node);
+        return node;
+    }
+
+    private Node allocate(byte type) {
+        Node node = new Node(pageCount++, type);
+        headerDirty = true;
+        markDirty(node);
+        return node;
+    }
+
+    /**
+     * Marks a node as modified and puts it back into the cache, so a node evicted while an operation still holds it is
+     * written again.
+     */
+    private void markDirty(Node node) {
+        node.dirty = true;
+        cache.put(node.page, node);
+    }
+
+    private void writeNode(Node node) {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        node.encode(buffer);
+        buffer.clear();
+        try {
+            LogEntries.writeFully(channel, buffer, (long) node.page * PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        node.dirty = false;
+    }
+
+    private void initialize() throws IOException {
+        pageCount = 1;
+        Node leaf = allocate(LEAF);
+        root = leaf.page;
+        writeNode(leaf);
+        writeHeader(false);
+    }
+
+    private void writeHeader(boolean clean) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(root).putInt(pageCount)
+                .put((byte) (clean ? 1 : 0));
+        header.clear();
+        LogEntries.writeFully(channel, header, 0);
+        headerDirty = false;
+    }
+
+    private static int childIndex(Node node, byte[] key) {
+        // Keys equal to a separator belong to the right child, since a separator is the first key of its right page
+        int index = search(node.keys, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static int search(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(keys.get(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int[] insertAt(int[] values, int index, int value) {
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static byte[] key(String lastName, long id) {
+        byte[] name = nameBytes(lastName);
+        // Flipping the sign bit makes the unsigned byte order of IDs match their signed order
+        return ByteBuffer.allocate(name.length + 1 + Long.BYTES).put(name).put((byte) 0).putLong(id ^ Long.MIN_VALUE)
+                .array();
+    }
+
+    private static long idOf(byte[] key) {
+        return ByteBuffer.wrap(key, key.length - Long.BYTES, Long.BYTES).getLong() ^ Long.MIN_VALUE;
+    }
+
+    private static byte[] nameBytes(String name) {
+        byte[] bytes = NameNormalizer.normalize(name).getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_NAME_BYTES ? bytes : Arrays.copyOf(bytes, MAX_NAME_BYTES);
+    }
+
+    /**
+     * Returns the smallest byte string greater than every string starting with the given prefix, or null if there is
+     * none.
+     */
+    private static byte[] successor(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] successor = Arrays.copyOf(prefix, i + 1);
+                successor[i]++;
+                return successor;
+            }
+        }
+        return null;
+    }
+
+    private static final class Split {
+        final byte[] separator;
+        final int right;
+
+        Split(byte[] separator, int right) {
+            this.separator = separator;
+            this.right = right;
+        }
+    }
+
+    private static final class Node {
+        final int page;
+        final byte type;
+        final List<byte[]> keys = new ArrayList<>();
+        int[] children = new int[0];
+        int next = NO_PAGE;
+        boolean dirty;
+
+        Node(int page, byte type) {
+            this.page = page;
+            this.type = type;
+        }
+
+        int encodedSize() {
+            int size = NODE_HEADER_BYTES;
+            for (byte[] key : keys) {
+                size += Short.BYTES + key.length;
+            }
+            return type == INTERNAL ? size + keys.size() * Integer.BYTES : size;
+        }
+
+        /**
+         * Returns the index of the first key moved to the right page on a split, chosen so both halves hold about the
+         * same number of bytes rather than the same number of keys.
+         */
+        int splitIndex() {
+            int half = encodedSize() / 2;
+            int size = NODE_HEADER_BYTES;
+            for (int i = 0; i < keys.size() - 1; i++) {
+                size += Short.BYTES + keys.get(i).length + (type == INTERNAL ? Integer.BYTES : 0);
+                if (size >= half) {
+                    return Math.max(1, i);
+                }
+            }
+            return keys.size() - 1;
+        }
+
+        void encode(ByteBuffer buffer) {
+            buffer.put(type).putShort((short) keys.size());
+            buffer.putInt(type == LEAF ? next : children[0]);
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i);
+                buffer.putShort((short) key.length).put(key);
+                if (type == INTERNAL) {
+                    buffer.putInt(children[i + 1]);
+                }
+            }
+        }
+
+        static Node decode(int page, ByteBuffer buffer) {
+            byte type = buffer.get();
+            if (type != LEAF && type != INTERNAL) {
+                throw new IllegalStateException("Corrupt last name index page " + page);
+            }
+            Node node = new Node(page, type);
+            int count = Short.toUnsignedInt(buffer.getShort());
+            int first = buffer.getInt();
+            if (type == LEAF) {
+                node.next = first;
+            } else {
+                node.children = new int[count + 1];
+                node.children[0] = first;
+            }
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getShort()];
+                buffer.get(key);
+                node.keys.add(key);
+                if (type == INTERNAL) {
+                    node.children[i + 1] = buffer.getInt();
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory radix trie mapping {@link NameNormalizer normalized} last names to person IDs.
+ *
+ * <p>
+ * Names are normalized on the way in, so "Conceição", "conceicao" and "CONCEIÇÃO" share one key and every lookup
+ * ignores case and accents. Chains of nodes with a single child are collapsed into one edge labelled with the whole run
+ * of characters, so the trie holds at most two nodes per distinct name however long the names are, and names with a
+ * common prefix ("Silva", "Silveira", "Silvestre") store that prefix once. Children are kept in arrays sorted by the
+ * first character of their label and the IDs of a name in a sorted {@code long[]}, so there is no boxing and no object
+ * per entry.
+ *
+ * <p>
+ * An exact or prefix lookup follows one edge per matched run of characters, so it costs O(length of the name) whatever
+ * the number of names stored. {@link #complete(String, int)} then visits the names below the prefix in order and stops
+ * at the limit, which keeps autocomplete fast even for a one-letter prefix.
+ *
+ * <p>
+ * {@link #estimatedBytes()} reports the approximate heap used by the nodes, labels and ID arrays, for sizing the index
+ * per million entries.
+ *
+ * <p>
+ * This class is not thread-safe. {@link IndexedPersonRepository} only uses it under its own lock.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * LastNameTrie trie = new LastNameTrie();
+ * trie.add("Conceição", 1L);
+ * trie.add("Conceicao", 2L);
+ * long[] ids = trie.idsOf("CONCEICAO");
+ * // Returns: [1, 2]
+ * }</pre>
+ */
+public final class LastNameTrie {
+
+    private static final char[] NO_LABEL = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    // Object header and fields of a node, and the header of an array, with compressed references
+    private static final int NODE_BYTES = 32;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final Node root = new Node(NO_LABEL);
+    private int size;
+    private int nameCount;
+
+    /**
+     * Adds an ID under a last name.
+     *
+     * @param lastName
+     *            the last name, normalized before it is stored
+     * @param id
+     *            the person ID
+     * @return true if the ID was not already stored under that name
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    public boolean add(String lastName, long id) {
+        char[] key = key(lastName);
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length) {
+            int index = node.childIndex(key[depth]);
+            if (index < 0) {
+                Node leaf = new Node(Arrays.copyOfRange(key, depth, key.length));
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, depth);
+            if (common < child.label.length) {
+                child = split(node, index, common);
+            }
+            node = child;
+            depth += common;
+        }
+        if (!node.insertId(id)) {
+            return false;
+        }
+        if (node.idCount == 1) {
+            nameCount++;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an ID from a last name. A node left without IDs or children is dropped, and a node left without IDs and
+     * with a single child is merged into that child, so the trie stays as compact as if the ID had never been added.
+     *
+     * @param lastName
+     *            the last name the ID was added under
+     * @param id
+     *            the person ID
+     * @return true if the ID was stored under that name
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    public boolean remove(String lastName, long id) {
+        char[] key = key(lastName);
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length) {
+            int index = node.childIndex(key[depth]);
+            if (index < 0) {
+                return false;
+            }
+            Node child = node.children[index];
+            if (commonPrefix(child.label, key, depth) < child.label.length) {
+                return false;
+            }
+            path.add(node);
+            node = child;
+            depth += child.label.length;
+        }
+        if (!node.removeId(id)) {
+            return false;
+        }
+        size--;
+        if (node.idCount == 0) {
+            nameCount--;
+            compact(path, node);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the IDs stored under a last name, compared after normalization.
+     *
+     * @param lastName
+     *            the last name
+     * @return the IDs in ascending order, empty if there are none
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    public long[] idsOf(String lastName) {
+        Node node = locate(key(lastName), false, null);
+        return node != null ? Arrays.copyOf(node.ids, node.idCount) : NO_IDS;
+    }
+
+    /**
+     * Returns the lowest ID stored under a last name, compared after normalization, without copying the others.
+     *
+     * @param lastName
+     *            the last name
+     * @param absent
+     *            the value to return if no ID is stored under the name
+     * @return the lowest ID, or {@code absent}
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    public long firstIdOf(String lastName, long absent) {
+        Node node = locate(key(lastName), false, null);
+        return node != null && node.idCount > 0 ? node.ids[0] : absent;
+    }
+
+    /**
+     * Returns the IDs stored under every last name starting with a prefix, compared after normalization.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @return the IDs ordered by name and then by ID, empty if there are none
+     * @throws IllegalArgumentException
+     *             if prefix is null
+     */
+    public long[] idsWithPrefix(String prefix) {
+        Node node = locate(key(prefix), true, null);
+        if (node == null) {
+            return NO_IDS;
+        }
+        long[] ids = new long[countIds(node)];
+        copyIds(node, ids, 0);
+        return ids;
+    }
+
+    /**
+     * Returns the first normalized last names starting with a prefix, in ascending order. Only the names returned are
+     * visited, so the cost depends on the limit and not on how many names share the prefix.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @param limit
+     *            the maximum number of names to return
+     * @return up to {@code limit} normalized last names
+     * @throws IllegalArgumentException
+     *             if prefix is null or limit is not positive
+     */
+    public List<String> complete(String prefix, int limit) {
+        char[] key = key(prefix);
+        PageCursor.checkLimit(limit);
+        StringBuilder name = new StringBuilder();
+        Node node = locate(key, true, name);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        if (node != null) {
+            collectNames(node, name, limit, names);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the number of IDs stored, counting an ID once per name it is stored under.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct normalized last names stored.
+     *
+     * @return the number of names
+     */
+    public int nameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Estimates the heap used by the trie, assuming a 64-bit JVM with compressed references. Divide by {@link #size()}
+     * and multiply by a million for the cost per million entries.
+     *
+     * @return the approximate size in bytes
+     */
+    public long estimatedBytes() {
+        return estimatedBytes(root);
+    }
+
+    /**
+     * Removes every name and ID.
+     */
+    public void clear() {
+        root.children = NO_CHILDREN;
+        root.childCount = 0;
+        root.ids = NO_IDS;
+        root.idCount = 0;
+        size = 0;
+        nameCount = 0;
+    }
+
+    /**
+     * Follows the key down from the root. With {@code prefix} set the key may end inside an edge, and the node at the
+     * end of that edge is returned. The labels followed are appended to {@code path} when it is not null.
+     */
+    private Node locate(char[] key, boolean prefix, StringBuilder path) {
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length) {
+            int index = node.childIndex(key[depth]);
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, depth);
+            if (common < child.label.length && (!prefix || depth + common < key.length)) {
+                return null;
+            }
+            if (path != null) {
+                path.append(child.label);
+            }
+            node = child;
+            depth += common;
+        }
+        return node;
+    }
+
+    /**
+     * Splits the edge to a child after {@code common} characters, returning the new node in the middle.
+     */
+    private static Node split(Node parent, int index, int common) {
+        Node child = parent.children[index];
+        Node middle = new Node(Arrays.copyOf(child.label, common));
+        child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+        middle.children = new Node[] { child };
+        middle.childCount = 1;
+        parent.children[index] = middle;
+        return middle;
+    }
+
+    /**
+     * Drops or merges a node that has just lost its last ID. {@code path} holds the ancestors of the node, from the
+     * root down to its parent.
+     */
+    private void compact(List<Node> path, Node node) {
+        if (node == root) {
+            return;
+        }
+        Node parent = path.get(path.size() - 1);
+        if (node.childCount == 1) {
+            mergeWithChild(parent, node);
+        } else if (node.childCount == 0) {
+            parent.removeChild(parent.childIndex(node.label[0]));
+            if (parent != root && parent.idCount == 0 && parent.childCount == 1) {
+                mergeWithChild(path.get(path.size() - 2), parent);
+            }
+        }
+    }
+
+    /**
+     * Replaces a node without IDs by its only child, prefixing the child's label with the node's.
+     */
+    private static void mergeWithChild(Node parent, Node node) {
+        Node child = node.children[0];
+        char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+        System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+        child.label = label;
+        parent.children[parent.childIndex(label[0])] = child;
+    }
+
+    private static int commonPrefix(char[] label, char[] key, int from) {
+        int length = Math.min(label.length, key.length - from);
+        int common = 0;
+        while (common < length && label[common] == key[from + common]) {
+            common++;
+        }
+        return common;
+    }
+
+    private static int countIds(Node node) {
+        int count = node.idCount;
+        for (int i = 0; i < node.childCount; i++) {
+            count += countIds(node.children[i]);
+        }
+        return count;
+    }
+
+    private static int copyIds(Node node, long[] target, int offset) {
+        System.arraycopy(node.ids, 0, target, offset, node.idCount);
+        int next = offset + node.idCount;
+        for (int i = 0; i < node.childCount; i++) {
+            next = copyIds(node.children[i], target, next);
+        }
+        return next;
+    }
+
+    private static void collectNames(Node node, StringBuilder name, int limit, List<String> names) {
+        if (node.idCount > 0) {
+            names.add(name.toString());
+        }
+        for (int i = 0; i < node.childCount && names.size() < limit; i++) {
+            int length = name.length();
+            name.append(node.children[i].label);
+            collectNames(node.children[i], name, limit, names);
+            name.setLength(length);
+        }
+    }
+
+    private static long estimatedBytes(Node node) {
+        long bytes = NODE_BYTES + arrayBytes(node.label.length * (long) Character.BYTES);
+        if (node.children != NO_CHILDREN) {
+            bytes += arrayBytes(node.children.length * 4L);
+        }
+        if (node.ids != NO_IDS) {
+            bytes += arrayBytes(node.ids.length * (long) Long.BYTES);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            bytes += estimatedBytes(node.children[i]);
+        }
+        return bytes;
+    }
+
+    private static long arrayBytes(long contentBytes) {
+        return (ARRAY_HEADER_BYTES + contentBytes + 7) & ~7L;
+    }
+
+    private static char[] key(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        return NameNormalizer.normalize(lastName).toCharArray();
+    }
+
+    private static int grownCapacity(int capacity) {
+        return Math.max(2, capacity + (capacity >> 1));
+    }
+
+    /**
+     * A trie node: the label of the edge leading to it, its children sorted by the first character of their labels, and
+     * the sorted IDs of the name that ends here.
+     */
+    private static final class Node {
+        private char[] label;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        private long[] ids = NO_IDS;
+        private int idCount;
+
+        private Node(char[] label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the index of the child whose label starts with the character, or {@code -(insertion point) - 1}.
+         */
+        private int childIndex(char first) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label[0];
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        private void insertChild(int index, Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, grownCapacity(childCount));
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            children[index] = child;
+            childCount++;
+        }
+
+        private void removeChild(int index) {
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+            if (childCount == 0) {
+                children = NO_CHILDREN;
+            }
+        }
+
+        private boolean insertId(long id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, grownCapacity(idCount));
+            }
+            System.arraycopy(ids, index, ids, index + 1, idCount - index);
+            ids[index] = id;
+            idCount++;
+            return true;
+        }
+
+        private boolean removeId(long id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, idCount - index - 1);
+            if (--idCount == 0) {
+                ids = NO_IDS;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.List;
+
+/**
+ * Decides when persons born on February 29 celebrate their birthday in years without that day.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * List<Person> celebrants = repository.findBirthdaysCelebratedOn(LocalDate.of(2025, 2, 28), LeapDayPolicy.FEBRUARY_28);
+ * }</pre>
+ */
+public enum LeapDayPolicy {
+
+    /**
+     * Celebrate on February 28 in common years.
+     */
+    FEBRUARY_28,
+
+    /**
+     * Celebrate on March 1 in common years.
+     */
+    MARCH_1,
+
+    /**
+     * Celebrate only in leap years, on February 29 itself.
+     */
+    LEAP_YEARS_ONLY;
+
+    /**
+     * The policy {@link PersonRepository#findBirthdayToday()} applies unless the repository is configured with another.
+     */
+    public static final LeapDayPolicy DEFAULT = FEBRUARY_28;
+
+    private static final MonthDay LEAP_DAY = MonthDay.of(Month.FEBRUARY, 29);
+
+    /**
+     * Returns the birthdays celebrated on a date: its own month and day, plus February 29 when the policy moves it to
+     * that date.
+     *
+     * @param date
+     *            the date
+     * @return the birthdays celebrated on the date
+     * @throws IllegalArgumentException
+     *             if date is null
+     */
+    public List<MonthDay> birthdaysCelebratedOn(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        MonthDay day = MonthDay.from(date);
+        if (!date.isLeapYear() && day.equals(substituteDay())) {
+            return List.of(day, LEAP_DAY);
+        }
+        return List.of(day);
+    }
+
+    private MonthDay substituteDay() {
+        switch (this) {
+            case FEBRUARY_28:
+                return MonthDay.of(Month.FEBRUARY, 28);
+            case MARCH_1:
+                return MonthDay.of(Month.MARCH, 1);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package school.cesar.eta.unit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Framing of the checksummed entries appended to log files, shared by the log-backed repositories.
+ *
+ * <p>
+ * Each entry is written as:
+ *
+ * <pre>
+ * payload length (int) | CRC32 of type and payload (int) | type (byte) | payload
+ * </pre>
+ *
+ * <p>
+ * A crash can leave the last entry half written. {@link #read(FileChannel, long, long, Visitor)} stops at the first
+ * incomplete entry or checksum mismatch and reports where the valid part of the log ends, so the caller can truncate
+ * the rest.
+ */
+final class LogEntries {
+
+    /**
+     * Bytes written before the payload of each entry.
+     */
+    static final int HEADER_BYTES = 2 * Integer.BYTES + 1;
+
+    private LogEntries() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Receives the valid entries of a log, in order.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        /**
+         * Receives one entry.
+         *
+         * @param type
+         *            the entry type
+         * @param offset
+         *            the offset of the entry in the file
+         * @param payload
+         *            the entry payload, positioned at its start
+         */
+        void visit(byte type, long offset, ByteBuffer payload);
+    }
+
+    /**
+     * Encodes one entry.
+     *
+     * @param type
+     *            the entry type
+     * @param payload
+     *            the entry payload
+     * @return a buffer ready to be written
+     */
+    static ByteBuffer encode(byte type, byte[] payload) {
+        ByteBuffer entry = ByteBuffer.allocate(size(payload.length));
+        entry.putInt(payload.length);
+        entry.putInt(checksum(type, payload));
+        entry.put(type);
+        entry.put(payload);
+        entry.flip();
+        return entry;
+    }
+
+    /**
+     * Reads entries from {@code from} up to {@code end}, stopping at the first incomplete or corrupt entry.
+     *
+     * @param source
+     *            the log file
+     * @param from
+     *            the offset of the first entry
+     * @param end
+     *            the offset where reading stops
+     * @param visitor
+     *            receives each valid entry
+     * @return the offset right after the last valid entry
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static long read(FileChannel source, long from, long end, Visitor visitor) throws IOException {
+        long offset = from;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= end) {
+            header.clear();
+            readFully(source, header, offset);
+            int length = header.getInt(0);
+            int checksum = header.getInt(Integer.BYTES);
+            byte type = header.get(2 * Integer.BYTES);
+            if (length < 0 || offset + size(length) > end) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(source, payload, offset + HEADER_BYTES);
+            if (checksum(type, payload.array()) != checksum) {
+                break;
+            }
+            payload.flip();
+            visitor.visit(type, offset, payload);
+            offset += size(length);
+        }
+        return offset;
+    }
+
+    /**
+     * Copies the entry starting at {@code offset} to {@code position} in the target file.
+     *
+     * @return the number of bytes copied
+     * @throws IOException
+     *             if either file cannot be accessed
+     */
+    static long copy(FileChannel source, long offset, FileChannel target, long position) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(source, length, offset);
+        ByteBuffer entry = ByteBuffer.allocate(size(length.getInt(0)));
+        readFully(source, entry, offset);
+        entry.flip();
+        writeFully(target, entry, position);
+        return entry.capacity();
+    }
+
+    /**
+     * Returns the size of an entry with a payload of the given length.
+     *
+     * @param payloadLength
+     *            the payload length
+     * @return the entry size in bytes
+     */
+    static int size(int payloadLength) {
+        return HEADER_BYTES + payloadLength;
+    }
+
+    /**
+     * Fills the buffer from the file, starting at the given position.
+     *
+     * @throws IOException
+     *             if the file ends before the buffer is full
+     */
+    static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of log file");
+            }
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the file, starting at the given position.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Forces the directory holding the file to disk, so a file just created, renamed or deleted in it survives a crash.
+     * Renames are only durable once their directory is synced, even when the file itself was forced before.
+     *
+     * @throws IOException
+     *             if the directory cannot be synced
+     */
+    static void forceDirectoryOf(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,170 @@
+package school.cesar.eta.unit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter over primitive {@code long} keys.
+ *
+ * <p>
+ * {@link #mightContain(long)} never returns false for a key that was added, and returns true for a key that was not
+ * added with roughly the false positive rate given at construction. Storage engines use it to skip files that cannot
+ * hold a person ID without reading them.
+ *
+ * <p>
+ * The bit positions come from one 64-bit mix of the key split into two 32-bit hashes, combined as {@code h1 + i * h2}
+ * for each of the hash functions, so adding or checking a key costs no allocation.
+ *
+ * <p>
+ * This class is not thread-safe for writes; a filter that is no longer modified can be read from any thread.
+ */
+public final class LongBloomFilter {
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys
+     *            the number of keys expected to be added
+     * @param falsePositiveRate
+     *            the wanted false positive rate once that many keys are added, between 0 and 1 (exclusive)
+     * @throws IllegalArgumentException
+     *             if expectedKeys is negative or falsePositiveRate is out of range
+     */
+    public LongBloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 0) {
+            throw new IllegalArgumentException("Expected keys cannot be negative");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        long keys = Math.max(1, expectedKeys);
+        long bits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE));
+        this.words = new long[wordCount];
+        this.bitCount = (long) wordCount * Long.SIZE;
+        this.hashCount = (int) Math.max(1, Math.min(30, Math.round((double) bitCount / keys * Math.log(2))));
+    }
+
+    private LongBloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.bitCount = (long) words.length * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key
+     *            the key
+     */
+    public void put(long key) {
+        long hash = mix64(key);
+        long h1 = hash & 0xFFFFFFFFL;
+        long h2 = hash >>> 32;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key
+     *            the key
+     * @return false if the key was certainly not added, true if it probably was
+     */
+    public boolean mightContain(long key) {
+        long hash = mix64(key);
+        long h1 = hash & 0xFFFFFFFFL;
+        long h2 = hash >>> 32;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bits in the filter.
+     *
+     * @return the filter size in bits
+     */
+    public long bitSize() {
+        return bitCount;
+    }
+
+    /**
+     * Estimates the current false positive rate from the fraction of bits set, which rises as keys are added. Keys
+     * added beyond the expected number push it above the rate given at construction.
+     *
+     * @return the probability that a key that was not added is reported as possibly present
+     */
+    public double expectedFalsePositiveRate() {
+        long setBits = 0;
+        for (long word : words) {
+            setBits += Long.bitCount(word);
+        }
+        return Math.pow((double) setBits / bitCount, hashCount);
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @return the serialized size
+     */
+    public int serializedSize() {
+        return 2 * Integer.BYTES + words.length * Long.BYTES;
+    }
+
+    /**
+     * Writes the filter at the buffer position.
+     *
+     * @param buffer
+     *            the buffer, with at least {@link #serializedSize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(hashCount);
+        buffer.putInt(words.length);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(ByteBuffer)}, starting at the buffer position.
+     *
+     * @param buffer
+     *            the buffer to read from
+     * @return the filter
+     * @throws IllegalArgumentException
+     *             if the buffer does not hold a valid filter
+     */
+    public static LongBloomFilter readFrom(ByteBuffer buffer) {
+        int hashCount = buffer.getInt();
+        int wordCount = buffer.getInt();
+        if (hashCount <= 0 || wordCount <= 0 || wordCount > buffer.remaining() / Long.BYTES) {
+            throw new IllegalArgumentException("Invalid Bloom filter data");
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new LongBloomFilter(words, hashCount);
+    }
+
+    private static long mix64(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,227 @@
+package school.cesar.eta.unit;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to primitive {@code long} values.
+ *
+ * <p>
+ * This is the primitive-valued sibling of {@link LongObjectMap}, used by the storage backends to map person IDs to row
+ * numbers or file offsets. All state lives in three flat arrays, so the map adds no objects per entry for the garbage
+ * collector to trace, and lookups neither box nor allocate.
+ *
+ * <p>
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+public final class LongLongMap {
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Callback receiving the entries of the map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Receives one entry.
+         *
+         * @param key
+         *            the entry key
+         * @param value
+         *            the entry value
+         */
+        void accept(long key, long value);
+    }
+
+    /**
+     * Creates an empty map with a small default capacity.
+     */
+    public LongLongMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map able to hold the given number of entries without resizing.
+     *
+     * @param expectedSize
+     *            the expected number of entries
+     * @throws IllegalArgumentException
+     *             if expectedSize is negative or larger than a map can hold
+     */
+    public LongLongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        allocate(LongObjectMap.capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the value to return when the key is absent
+     * @return the mapped value, or defaultValue if the key is absent
+     */
+    public long get(long key, long defaultValue) {
+        int slot = indexOf(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Checks whether the given key is present.
+     *
+     * @param key
+     *            the key
+     * @return true if the key is mapped to a value
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return true if the key was not present before
+     * @throws IllegalStateException
+     *             if the key is absent and the map already holds the most entries it can
+     */
+    public boolean put(long key, long value) {
+        int slot = slotFor(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        LongObjectMap.checkNotFull(size);
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key
+     *            the key
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        int gap = slot;
+        int current = (slot + 1) & mask;
+        while (used[current]) {
+            int home = slotFor(keys[current]);
+            if (((current - home) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+        used[gap] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map has no entries.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Passes every entry to the given action, in no particular order.
+     *
+     * @param action
+     *            the action to run for each entry
+     */
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int indexOf(long key) {
+        int slot = slotFor(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(long key) {
+        return LongObjectMap.mix(key) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotFor(oldKeys[i]);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LongObjectMap.MAX_LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,311 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to object values.
+ *
+ * <p>
+ * Keys and values live in two parallel arrays and collisions are resolved by linear probing, so lookups neither box the
+ * key nor allocate, and a hit usually costs a single cache line in each array. Removal uses backward-shift deletion,
+ * which keeps probe sequences short without tombstones.
+ *
+ * <p>
+ * This class is not thread-safe; callers such as {@link IndexedPersonRepository} guard it with their own lock. Null
+ * values are not allowed, since a null slot marks an empty bucket.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * LongObjectMap<Person> persons = new LongObjectMap<>();
+ * persons.put(42L, person);
+ * Person found = persons.get(42L); // no boxing
+ * }</pre>
+ *
+ * @param <V>
+ *            the value type
+ */
+public final class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    static final float MAX_LOAD_FACTOR = 0.6f;
+    /**
+     * The most entries a map holds; the table cannot grow past {@code MAX_CAPACITY} slots.
+     */
+    static final int MAX_SIZE = (int) (MAX_CAPACITY * MAX_LOAD_FACTOR);
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Creates an empty map with a small default capacity.
+     */
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map able to hold the given number of entries without resizing.
+     *
+     * @param expectedSize
+     *            the expected number of entries
+     * @throws IllegalArgumentException
+     *             if expectedSize is negative or larger than a map can hold
+     */
+    public LongObjectMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key
+     *            the key
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = indexOf(key);
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    /**
+     * Checks whether the given key is present.
+     *
+     * @param key
+     *            the key
+     * @return true if the key is mapped to a value
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value, not null
+     * @return the previous value, or null if the key was absent
+     * @throws IllegalArgumentException
+     *             if value is null
+     * @throws IllegalStateException
+     *             if the key is absent and the map already holds the most entries it can
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int slot = slotFor(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        checkNotFull(size);
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key
+     *            the key
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        shiftBack(slot);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map has no entries.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Grows the map, if needed, so it can hold the given number of entries without resizing again. Useful before bulk
+     * loads, which would otherwise rehash several times.
+     *
+     * @param expectedSize
+     *            the expected number of entries
+     * @throws IllegalArgumentException
+     *             if expectedSize is larger than a map can hold
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > values.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Removes all entries, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Passes every value to the given action, in no particular order.
+     *
+     * @param action
+     *            the action to run for each value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Returns a new list with all values, in no particular order.
+     *
+     * @return list of values
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        forEachValue(result::add);
+        return result;
+    }
+
+    private int indexOf(long key) {
+        int slot = slotFor(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(long key) {
+        return mix(key) & mask;
+    }
+
+    /**
+     * Closes the gap left at {@code slot} by moving back later entries of the same probe run whose home slot is not
+     * between the gap and their current position.
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int current = (slot + 1) & mask;
+        while (values[current] != null) {
+            int home = slotFor(keys[current]);
+            if (((current - home) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotFor(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the power-of-two table capacity that holds the given number of entries below the maximum load factor.
+     */
+    static int capacityFor(int expectedSize) {
+        if (expectedSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Expected size cannot exceed " + MAX_SIZE);
+        }
+        long needed = (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Throws if a map of the given size cannot take another entry. At {@code MAX_CAPACITY} slots the resize threshold
+     * equals {@link #MAX_SIZE}, so checking before an insert keeps the table from filling up instead of growing.
+     */
+    static void checkNotFull(int size) {
+        if (size >= MAX_SIZE) {
+            throw new IllegalStateException("Map cannot hold more than " + MAX_SIZE + " entries");
+        }
+    }
+
+    /**
+     * Spreads sequential IDs over the table (the finalizer of MurmurHash3).
+     */
+    static int mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
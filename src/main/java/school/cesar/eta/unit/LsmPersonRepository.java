@@ -0,0 +1,1310 @@
+package school.cesar.eta.unit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * {@link PersonRepository} built as a log-structured merge tree, for write-heavy ingestion.
+ *
+ * <p>
+ * Writes go to an in-memory memtable sorted by ID, and are appended to a memtable log so they survive a restart. When
+ * the memtable reaches its size limit it is frozen and written, in the background, as an immutable sorted run file
+ * while a new memtable takes the writes. A write therefore never reads or rewrites data on disk, and its cost does not
+ * grow with the dataset. Deletes are written as tombstones.
+ *
+ * <p>
+ * Each run holds its records sorted by ID, a sparse index with one entry every {@value #INDEX_INTERVAL} records and a
+ * {@link LongBloomFilter} of its IDs. An ID lookup checks the memtable, then the runs from newest to oldest; the Bloom
+ * filter lets it skip almost every run that does not hold the ID, and the sparse index narrows the read to one small
+ * block of the file that does.
+ *
+ * <p>
+ * Runs accumulate as memtables are flushed, so a background thread merges them using size-tiered compaction: when
+ * enough consecutive runs have a similar size, they are merged into one run, keeping only the newest version of each
+ * person. Tombstones are dropped once the merge reaches the oldest run.
+ *
+ * <p>
+ * Queries other than by ID ({@link #findByLastName(String)}, {@link #findAll()}, {@link #findBirthdayToday()} and
+ * {@link #count()}) merge every run and the memtables in ID order, so they read the whole dataset. Every query returns
+ * new {@link Person} instances, with family members loaded one level deep. Family members are linked by ID, so members
+ * that were never saved (and have no ID) are not stored.
+ *
+ * <p>
+ * The memtable log is not synced on every write: {@link #flush()} and {@link #close()} sync it, and a memtable is
+ * durable once written as a run.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * LsmPersonRepository repository = new LsmPersonRepository.Builder().directory(Paths.get("persons-lsm"))
+ *         .memtableBytes(64L * 1024 * 1024).build();
+ * }</pre>
+ */
+public class LsmPersonRepository implements PersonRepository, Closeable {
+
+    /**
+     * Number of records between two entries of the sparse index of a run.
+     */
+    static final int INDEX_INTERVAL = 64;
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final byte[] TOMBSTONE = new byte[0];
+    private static final int TOMBSTONE_LENGTH = -1;
+    private static final long MEMTABLE_ENTRY_OVERHEAD = 64;
+    private static final int MAX_MERGE_RUNS = 32;
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_SUFFIX = ".sst";
+    private static final String LOG_PREFIX = "memtable-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long memtableBytes;
+    private final int compactionThreshold;
+    private final double falsePositiveRate;
+    private final Clock clock;
+    private final LeapDayPolicy leapDayPolicy;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Condition flushDone = lock.writeLock().newCondition();
+    private final ExecutorService flusher;
+    private final ExecutorService compactor;
+    private TreeMap<Long, byte[]> memtable = new TreeMap<>();
+    private long memtableSize;
+    private long memtableSequence;
+    private FileChannel log;
+    private long logSize;
+    private TreeMap<Long, byte[]> flushing;
+    private long flushingSequence;
+    private List<SortedRun> runs = new ArrayList<>();
+    private long nextId = 1;
+    private long nextSequence = 1;
+    private boolean compactionScheduled;
+    private IOException backgroundFailure;
+    private boolean closed;
+
+    private LsmPersonRepository(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.memtableBytes = builder.memtableBytes;
+        this.compactionThreshold = builder.compactionThreshold;
+        this.falsePositiveRate = builder.falsePositiveRate;
+        this.clock = builder.clock;
+        this.leapDayPolicy = builder.leapDayPolicy;
+        Files.createDirectories(directory);
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            closeRuns(runs);
+            throw e;
+        }
+        this.flusher = Executors.newSingleThreadExecutor(daemonThreads("person-lsm-flusher"));
+        this.compactor = Executors.newSingleThreadExecutor(daemonThreads("person-lsm-compactor"));
+        lock.writeLock().lock();
+        try {
+            scheduleCompactionIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builder for {@link LsmPersonRepository}.
+     */
+    public static class Builder {
+        private Path directory;
+        private long memtableBytes = 8L * 1024 * 1024;
+        private int compactionThreshold = 4;
+        private double falsePositiveRate = 0.01;
+        private Clock clock = Clock.systemDefaultZone();
+        private LeapDayPolicy leapDayPolicy = LeapDayPolicy.DEFAULT;
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the approximate memtable size at which it is written as a run. Larger memtables mean fewer, larger runs
+         * and less compaction work, at the cost of heap.
+         */
+        public Builder memtableBytes(long memtableBytes) {
+            this.memtableBytes = memtableBytes;
+            return this;
+        }
+
+        /**
+         * Sets how many runs of similar size trigger a merge.
+         */
+        public Builder compactionThreshold(int compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the false positive rate of the Bloom filter of each run.
+         */
+        public Builder falsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets when {@link #findBirthdayToday()} includes persons born on February 29 in common years. Defaults to
+         * {@link LeapDayPolicy#DEFAULT}.
+         */
+        public Builder leapDayPolicy(LeapDayPolicy leapDayPolicy) {
+            this.leapDayPolicy = leapDayPolicy;
+            return this;
+        }
+
+        /**
+         * Opens the repository, loading existing runs and replaying memtable logs left by a previous run.
+         *
+         * @return the repository
+         * @throws IOException
+         *             if the directory cannot be read or written
+         * @throws IllegalArgumentException
+         *             if a setting is missing or invalid
+         */
+        public LsmPersonRepository build() throws IOException {
+            if (directory == null) {
+                throw new IllegalArgumentException("Directory is required");
+            }
+            if (memtableBytes <= 0) {
+                throw new IllegalArgumentException("Memtable size must be positive");
+            }
+            if (compactionThreshold < 2) {
+                throw new IllegalArgumentException("Compaction threshold must be at least 2");
+            }
+            if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+                throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+            }
+            if (clock == null) {
+                throw new IllegalArgumentException("Clock is required");
+            }
+            if (leapDayPolicy == null) {
+                throw new IllegalArgumentException("Leap day policy is required");
+            }
+            return new LsmPersonRepository(this);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            Long previousId = person.getId();
+            if (previousId == null) {
+                person.setId(nextId);
+            }
+            byte[] record;
+            try {
+                record = PersonRecordCodec.encode(person);
+                appendToLog(SAVE, record);
+            } catch (RuntimeException e) {
+                person.setId(previousId);
+                throw e;
+            }
+            long id = person.getId();
+            nextId = Math.max(nextId, id + 1);
+            putInMemtable(id, record);
+            return person;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.saveAll(persons);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        lock.readLock().lock();
+        try {
+            byte[] value = lookup(id);
+            return value != null ? Optional.of(materialize(value, true)) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read person " + id, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            return PersonRepository.super.findAllById(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return scan(person -> lastName != null && lastName.equals(person.getLastName()));
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return scan(person -> true);
+    }
+
+    /**
+     * Streams the persons a page at a time in ID order, seeking into the runs for each page, so only one page is
+     * decoded at a time. The size is not estimated, since counting merges every run.
+     */
+    @Override
+    public Stream<Person> streamAll() {
+        return PageSpliterator.stream(this::findPage, Long.MAX_VALUE);
+    }
+
+    /**
+     * Merges the memtables and runs from {@code afterId} onwards, seeking into each run with its sparse index, and
+     * stops after {@code limit} persons, so a page costs one index lookup per run plus the records it returns.
+     */
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        List<Person> page = new ArrayList<>(Math.min(limit, 1024));
+        if (afterId == Long.MAX_VALUE) {
+            return page;
+        }
+        lock.readLock().lock();
+        try {
+            merge(openCursorsAfter(afterId), false, limit, (id, value) -> page.add(materialize(value, true)));
+            return page;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read persons after " + afterId, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            if (lookup(id) == null) {
+                return false;
+            }
+            appendToLog(DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+            putInMemtable(id, TOMBSTONE);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete person " + id, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.deleteAllById(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        long[] count = { 0 };
+        lock.readLock().lock();
+        try {
+            merge(openCursors(), false, (id, value) -> count[0]++);
+            return count[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not count persons", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        lock.readLock().lock();
+        try {
+            return lookup(id) != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read person " + id, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        List<MonthDay> days = leapDayPolicy.birthdaysCelebratedOn(LocalDate.now(clock));
+        return scan(person -> person.getBirthday() != null && days.contains(MonthDay.from(person.getBirthday())));
+    }
+
+    /**
+     * Syncs the memtable log, making every write so far durable.
+     *
+     * @throws UncheckedIOException
+     *             if the log cannot be synced
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            log.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync memtable log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of sorted run files.
+     *
+     * @return the run count
+     */
+    public int getRunCount() {
+        lock.readLock().lock();
+        try {
+            return runs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until the frozen memtable, if any, is written and no compaction is pending. Mostly useful in tests and
+     * before measuring.
+     *
+     * @throws UncheckedIOException
+     *             if a background flush or compaction failed
+     */
+    public void awaitBackgroundWork() {
+        while (true) {
+            lock.writeLock().lock();
+            try {
+                if (backgroundFailure != null) {
+                    throw new UncheckedIOException("Background flush or compaction failed", backgroundFailure);
+                }
+                if (flushing == null && !compactionScheduled) {
+                    return;
+                }
+                flushDone.awaitUninterruptibly();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Syncs the memtable log, waits for background work to finish and closes all files. The memtable is not written as
+     * a run; its log is replayed on the next start.
+     *
+     * @throws IOException
+     *             if a file cannot be synced or closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            log.force(false);
+            flushDone.signalAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        compactor.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            log.close();
+            closeRuns(runs);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("Repository is closed");
+        }
+        if (backgroundFailure != null) {
+            throw new UncheckedIOException("Background flush or compaction failed", backgroundFailure);
+        }
+    }
+
+    private void appendToLog(byte type, byte[] payload) {
+        ByteBuffer entry = LogEntries.encode(type, payload);
+        try {
+            LogEntries.writeFully(log, entry, logSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to memtable log", e);
+        }
+        logSize += entry.capacity();
+    }
+
+    /**
+     * Puts a value in the memtable and freezes it once full. Must be called while holding the write lock.
+     */
+    private void putInMemtable(long id, byte[] value) {
+        byte[] previous = memtable.put(id, value);
+        memtableSize += value.length + MEMTABLE_ENTRY_OVERHEAD;
+        if (previous != null) {
+            memtableSize -= previous.length + MEMTABLE_ENTRY_OVERHEAD;
+        }
+        if (memtableSize >= memtableBytes) {
+            freezeMemtable();
+        }
+    }
+
+    /**
+     * Hands the memtable to the flusher and starts a new one. If the previous memtable is still being written, waits
+     * for it, so writers slow down instead of piling up memtables when the disk cannot keep up.
+     */
+    private void freezeMemtable() {
+        while (flushing != null) {
+            if (backgroundFailure != null) {
+                throw new UncheckedIOException("Background flush failed", backgroundFailure);
+            }
+            flushDone.awaitUninterruptibly();
+        }
+        if (closed || memtableSize < memtableBytes) {
+            // Closed, or another writer froze the memtable while this one was waiting.
+            return;
+        }
+        try {
+            FileChannel nextLog = openLog(nextSequence);
+            log.close();
+            flushing = memtable;
+            flushingSequence = memtableSequence;
+            memtable = new TreeMap<>();
+            memtableSize = 0;
+            memtableSequence = nextSequence++;
+            log = nextLog;
+            logSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a new memtable log", e);
+        }
+        flusher.execute(this::writeFrozenMemtable);
+    }
+
+    private void writeFrozenMemtable() {
+        TreeMap<Long, byte[]> frozen;
+        long sequence;
+        lock.readLock().lock();
+        try {
+            frozen = flushing;
+            sequence = flushingSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            SortedRun run = writeRun(sequence, sequence, frozen);
+            lock.writeLock().lock();
+            try {
+                List<SortedRun> updated = new ArrayList<>(runs.size() + 1);
+                updated.add(run);
+                updated.addAll(runs);
+                runs = updated;
+                flushing = null;
+                scheduleCompactionIfNeeded();
+                flushDone.signalAll();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Files.deleteIfExists(logPath(sequence));
+        } catch (IOException e) {
+            failInBackground(e);
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (!compactionScheduled && !closed && pickRunsToMerge(runs) != null) {
+            compactionScheduled = true;
+            compactor.execute(this::compactRuns);
+        }
+    }
+
+    /**
+     * Merges groups of similar runs until none is left.
+     */
+    private void compactRuns() {
+        try {
+            while (true) {
+                List<SortedRun> group;
+                boolean includesOldest;
+                lock.readLock().lock();
+                try {
+                    group = closed ? null : pickRunsToMerge(runs);
+                    includesOldest = group != null && group.get(group.size() - 1) == runs.get(runs.size() - 1);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (group == null) {
+                    break;
+                }
+                SortedRun merged = mergeRuns(group, includesOldest);
+                lock.writeLock().lock();
+                try {
+                    List<SortedRun> updated = new ArrayList<>(runs);
+                    int first = updated.indexOf(group.get(0));
+                    updated.subList(first, first + group.size()).clear();
+                    updated.add(first, merged);
+                    runs = updated;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                closeRuns(group);
+                for (SortedRun run : group) {
+                    Files.deleteIfExists(run.path);
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                compactionScheduled = false;
+                scheduleCompactionIfNeeded();
+                flushDone.signalAll();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            failInBackground(e);
+        }
+    }
+
+    /**
+     * Picks the first stretch of consecutive runs whose sizes are within a factor of two of their average, if it is
+     * long enough to merge. Merging only consecutive runs keeps the runs ordered from newest to oldest.
+     */
+    private List<SortedRun> pickRunsToMerge(List<SortedRun> candidates) {
+        int start = 0;
+        while (start < candidates.size()) {
+            long total = tierSize(candidates.get(start));
+            int end = start + 1;
+            while (end < candidates.size() && end - start < MAX_MERGE_RUNS) {
+                long average = total / (end - start);
+                long size = tierSize(candidates.get(end));
+                if (size < average / 2 || size > average * 2) {
+                    break;
+                }
+                total += size;
+                end++;
+            }
+            if (end - start >= compactionThreshold) {
+                return new ArrayList<>(candidates.subList(start, end));
+            }
+            start = end;
+        }
+        return null;
+    }
+
+    private long tierSize(SortedRun run) {
+        return Math.max(run.sizeBytes, memtableBytes / 2);
+    }
+
+    private SortedRun mergeRuns(List<SortedRun> group, boolean dropTombstones) throws IOException {
+        long expectedKeys = 0;
+        long maxId = 0;
+        List<EntryCursor> cursors = new ArrayList<>();
+        for (SortedRun run : group) {
+            expectedKeys += run.recordCount;
+            maxId = Math.max(maxId, run.maxId);
+            cursors.add(run.openCursor());
+        }
+        long maxSequence = group.get(0).maxSequence;
+        long minSequence = group.get(group.size() - 1).minSequence;
+        Path file = runPath(maxSequence, minSequence);
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (RunWriter writer = new RunWriter(temporary, expectedKeys, falsePositiveRate)) {
+            merge(cursors, !dropTombstones, writer::add);
+            writer.finish(maxId);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        // The run replaces a memtable log or older runs that are deleted next, so its name must be on disk first
+        LogEntries.forceDirectoryOf(file);
+        return SortedRun.open(file, maxSequence, minSequence);
+    }
+
+    private SortedRun writeRun(long maxSequence, long minSequence, TreeMap<Long, byte[]> entries) throws IOException {
+        long maxId = entries.isEmpty() ? 0 : entries.lastKey();
+        Path file = runPath(maxSequence, minSequence);
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (RunWriter writer = new RunWriter(temporary, entries.size(), falsePositiveRate)) {
+            for (Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+                writer.add(entry.getKey(), entry.getValue());
+            }
+            writer.finish(maxId);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        // The run replaces a memtable log or older runs that are deleted next, so its name must be on disk first
+        LogEntries.forceDirectoryOf(file);
+        return SortedRun.open(file, maxSequence, minSequence);
+    }
+
+    private void failInBackground(IOException failure) {
+        lock.writeLock().lock();
+        try {
+            backgroundFailure = failure;
+            compactionScheduled = false;
+            flushDone.signalAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the newest value stored for the ID, or null if it was never saved or is deleted. Must be called while
+     * holding the lock.
+     */
+    private byte[] lookup(long id) throws IOException {
+        byte[] value = memtable.get(id);
+        if (value == null && flushing != null) {
+            value = flushing.get(id);
+        }
+        for (int i = 0; value == null && i < runs.size(); i++) {
+            value = runs.get(i).lookup(id);
+        }
+        return value == TOMBSTONE ? null : value;
+    }
+
+    private Person materialize(byte[] value, boolean withFamily) throws IOException {
+        PersonRecordCodec.PersonRecord record = PersonRecordCodec.decode(ByteBuffer.wrap(value));
+        Person person = record.getPerson();
+        if (withFamily) {
+            for (long memberId : record.getFamilyIds()) {
+                byte[] member = lookup(memberId);
+                if (member != null) {
+                    person.addToFamily(materialize(member, false));
+                }
+            }
+        }
+        return person;
+    }
+
+    private List<Person> scan(Predicate<Person> filter) {
+        List<Person> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            merge(openCursors(), false, (id, value) -> {
+                Person person = PersonRecordCodec.decode(ByteBuffer.wrap(value)).getPerson();
+                if (filter.test(person)) {
+                    result.add(materialize(value, true));
+                }
+            });
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan persons", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Opens cursors over the memtables and runs, newest first. Must be called while holding the lock.
+     */
+    private List<EntryCursor> openCursors() throws IOException {
+        List<EntryCursor> cursors = new ArrayList<>(runs.size() + 2);
+        cursors.add(new MemtableCursor(memtable));
+        if (flushing != null) {
+            cursors.add(new MemtableCursor(flushing));
+        }
+        try {
+            for (SortedRun run : runs) {
+                cursors.add(run.openCursor());
+            }
+        } catch (IOException e) {
+            closeCursors(cursors);
+            throw e;
+        }
+        return cursors;
+    }
+
+    /**
+     * Opens cursors over the memtables and runs, newest first, that start after the given ID. Must be called while
+     * holding the lock.
+     */
+    private List<EntryCursor> openCursorsAfter(long afterId) throws IOException {
+        List<EntryCursor> cursors = new ArrayList<>(runs.size() + 2);
+        cursors.add(new MemtableCursor(memtable.tailMap(afterId, false)));
+        if (flushing != null) {
+            cursors.add(new MemtableCursor(flushing.tailMap(afterId, false)));
+        }
+        try {
+            for (SortedRun run : runs) {
+                cursors.add(run.openCursorAfter(afterId));
+            }
+        } catch (IOException e) {
+            closeCursors(cursors);
+            throw e;
+        }
+        return cursors;
+    }
+
+    /**
+     * Merges cursors ordered from newest to oldest, passing the newest value of each ID to the sink in ID order. Closes
+     * the cursors.
+     */
+    private static void merge(List<EntryCursor> cursors, boolean keepTombstones, EntrySink sink) throws IOException {
+        merge(cursors, keepTombstones, Long.MAX_VALUE, sink);
+    }
+
+    /**
+     * Merges cursors like {@link #merge(List, boolean, EntrySink)}, stopping once {@code limit} entries were passed to
+     * the sink. Closes the cursors.
+     */
+    private static void merge(List<EntryCursor> cursors, boolean keepTombstones, long limit, EntrySink sink)
+            throws IOException {
+        long remaining = limit;
+        try {
+            PriorityQueue<Integer> heap = new PriorityQueue<>(
+                    Comparator.<Integer> comparingLong(i -> cursors.get(i).id()).thenComparingInt(i -> i));
+            for (int i = 0; i < cursors.size(); i++) {
+                if (cursors.get(i).next()) {
+                    heap.add(i);
+                }
+            }
+            while (!heap.isEmpty() && remaining > 0) {
+                int newest = heap.poll();
+                EntryCursor cursor = cursors.get(newest);
+                long id = cursor.id();
+                byte[] value = cursor.value();
+                if (cursor.next()) {
+                    heap.add(newest);
+                }
+                while (!heap.isEmpty() && cursors.get(heap.peek()).id() == id) {
+                    int older = heap.poll();
+                    if (cursors.get(older).next()) {
+                        heap.add(older);
+                    }
+                }
+                if (value != TOMBSTONE || keepTombstones) {
+                    sink.accept(id, value);
+                    remaining--;
+                }
+            }
+        } finally {
+            closeCursors(cursors);
+        }
+    }
+
+    /**
+     * Loads runs, drops runs replaced by a merge that was interrupted before they were deleted, and turns leftover
+     * memtable logs into runs.
+     */
+    private void recover() throws IOException {
+        List<SortedRun> found = new ArrayList<>();
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.startsWith(RUN_PREFIX) && name.endsWith(RUN_SUFFIX)) {
+                    String[] sequences = name.substring(RUN_PREFIX.length(), name.length() - RUN_SUFFIX.length())
+                            .split("-");
+                    found.add(SortedRun.open(file, Long.parseLong(sequences[0]), Long.parseLong(sequences[1])));
+                } else if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    logs.put(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())),
+                            file);
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong((SortedRun run) -> run.maxSequence).reversed()
+                .thenComparingLong(run -> run.minSequence));
+        for (SortedRun run : found) {
+            if (!runs.isEmpty() && runs.get(runs.size() - 1).minSequence <= run.maxSequence) {
+                run.close();
+                Files.delete(run.path);
+            } else {
+                runs.add(run);
+            }
+        }
+        for (SortedRun run : runs) {
+            nextId = Math.max(nextId, run.maxId + 1);
+            nextSequence = Math.max(nextSequence, run.maxSequence + 1);
+        }
+
+        for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+            long sequence = entry.getKey();
+            if (!isCoveredByRun(sequence)) {
+                TreeMap<Long, byte[]> replayed = replayLog(entry.getValue());
+                if (!replayed.isEmpty()) {
+                    runs.add(0, writeRun(sequence, sequence, replayed));
+                    nextId = Math.max(nextId, replayed.lastKey() + 1);
+                }
+            }
+            Files.delete(entry.getValue());
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+
+        memtableSequence = nextSequence++;
+        log = openLog(memtableSequence);
+    }
+
+    private boolean isCoveredByRun(long sequence) {
+        for (SortedRun run : runs) {
+            if (run.minSequence <= sequence && sequence <= run.maxSequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TreeMap<Long, byte[]> replayLog(Path file) throws IOException {
+        TreeMap<Long, byte[]> replayed = new TreeMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LogEntries.read(channel, 0, channel.size(), (type, offset, payload) -> {
+                if (type == SAVE) {
+                    byte[] record = new byte[payload.remaining()];
+                    payload.get(record);
+                    replayed.put(PersonRecordCodec.readId(ByteBuffer.wrap(record), 0), record);
+                } else if (type == DELETE) {
+                    replayed.put(payload.getLong(), TOMBSTONE);
+                }
+            });
+        }
+        return replayed;
+    }
+
+    private FileChannel openLog(long sequence) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(sequence), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            // Syncing the log later is not enough while the new file's name can still be lost
+            LogEntries.forceDirectoryOf(logPath(sequence));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private Path logPath(long sequence) {
+        return directory.resolve(LOG_PREFIX + sequence + LOG_SUFFIX);
+    }
+
+    private Path runPath(long maxSequence, long minSequence) {
+        return directory.resolve(RUN_PREFIX + maxSequence + "-" + minSequence + RUN_SUFFIX);
+    }
+
+    private static void closeRuns(List<SortedRun> toClose) throws IOException {
+        for (SortedRun run : toClose) {
+            run.close();
+        }
+    }
+
+    private static void closeCursors(List<EntryCursor> cursors) throws IOException {
+        for (EntryCursor cursor : cursors) {
+            cursor.close();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Receives merged entries in ID order.
+     */
+    @FunctionalInterface
+    private interface EntrySink {
+        void accept(long id, byte[] value) throws IOException;
+    }
+
+    /**
+     * Sequential reader over entries sorted by ID. The value is {@link #TOMBSTONE} for deleted persons.
+     */
+    private interface EntryCursor extends Closeable {
+        boolean next() throws IOException;
+
+        long id();
+
+        byte[] value();
+    }
+
+    private static final class MemtableCursor implements EntryCursor {
+        private final Iterator<Map.Entry<Long, byte[]>> entries;
+        private Map.Entry<Long, byte[]> current;
+
+        private MemtableCursor(NavigableMap<Long, byte[]> memtable) {
+            this.entries = memtable.entrySet().iterator();
+        }
+
+        @Override
+        public boolean next() {
+            current = entries.hasNext() ? entries.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public long id() {
+            return current.getKey();
+        }
+
+        @Override
+        public byte[] value() {
+            return current.getValue();
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+
+    /**
+     * Immutable file of records sorted by ID:
+     *
+     * <pre>
+     * records: [id (long) | length (int, -1 for a tombstone) | record]...
+     * sparse index: [id (long) | offset (long)]...
+     * Bloom filter
+     * footer: index offset (long) | index count (int) | Bloom offset (long) | record count (long) | max ID (long)
+     *         | magic (int)
+     * </pre>
+     *
+     * The sparse index and the Bloom filter are kept on the heap; records are read on demand.
+     */
+    private static final class SortedRun implements Closeable {
+        private static final int MAGIC = 0x50534154; // "PSAT"
+        private static final int FOOTER_BYTES = 4 * Long.BYTES + 2 * Integer.BYTES;
+
+        private final Path path;
+        private final long maxSequence;
+        private final long minSequence;
+        private final FileChannel channel;
+        private final long[] indexIds;
+        private final long[] indexOffsets;
+        private final long dataEnd;
+        private final LongBloomFilter bloom;
+        private final long recordCount;
+        private final long maxId;
+        private final long sizeBytes;
+
+        private SortedRun(Path path, long maxSequence, long minSequence, FileChannel channel, long[] indexIds,
+                long[] indexOffsets, long dataEnd, LongBloomFilter bloom, long recordCount, long maxId,
+                long sizeBytes) {
+            this.path = path;
+            this.maxSequence = maxSequence;
+            this.minSequence = minSequence;
+            this.channel = channel;
+            this.indexIds = indexIds;
+            this.indexOffsets = indexOffsets;
+            this.dataEnd = dataEnd;
+            this.bloom = bloom;
+            this.recordCount = recordCount;
+            this.maxId = maxId;
+            this.sizeBytes = sizeBytes;
+        }
+
+        private static SortedRun open(Path path, long maxSequence, long minSequence) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < FOOTER_BYTES) {
+                    throw new IOException("Truncated run file: " + path);
+                }
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+                LogEntries.readFully(channel, footer, size - FOOTER_BYTES);
+                footer.flip();
+                long indexOffset = footer.getLong();
+                int indexCount = footer.getInt();
+                long bloomOffset = footer.getLong();
+                long recordCount = footer.getLong();
+                long maxId = footer.getLong();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException("Not a run file: " + path);
+                }
+                ByteBuffer tail = ByteBuffer.allocate((int) (size - FOOTER_BYTES - indexOffset));
+                LogEntries.readFully(channel, tail, indexOffset);
+                tail.flip();
+                long[] indexIds = new long[indexCount];
+                long[] indexOffsets = new long[indexCount];
+                for (int i = 0; i < indexCount; i++) {
+                    indexIds[i] = tail.getLong();
+                    indexOffsets[i] = tail.getLong();
+                }
+                tail.position((int) (bloomOffset - indexOffset));
+                LongBloomFilter bloom = LongBloomFilter.readFrom(tail);
+                return new SortedRun(path, maxSequence, minSequence, channel, indexIds, indexOffsets, indexOffset,
+                        bloom, recordCount, maxId, size);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the record or {@link #TOMBSTONE} stored for the ID, or null if this run does not hold it.
+         */
+        private byte[] lookup(long id) throws IOException {
+            if (!bloom.mightContain(id)) {
+                return null;
+            }
+            int block = Arrays.binarySearch(indexIds, id);
+            if (block < 0) {
+                block = -block - 2;
+                if (block < 0) {
+                    return null;
+                }
+            }
+            long start = indexOffsets[block];
+            long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            LogEntries.readFully(channel, buffer, start);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long recordId = buffer.getLong();
+                int length = buffer.getInt();
+                if (recordId == id) {
+                    if (length == TOMBSTONE_LENGTH) {
+                        return TOMBSTONE;
+                    }
+                    byte[] record = new byte[length];
+                    buffer.get(record);
+                    return record;
+                }
+                if (recordId > id) {
+                    return null;
+                }
+                buffer.position(buffer.position() + Math.max(length, 0));
+            }
+            return null;
+        }
+
+        private EntryCursor openCursor() throws IOException {
+            return new RunCursor(path, 0, recordCount, false, 0);
+        }
+
+        /**
+         * Opens a cursor at the sparse index block that may hold the first ID after the given one, skipping the records
+         * of that block up to it.
+         */
+        private EntryCursor openCursorAfter(long afterId) throws IOException {
+            int block = Arrays.binarySearch(indexIds, afterId);
+            if (block < 0) {
+                block = Math.max(-block - 2, 0);
+            }
+            if (block >= indexOffsets.length) {
+                return new RunCursor(path, 0, 0, false, 0);
+            }
+            return new RunCursor(path, indexOffsets[block], recordCount - (long) block * INDEX_INTERVAL, true, afterId);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sequential reader over the records of a run file from an offset, skipping records whose ID is not greater than a
+     * given one.
+     */
+    private static final class RunCursor implements EntryCursor {
+        private final DataInputStream input;
+        private final long skipThrough;
+        private long remaining;
+        private boolean skipping;
+        private long id;
+        private byte[] value;
+
+        private RunCursor(Path path, long offset, long recordCount, boolean skipping, long skipThrough)
+                throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                channel.position(offset);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            this.remaining = recordCount;
+            this.skipping = skipping;
+            this.skipThrough = skipThrough;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (remaining > 0) {
+                remaining--;
+                id = input.readLong();
+                int length = input.readInt();
+                if (length == TOMBSTONE_LENGTH) {
+                    value = TOMBSTONE;
+                } else {
+                    value = new byte[length];
+                    input.readFully(value);
+                }
+                if (skipping && id <= skipThrough) {
+                    continue;
+                }
+                // IDs only grow, so nothing else needs skipping
+                skipping = false;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long id() {
+            return id;
+        }
+
+        @Override
+        public byte[] value() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes a run file from entries added in ID order.
+     */
+    private static final class RunWriter implements Closeable {
+        private final FileChannel channel;
+        private final DataOutputStream output;
+        private final LongBloomFilter bloom;
+        private final List<long[]> index = new ArrayList<>();
+        private long offset;
+        private long recordCount;
+
+        private RunWriter(Path file, long expectedKeys, double falsePositiveRate) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            this.bloom = new LongBloomFilter(expectedKeys, falsePositiveRate);
+        }
+
+        private void add(long id, byte[] value) throws IOException {
+            if (recordCount % INDEX_INTERVAL == 0) {
+                index.add(new long[] { id, offset });
+            }
+            output.writeLong(id);
+            if (value == TOMBSTONE) {
+                output.writeInt(TOMBSTONE_LENGTH);
+            } else {
+                output.writeInt(value.length);
+                output.write(value);
+            }
+            bloom.put(id);
+            offset += Long.BYTES + Integer.BYTES + value.length;
+            recordCount++;
+        }
+
+        private void finish(long maxId) throws IOException {
+            long indexOffset = offset;
+            for (long[] entry : index) {
+                output.writeLong(entry[0]);
+                output.writeLong(entry[1]);
+            }
+            long bloomOffset = indexOffset + (long) index.size() * 2 * Long.BYTES;
+            ByteBuffer bloomBytes = ByteBuffer.allocate(bloom.serializedSize());
+            bloom.writeTo(bloomBytes);
+            output.write(bloomBytes.array());
+            output.writeLong(indexOffset);
+            output.writeInt(index.size());
+            output.writeLong(bloomOffset);
+            output.writeLong(recordCount);
+            output.writeLong(maxId);
+            output.writeInt(SortedRun.MAGIC);
+            output.flush();
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,734 @@
+package school.cesar.eta.unit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Thread-safe {@link PersonRepository} that stores fixed-width records in a memory-mapped file.
+ *
+ * <p>
+ * The file starts with a header slot followed by record slots of {@code slotSize} bytes. Each slot holds a state byte,
+ * the record length, a CRC32 of the record and a record in the {@link PersonRecordCodec} format. Slot sizes are powers
+ * of two no larger than a page, so a slot never straddles two pages and {@link #findById(long)} touches exactly one
+ * page through the in-memory offset index.
+ *
+ * <p>
+ * The file is mapped in chunks of {@code chunkSlots} slots and grows one chunk at a time, so it can get much larger
+ * than the heap. Reopening the file rebuilds the offset index and the {@link BirthdayCalendarIndex} by reading the ID
+ * and birthday of each slot, and keeps the ID sequence stored in the header. Changes reach the disk when the operating
+ * system writes back the mapped pages, or on {@link #flush()} and {@link #close()}. Updates rewrite a slot in place,
+ * and the operating system may write a page back halfway through; a live slot whose record fails its checksum when the
+ * file is reopened was torn that way by a crash, and is discarded as free instead of making the file unreadable.
+ *
+ * <p>
+ * Last names are indexed in a {@link LastNameBTree} stored next to the repository file, with the {@code .lastname}
+ * suffix, so {@link #findByLastName(String)}, {@link #findByLastName(String, String, int)},
+ * {@link #findByLastNameStartingWith(String)} and {@link #findByLastNameBetween(String, String)} read O(log n) index
+ * pages plus the matching slots instead of scanning every slot. The index is rebuilt from the slots when it is missing
+ * or was not closed cleanly.
+ *
+ * <p>
+ * Like {@link OffHeapPersonRepository}, every query returns new {@link Person} instances, with family members loaded
+ * one level deep. A record that does not fit in a slot is rejected with an {@link IllegalArgumentException}.
+ * {@link #streamAll()} loads persons a batch of slots at a time and is weakly consistent in the same way.
+ */
+public class MappedPersonRepository implements PersonRepository, Closeable {
+
+    /**
+     * Default slot size in bytes.
+     */
+    public static final int DEFAULT_SLOT_SIZE = 512;
+
+    /**
+     * Default number of slots mapped at a time (64 MB with the default slot size).
+     */
+    public static final int DEFAULT_CHUNK_SLOTS = 1 << 17;
+
+    private static final int MAGIC = 0x504D4150; // "PMAP"
+    private static final int VERSION = 2;
+    private static final int MIN_SLOT_SIZE = 64;
+    private static final int MAX_SLOT_SIZE = 4096;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SLOT_SIZE = 8;
+    private static final int HEADER_NEXT_ID = 12;
+    private static final int SLOT_LENGTH = 1;
+    private static final int SLOT_CHECKSUM = 1 + Integer.BYTES;
+    private static final int SLOT_HEADER_BYTES = 1 + 2 * Integer.BYTES;
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final long NO_SLOT = -1;
+    private static final int STREAM_BATCH_SLOTS = 256;
+
+    private final FileChannel channel;
+    private final int slotSize;
+    private final int chunkSlots;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final LongLongMap slotsById = new LongLongMap();
+    private final BirthdayCalendarIndex birthdayCalendar = new BirthdayCalendarIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Clock clock;
+    private final LeapDayPolicy leapDayPolicy;
+    private final LastNameBTree lastNames;
+    private long[] freeSlots = new long[16];
+    private int freeCount;
+    private long slotCount;
+    private long nextId;
+    private long minId = Long.MAX_VALUE;
+
+    /**
+     * Opens or creates a repository file with the default slot and chunk sizes.
+     *
+     * @param file
+     *            the repository file
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    public MappedPersonRepository(Path file) throws IOException {
+        this(file, DEFAULT_SLOT_SIZE, DEFAULT_CHUNK_SLOTS, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Opens or creates a repository file.
+     *
+     * @param file
+     *            the repository file
+     * @param slotSize
+     *            the record slot size for a new file; a power of two between 64 and 4096
+     * @param chunkSlots
+     *            number of slots mapped at a time
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     * @throws IllegalArgumentException
+     *             if an argument is invalid, or the file was created with another slot size
+     */
+    public MappedPersonRepository(Path file, int slotSize, int chunkSlots, Clock clock) throws IOException {
+        this(file, slotSize, chunkSlots, clock, LeapDayPolicy.DEFAULT);
+    }
+
+    /**
+     * Opens or creates a repository file, using the given leap day policy to decide which birthdays are today.
+     *
+     * @param file
+     *            the repository file
+     * @param slotSize
+     *            the record slot size for a new file; a power of two between 64 and 4096
+     * @param chunkSlots
+     *            number of slots mapped at a time
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param leapDayPolicy
+     *            when {@link #findBirthdayToday()} includes persons born on February 29 in common years
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     * @throws IllegalArgumentException
+     *             if an argument is invalid, or the file was created with another slot size
+     */
+    public MappedPersonRepository(Path file, int slotSize, int chunkSlots, Clock clock, LeapDayPolicy leapDayPolicy)
+            throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        if (slotSize < MIN_SLOT_SIZE || slotSize > MAX_SLOT_SIZE || Integer.bitCount(slotSize) != 1) {
+            throw new IllegalArgumentException("Slot size must be a power of two between 64 and 4096");
+        }
+        if (chunkSlots <= 0 || (long) chunkSlots * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk must have between 1 slot and 2 GB");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (leapDayPolicy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        this.slotSize = slotSize;
+        this.chunkSlots = chunkSlots;
+        this.clock = clock;
+        this.leapDayPolicy = leapDayPolicy;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotSize);
+            if (created) {
+                header.putInt(HEADER_MAGIC, MAGIC);
+                header.putInt(HEADER_VERSION, VERSION);
+                header.putInt(HEADER_SLOT_SIZE, slotSize);
+                header.putLong(HEADER_NEXT_ID, 1);
+            } else {
+                verifyHeader();
+            }
+            this.nextId = header.getLong(HEADER_NEXT_ID);
+            load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        try {
+            this.lastNames = new LastNameBTree(file.resolveSibling(file.getFileName() + ".lastname"),
+                    LastNameBTree.DEFAULT_CACHE_PAGES);
+            if (!lastNames.wasClosedCleanly()) {
+                rebuildLastNameIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            Long previousId = person.getId();
+            if (previousId == null) {
+                person.setId(nextId);
+            }
+            byte[] record = PersonRecordCodec.encode(person);
+            if (record.length > slotSize - SLOT_HEADER_BYTES) {
+                person.setId(previousId);
+                throw new IllegalArgumentException(
+                        "Person record has " + record.length + " bytes, slot size is " + slotSize);
+            }
+            long id = person.getId();
+            long slot = slotsById.get(id, NO_SLOT);
+            if (slot == NO_SLOT) {
+                slot = allocateSlot();
+                slotsById.put(id, slot);
+            } else {
+                String previousLastName = readRecord(slot).getPerson().getLastName();
+                if (previousLastName != null) {
+                    lastNames.remove(previousLastName, id);
+                }
+            }
+            if (person.getLastName() != null) {
+                lastNames.insert(person.getLastName(), id);
+            }
+            ByteBuffer buffer = slotBuffer(slot);
+            buffer.putInt(SLOT_LENGTH, record.length);
+            buffer.putInt(SLOT_CHECKSUM, checksum(ByteBuffer.wrap(record)));
+            buffer.position(SLOT_HEADER_BYTES);
+            buffer.put(record);
+            buffer.put(0, LIVE);
+            birthdayCalendar.put(slot, person.getBirthday());
+            advanceNextId(id);
+            minId = Math.min(minId, id);
+            return person;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.saveAll(persons);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Probes the IDs after {@code afterId} in the offset index, falling back to one pass over the index where IDs are
+     * sparse, so a page costs O(limit) slot reads when IDs were assigned by the repository. Every ID is below the
+     * stored ID sequence, which bounds the probing.
+     */
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        lock.readLock().lock();
+        try {
+            return PageCursor.probePage(afterId, limit, minId, nextId - 1, id -> {
+                long slot = slotsById.get(id, NO_SLOT);
+                return slot != NO_SLOT ? load(slot, true) : null;
+            }, action -> slotsById.forEach((id, slot) -> action.accept(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        lock.readLock().lock();
+        try {
+            long slot = slotsById.get(id, NO_SLOT);
+            return slot != NO_SLOT ? Optional.of(load(slot, true)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            return PersonRepository.super.findAllById(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        if (lastName == null) {
+            return new ArrayList<>();
+        }
+        return lookup(action -> lastNames.findExact(lastName, action), person -> lastName.equals(person.getLastName()));
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        long afterId = PageCursor.decode(cursor, lastName);
+        int wanted = PageCursor.fetchSize(limit);
+        List<Person> fetched = new ArrayList<>();
+        long[] lastSeen = { afterId };
+        lock.readLock().lock();
+        try {
+            int batch;
+            int found;
+            do {
+                // Longer names sharing the indexed prefix are skipped, so keep reading until the page is full
+                batch = wanted - fetched.size();
+                found = lastNames.findExact(lastName, lastSeen[0], batch, id -> {
+                    lastSeen[0] = id;
+                    long slot = slotsById.get(id, NO_SLOT);
+                    if (slot != NO_SLOT) {
+                        PersonRecordCodec.PersonRecord record = readRecord(slot);
+                        if (lastName.equals(record.getPerson().getLastName())) {
+                            linkFamily(record);
+                            fetched.add(record.getPerson());
+                        }
+                    }
+                });
+            } while (found == batch && fetched.size() < wanted);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return PageCursor.toPage(fetched, limit, lastName);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        String normalized = NameNormalizer.normalize(lastName);
+        return lookup(action -> lastNames.findExact(lastName, action),
+                person -> NameNormalizer.normalize(person.getLastName()).equals(normalized));
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        String normalizedPrefix = NameNormalizer.normalize(prefix);
+        return lookup(action -> lastNames.findPrefix(prefix, action),
+                person -> NameNormalizer.normalize(person.getLastName()).startsWith(normalizedPrefix));
+    }
+
+    @Override
+    public List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        String from = NameNormalizer.normalize(fromInclusive);
+        String to = NameNormalizer.normalize(toExclusive);
+        return lookup(action -> lastNames.findRange(fromInclusive, toExclusive, action), person -> {
+            String lastName = NameNormalizer.normalize(person.getLastName());
+            return lastName.compareTo(from) >= 0 && lastName.compareTo(to) < 0;
+        });
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return scan(person -> true);
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return StreamSupport.stream(new SlotSpliterator(count()), false);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        lock.writeLock().lock();
+        try {
+            long slot = slotsById.get(id, NO_SLOT);
+            if (slot == NO_SLOT) {
+                return false;
+            }
+            String lastName = readRecord(slot).getPerson().getLastName();
+            if (lastName != null) {
+                lastNames.remove(lastName, id);
+            }
+            slotsById.remove(id);
+            birthdayCalendar.remove(slot);
+            slotBuffer(slot).put(FREE);
+            pushFreeSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.deleteAllById(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        lock.readLock().lock();
+        try {
+            return slotsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return findBirthdaysCelebratedOn(LocalDate.now(clock), leapDayPolicy);
+    }
+
+    /**
+     * Reads only the slots the in-memory birthday calendar holds for the day, in slot order.
+     */
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            long[] slots = birthdayCalendar.keysOn(day);
+            List<Person> result = new ArrayList<>(slots.length);
+            for (long slot : slots) {
+                result.add(load(slot, true));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all changes to the mapped file and the last name index to be written to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            lastNames.flush();
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes pending changes and closes the file. The repository cannot be used afterwards.
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        try {
+            lastNames.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void verifyHeader() {
+        if (header.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("Not a person repository file");
+        }
+        if (header.getInt(HEADER_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Unsupported repository file version: " + header.getInt(HEADER_VERSION));
+        }
+        if (header.getInt(HEADER_SLOT_SIZE) != slotSize) {
+            throw new IllegalArgumentException("Repository file uses slot size " + header.getInt(HEADER_SLOT_SIZE));
+        }
+    }
+
+    /**
+     * Maps the existing slots and rebuilds the offset index, birthday calendar and free list from their state bytes. A
+     * live slot whose record fails its checksum is marked free.
+     */
+    private void load() throws IOException {
+        long existingSlots = (channel.size() - slotSize) / slotSize;
+        while ((long) chunks.size() * chunkSlots < existingSlots) {
+            mapChunk();
+        }
+        long lastLive = -1;
+        for (long slot = 0; slot < existingSlots; slot++) {
+            ByteBuffer buffer = slotBuffer(slot);
+            if (buffer.get(0) == LIVE && !isIntact(buffer)) {
+                buffer.put(0, FREE);
+            }
+            if (buffer.get(0) == LIVE) {
+                long id = PersonRecordCodec.readId(buffer, SLOT_HEADER_BYTES);
+                slotsById.put(id, slot);
+                minId = Math.min(minId, id);
+                birthdayCalendar.put(slot, PersonRecordCodec.readBirthday(buffer, SLOT_HEADER_BYTES));
+                lastLive = slot;
+            }
+        }
+        slotCount = lastLive + 1;
+        for (long slot = lastLive - 1; slot >= 0; slot--) {
+            if (slotBuffer(slot).get(0) != LIVE) {
+                pushFreeSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * Refills the last name index from the live slots, in slot order.
+     */
+    private void rebuildLastNameIndex() {
+        lastNames.clear();
+        for (long slot = 0; slot < slotCount; slot++) {
+            if (slotBuffer(slot).get(0) == LIVE) {
+                Person person = readRecord(slot).getPerson();
+                if (person.getLastName() != null) {
+                    lastNames.insert(person.getLastName(), person.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a live slot holds a whole record: its length fits the slot and the record matches its checksum.
+     */
+    private boolean isIntact(ByteBuffer slot) {
+        int length = slot.getInt(SLOT_LENGTH);
+        if (length <= 0 || length > slotSize - SLOT_HEADER_BYTES) {
+            return false;
+        }
+        ByteBuffer record = slot.duplicate();
+        record.position(SLOT_HEADER_BYTES).limit(SLOT_HEADER_BYTES + length);
+        return checksum(record) == slot.getInt(SLOT_CHECKSUM);
+    }
+
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private long allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == (long) chunks.size() * chunkSlots) {
+            try {
+                mapChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not grow repository file", e);
+            }
+        }
+        return slotCount++;
+    }
+
+    private void mapChunk() throws IOException {
+        long position = slotSize + (long) chunks.size() * chunkSlots * slotSize;
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) chunkSlots * slotSize));
+    }
+
+    private void pushFreeSlot(long slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void advanceNextId(long id) {
+        if (id >= nextId) {
+            nextId = id + 1;
+            header.putLong(HEADER_NEXT_ID, nextId);
+        }
+    }
+
+    /**
+     * Returns an independent view of one slot, positioned at its start, so concurrent readers never share a position.
+     */
+    private ByteBuffer slotBuffer(long slot) {
+        MappedByteBuffer chunk = chunks.get((int) (slot / chunkSlots));
+        int offset = (int) (slot % chunkSlots) * slotSize;
+        ByteBuffer view = chunk.duplicate();
+        view.position(offset).limit(offset + slotSize);
+        return view.slice();
+    }
+
+    private PersonRecordCodec.PersonRecord readRecord(long slot) {
+        ByteBuffer buffer = slotBuffer(slot);
+        buffer.position(SLOT_HEADER_BYTES);
+        return PersonRecordCodec.decode(buffer);
+    }
+
+    private Person load(long slot, boolean withFamily) {
+        PersonRecordCodec.PersonRecord record = readRecord(slot);
+        if (withFamily) {
+            linkFamily(record);
+        }
+        return record.getPerson();
+    }
+
+    private void linkFamily(PersonRecordCodec.PersonRecord record) {
+        for (long memberId : record.getFamilyIds()) {
+            long memberSlot = slotsById.get(memberId, NO_SLOT);
+            if (memberSlot != NO_SLOT) {
+                record.getPerson().addToFamily(load(memberSlot, false));
+            }
+        }
+    }
+
+    /**
+     * Loads the persons whose IDs the index query reports, keeping those that pass the filter. The filter re-checks
+     * each name, since the index compares normalized and possibly truncated names.
+     */
+    private List<Person> lookup(Consumer<LongConsumer> query, Predicate<Person> filter) {
+        lock.readLock().lock();
+        try {
+            List<Person> result = new ArrayList<>();
+            query.accept(id -> {
+                long slot = slotsById.get(id, NO_SLOT);
+                if (slot != NO_SLOT) {
+                    PersonRecordCodec.PersonRecord record = readRecord(slot);
+                    if (record.getPerson().getLastName() != null && filter.test(record.getPerson())) {
+                        linkFamily(record);
+                        result.add(record.getPerson());
+                    }
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Person> scan(Predicate<Person> filter) {
+        lock.readLock().lock();
+        try {
+            List<Person> result = new ArrayList<>();
+            for (long slot = 0; slot < slotCount; slot++) {
+                if (slotBuffer(slot).get(0) == LIVE) {
+                    PersonRecordCodec.PersonRecord record = readRecord(slot);
+                    if (filter.test(record.getPerson())) {
+                        linkFamily(record);
+                        result.add(record.getPerson());
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Spliterator over the slots that loads persons a batch of slots at a time under the read lock, skipping slots that
+     * are not live when they are reached. Parallel streams split it into batches of persons already loaded.
+     */
+    private final class SlotSpliterator extends Spliterators.AbstractSpliterator<Person> {
+        private final ArrayDeque<Person> batch = new ArrayDeque<>();
+        private long slot;
+
+        SlotSpliterator(long estimatedSize) {
+            super(estimatedSize, NONNULL | CONCURRENT);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            while (batch.isEmpty()) {
+                lock.readLock().lock();
+                try {
+                    if (slot >= slotCount) {
+                        return false;
+                    }
+                    for (long last = Math.min(slotCount, slot + STREAM_BATCH_SLOTS); slot < last; slot++) {
+                        if (slotBuffer(slot).get(0) == LIVE) {
+                            batch.add(load(slot, true));
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+            // The action runs outside the lock, so it may itself read the repository
+            action.accept(batch.poll());
+            return true;
+        }
+    }
+}
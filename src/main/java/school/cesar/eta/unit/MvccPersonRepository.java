@@ -0,0 +1,574 @@
+package school.cesar.eta.unit;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Thread-safe in-memory {@link PersonRepository} with multi-version concurrency control, so reads never block writes.
+ *
+ * <p>
+ * Every committed write publishes a new immutable {@link Snapshot}, built from the previous one with
+ * {@link PersistentLongMap} path copying: a save or delete copies O(log n) trie nodes and shares the rest. Readers take
+ * the current snapshot with one volatile read and run their whole query on it without any lock, so a long
+ * {@link #findAll()} or {@link PersonService#getStatistics()} sees one consistent version of the repository and does
+ * not delay concurrent {@link #save(Person)} calls. Writers are serialized by a lock that readers never touch.
+ *
+ * <p>
+ * Old versions need no explicit cleanup: a snapshot is only referenced by the readers still holding it, so the garbage
+ * collector reclaims the nodes it does not share with newer versions as soon as the last of those readers finishes.
+ *
+ * <p>
+ * A save stores a copy of the person's fields, and every read returns new {@link Person} instances built from the
+ * snapshot, so changing a person after saving it, or changing a person returned by a query, never alters a published
+ * snapshot. Family members are linked by ID and materialized one level deep from the same snapshot: they carry their
+ * own data, but not their own family. Members that were never saved (and have no ID) are not stored.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * MvccPersonRepository repository = new MvccPersonRepository();
+ * MvccPersonRepository.Snapshot snapshot = repository.snapshot();
+ * long adults = snapshot.findAll().stream().filter(Person::isAdult).count();
+ * }</pre>
+ */
+public class MvccPersonRepository implements PersonRepository {
+
+    private final Lock writeLock = new ReentrantLock();
+    private final Clock clock;
+    private final LeapDayPolicy leapDayPolicy;
+    private volatile Snapshot current = new Snapshot(0, PersistentLongMap.empty(), PersistentLongMap.empty(),
+            PersistentLongMap.empty(), Long.MAX_VALUE, Long.MIN_VALUE);
+    private long nextId = 1;
+
+    /**
+     * Creates an empty repository using the system clock to decide which birthdays are today.
+     */
+    public MvccPersonRepository() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates an empty repository using the given clock to decide which birthdays are today.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @throws IllegalArgumentException
+     *             if clock is null
+     */
+    public MvccPersonRepository(Clock clock) {
+        this(clock, LeapDayPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates an empty repository using the given clock and leap day policy to decide which birthdays are today.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param leapDayPolicy
+     *            when {@link #findBirthdayToday()} includes persons born on February 29 in common years
+     * @throws IllegalArgumentException
+     *             if clock or leapDayPolicy is null
+     */
+    public MvccPersonRepository(Clock clock, LeapDayPolicy leapDayPolicy) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (leapDayPolicy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        this.clock = clock;
+        this.leapDayPolicy = leapDayPolicy;
+    }
+
+    /**
+     * Returns the current version of the repository. The snapshot never changes, whatever is written afterwards, and
+     * taking it costs no copying or locking.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        writeLock.lock();
+        try {
+            current = withSaved(current, person, current.version + 1);
+            return person;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Saves the batch as a single write: the persons become visible together, in one new snapshot.
+     */
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        writeLock.lock();
+        try {
+            Snapshot next = current;
+            long version = next.version + 1;
+            for (Person person : batch) {
+                next = withSaved(next, person, version);
+            }
+            current = next;
+            return batch;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        return current.findById(id);
+    }
+
+    /**
+     * Looks up every ID in the same snapshot, so the result is consistent even while writers keep saving.
+     */
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        Snapshot snapshot = current;
+        List<Person> result = new ArrayList<>(distinct.length);
+        for (long id : distinct) {
+            snapshot.findById(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return current.findByLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return current.findAll();
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        return current.findPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return current.stream();
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        writeLock.lock();
+        try {
+            Snapshot next = withDeleted(current, id, current.version + 1);
+            if (next == current) {
+                return false;
+            }
+            current = next;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the batch as a single write: the persons disappear together, in one new snapshot.
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        writeLock.lock();
+        try {
+            Snapshot next = current;
+            long version = next.version + 1;
+            int deleted = 0;
+            for (long id : distinct) {
+                Snapshot after = withDeleted(next, id, version);
+                if (after != next) {
+                    next = after;
+                    deleted++;
+                }
+            }
+            current = next;
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return current.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return current.persons.get(id) != null;
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return current.findBirthdaysCelebratedOn(LocalDate.now(clock), leapDayPolicy);
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        return current.findBirthdaysOn(day);
+    }
+
+    /**
+     * Returns the snapshot with the person saved, assigning an ID first if needed. Must be called while holding the
+     * write lock.
+     */
+    private Snapshot withSaved(Snapshot base, Person person, long version) {
+        if (person.getId() == null) {
+            person.setId(nextId++);
+        } else {
+            nextId = Math.max(nextId, person.getId() + 1);
+        }
+        long id = person.getId();
+        Entry previous = base.persons.get(id);
+        PersistentLongMap<PersistentLongMap<Entry>> byLastName = base.byLastName;
+        PersistentLongMap<PersistentLongMap<Entry>> byBirthday = base.byBirthday;
+        if (previous != null) {
+            byLastName = unindex(byLastName, previous.lastNameKey, id);
+            byBirthday = unindex(byBirthday, previous.birthdayKey, id);
+        }
+        Entry entry = new Entry(person);
+        byLastName = index(byLastName, entry.lastNameKey, entry);
+        byBirthday = index(byBirthday, entry.birthdayKey, entry);
+        return new Snapshot(version, base.persons.put(id, entry), byLastName, byBirthday, Math.min(base.minId, id),
+                Math.max(base.maxId, id));
+    }
+
+    /**
+     * Returns the snapshot without the person, or the same snapshot if there is no person with the ID.
+     */
+    private static Snapshot withDeleted(Snapshot base, long id, long version) {
+        Entry previous = base.persons.get(id);
+        if (previous == null) {
+            return base;
+        }
+        return new Snapshot(version, base.persons.remove(id), unindex(base.byLastName, previous.lastNameKey, id),
+                unindex(base.byBirthday, previous.birthdayKey, id), base.minId, base.maxId);
+    }
+
+    private static PersistentLongMap<PersistentLongMap<Entry>> index(PersistentLongMap<PersistentLongMap<Entry>> index,
+            long key, Entry entry) {
+        if (key == Entry.NO_KEY) {
+            return index;
+        }
+        PersistentLongMap<Entry> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = PersistentLongMap.empty();
+        }
+        return index.put(key, bucket.put(entry.id, entry));
+    }
+
+    private static PersistentLongMap<PersistentLongMap<Entry>> unindex(
+            PersistentLongMap<PersistentLongMap<Entry>> index, long key, long id) {
+        if (key == Entry.NO_KEY) {
+            return index;
+        }
+        PersistentLongMap<Entry> bucket = index.get(key).remove(id);
+        return bucket.size() == 0 ? index.remove(key) : index.put(key, bucket);
+    }
+
+    /**
+     * Immutable version of the repository contents, safe to read from any thread without locking.
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final PersistentLongMap<Entry> persons;
+        private final PersistentLongMap<PersistentLongMap<Entry>> byLastName;
+        private final PersistentLongMap<PersistentLongMap<Entry>> byBirthday;
+        private final long minId;
+        private final long maxId;
+
+        private Snapshot(long version, PersistentLongMap<Entry> persons,
+                PersistentLongMap<PersistentLongMap<Entry>> byLastName,
+                PersistentLongMap<PersistentLongMap<Entry>> byBirthday, long minId, long maxId) {
+            this.version = version;
+            this.persons = persons;
+            this.byLastName = byLastName;
+            this.byBirthday = byBirthday;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        /**
+         * Returns the number of writes committed before this snapshot was published. A batch saved with
+         * {@link MvccPersonRepository#saveAll(Collection)} or deleted with
+         * {@link MvccPersonRepository#deleteAllById(Collection)} counts as one write.
+         *
+         * @return the snapshot version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Finds a person by ID.
+         *
+         * @param id
+         *            the person ID
+         * @return Optional containing the person if found
+         */
+        public Optional<Person> findById(long id) {
+            Entry entry = persons.get(id);
+            return entry != null ? Optional.of(materialize(entry)) : Optional.empty();
+        }
+
+        /**
+         * Finds all persons by last name.
+         *
+         * @param lastName
+         *            the last name to search
+         * @return list of persons with matching last name
+         */
+        public List<Person> findByLastName(String lastName) {
+            List<Person> result = new ArrayList<>();
+            if (lastName == null) {
+                return result;
+            }
+            PersistentLongMap<Entry> bucket = byLastName.get(lastName.hashCode());
+            if (bucket != null) {
+                // Different names can share a hash bucket
+                bucket.forEachValue(entry -> {
+                    if (lastName.equals(entry.lastName)) {
+                        result.add(materialize(entry));
+                    }
+                });
+            }
+            return result;
+        }
+
+        /**
+         * Finds persons whose birthday falls on the month and day of the given date.
+         *
+         * @param date
+         *            the date
+         * @return list of persons with a birthday on that day
+         */
+        public List<Person> findBirthdaysOn(LocalDate date) {
+            return findBirthdaysOn(MonthDay.from(date));
+        }
+
+        /**
+         * Finds persons who celebrate their birthday on a date, with persons born on February 29 included on the date
+         * the policy chooses in years without that day.
+         *
+         * @param date
+         *            the date
+         * @param policy
+         *            when to celebrate February 29 birthdays in common years
+         * @return list of persons celebrating on that date
+         */
+        public List<Person> findBirthdaysCelebratedOn(LocalDate date, LeapDayPolicy policy) {
+            List<Person> result = new ArrayList<>();
+            for (MonthDay day : policy.birthdaysCelebratedOn(date)) {
+                result.addAll(findBirthdaysOn(day));
+            }
+            return result;
+        }
+
+        /**
+         * Finds persons born on a month and day, in any year.
+         *
+         * @param day
+         *            the month and day of birth
+         * @return list of persons born on that day
+         */
+        public List<Person> findBirthdaysOn(MonthDay day) {
+            List<Person> result = new ArrayList<>();
+            PersistentLongMap<Entry> bucket = byBirthday.get(Entry.birthdayKey(day));
+            if (bucket != null) {
+                bucket.forEachValue(entry -> result.add(materialize(entry)));
+            }
+            return result;
+        }
+
+        /**
+         * Finds all persons.
+         *
+         * @return list of all persons
+         */
+        public List<Person> findAll() {
+            List<Person> result = new ArrayList<>(persons.size());
+            forEach(result::add);
+            return result;
+        }
+
+        /**
+         * Finds the persons with an ID greater than {@code afterId}, in ascending ID order. The trie is ordered by a
+         * hash of the ID, so the IDs after {@code afterId} are probed one by one while they are dense, which costs
+         * O(limit log32 n) for IDs assigned by the repository, and the rest of the page comes from one pass over the
+         * trie where they are sparse.
+         *
+         * @param afterId
+         *            the ID after which the page starts, such as 0 for the first page
+         * @param limit
+         *            the maximum number of persons to return
+         * @return the persons in the page, an empty list after the last page
+         * @throws IllegalArgumentException
+         *             if limit is not positive
+         */
+        public List<Person> findPage(long afterId, int limit) {
+            PageCursor.checkLimit(limit);
+            return PageCursor.probePage(afterId, limit, minId, maxId, id -> {
+                Entry entry = persons.get(id);
+                return entry != null ? materialize(entry) : null;
+            }, action -> persons.forEachValue(entry -> action.accept(entry.id)));
+        }
+
+        /**
+         * Streams the persons in the snapshot without building a list. The stream splits along the trie with exact
+         * sizes, so it runs well in parallel, and it is unaffected by writes made after the snapshot was taken.
+         *
+         * @return stream of all persons in the snapshot
+         */
+        public Stream<Person> stream() {
+            return StreamSupport.stream(persons.valueSpliterator(), false).map(this::materialize);
+        }
+
+        /**
+         * Passes every person to the action without building a list.
+         *
+         * @param action
+         *            the action to run for each person
+         */
+        public void forEach(Consumer<Person> action) {
+            persons.forEachValue(entry -> action.accept(materialize(entry)));
+        }
+
+        /**
+         * Builds a new person from an entry, with its family members taken from this snapshot.
+         */
+        private Person materialize(Entry entry) {
+            Person person = entry.toPerson();
+            for (long memberId : entry.familyIds) {
+                Entry member = persons.get(memberId);
+                if (member != null) {
+                    person.addToFamily(member.toPerson());
+                }
+            }
+            return person;
+        }
+
+        /**
+         * Counts the persons in the snapshot.
+         *
+         * @return total count
+         */
+        public long count() {
+            return persons.size();
+        }
+    }
+
+    /**
+     * Immutable copy of a stored person, with the index keys it had when saved.
+     */
+    private static final class Entry {
+        static final long NO_KEY = Long.MIN_VALUE;
+        private static final long[] NO_FAMILY = new long[0];
+
+        final long id;
+        final String firstName;
+        final String lastName;
+        final LocalDate birthday;
+        final String cpf;
+        final Address address;
+        final long[] familyIds;
+        final long lastNameKey;
+        final long birthdayKey;
+
+        Entry(Person person) {
+            this.id = person.getId();
+            this.firstName = person.getFirstName();
+            this.lastName = person.getLastName();
+            this.birthday = person.getBirthday();
+            this.cpf = person.getCpf();
+            this.address = person.getAddress();
+            this.familyIds = familyIdsOf(person);
+            this.lastNameKey = lastName != null ? lastName.hashCode() : NO_KEY;
+            this.birthdayKey = person.getBirthday() != null ? birthdayKey(MonthDay.from(person.getBirthday())) : NO_KEY;
+        }
+
+        /**
+         * Returns a new person with the stored fields and no family.
+         */
+        Person toPerson() {
+            Person person = new Person();
+            person.setId(id);
+            if (firstName != null) {
+                person.setFirstName(firstName);
+            }
+            if (lastName != null) {
+                person.setLastName(lastName);
+            }
+            if (birthday != null) {
+                person.setBirthday(birthday);
+            }
+            person.setCpf(cpf);
+            person.setAddress(address);
+            return person;
+        }
+
+        private static long[] familyIdsOf(Person person) {
+            List<Person> family = person.getFamily();
+            if (family.isEmpty()) {
+                return NO_FAMILY;
+            }
+            long[] ids = new long[family.size()];
+            int count = 0;
+            for (Person member : family) {
+                if (member.getId() != null) {
+                    ids[count++] = member.getId();
+                }
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        }
+
+        static long birthdayKey(MonthDay day) {
+            return day.getMonthValue() * 32L + day.getDayOfMonth();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package school.cesar.eta.unit;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class that reduces names to the form used as index keys.
+ *
+ * <p>
+ * Two names with the same normalized form are treated as the same key: accents are removed, letters are lower-cased and
+ * surrounding whitespace is trimmed, so "Conceição", "conceicao" and " CONCEICAO " all normalize to "conceicao".
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * String key = NameNormalizer.normalize("Araújo");
+ * // Returns: "araujo"
+ * }</pre>
+ */
+public final class NameNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private NameNormalizer() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Normalizes a name.
+     *
+     * @param name
+     *            the name to normalize
+     * @return the name without accents, in lower case and trimmed
+     * @throws IllegalArgumentException
+     *             if name is null
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+    }
+}
@@ -0,0 +1,647 @@
+package school.cesar.eta.unit;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Thread-safe {@link PersonRepository} that keeps person records off the Java heap, in columnar form.
+ *
+ * <p>
+ * Each field is stored in its own column of direct {@link ByteBuffer}s: the ID, the birthday as epoch day, first and
+ * last names as dictionary codes, the CPF packed into a {@code long} and each field of the address as a dictionary
+ * code. Columns are allocated in chunks of rows, so the store grows without copying existing data, and rows freed by
+ * {@link #deleteById(long)} are reused by later saves.
+ *
+ * <p>
+ * {@link Person} instances are only created when a query returns them, and every call returns new instances. Family
+ * members are materialized one level deep: they carry their own data, but not their own family. The heap cost per
+ * record is limited to the primitive arrays of the ID index ({@link LongLongMap}) and of the
+ * {@link BirthdayCalendarIndex} of rows, which hold no references for the garbage collector to trace, plus a small
+ * array for persons that have family links. Distinct strings, such as names, streets and cities, are kept once in an
+ * on-heap dictionary that counts the rows using each one, so a string no longer used by any row is dropped and its code
+ * reused. Addresses themselves are never kept on the heap, since they are nearly unique per person.
+ *
+ * <p>
+ * Family members are linked by ID, so members that were never saved (and have no ID) are not stored.
+ *
+ * <p>
+ * {@link #streamAll()} materializes persons lazily, a batch of rows at a time, and splits at chunk boundaries using
+ * per-chunk live row counts, so memory use does not depend on the number of rows. Like the iterators of
+ * {@code java.util.concurrent} collections, the stream is weakly consistent: it covers the rows that existed when it
+ * was created, skips rows deleted since, and never throws {@link java.util.ConcurrentModificationException}. A person
+ * that stays in the repository while the stream runs is returned exactly once; a person saved or deleted meanwhile may
+ * or may not be. Sizes are therefore estimates.
+ */
+public class OffHeapPersonRepository implements PersonRepository {
+
+    /**
+     * Default number of rows allocated per chunk.
+     */
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+
+    /**
+     * Off-heap bytes used by one row across all columns.
+     */
+    static final int ROW_BYTES = Long.BYTES * 2 + Integer.BYTES * (3 + Chunk.ADDRESS_FIELDS) + 1;
+
+    private static final int NO_ROW = -1;
+    private static final long NO_CPF = -1L;
+    private static final int NO_BIRTHDAY = Integer.MIN_VALUE;
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final int STREAM_BATCH_ROWS = 256;
+
+    private final int chunkRows;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final LongLongMap rowsById = new LongLongMap();
+    private final BirthdayCalendarIndex birthdayCalendar = new BirthdayCalendarIndex();
+    private final CodeDictionary<String> strings = new CodeDictionary<>();
+    private final LongObjectMap<long[]> familyIds = new LongObjectMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Clock clock;
+    private final LeapDayPolicy leapDayPolicy;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    private int rowCount;
+    private long nextId = 1;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+
+    /**
+     * Creates an empty repository using the system clock and the default chunk size.
+     */
+    public OffHeapPersonRepository() {
+        this(Clock.systemDefaultZone(), DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * Creates an empty repository.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param chunkRows
+     *            number of rows allocated at a time
+     * @throws IllegalArgumentException
+     *             if clock is null or chunkRows is not positive
+     */
+    public OffHeapPersonRepository(Clock clock, int chunkRows) {
+        this(clock, chunkRows, LeapDayPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates an empty repository using the given leap day policy to decide which birthdays are today.
+     *
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param chunkRows
+     *            number of rows allocated at a time
+     * @param leapDayPolicy
+     *            when {@link #findBirthdayToday()} includes persons born on February 29 in common years
+     * @throws IllegalArgumentException
+     *             if clock or leapDayPolicy is null or chunkRows is not positive
+     */
+    public OffHeapPersonRepository(Clock clock, int chunkRows, LeapDayPolicy leapDayPolicy) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Chunk rows must be positive");
+        }
+        if (leapDayPolicy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        this.clock = clock;
+        this.chunkRows = chunkRows;
+        this.leapDayPolicy = leapDayPolicy;
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            if (person.getId() == null) {
+                person.setId(nextId++);
+            } else {
+                nextId = Math.max(nextId, person.getId() + 1);
+            }
+            long id = person.getId();
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+            int row = (int) rowsById.get(id, NO_ROW);
+            boolean replace = row != NO_ROW;
+            if (!replace) {
+                row = allocateRow();
+                rowsById.put(id, row);
+                chunkOf(row).liveRows++;
+            }
+            writeRow(row, person, replace);
+            birthdayCalendar.put(row, person.getBirthday());
+            long[] family = familyIdsOf(person);
+            if (family.length == 0) {
+                familyIds.remove(id);
+            } else {
+                familyIds.put(id, family);
+            }
+            return person;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.saveAll(persons);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int row = (int) rowsById.get(id, NO_ROW);
+            return row != NO_ROW ? Optional.of(materialize(row, true)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            return PersonRepository.super.findAllById(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        lock.readLock().lock();
+        try {
+            int code = strings.codeOf(lastName);
+            if (code == CodeDictionary.NO_CODE) {
+                return new ArrayList<>();
+            }
+            return scan((chunk, local) -> chunk.lastNames.getInt(local * Integer.BYTES) == code);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAll() {
+        lock.readLock().lock();
+        try {
+            return scan((chunk, local) -> true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Probes the IDs after {@code afterId} in the row index, falling back to one pass over the index where IDs are
+     * sparse, so a page costs O(limit) lookups when IDs were assigned by the repository.
+     */
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        lock.readLock().lock();
+        try {
+            return PageCursor.probePage(afterId, limit, minId, maxId, id -> {
+                int row = (int) rowsById.get(id, NO_ROW);
+                return row != NO_ROW ? materialize(row, true) : null;
+            }, action -> rowsById.forEach((id, row) -> action.accept(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        lock.readLock().lock();
+        try {
+            return StreamSupport.stream(new RowSpliterator(0, rowCount, rowsById.size()), false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = (int) rowsById.get(id, NO_ROW);
+            if (row == NO_ROW) {
+                return false;
+            }
+            rowsById.remove(id);
+            familyIds.remove(id);
+            birthdayCalendar.remove(row);
+            releaseStrings(row);
+            Chunk chunk = chunkOf(row);
+            chunk.flags.put(row % chunkRows, FREE);
+            chunk.liveRows--;
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            return PersonRepository.super.deleteAllById(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return rowsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        lock.readLock().lock();
+        try {
+            return rowsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return findBirthdaysCelebratedOn(LocalDate.now(clock), leapDayPolicy);
+    }
+
+    /**
+     * Materializes only the rows the birthday calendar holds for the day, in row order.
+     */
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            long[] rows = birthdayCalendar.keysOn(day);
+            List<Person> result = new ArrayList<>(rows.length);
+            for (long row : rows) {
+                result.add(materialize((int) row, true));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated off-heap for the columns.
+     *
+     * @return allocated off-heap bytes
+     */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) chunks.size() * chunkRows * ROW_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct strings kept on the heap for the stored rows.
+     *
+     * @return the number of distinct strings
+     */
+    public int getDistinctStringCount() {
+        lock.readLock().lock();
+        try {
+            return strings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == chunks.size() * chunkRows) {
+            chunks.add(new Chunk(chunkRows));
+        }
+        return rowCount++;
+    }
+
+    private Chunk chunkOf(int row) {
+        return chunks.get(row / chunkRows);
+    }
+
+    /**
+     * Writes a person to a row. When the row is replaced, the strings of its previous contents are released after the
+     * new ones are acquired, so a string both versions use keeps its code.
+     */
+    private void writeRow(int row, Person person, boolean replace) {
+        Chunk chunk = chunkOf(row);
+        int local = row % chunkRows;
+        chunk.ids.putLong(local * Long.BYTES, person.getId());
+        chunk.birthdays.putInt(local * Integer.BYTES,
+                person.getBirthday() != null ? (int) person.getBirthday().toEpochDay() : NO_BIRTHDAY);
+        writeString(chunk.firstNames, local, person.getFirstName(), replace);
+        writeString(chunk.lastNames, local, person.getLastName(), replace);
+        chunk.cpfs.putLong(local * Long.BYTES, person.getCpf() != null ? CpfValidator.toLong(person.getCpf()) : NO_CPF);
+        Address address = person.getAddress();
+        int first = local * Chunk.ADDRESS_FIELDS;
+        writeString(chunk.addresses, first, address != null ? address.getStreet() : null, replace);
+        writeString(chunk.addresses, first + 1, address != null ? address.getNumber() : null, replace);
+        writeString(chunk.addresses, first + 2, address != null ? address.getComplement() : null, replace);
+        writeString(chunk.addresses, first + 3, address != null ? address.getNeighborhood() : null, replace);
+        writeString(chunk.addresses, first + 4, address != null ? address.getCity() : null, replace);
+        writeString(chunk.addresses, first + 5, address != null ? address.getState() : null, replace);
+        writeString(chunk.addresses, first + 6, address != null ? address.getZipCode() : null, replace);
+        writeString(chunk.addresses, first + 7, address != null ? address.getCountry() : null, replace);
+        chunk.flags.put(local, LIVE);
+    }
+
+    private void writeString(ByteBuffer column, int index, String value, boolean replace) {
+        int code = strings.acquire(value);
+        if (replace) {
+            strings.release(column.getInt(index * Integer.BYTES));
+        }
+        column.putInt(index * Integer.BYTES, code);
+    }
+
+    /**
+     * Releases the strings of a row that is being freed.
+     */
+    private void releaseStrings(int row) {
+        Chunk chunk = chunkOf(row);
+        int local = row % chunkRows;
+        strings.release(chunk.firstNames.getInt(local * Integer.BYTES));
+        strings.release(chunk.lastNames.getInt(local * Integer.BYTES));
+        for (int field = 0; field < Chunk.ADDRESS_FIELDS; field++) {
+            strings.release(chunk.addresses.getInt((local * Chunk.ADDRESS_FIELDS + field) * Integer.BYTES));
+        }
+    }
+
+    private Address readAddress(Chunk chunk, int local) {
+        int first = local * Chunk.ADDRESS_FIELDS * Integer.BYTES;
+        int street = chunk.addresses.getInt(first);
+        if (street == CodeDictionary.NO_CODE) {
+            return null;
+        }
+        return new Address.Builder().street(strings.decode(street))
+                .number(strings.decode(chunk.addresses.getInt(first + Integer.BYTES)))
+                .complement(strings.decode(chunk.addresses.getInt(first + 2 * Integer.BYTES)))
+                .neighborhood(strings.decode(chunk.addresses.getInt(first + 3 * Integer.BYTES)))
+                .city(strings.decode(chunk.addresses.getInt(first + 4 * Integer.BYTES)))
+                .state(strings.decode(chunk.addresses.getInt(first + 5 * Integer.BYTES)))
+                .zipCode(strings.decode(chunk.addresses.getInt(first + 6 * Integer.BYTES)))
+                .country(strings.decode(chunk.addresses.getInt(first + 7 * Integer.BYTES))).build();
+    }
+
+    private Person materialize(int row, boolean withFamily) {
+        Chunk chunk = chunkOf(row);
+        int local = row % chunkRows;
+        Person person = new Person();
+        long id = chunk.ids.getLong(local * Long.BYTES);
+        person.setId(id);
+        int firstName = chunk.firstNames.getInt(local * Integer.BYTES);
+        if (firstName != CodeDictionary.NO_CODE) {
+            person.setFirstName(strings.decode(firstName));
+        }
+        int lastName = chunk.lastNames.getInt(local * Integer.BYTES);
+        if (lastName != CodeDictionary.NO_CODE) {
+            person.setLastName(strings.decode(lastName));
+        }
+        int birthday = chunk.birthdays.getInt(local * Integer.BYTES);
+        if (birthday != NO_BIRTHDAY) {
+            person.setBirthday(LocalDate.ofEpochDay(birthday));
+        }
+        long cpf = chunk.cpfs.getLong(local * Long.BYTES);
+        if (cpf != NO_CPF) {
+            person.setCpf(CpfValidator.fromLong(cpf));
+        }
+        person.setAddress(readAddress(chunk, local));
+        if (withFamily) {
+            long[] family = familyIds.get(id);
+            if (family != null) {
+                for (long memberId : family) {
+                    int memberRow = (int) rowsById.get(memberId, NO_ROW);
+                    if (memberRow != NO_ROW) {
+                        person.addToFamily(materialize(memberRow, false));
+                    }
+                }
+            }
+        }
+        return person;
+    }
+
+    private List<Person> scan(RowFilter filter) {
+        List<Person> result = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            Chunk chunk = chunkOf(row);
+            int local = row % chunkRows;
+            if (chunk.flags.get(local) == LIVE && filter.test(chunk, local)) {
+                result.add(materialize(row, true));
+            }
+        }
+        return result;
+    }
+
+    private static long[] familyIdsOf(Person person) {
+        List<Person> family = person.getFamily();
+        long[] ids = new long[family.size()];
+        int count = 0;
+        for (Person member : family) {
+            if (member.getId() != null) {
+                ids[count++] = member.getId();
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Spliterator over a range of rows that materializes persons in small batches under the read lock, skipping rows
+     * that are not live when they are reached. Ranges are split at chunk boundaries, and the estimated size of each
+     * part is the sum of its chunks' live rows when it was split.
+     */
+    private final class RowSpliterator implements Spliterator<Person> {
+        private final int end;
+        private int row;
+        private long remaining;
+
+        RowSpliterator(int row, int end, long remaining) {
+            this.row = row;
+            this.end = end;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            Person person = null;
+            lock.readLock().lock();
+            try {
+                while (row < end && person == null) {
+                    if (chunkOf(row).flags.get(row % chunkRows) == LIVE) {
+                        person = materialize(row, true);
+                    }
+                    row++;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (person == null) {
+                return false;
+            }
+            remaining--;
+            action.accept(person);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Person> action) {
+            Person[] batch = new Person[STREAM_BATCH_ROWS];
+            while (row < end) {
+                int count = 0;
+                lock.readLock().lock();
+                try {
+                    for (int last = Math.min(end, row + STREAM_BATCH_ROWS); row < last; row++) {
+                        if (chunkOf(row).flags.get(row % chunkRows) == LIVE) {
+                            batch[count++] = materialize(row, true);
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                // The action runs outside the lock, so it may itself read the repository
+                remaining -= count;
+                for (int i = 0; i < count; i++) {
+                    action.accept(batch[i]);
+                    batch[i] = null;
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<Person> trySplit() {
+            int firstChunk = row / chunkRows;
+            int lastChunk = (end + chunkRows - 1) / chunkRows;
+            if (lastChunk - firstChunk < 2) {
+                return null;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            long suffix = 0;
+            lock.readLock().lock();
+            try {
+                for (int chunk = middle; chunk < lastChunk; chunk++) {
+                    suffix += chunks.get(chunk).liveRows;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            RowSpliterator prefix = new RowSpliterator(row, middle * chunkRows, Math.max(0, remaining - suffix));
+            row = middle * chunkRows;
+            remaining = suffix;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, remaining);
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+
+    /**
+     * Predicate over a row, reading only the columns it needs.
+     */
+    @FunctionalInterface
+    private interface RowFilter {
+        boolean test(Chunk chunk, int local);
+    }
+
+    /**
+     * One block of rows, with one direct buffer per column. The address column holds {@link #ADDRESS_FIELDS} string
+     * codes per row: street, number, complement, neighborhood, city, state, ZIP code and country.
+     */
+    private static final class Chunk {
+        private static final int ADDRESS_FIELDS = 8;
+
+        private final ByteBuffer ids;
+        private final ByteBuffer birthdays;
+        private final ByteBuffer firstNames;
+        private final ByteBuffer lastNames;
+        private final ByteBuffer cpfs;
+        private final ByteBuffer addresses;
+        private final ByteBuffer flags;
+        private int liveRows;
+
+        private Chunk(int rows) {
+            ids = allocate(rows * Long.BYTES);
+            birthdays = allocate(rows * Integer.BYTES);
+            firstNames = allocate(rows * Integer.BYTES);
+            lastNames = allocate(rows * Integer.BYTES);
+            cpfs = allocate(rows * Long.BYTES);
+            addresses = allocate(rows * ADDRESS_FIELDS * Integer.BYTES);
+            flags = allocate(rows);
+        }
+
+        private static ByteBuffer allocate(int bytes) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+    }
+}
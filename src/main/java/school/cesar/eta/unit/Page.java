@@ -0,0 +1,78 @@
+package school.cesar.eta.unit;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of query results together with the cursor for the next page.
+ *
+ * <p>
+ * The cursor is an opaque string. Pass it back to the same query to get the following page; a null cursor means this is
+ * the last page. Cursors record the position after the last returned item rather than an offset, so fetching any page
+ * costs the same however deep it is, and persons saved or deleted between calls never shift the results.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * String cursor = null;
+ * do {
+ *     Page<Person> page = repository.findByLastName("Silva", cursor, 100);
+ *     export(page.getItems());
+ *     cursor = page.getNextCursor();
+ * } while (cursor != null);
+ * }</pre>
+ *
+ * @param <T>
+ *            the item type
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Creates a page.
+     *
+     * @param items
+     *            the items in the page
+     * @param nextCursor
+     *            the cursor for the next page, or null if this is the last page
+     * @throws IllegalArgumentException
+     *             if items is null
+     */
+    public Page(List<T> items, String nextCursor) {
+        if (items == null) {
+            throw new IllegalArgumentException("Items cannot be null");
+        }
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the items in this page.
+     *
+     * @return unmodifiable list of items
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the cursor for the next page.
+     *
+     * @return the next cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Tells whether there is a page after this one.
+     *
+     * @return true if {@link #getNextCursor()} is not null
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,182 @@
+package school.cesar.eta.unit;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * Encoding of the opaque cursors returned in {@link Page}s of persons.
+ *
+ * <p>
+ * A cursor holds the ID of the last person returned, which is where the next page starts, and a hash of the query it
+ * belongs to, so a cursor passed to a different query is rejected instead of silently skipping results. It is encoded
+ * as URL-safe Base64.
+ */
+final class PageCursor {
+
+    private static final byte VERSION = 1;
+    private static final int BYTES = 1 + Integer.BYTES + Long.BYTES;
+    private static final int PROBES_PER_PERSON = 4;
+    private static final int EXTRA_PROBES = 64;
+
+    private PageCursor() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Encodes the cursor that resumes a query after the given ID.
+     *
+     * @param query
+     *            the query the cursor belongs to
+     * @param lastId
+     *            the ID of the last person returned
+     * @return the cursor
+     */
+    static String encode(String query, long lastId) {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES).put(VERSION).putInt(query.hashCode()).putLong(lastId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodes a cursor, returning the ID after which the next page starts.
+     *
+     * @param cursor
+     *            the cursor, or null for the first page
+     * @param query
+     *            the query being paged
+     * @return the ID to resume after, or {@link Long#MIN_VALUE} for the first page
+     * @throws IllegalArgumentException
+     *             if the cursor is malformed or belongs to another query
+     */
+    static long decode(String cursor, String query) {
+        if (cursor == null) {
+            return Long.MIN_VALUE;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length != BYTES || buffer.get() != VERSION) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (buffer.getInt() != query.hashCode()) {
+            throw new IllegalArgumentException("Cursor does not belong to this query");
+        }
+        return buffer.getLong();
+    }
+
+    /**
+     * Builds a page from up to {@code limit + 1} persons in ID order. The extra person, if present, only signals that
+     * there is a next page and is not returned.
+     *
+     * @param fetched
+     *            persons in ascending ID order, at most one more than the limit
+     * @param limit
+     *            the page size
+     * @param query
+     *            the query being paged
+     * @return the page
+     */
+    static Page<Person> toPage(List<Person> fetched, int limit, String query) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<Person> items = new ArrayList<>(fetched.subList(0, limit));
+        return new Page<>(items, encode(query, items.get(limit - 1).getId()));
+    }
+
+    /**
+     * Returns how many persons to fetch for a page: one more than the limit, so {@link #toPage(List, int, String)} can
+     * tell whether a next page exists.
+     *
+     * @param limit
+     *            the page size
+     * @return the number of persons to fetch
+     */
+    static int fetchSize(int limit) {
+        return limit < Integer.MAX_VALUE ? limit + 1 : limit;
+    }
+
+    /**
+     * Checks a page size.
+     *
+     * @param limit
+     *            the page size
+     * @throws IllegalArgumentException
+     *             if limit is not positive
+     */
+    static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    /**
+     * Finds a page of persons in a store keyed by a hash of the ID, which cannot walk IDs in order. IDs are mostly
+     * assigned in sequence, so the IDs after {@code afterId} are looked up one by one, which costs O(limit) lookups
+     * while they are dense. Once the gaps make probing cost more than a few lookups per person, the rest of the page is
+     * taken from a single pass over every ID instead, keeping the smallest ones.
+     *
+     * @param afterId
+     *            the ID after which the page starts
+     * @param limit
+     *            the maximum number of persons to return, already checked
+     * @param minId
+     *            a lower bound of the stored IDs
+     * @param maxId
+     *            an upper bound of the stored IDs
+     * @param lookup
+     *            returns the person with an ID, or null if there is none
+     * @param ids
+     *            passes every stored ID to the given consumer
+     * @return the persons in the page, in ascending ID order
+     */
+    static List<Person> probePage(long afterId, int limit, long minId, long maxId, LongFunction<Person> lookup,
+            Consumer<LongConsumer> ids) {
+        List<Person> page = new ArrayList<>(Math.min(limit, 1024));
+        if (afterId == Long.MAX_VALUE) {
+            return page;
+        }
+        long next = Math.max(afterId + 1, minId);
+        for (long probes = (long) limit * PROBES_PER_PERSON + EXTRA_PROBES; page.size() < limit && next <= maxId
+                && probes > 0; probes--) {
+            Person person = lookup.apply(next);
+            if (person != null) {
+                page.add(person);
+            }
+            if (next++ == Long.MAX_VALUE) {
+                return page;
+            }
+        }
+        if (page.size() < limit && next <= maxId) {
+            // The IDs ahead are sparse: pick the smallest ones left in one pass
+            long from = next;
+            int wanted = limit - page.size();
+            PriorityQueue<Long> smallest = new PriorityQueue<>(Math.min(wanted, 1024) + 1, Comparator.reverseOrder());
+            ids.accept(id -> {
+                if (id >= from) {
+                    smallest.add(id);
+                    if (smallest.size() > wanted) {
+                        smallest.poll();
+                    }
+                }
+            });
+            Long[] found = smallest.toArray(new Long[0]);
+            Arrays.sort(found);
+            for (long id : found) {
+                page.add(lookup.apply(id));
+            }
+        }
+        return page;
+    }
+}
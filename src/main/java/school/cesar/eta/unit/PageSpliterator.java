@@ -0,0 +1,75 @@
+package school.cesar.eta.unit;
+
+import java.util.List;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterator over persons in ascending ID order that reads them a page at a time, such as with
+ * {@link PersonRepository#findPage(long, int)}, for repositories that can start a page anywhere cheaply.
+ *
+ * <p>
+ * Only one page is held at a time and no lock is held between pages, so memory use does not depend on the number of
+ * persons and writers are never blocked by a slow consumer. Each page resumes after the last ID returned, so the stream
+ * is weakly consistent: a person that stays in the repository is returned exactly once, while a person saved or deleted
+ * meanwhile may or may not be. Parallel streams split it into batches of persons already read.
+ */
+final class PageSpliterator extends Spliterators.AbstractSpliterator<Person> {
+
+    /**
+     * Number of persons read per page.
+     */
+    static final int PAGE_SIZE = 256;
+
+    private final PageReader reader;
+    private List<Person> page = List.of();
+    private int next;
+    private long afterId = Long.MIN_VALUE;
+    private boolean lastPage;
+
+    private PageSpliterator(PageReader reader, long estimatedSize) {
+        super(estimatedSize, ORDERED | DISTINCT | NONNULL | CONCURRENT);
+        this.reader = reader;
+    }
+
+    /**
+     * Streams persons read page by page.
+     *
+     * @param reader
+     *            reads the persons after an ID, in ascending ID order
+     * @param estimatedSize
+     *            the estimated number of persons, or {@link Long#MAX_VALUE} if unknown
+     * @return the stream of persons
+     */
+    static Stream<Person> stream(PageReader reader, long estimatedSize) {
+        return StreamSupport.stream(new PageSpliterator(reader, estimatedSize), false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Person> action) {
+        if (next == page.size()) {
+            if (lastPage) {
+                return false;
+            }
+            page = reader.read(afterId, PAGE_SIZE);
+            next = 0;
+            lastPage = page.size() < PAGE_SIZE;
+            if (page.isEmpty()) {
+                return false;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        action.accept(page.get(next++));
+        return true;
+    }
+
+    /**
+     * Reads the persons with an ID greater than {@code afterId}, in ascending ID order.
+     */
+    @FunctionalInterface
+    interface PageReader {
+        List<Person> read(long afterId, int limit);
+    }
+}
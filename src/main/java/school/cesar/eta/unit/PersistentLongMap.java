@@ -0,0 +1,371 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from primitive {@code long} keys to objects, updated by path copying.
+ *
+ * <p>
+ * The map is a hash array mapped trie: each node has up to 32 children, selected by 5 bits of the mixed key, and a
+ * bitmap telling which children are present so absent ones take no space. {@link #put(long, Object)} and
+ * {@link #remove(long)} return a new map that shares every untouched node with the original, copying only the nodes on
+ * the path to the key, so an update costs O(log32 n) allocations and every older map stays valid and unchanged.
+ *
+ * <p>
+ * Keys are mixed with a bijective function, so two keys never share a full 64-bit hash and no collision lists are
+ * needed; the trie is at most 13 levels deep.
+ *
+ * <p>
+ * Instances are immutable and can be shared between threads freely once published.
+ *
+ * @param <V>
+ *            the value type
+ */
+final class PersistentLongMap<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <V>
+     *            the value type
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns the value mapped to the key.
+     *
+     * @param key
+     *            the key
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        long hash = mix(key);
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) slot;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a map with the key mapped to the value, leaving this map unchanged.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value, not null
+     * @return the updated map, or this map if the key was already mapped to the same instance
+     */
+    PersistentLongMap<V> put(long key, V value) {
+        Leaf leaf = new Leaf(key, mix(key), value);
+        if (root == null) {
+            return new PersistentLongMap<>(new Node(bit(leaf.hash, 0), new Object[] { leaf }), 1);
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = put(root, 0, leaf, added);
+        return newRoot == root ? this : new PersistentLongMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the key, leaving this map unchanged.
+     *
+     * @param key
+     *            the key
+     * @return the updated map, or this map if the key was absent
+     */
+    PersistentLongMap<V> remove(long key) {
+        if (root == null) {
+            return this;
+        }
+        // Leaves only move up below the root, so the root is always replaced by a node or null
+        Object newRoot = remove(root, 0, mix(key), key);
+        return newRoot == root ? this : new PersistentLongMap<>((Node) newRoot, size - 1);
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the map size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every value to the action, in hash order.
+     *
+     * @param action
+     *            the action to run for each value
+     */
+    void forEachValue(Consumer<? super V> action) {
+        if (root != null) {
+            forEachValue(root, action);
+        }
+    }
+
+    /**
+     * Returns a spliterator over the values of this map, which splits along trie nodes and reports exact sizes for
+     * every split, so parallel streams divide the work evenly.
+     *
+     * @return the value spliterator
+     */
+    Spliterator<V> valueSpliterator() {
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        if (root != null) {
+            pending.add(root);
+        }
+        return new ValueSpliterator<>(pending, size);
+    }
+
+    private static int sizeOf(Object slot) {
+        return slot instanceof Leaf ? 1 : ((Node) slot).size;
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf, boolean[] added) {
+        int bit = bit(leaf.hash, shift);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = leaf;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = put((Node) slot, shift + BITS, leaf, added);
+        } else {
+            Leaf existing = (Leaf) slot;
+            if (existing.key == leaf.key) {
+                replacement = existing.value == leaf.value ? existing : leaf;
+            } else {
+                added[0] = true;
+                replacement = pair(existing, leaf, shift + BITS);
+            }
+        }
+        if (replacement == slot) {
+            return node;
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Returns the node, leaf or null replacing the given node once the key is removed.
+     */
+    private static Object remove(Node node, int shift, long hash, long key) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = remove((Node) slot, shift + BITS, hash, key);
+            if (replacement == slot) {
+                return node;
+            }
+        } else {
+            if (((Leaf) slot).key != key) {
+                return node;
+            }
+            replacement = null;
+        }
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            if (node.slots.length == 2 && node.slots[1 - index] instanceof Leaf && shift > 0) {
+                // A lone leaf moves up so the trie never keeps a chain of single-child nodes
+                return node.slots[1 - index];
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+            return new Node(node.bitmap & ~bit, slots);
+        }
+        if (replacement instanceof Leaf && node.slots.length == 1 && shift > 0) {
+            return replacement;
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    private static Node pair(Leaf first, Leaf second, int shift) {
+        int firstBit = bit(first.hash, shift);
+        int secondBit = bit(second.hash, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[] { pair(first, second, shift + BITS) });
+        }
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0 ? new Object[] { first, second }
+                : new Object[] { second, first };
+        return new Node(firstBit | secondBit, slots);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEachValue(Node node, Consumer<? super V> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Leaf) {
+                action.accept((V) ((Leaf) slot).value);
+            } else {
+                forEachValue((Node) slot, action);
+            }
+        }
+    }
+
+    private static int bit(long hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Bijective 64-bit mix, so distinct keys always have distinct hashes.
+     */
+    private static long mix(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Leaf {
+        final long key;
+        final long hash;
+        final Object value;
+
+        Leaf(long key, long hash, Object value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+        final int size;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            int total = 0;
+            for (Object slot : slots) {
+                total += sizeOf(slot);
+            }
+            this.size = total;
+        }
+    }
+
+    /**
+     * Spliterator over the values of one map version. Every pending slot has a known size, so splits report exact
+     * sizes.
+     */
+    private static final class ValueSpliterator<V> implements Spliterator<V> {
+        private final ArrayDeque<Object> pending;
+        private long remaining;
+
+        ValueSpliterator(ArrayDeque<Object> pending, long remaining) {
+            this.pending = pending;
+            this.remaining = remaining;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (!pending.isEmpty()) {
+                Object slot = pending.pollFirst();
+                if (slot instanceof Leaf) {
+                    remaining--;
+                    action.accept((V) ((Leaf) slot).value);
+                    return true;
+                }
+                Object[] children = ((Node) slot).slots;
+                for (int i = children.length - 1; i >= 0; i--) {
+                    pending.addFirst(children[i]);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            while (!pending.isEmpty()) {
+                Object slot = pending.pollFirst();
+                if (slot instanceof Leaf) {
+                    action.accept((V) ((Leaf) slot).value);
+                } else {
+                    forEachValue((Node) slot, action);
+                }
+            }
+            remaining = 0;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            while (pending.size() == 1 && pending.peekFirst() instanceof Node) {
+                for (Object child : ((Node) pending.pollFirst()).slots) {
+                    pending.addLast(child);
+                }
+            }
+            int half = pending.size() / 2;
+            if (half == 0) {
+                return null;
+            }
+            ArrayDeque<Object> prefix = new ArrayDeque<>(half);
+            long prefixSize = 0;
+            for (int i = 0; i < half; i++) {
+                Object slot = pending.pollFirst();
+                prefix.addLast(slot);
+                prefixSize += sizeOf(slot);
+            }
+            remaining -= prefixSize;
+            return new ValueSpliterator<>(prefix, prefixSize);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+}
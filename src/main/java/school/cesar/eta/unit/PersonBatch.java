@@ -0,0 +1,140 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Validation and de-duplication of the arguments of the batch operations of {@link PersonRepository}, and the CPF
+ * uniqueness checks shared by the repositories with a unique CPF index.
+ */
+final class PersonBatch {
+
+    /**
+     * Packed CPF of a person without a CPF.
+     */
+    static final long NO_CPF = -1;
+
+    /**
+     * Owner ID returned by CPF lookups when no stored person has the CPF.
+     */
+    static final long NO_OWNER = Long.MIN_VALUE;
+
+    private PersonBatch() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Returns the persons to save, each instance once, in the order they first appear. Every element is checked before
+     * anything is saved, so an invalid batch is rejected as a whole.
+     *
+     * @param persons
+     *            the persons to save
+     * @return the distinct persons
+     * @throws IllegalArgumentException
+     *             if persons is null or contains null
+     */
+    static List<Person> distinctPersons(Collection<Person> persons) {
+        if (persons == null) {
+            throw new IllegalArgumentException("Persons cannot be null");
+        }
+        Set<Person> seen = Collections.newSetFromMap(new IdentityHashMap<>(persons.size()));
+        List<Person> batch = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            if (person == null) {
+                throw new IllegalArgumentException("Person cannot be null");
+            }
+            if (seen.add(person)) {
+                batch.add(person);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the IDs to look up or delete, each once, in the order they first appear. Null IDs are skipped, since they
+     * never match a person.
+     *
+     * @param ids
+     *            the person IDs
+     * @return the distinct IDs
+     * @throws IllegalArgumentException
+     *             if ids is null
+     */
+    static long[] distinctIds(Collection<Long> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("IDs cannot be null");
+        }
+        LongLongMap seen = new LongLongMap(ids.size());
+        long[] distinct = new long[ids.size()];
+        int count = 0;
+        for (Long id : ids) {
+            if (id != null && seen.put(id, 0)) {
+                distinct[count++] = id;
+            }
+        }
+        return count == distinct.length ? distinct : Arrays.copyOf(distinct, count);
+    }
+
+    /**
+     * Returns the CPF of a person {@link CpfValidator#toLong(String) packed} into a {@code long}, the key of the unique
+     * CPF indexes.
+     *
+     * @param person
+     *            the person
+     * @return the packed CPF, or {@link #NO_CPF} if the person has none
+     */
+    static long cpfOf(Person person) {
+        return person.getCpf() != null ? CpfValidator.toLong(person.getCpf()) : NO_CPF;
+    }
+
+    /**
+     * Checks that the stored owner of a person's CPF, if any, is that same person.
+     *
+     * @param person
+     *            the person to save
+     * @param owner
+     *            the ID of the stored person with the same CPF, or {@link #NO_OWNER}
+     * @throws DuplicateCpfException
+     *             if another person owns the CPF
+     */
+    static void checkCpfOwner(Person person, long owner) {
+        if (owner != NO_OWNER && (person.getId() == null || owner != person.getId())) {
+            throw new DuplicateCpfException(person.getCpf());
+        }
+    }
+
+    /**
+     * Checks that saving a batch keeps every CPF unique: no two persons of the batch share a CPF, and no CPF of the
+     * batch belongs to a stored person other than the one being saved. The check is made against the persons stored
+     * before the batch, so a batch cannot move a CPF from one person to another.
+     *
+     * @param batch
+     *            the distinct persons to save
+     * @param owners
+     *            returns the ID of the stored person with a packed CPF, or {@link #NO_OWNER}
+     * @throws DuplicateCpfException
+     *             if a CPF would be shared
+     */
+    static void checkUniqueCpfs(List<Person> batch, LongUnaryOperator owners) {
+        LongLongMap claimed = null;
+        for (Person person : batch) {
+            long cpf = cpfOf(person);
+            if (cpf == NO_CPF) {
+                continue;
+            }
+            checkCpfOwner(person, owners.applyAsLong(cpf));
+            if (claimed == null) {
+                claimed = new LongLongMap(batch.size());
+            }
+            if (!claimed.put(cpf, 0)) {
+                throw new DuplicateCpfException(person.getCpf());
+            }
+        }
+    }
+}
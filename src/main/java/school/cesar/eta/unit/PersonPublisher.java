@@ -0,0 +1,236 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link Flow.Publisher} that reads persons from a repository one page at a time, as subscribers request them.
+ *
+ * <p>
+ * Each subscription fetches a page only when its buffer is empty and the subscriber has outstanding demand, so it holds
+ * at most one page of persons however slowly the subscriber consumes them. Signals are delivered in the thread that
+ * calls {@link Flow.Subscription#request(long)}, and a request made from within {@code onNext} is queued rather than
+ * handled recursively, so the stack stays flat.
+ */
+final class PersonPublisher implements Flow.Publisher<Person> {
+
+    /**
+     * Number of persons fetched from the repository at a time.
+     */
+    static final int PAGE_SIZE = 256;
+
+    private final Supplier<PageSource> sources;
+    private final int pageSize;
+
+    PersonPublisher(Supplier<PageSource> sources, int pageSize) {
+        this.sources = sources;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Publishes every person in ascending ID order, paging with {@link PersonRepository#findPage(long, int)}.
+     */
+    static PersonPublisher all(PersonRepository repository) {
+        return new PersonPublisher(() -> new PageSource() {
+            private long afterId = Long.MIN_VALUE;
+
+            @Override
+            public List<Person> next(int limit) {
+                List<Person> page = repository.findPage(afterId, limit);
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+                return page;
+            }
+
+            @Override
+            public boolean hasMore() {
+                return true;
+            }
+        }, PAGE_SIZE);
+    }
+
+    /**
+     * Publishes the persons with the given last name in ascending ID order, paging with
+     * {@link PersonRepository#findByLastName(String, String, int)}.
+     */
+    static PersonPublisher byLastName(PersonRepository repository, String lastName) {
+        return new PersonPublisher(() -> new PageSource() {
+            private String cursor;
+
+            @Override
+            public List<Person> next(int limit) {
+                Page<Person> page = repository.findByLastName(lastName, cursor, limit);
+                cursor = page.getNextCursor();
+                return page.getItems();
+            }
+
+            @Override
+            public boolean hasMore() {
+                // The cursor is null after the last page, and passing null would start over from the first one
+                return cursor != null;
+            }
+        }, PAGE_SIZE);
+    }
+
+    /**
+     * Publishes the persons with a birthday today. The repository has no paged birthday query, so the day's matches are
+     * loaded on the first request; they are a small fraction of the repository.
+     */
+    static PersonPublisher birthdayToday(PersonRepository repository) {
+        return new PersonPublisher(() -> new PageSource() {
+            private List<Person> matches;
+            private int position;
+
+            @Override
+            public List<Person> next(int limit) {
+                if (matches == null) {
+                    matches = repository.findBirthdayToday();
+                }
+                int end = (int) Math.min(matches.size(), (long) position + limit);
+                List<Person> page = matches.subList(position, end);
+                position = end;
+                return page;
+            }
+
+            @Override
+            public boolean hasMore() {
+                return position < matches.size();
+            }
+        }, PAGE_SIZE);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Person> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+        PersonSubscription subscription = new PersonSubscription(subscriber, sources.get(), pageSize);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Reads successive pages of one query. A page shorter than the limit is the last one, and so is a full page after
+     * which {@link #hasMore()} is false.
+     */
+    interface PageSource {
+        List<Person> next(int limit);
+
+        /**
+         * Tells whether the query may have persons after the last page read.
+         */
+        boolean hasMore();
+    }
+
+    private static final class PersonSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Person> subscriber;
+        private final PageSource source;
+        private final int pageSize;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Queue<Person> buffer = new ArrayDeque<>();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+        private boolean exhausted;
+        private boolean done;
+
+        PersonSubscription(Flow.Subscriber<? super Person> subscriber, PageSource source, int pageSize) {
+            this.subscriber = subscriber;
+            this.source = source;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested count must be positive, was " + n);
+            } else {
+                requested.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        /**
+         * Emits while there is demand. Only one thread drains at a time; calls made meanwhile, including from the
+         * subscriber's own callbacks, make the draining thread loop again instead of draining themselves.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                emit();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (!done) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    finish();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (buffer.isEmpty()) {
+                    if (exhausted) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (requested.get() == 0) {
+                        return;
+                    }
+                    List<Person> page;
+                    try {
+                        page = source.next(pageSize);
+                    } catch (RuntimeException e) {
+                        finish();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    exhausted = page.size() < pageSize || !source.hasMore();
+                    buffer.addAll(page);
+                    continue;
+                }
+                long demand = requested.get();
+                if (demand == 0) {
+                    return;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(buffer.poll());
+                } catch (RuntimeException e) {
+                    // The subscriber broke the protocol, treat the subscription as cancelled
+                    finish();
+                    throw e;
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            buffer.clear();
+        }
+    }
+}
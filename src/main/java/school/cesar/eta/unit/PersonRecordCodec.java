@@ -0,0 +1,228 @@
+package school.cesar.eta.unit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Binary encoding of a {@link Person} record, shared by the file-backed repositories.
+ *
+ * <p>
+ * A record holds the person fields and the IDs of its family members:
+ *
+ * <pre>
+ * id (long) | presence flags (byte) | first name | last name | [birthday epoch day (int)] | [cpf digits (long)]
+ *           | [street | number | complement | neighborhood | city | state | zip code | country]
+ *           | family count (int) | family IDs (long...)
+ * </pre>
+ *
+ * <p>
+ * Strings are written as a signed 16-bit byte length followed by UTF-8 bytes, with length {@code -1} for null. The ID
+ * always comes first, so storage code can read it at a fixed offset without decoding the rest of the record.
+ */
+final class PersonRecordCodec {
+
+    private static final int HAS_BIRTHDAY = 1;
+    private static final int HAS_CPF = 1 << 1;
+    private static final int HAS_ADDRESS = 1 << 2;
+    private static final int NULL_LENGTH = -1;
+
+    private PersonRecordCodec() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Encodes the given person. Family members without an ID are skipped.
+     *
+     * @param person
+     *            the person, which must have an ID
+     * @return the encoded record
+     * @throws IllegalArgumentException
+     *             if the person has no ID or a field is too long to encode
+     */
+    static byte[] encode(Person person) {
+        if (person.getId() == null) {
+            throw new IllegalArgumentException("Person must have an ID to be encoded");
+        }
+        Address address = person.getAddress();
+        byte[][] strings = new byte[address != null ? 10 : 2][];
+        strings[0] = utf8(person.getFirstName());
+        strings[1] = utf8(person.getLastName());
+        if (address != null) {
+            strings[2] = utf8(address.getStreet());
+            strings[3] = utf8(address.getNumber());
+            strings[4] = utf8(address.getComplement());
+            strings[5] = utf8(address.getNeighborhood());
+            strings[6] = utf8(address.getCity());
+            strings[7] = utf8(address.getState());
+            strings[8] = utf8(address.getZipCode());
+            strings[9] = utf8(address.getCountry());
+        }
+        List<Person> family = person.getFamily();
+        int familyCount = 0;
+        for (Person member : family) {
+            if (member.getId() != null) {
+                familyCount++;
+            }
+        }
+
+        int flags = (person.getBirthday() != null ? HAS_BIRTHDAY : 0) | (person.getCpf() != null ? HAS_CPF : 0)
+                | (address != null ? HAS_ADDRESS : 0);
+        int size = Long.BYTES + 1 + Integer.BYTES + familyCount * Long.BYTES;
+        for (byte[] string : strings) {
+            size += Short.BYTES + (string != null ? string.length : 0);
+        }
+        if (person.getBirthday() != null) {
+            size += Integer.BYTES;
+        }
+        if (person.getCpf() != null) {
+            size += Long.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(person.getId());
+        buffer.put((byte) flags);
+        putString(buffer, strings[0]);
+        putString(buffer, strings[1]);
+        if (person.getBirthday() != null) {
+            buffer.putInt((int) person.getBirthday().toEpochDay());
+        }
+        if (person.getCpf() != null) {
+            buffer.putLong(CpfValidator.toLong(person.getCpf()));
+        }
+        for (int i = 2; i < strings.length; i++) {
+            putString(buffer, strings[i]);
+        }
+        buffer.putInt(familyCount);
+        for (Person member : family) {
+            if (member.getId() != null) {
+                buffer.putLong(member.getId());
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a record starting at the buffer position, leaving the position right after it.
+     *
+     * @param buffer
+     *            the buffer to read from
+     * @return the decoded person and the IDs of its family members
+     */
+    static PersonRecord decode(ByteBuffer buffer) {
+        Person person = new Person();
+        person.setId(buffer.getLong());
+        int flags = buffer.get();
+        String firstName = getString(buffer);
+        if (firstName != null) {
+            person.setFirstName(firstName);
+        }
+        String lastName = getString(buffer);
+        if (lastName != null) {
+            person.setLastName(lastName);
+        }
+        if ((flags & HAS_BIRTHDAY) != 0) {
+            person.setBirthday(LocalDate.ofEpochDay(buffer.getInt()));
+        }
+        if ((flags & HAS_CPF) != 0) {
+            person.setCpf(CpfValidator.fromLong(buffer.getLong()));
+        }
+        if ((flags & HAS_ADDRESS) != 0) {
+            person.setAddress(new Address.Builder().street(getString(buffer)).number(getString(buffer))
+                    .complement(getString(buffer)).neighborhood(getString(buffer)).city(getString(buffer))
+                    .state(getString(buffer)).zipCode(getString(buffer)).country(getString(buffer)).build());
+        }
+        long[] familyIds = new long[buffer.getInt()];
+        for (int i = 0; i < familyIds.length; i++) {
+            familyIds[i] = buffer.getLong();
+        }
+        return new PersonRecord(person, familyIds);
+    }
+
+    /**
+     * Reads the ID of the record starting at the given absolute index, without decoding the rest.
+     *
+     * @param buffer
+     *            the buffer to read from
+     * @param index
+     *            the absolute index where the record starts
+     * @return the person ID
+     */
+    static long readId(ByteBuffer buffer, int index) {
+        return buffer.getLong(index);
+    }
+
+    /**
+     * Reads the birthday of the record starting at the given absolute index, skipping over the names without decoding
+     * them.
+     *
+     * @param buffer
+     *            the buffer to read from
+     * @param index
+     *            the absolute index where the record starts
+     * @return the birthday, or null if the record has none
+     */
+    static LocalDate readBirthday(ByteBuffer buffer, int index) {
+        if ((buffer.get(index + Long.BYTES) & HAS_BIRTHDAY) == 0) {
+            return null;
+        }
+        int offset = index + Long.BYTES + 1;
+        for (int i = 0; i < 2; i++) {
+            int length = buffer.getShort(offset);
+            offset += Short.BYTES + (length == NULL_LENGTH ? 0 : length);
+        }
+        return LocalDate.ofEpochDay(buffer.getInt(offset));
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Field too long to encode: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_LENGTH);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A decoded person together with the IDs of its family members, which the caller links once they are loaded.
+     */
+    static final class PersonRecord {
+        private final Person person;
+        private final long[] familyIds;
+
+        PersonRecord(Person person, long[] familyIds) {
+            this.person = person;
+            this.familyIds = familyIds;
+        }
+
+        Person getPerson() {
+            return person;
+        }
+
+        long[] getFamilyIds() {
+            return familyIds;
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package school.cesar.eta.unit;
 
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for Person entities. Demonstrates repository pattern for testing with mocks.
@@ -19,6 +30,25 @@ public interface PersonRepository {
      */
     Person save(Person person);
 
+    /**
+     * Saves a batch of persons. Each person instance is saved once, however often it appears. The default
+     * implementation calls {@link #save(Person)} for each person; implementations override this to take their lock or
+     * sync their log once for the whole batch.
+     *
+     * @param persons
+     *            the persons to save
+     * @return the saved persons with generated IDs, in the order they first appear
+     * @throws IllegalArgumentException
+     *             if persons is null or contains null
+     */
+    default List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        for (Person person : batch) {
+            save(person);
+        }
+        return batch;
+    }
+
     /**
      * Finds a person by ID.
      *
@@ -28,6 +58,55 @@ public interface PersonRepository {
      */
     Optional<Person> findById(Long id);
 
+    /**
+     * Finds a person by primitive ID. Implementations backed by primitive maps override this to avoid boxing the ID.
+     *
+     * @param id
+     *            the person ID
+     * @return Optional containing the person if found
+     */
+    default Optional<Person> findById(long id) {
+        return findById(Long.valueOf(id));
+    }
+
+    /**
+     * Finds the person with a CPF, formatted or not. Implementations with a unique CPF index answer with one lookup and
+     * reject a save that would give a CPF to a second person with a {@link DuplicateCpfException}; the default
+     * implementation scans every person and returns the first match.
+     *
+     * @param cpf
+     *            the CPF to search
+     * @return Optional containing the person if found
+     * @throws IllegalArgumentException
+     *             if cpf is null or does not have 11 digits
+     */
+    default Optional<Person> findByCpf(String cpf) {
+        long key = CpfValidator.toLong(cpf);
+        try (Stream<Person> persons = streamAll()) {
+            return persons.filter(person -> person.getCpf() != null && CpfValidator.toLong(person.getCpf()) == key)
+                    .findFirst();
+        }
+    }
+
+    /**
+     * Finds the persons with the given IDs. Null, duplicate and unknown IDs are skipped. The default implementation
+     * calls {@link #findById(long)} for each ID; implementations override this to read under one lock.
+     *
+     * @param ids
+     *            the person IDs
+     * @return the persons found, in the order their IDs first appear
+     * @throws IllegalArgumentException
+     *             if ids is null
+     */
+    default List<Person> findAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        List<Person> result = new ArrayList<>(distinct.length);
+        for (long id : distinct) {
+            findById(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
     /**
      * Finds all persons by last name.
      *
@@ -37,6 +116,276 @@ public interface PersonRepository {
      */
     List<Person> findByLastName(String lastName);
 
+    /**
+     * Finds one page of the persons with the given last name, in ascending ID order. The default implementation filters
+     * {@link #findByLastName(String)}; implementations whose last name index is ordered by ID override this so each
+     * page costs O(log n + limit).
+     *
+     * @param lastName
+     *            the last name to search
+     * @param cursor
+     *            the cursor from the previous page, or null for the first page
+     * @param limit
+     *            the maximum number of persons in the page
+     * @return the page, with the cursor for the next one
+     * @throws IllegalArgumentException
+     *             if lastName is null, limit is not positive, or the cursor is invalid or belongs to another last name
+     */
+    default Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        long afterId = PageCursor.decode(cursor, lastName);
+        List<Person> fetched = findByLastName(lastName).stream().filter(person -> person.getId() > afterId)
+                .sorted(Comparator.comparing(Person::getId)).limit(limit + 1L).collect(Collectors.toList());
+        return PageCursor.toPage(fetched, limit, lastName);
+    }
+
+    /**
+     * Finds all persons whose last name equals the given one after {@link NameNormalizer} normalization, so
+     * "Conceição", "conceicao" and "CONCEICAO" all match each other. Implementations with a normalized last name index
+     * override this to avoid scanning every person.
+     *
+     * @param lastName
+     *            the last name to search
+     * @return list of persons with a matching last name
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    default List<Person> findByNormalizedLastName(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        String normalized = NameNormalizer.normalize(lastName);
+        try (Stream<Person> persons = streamAll()) {
+            return persons
+                    .filter(person -> person.getLastName() != null
+                            && NameNormalizer.normalize(person.getLastName()).equals(normalized))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Suggests last names starting with a prefix, for autocomplete. Names are compared and ordered after
+     * {@link NameNormalizer} normalization, and each normalized name is suggested once, spelled as the person with the
+     * lowest ID spells it. The default implementation scans every person; implementations with a normalized last name
+     * index override this to only visit the names returned.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @param limit
+     *            the maximum number of names to return
+     * @return up to {@code limit} last names in normalized order
+     * @throws IllegalArgumentException
+     *             if prefix is null or limit is not positive
+     */
+    default List<String> suggestLastNames(String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        String normalizedPrefix = NameNormalizer.normalize(prefix);
+        TreeMap<String, Person> byName = new TreeMap<>();
+        try (Stream<Person> persons = streamAll()) {
+            persons.filter(person -> person.getLastName() != null).forEach(person -> {
+                String normalized = NameNormalizer.normalize(person.getLastName());
+                if (normalized.startsWith(normalizedPrefix)) {
+                    byName.merge(normalized, person,
+                            (current, candidate) -> candidate.getId() < current.getId() ? candidate : current);
+                }
+            });
+        }
+        return byName.values().stream().limit(limit).map(Person::getLastName).collect(Collectors.toList());
+    }
+
+    /**
+     * Finds all persons whose last name starts with the given prefix, compared after {@link NameNormalizer}
+     * normalization, so the search ignores case and accents. Implementations with a last name index override this to
+     * avoid scanning every person.
+     *
+     * @param prefix
+     *            the last name prefix
+     * @return list of persons with a matching last name
+     * @throws IllegalArgumentException
+     *             if prefix is null
+     */
+    default List<Person> findByLastNameStartingWith(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        String normalizedPrefix = NameNormalizer.normalize(prefix);
+        try (Stream<Person> persons = streamAll()) {
+            return persons
+                    .filter(person -> person.getLastName() != null
+                            && NameNormalizer.normalize(person.getLastName()).startsWith(normalizedPrefix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds all persons whose normalized last name is in the range {@code [fromInclusive, toExclusive)}. Both bounds
+     * are normalized with {@link NameNormalizer} before comparing. Implementations with a last name index override this
+     * to avoid scanning every person.
+     *
+     * @param fromInclusive
+     *            the lowest last name to include
+     * @param toExclusive
+     *            the first last name past the range
+     * @return list of persons with a last name in the range
+     * @throws IllegalArgumentException
+     *             if either bound is null
+     */
+    default List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        String from = NameNormalizer.normalize(fromInclusive);
+        String to = NameNormalizer.normalize(toExclusive);
+        try (Stream<Person> persons = streamAll()) {
+            return persons.filter(person -> {
+                if (person.getLastName() == null) {
+                    return false;
+                }
+                String lastName = NameNormalizer.normalize(person.getLastName());
+                return lastName.compareTo(from) >= 0 && lastName.compareTo(to) < 0;
+            }).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds the persons whose address is in the given city and state, in ID order. Names are compared exactly, as
+     * {@link Address#isSameCity(Address)} does. The default implementation scans every person; implementations with a
+     * city index override this to only visit the matching persons.
+     *
+     * @param city
+     *            the city name
+     * @param state
+     *            the state
+     * @return list of persons living in the city
+     * @throws IllegalArgumentException
+     *             if city or state is null
+     */
+    default List<Person> findByCity(String city, String state) {
+        Address.City key = Address.City.of(city, state);
+        try (Stream<Person> persons = streamAll()) {
+            return persons.filter(person -> person.getAddress() != null && person.getAddress().getCityKey().equals(key))
+                    .sorted(Comparator.comparing(Person::getId)).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Groups the IDs of the persons with an address by city, for bulk work such as regional mailings that only need to
+     * load some of the persons. Persons without an address are left out. The default implementation scans every person;
+     * implementations with a city index override this to read the IDs straight from the index.
+     *
+     * @return the IDs of each city in ascending order, with cities ordered by state and then by name
+     */
+    default SortedMap<Address.City, long[]> groupByCity() {
+        TreeMap<Address.City, List<Long>> ids = new TreeMap<>();
+        try (Stream<Person> persons = streamAll()) {
+            persons.filter(person -> person.getAddress() != null).forEach(person -> ids
+                    .computeIfAbsent(person.getAddress().getCityKey(), city -> new ArrayList<>()).add(person.getId()));
+        }
+        TreeMap<Address.City, long[]> result = new TreeMap<>();
+        ids.forEach(
+                (city, cityIds) -> result.put(city, cityIds.stream().mapToLong(Long::longValue).sorted().toArray()));
+        return result;
+    }
+
+    /**
+     * Finds the persons whose {@link Address#getZipCodeValue() numeric ZIP code} is in the range
+     * {@code [fromInclusive, toExclusive)}, in ZIP code order and in ID order within a ZIP code. Persons without an
+     * address are skipped. The default implementation streams and sorts every person; implementations with a sorted ZIP
+     * code index override this to scan only the range.
+     *
+     * @param fromInclusive
+     *            the lowest numeric ZIP code to include
+     * @param toExclusive
+     *            the numeric ZIP code where the range ends, not included
+     * @return list of persons with a ZIP code in the range, empty if the range is empty
+     */
+    default List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        try (Stream<Person> persons = streamAll()) {
+            return persons
+                    .filter(person -> person.getAddress() != null
+                            && person.getAddress().getZipCodeValue() >= fromInclusive
+                            && person.getAddress().getZipCodeValue() < toExclusive)
+                    .sorted(Comparator.comparingInt((Person person) -> person.getAddress().getZipCodeValue())
+                            .thenComparing(Person::getId))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds the persons whose CEP is in the range {@code [fromInclusive, toExclusive)}, in ZIP code order, so
+     * {@code findByZipRange("50000-000", "57000-000")} finds the CEPs of Pernambuco. Bounds are compared as
+     * {@link Address#getZipCodeValue() numbers}.
+     *
+     * @param fromInclusive
+     *            the lowest ZIP code to include
+     * @param toExclusive
+     *            the ZIP code where the range ends, not included
+     * @return list of persons with a ZIP code in the range
+     * @throws IllegalArgumentException
+     *             if either bound is null or not a valid ZIP code
+     */
+    default List<Person> findByZipRange(String fromInclusive, String toExclusive) {
+        return findByZipRange(fromInclusive, toExclusive, Address.ZipCodeKind.CEP);
+    }
+
+    /**
+     * Finds the persons whose ZIP code of the given kind is in the range {@code [fromInclusive, toExclusive)}, in ZIP
+     * code order. ZIP codes of the other kind are never returned, even when their digits are in the range.
+     *
+     * @param fromInclusive
+     *            the lowest ZIP code to include
+     * @param toExclusive
+     *            the ZIP code where the range ends, not included
+     * @param kind
+     *            the kind of ZIP code
+     * @return list of persons with a ZIP code in the range
+     * @throws IllegalArgumentException
+     *             if either bound is null or not a valid ZIP code, or kind is null
+     */
+    default List<Person> findByZipRange(String fromInclusive, String toExclusive, Address.ZipCodeKind kind) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        return findByZipCodeValueBetween(Address.zipCodeValue(fromInclusive, kind),
+                Address.zipCodeValue(toExclusive, kind));
+    }
+
+    /**
+     * Finds the persons whose CEP starts with a prefix, in ZIP code order, so {@code findByZipPrefix("50")} finds every
+     * CEP from "50000-000" to "50999-999".
+     *
+     * @param prefix
+     *            the first digits of the ZIP code, with the hyphen after the fifth digit if more digits follow
+     * @return list of persons with a matching ZIP code
+     * @throws IllegalArgumentException
+     *             if prefix is null or not the start of a valid ZIP code
+     */
+    default List<Person> findByZipPrefix(String prefix) {
+        return findByZipPrefix(prefix, Address.ZipCodeKind.CEP);
+    }
+
+    /**
+     * Finds the persons whose ZIP code of the given kind starts with a prefix, in ZIP code order.
+     *
+     * @param prefix
+     *            the first digits of the ZIP code, with the hyphen after the fifth digit if more digits follow
+     * @param kind
+     *            the kind of ZIP code
+     * @return list of persons with a matching ZIP code
+     * @throws IllegalArgumentException
+     *             if prefix is null or not the start of a valid ZIP code, or kind is null
+     */
+    default List<Person> findByZipPrefix(String prefix, Address.ZipCodeKind kind) {
+        int[] range = Address.zipCodePrefixRange(prefix, kind);
+        return findByZipCodeValueBetween(range[0], range[1]);
+    }
+
     /**
      * Finds all persons.
      *
@@ -44,6 +393,87 @@ public interface PersonRepository {
      */
     List<Person> findAll();
 
+    /**
+     * Streams all persons. The default implementation streams {@link #findAll()}, with exact {@code SIZED} and
+     * {@code SUBSIZED} sizes; implementations that can produce persons lazily override this so memory use does not grow
+     * with the number of persons. Lazy streams over a repository that may change while they run are weakly consistent:
+     * they never throw {@link java.util.ConcurrentModificationException}, and only report estimated sizes.
+     *
+     * @return stream of all persons
+     */
+    default Stream<Person> streamAll() {
+        return findAll().stream();
+    }
+
+    /**
+     * Finds the persons with an ID greater than {@code afterId}, in ascending ID order. Pass the ID of the last person
+     * of a page to get the next one. The default implementation scans {@link #streamAll()} keeping only the
+     * {@code limit} smallest IDs; implementations with an ID-ordered index, or IDs they can probe in sequence, override
+     * this so each page costs about O(log n + limit) wherever it starts.
+     *
+     * @param afterId
+     *            the ID after which the page starts, such as 0 for the first page
+     * @param limit
+     *            the maximum number of persons to return
+     * @return the persons in the page, an empty list after the last page
+     * @throws IllegalArgumentException
+     *             if limit is not positive
+     */
+    default List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        Comparator<Person> byId = Comparator.comparing(Person::getId);
+        PriorityQueue<Person> smallest = new PriorityQueue<>(Math.min(limit, 1024) + 1, byId.reversed());
+        try (Stream<Person> persons = streamAll()) {
+            persons.filter(person -> person.getId() > afterId).forEach(person -> {
+                smallest.add(person);
+                if (smallest.size() > limit) {
+                    smallest.poll();
+                }
+            });
+        }
+        List<Person> page = new ArrayList<>(smallest);
+        page.sort(byId);
+        return page;
+    }
+
+    /**
+     * Publishes every person in ascending ID order to subscribers that pull them at their own pace. Persons are read
+     * with {@link #findPage(long, int)} one page at a time, only when a subscriber has requested more than it has
+     * already received, so a slow subscriber never makes the publisher hold more than one page.
+     *
+     * @return publisher of all persons; each subscription reads the repository afresh
+     */
+    default Flow.Publisher<Person> publishAll() {
+        return PersonPublisher.all(this);
+    }
+
+    /**
+     * Publishes the persons with the given last name in ascending ID order, reading them page by page with
+     * {@link #findByLastName(String, String, int)} as subscribers request them.
+     *
+     * @param lastName
+     *            the last name to search
+     * @return publisher of the persons with matching last name
+     * @throws IllegalArgumentException
+     *             if lastName is null
+     */
+    default Flow.Publisher<Person> publishByLastName(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        return PersonPublisher.byLastName(this, lastName);
+    }
+
+    /**
+     * Publishes the persons with birthday today as subscribers request them. The day's matches are loaded with
+     * {@link #findBirthdayToday()} on the first request.
+     *
+     * @return publisher of the persons with birthday today
+     */
+    default Flow.Publisher<Person> publishBirthdayToday() {
+        return PersonPublisher.birthdayToday(this);
+    }
+
     /**
      * Deletes a person by ID.
      *
@@ -53,6 +483,38 @@ public interface PersonRepository {
      */
     boolean deleteById(Long id);
 
+    /**
+     * Deletes a person by primitive ID. Implementations backed by primitive maps override this to avoid boxing the ID.
+     *
+     * @param id
+     *            the person ID
+     * @return true if deleted, false if not found
+     */
+    default boolean deleteById(long id) {
+        return deleteById(Long.valueOf(id));
+    }
+
+    /**
+     * Deletes the persons with the given IDs. Null, duplicate and unknown IDs are skipped. The default implementation
+     * calls {@link #deleteById(long)} for each ID; implementations override this to take their lock or sync their log
+     * once for the whole batch.
+     *
+     * @param ids
+     *            the person IDs
+     * @return the number of persons deleted
+     * @throws IllegalArgumentException
+     *             if ids is null
+     */
+    default int deleteAllById(Collection<Long> ids) {
+        int deleted = 0;
+        for (long id : PersonBatch.distinctIds(ids)) {
+            if (deleteById(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
     /**
      * Counts total number of persons.
      *
@@ -70,9 +532,132 @@ public interface PersonRepository {
     boolean existsById(Long id);
 
     /**
-     * Finds persons whose birthday is today.
+     * Checks if a person exists by primitive ID. Implementations backed by primitive maps override this to avoid boxing
+     * the ID.
+     *
+     * @param id
+     *            the person ID
+     * @return true if exists
+     */
+    default boolean existsById(long id) {
+        return existsById(Long.valueOf(id));
+    }
+
+    /**
+     * Finds persons whose birthday is today. Persons born on February 29 are included on the date the repository's leap
+     * day policy chooses in years without that day, {@link LeapDayPolicy#DEFAULT} unless configured otherwise.
      *
      * @return list of persons with birthday today
      */
     List<Person> findBirthdayToday();
-}
\ No newline at end of file
+
+    /**
+     * Finds persons born on a month and day, in any year. The default implementation streams every person;
+     * implementations with a birthday index override this to only touch the persons born that day.
+     *
+     * @param day
+     *            the month and day of birth
+     * @return list of persons born on that day
+     * @throws IllegalArgumentException
+     *             if day is null
+     */
+    default List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        try (Stream<Person> persons = streamAll()) {
+            return persons
+                    .filter(person -> person.getBirthday() != null && MonthDay.from(person.getBirthday()).equals(day))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds persons who celebrate their birthday on a date. Persons born on February 29 are included on the date the
+     * policy chooses in years without that day.
+     *
+     * @param date
+     *            the date
+     * @param policy
+     *            when to celebrate February 29 birthdays in common years
+     * @return list of persons celebrating on that date
+     * @throws IllegalArgumentException
+     *             if date or policy is null
+     */
+    default List<Person> findBirthdaysCelebratedOn(LocalDate date, LeapDayPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        List<Person> result = new ArrayList<>();
+        for (MonthDay day : policy.birthdaysCelebratedOn(date)) {
+            result.addAll(findBirthdaysOn(day));
+        }
+        return result;
+    }
+
+    /**
+     * Finds persons born on or before a date, oldest first and in ID order within a day. Persons without a birthday are
+     * skipped. The default implementation streams and sorts every person; implementations with a sorted birthdate index
+     * override this to seek straight to the end of the range.
+     *
+     * @param date
+     *            the latest birthdate to include
+     * @return list of persons born on or before that date
+     * @throws IllegalArgumentException
+     *             if date is null
+     */
+    default List<Person> findBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        try (Stream<Person> persons = streamAll()) {
+            return persons.filter(person -> person.getBirthday() != null && !person.getBirthday().isAfter(date))
+                    .sorted(Comparator.comparing(Person::getBirthday).thenComparing(Person::getId))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds persons born in a date range, oldest first and in ID order within a day. Persons without a birthday are
+     * skipped.
+     *
+     * @param fromInclusive
+     *            the earliest birthdate to include
+     * @param toExclusive
+     *            the birthdate where the range ends, not included
+     * @return list of persons born in the range, empty if the range is empty
+     * @throws IllegalArgumentException
+     *             if either bound is null
+     */
+    default List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        try (Stream<Person> persons = streamAll()) {
+            return persons
+                    .filter(person -> person.getBirthday() != null && !person.getBirthday().isBefore(fromInclusive)
+                            && person.getBirthday().isBefore(toExclusive))
+                    .sorted(Comparator.comparing(Person::getBirthday).thenComparing(Person::getId))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Counts persons born on or before a date, without building the list.
+     *
+     * @param date
+     *            the latest birthdate to include
+     * @return number of persons born on or before that date
+     * @throws IllegalArgumentException
+     *             if date is null
+     */
+    default long countBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        try (Stream<Person> persons = streamAll()) {
+            return persons.filter(person -> person.getBirthday() != null && !person.getBirthday().isAfter(date))
+                    .count();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package school.cesar.eta.unit;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link PersonRepository} decorator that adds fuzzy search by full name, tolerating typos, missing accents and
+ * different case.
+ *
+ * <p>
+ * The {@link Person#getName() names} of the persons in the delegate are kept in a {@link TrigramIndex}, which is filled
+ * from {@link PersonRepository#streamAll()} when the decorator is built and then updated on every save and delete made
+ * through it. {@link #search(String, int)} returns the persons whose normalized name is within the maximum edit
+ * distance of the query, closest first. Candidates come from the query's rarest trigrams, so a search only looks at the
+ * persons sharing enough of the query's trigrams instead of at every person, and only the returned persons are loaded
+ * from the delegate.
+ *
+ * <p>
+ * All writes must go through the decorator; a person saved directly in the delegate is not found by
+ * {@link #search(String, int)}. Persons with neither a first nor a last name are not indexed.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * PersonSearch search = new PersonSearch.Builder().delegate(repository).maxDistance(2).build();
+ * List<PersonSearch.Match> matches = search.search("Joao Conseicao", 10);
+ * }</pre>
+ */
+public class PersonSearch implements PersonRepository {
+
+    private final PersonRepository delegate;
+    private final int maxDistance;
+    private final TrigramIndex index = new TrigramIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private PersonSearch(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxDistance = builder.maxDistance;
+        try (Stream<Person> persons = delegate.streamAll()) {
+            persons.forEach(this::index);
+        }
+    }
+
+    /**
+     * Builder for {@link PersonSearch}.
+     */
+    public static class Builder {
+        private PersonRepository delegate;
+        private int maxDistance = 2;
+
+        public Builder delegate(PersonRepository delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets the largest number of inserted, deleted or replaced characters between the query and a matching name.
+         * Larger distances find more misspellings but prune fewer candidates.
+         */
+        public Builder maxDistance(int maxDistance) {
+            this.maxDistance = maxDistance;
+            return this;
+        }
+
+        /**
+         * Creates the decorator, indexing the names of the persons already in the delegate.
+         *
+         * @return the searchable repository
+         * @throws IllegalArgumentException
+         *             if a setting is missing or invalid
+         */
+        public PersonSearch build() {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate repository is required");
+            }
+            if (maxDistance < 0) {
+                throw new IllegalArgumentException("Max distance cannot be negative");
+            }
+            return new PersonSearch(this);
+        }
+    }
+
+    /**
+     * Finds the persons whose full name is closest to the query, comparing names after {@link NameNormalizer}
+     * normalization.
+     *
+     * @param name
+     *            the full name to search, possibly misspelled
+     * @param limit
+     *            the maximum number of matches
+     * @return up to {@code limit} matches within the maximum edit distance, closest first and then in ID order
+     * @throws IllegalArgumentException
+     *             if name is null or limit is not positive
+     */
+    public List<Match> search(String name, int limit) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        List<TrigramIndex.Hit> hits;
+        lock.readLock().lock();
+        try {
+            hits = index.search(name, maxDistance, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Match> matches = new ArrayList<>(hits.size());
+        for (TrigramIndex.Hit hit : hits) {
+            // A person deleted since the search ran is simply left out
+            delegate.findById(hit.id).ifPresent(person -> matches.add(new Match(person, hit.distance)));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of persons whose names are indexed.
+     *
+     * @return the indexed count
+     */
+    public int getIndexedCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        writeLock.lock();
+        try {
+            Person saved = delegate.save(person);
+            index(saved);
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        writeLock.lock();
+        try {
+            List<Person> saved = delegate.saveAll(persons);
+            for (Person person : saved) {
+                index(person);
+            }
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        return delegate.findByCpf(cpf);
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return delegate.findByLastName(lastName);
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        return delegate.findByLastName(lastName, cursor, limit);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        return delegate.findByNormalizedLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        return delegate.findByLastNameStartingWith(prefix);
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        return delegate.suggestLastNames(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        return delegate.findByLastNameBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        writeLock.lock();
+        try {
+            boolean deleted = delegate.deleteById(id);
+            if (deleted) {
+                unindex(id);
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        writeLock.lock();
+        try {
+            int deleted = delegate.deleteAllById(ids);
+            // IDs the delegate did not have are not indexed either, so unindexing them is a no-op
+            for (long id : distinct) {
+                unindex(id);
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return delegate.findBirthdayToday();
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        return delegate.findBirthdaysOn(day);
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        return delegate.findBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        return delegate.findBornBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        return delegate.countBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        return delegate.findByCity(city, state);
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        return delegate.groupByCity();
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        return delegate.findByZipCodeValueBetween(fromInclusive, toExclusive);
+    }
+
+    private void index(Person person) {
+        lock.writeLock().lock();
+        try {
+            if (person.getFirstName() == null && person.getLastName() == null) {
+                index.remove(person.getId());
+            } else {
+                index.put(person.getId(), person.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(long id) {
+        lock.writeLock().lock();
+        try {
+            index.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A person found by {@link PersonSearch#search(String, int)}, with the edit distance between its normalized name
+     * and the query.
+     */
+    public static final class Match {
+        private final Person person;
+        private final int distance;
+
+        private Match(Person person, int distance) {
+            this.person = person;
+            this.distance = distance;
+        }
+
+        /**
+         * Returns the matching person.
+         *
+         * @return the person
+         */
+        public Person getPerson() {
+            return person;
+        }
+
+        /**
+         * Returns the number of inserted, deleted or replaced characters between the person's name and the query.
+         *
+         * @return the edit distance, 0 for an exact match
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
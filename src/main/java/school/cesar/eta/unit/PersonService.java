@@ -2,9 +2,13 @@ package school.cesar.eta.unit;
 
 import java.time.LocalDate;
 import java.time.Period;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service class for Person business logic. Demonstrates service layer testing with mocks.
@@ -54,6 +58,30 @@ public class PersonService {
         return saved;
     }
 
+    /**
+     * Creates a batch of persons with validation, saving them with one repository call. Every person is validated
+     * before anything is saved.
+     *
+     * @param persons
+     *            the persons to create
+     * @return the created persons, each instance once, in the order they first appear
+     * @throws IllegalArgumentException
+     *             if persons is null or any person is invalid
+     */
+    public List<Person> createPersons(List<Person> persons) {
+        if (persons == null) {
+            throw new IllegalArgumentException("Persons cannot be null");
+        }
+        persons.forEach(PersonService::validatePerson);
+
+        List<Person> saved = repository.saveAll(persons);
+
+        for (Person person : saved) {
+            emailService.sendWelcomeEmail(generateEmail(person), person.getName());
+        }
+        return saved;
+    }
+
     /**
      * Finds a person by ID.
      *
@@ -68,6 +96,38 @@ public class PersonService {
                 .orElseThrow(() -> new PersonNotFoundException("Person not found with id: " + id));
     }
 
+    /**
+     * Finds a person by primitive ID, without boxing it on the lookup path.
+     *
+     * @param id
+     *            the person ID
+     * @return the person
+     * @throws PersonNotFoundException
+     *             if not found
+     */
+    public Person findPerson(long id) {
+        return repository.findById(id)
+                .orElseThrow(() -> new PersonNotFoundException("Person not found with id: " + id));
+    }
+
+    /**
+     * Finds persons by ID with one repository call.
+     *
+     * @param ids
+     *            the person IDs
+     * @return the persons, in the order their IDs first appear
+     * @throws IllegalArgumentException
+     *             if ids is null
+     * @throws PersonNotFoundException
+     *             if any ID is null or not found
+     */
+    public List<Person> findPersons(Collection<Long> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("IDs cannot be null");
+        }
+        return checkAllFound(ids, repository.findAllById(ids));
+    }
+
     /**
      * Updates a person's information.
      *
@@ -111,22 +171,42 @@ public class PersonService {
     }
 
     /**
-     * Finds all adults (18+ years old).
+     * Finds all adults (18+ years old), oldest first. A person is an adult if born on or before the date 18 years ago,
+     * so the repository answers this with a range query on birthdates instead of computing every age.
      *
      * @return list of adult persons
      */
     public List<Person> findAdults() {
-        return repository.findAll().stream().filter(this::isAdult).collect(Collectors.toList());
+        return repository.findBornOnOrBefore(adultCutoff(LocalDate.now()));
     }
 
     /**
-     * Sends birthday greetings to all persons with birthday today.
+     * Sends birthday greetings to all persons with birthday today. Persons born on February 29 are greeted in common
+     * years on the date the repository's leap day policy chooses.
      *
      * @return number of greetings sent
      */
     public int sendBirthdayGreetings() {
-        List<Person> birthdayPeople = repository.findBirthdayToday();
+        return sendGreetings(repository.findBirthdayToday());
+    }
+
+    /**
+     * Sends birthday greetings to the persons celebrating on a date, using the repository's birthday index when it has
+     * one. Persons born on February 29 are greeted on the date the policy chooses in years without that day.
+     *
+     * @param date
+     *            the date
+     * @param policy
+     *            when to greet persons born on February 29 in common years
+     * @return number of greetings sent
+     * @throws IllegalArgumentException
+     *             if date or policy is null
+     */
+    public int sendBirthdayGreetings(LocalDate date, LeapDayPolicy policy) {
+        return sendGreetings(repository.findBirthdaysCelebratedOn(date, policy));
+    }
 
+    private int sendGreetings(List<Person> birthdayPeople) {
         for (Person person : birthdayPeople) {
             String email = generateEmail(person);
             int age = calculateAge(person);
@@ -155,19 +235,21 @@ public class PersonService {
      *            the person ID
      * @param familyMemberId
      *            the family member ID
+     * @throws PersonNotFoundException
+     *             if either person is not found
      */
     public void addFamilyMember(Long personId, Long familyMemberId) {
         if (personId.equals(familyMemberId)) {
             throw new IllegalArgumentException("Cannot add self as family member");
         }
 
-        Person person = findPerson(personId);
-        Person familyMember = findPerson(familyMemberId);
+        List<Person> persons = findPersons(Arrays.asList(personId, familyMemberId));
+        Person person = persons.get(0);
+        Person familyMember = persons.get(1);
 
         person.addToFamily(familyMember);
 
-        repository.save(person);
-        repository.save(familyMember);
+        repository.saveAll(persons);
     }
 
     /**
@@ -176,16 +258,44 @@ public class PersonService {
      * @return statistics object
      */
     public PersonStatistics getStatistics() {
-        List<Person> allPersons = repository.findAll();
+        try (Stream<Person> persons = repository.streamAll()) {
+            return statisticsOf(persons);
+        }
+    }
 
-        long totalCount = allPersons.size();
-        long adultCount = allPersons.stream().filter(this::isAdult).count();
-        double averageAge = allPersons.stream().mapToInt(this::calculateAge).average().orElse(0.0);
+    /**
+     * Computes the statistics of the given persons in a single pass. Shared with {@link AsyncPersonService}.
+     */
+    static PersonStatistics statisticsOf(Stream<Person> persons) {
+        // A person without a birthday has age 0, so an age of 18 or more means the person is an adult
+        LocalDate today = LocalDate.now();
+        AgeTotals totals = persons.mapToInt(person -> calculateAge(person, today)).collect(AgeTotals::new,
+                AgeTotals::add, AgeTotals::combine);
+
+        double averageAge = totals.count > 0 ? (double) totals.ageSum / totals.count : 0.0;
+        return new PersonStatistics(totals.count, totals.adultCount, averageAge);
+    }
 
-        return new PersonStatistics(totalCount, adultCount, averageAge);
+    /**
+     * Returns the persons found if every requested ID was found. Shared with {@link AsyncPersonService}.
+     *
+     * @throws PersonNotFoundException
+     *             naming the ID that was not found, with the same message as {@link #findPerson(Long)}, or listing the
+     *             IDs if several were not found
+     */
+    static List<Person> checkAllFound(Collection<Long> ids, List<Person> found) {
+        Set<Long> foundIds = found.stream().map(Person::getId).collect(Collectors.toSet());
+        List<Long> missing = ids.stream().filter(id -> !foundIds.contains(id)).distinct().collect(Collectors.toList());
+        if (missing.size() == 1) {
+            throw new PersonNotFoundException("Person not found with id: " + missing.get(0));
+        }
+        if (!missing.isEmpty()) {
+            throw new PersonNotFoundException("Persons not found with ids: " + missing);
+        }
+        return found;
     }
 
-    private void validatePerson(Person person) {
+    static void validatePerson(Person person) {
         if (person == null) {
             throw new IllegalArgumentException("Person cannot be null");
         }
@@ -194,7 +304,7 @@ public class PersonService {
         }
     }
 
-    private String generateEmail(Person person) {
+    static String generateEmail(Person person) {
         String firstName = person.getFirstName() != null ? person.getFirstName().toLowerCase() : "";
         String lastName = person.getLastName() != null ? person.getLastName().toLowerCase() : "";
 
@@ -207,18 +317,66 @@ public class PersonService {
         }
     }
 
-    private boolean isAdult(Person person) {
+    static boolean isAdult(Person person) {
         if (person.getBirthday() == null) {
             return false;
         }
-        return calculateAge(person) >= 18;
+        return !person.getBirthday().isAfter(adultCutoff(LocalDate.now()));
     }
 
-    private int calculateAge(Person person) {
-        if (person.getBirthday() == null) {
+    /**
+     * Returns the latest birthdate of a person who is an adult on the given day. Someone born on February 29 comes of
+     * age on February 28 of a common year, as with {@link Period}.
+     */
+    static LocalDate adultCutoff(LocalDate today) {
+        return today.minusYears(18);
+    }
+
+    static int calculateAge(Person person) {
+        return calculateAge(person, LocalDate.now());
+    }
+
+    /**
+     * Returns the age in whole years on the given day, the same as {@link Period#between} but without building a period
+     * for the usual case of a birthday in the past.
+     */
+    static int calculateAge(Person person, LocalDate today) {
+        LocalDate birthday = person.getBirthday();
+        if (birthday == null) {
             return 0;
         }
-        return Period.between(person.getBirthday(), LocalDate.now()).getYears();
+        if (birthday.isAfter(today)) {
+            return Period.between(birthday, today).getYears();
+        }
+        int age = today.getYear() - birthday.getYear();
+        if (birthday.getMonthValue() > today.getMonthValue() || birthday.getMonthValue() == today.getMonthValue()
+                && birthday.getDayOfMonth() > today.getDayOfMonth()) {
+            age--;
+        }
+        return age;
+    }
+
+    /**
+     * Running totals for {@link #getStatistics()}, so the statistics take a single pass over the persons.
+     */
+    private static final class AgeTotals {
+        private long count;
+        private long adultCount;
+        private long ageSum;
+
+        void add(int age) {
+            count++;
+            ageSum += age;
+            if (age >= 18) {
+                adultCount++;
+            }
+        }
+
+        void combine(AgeTotals other) {
+            count += other.count;
+            adultCount += other.adultCount;
+            ageSum += other.ageSum;
+        }
     }
 
     /**
@@ -0,0 +1,257 @@
+package school.cesar.eta.unit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time binary snapshot of a set of persons, split into independently readable segments.
+ *
+ * <p>
+ * The file starts with a header and a directory of segments, followed by the segments themselves:
+ *
+ * <pre>
+ * magic (int) | version (int) | next ID (long) | record count (long) | segment count (int)
+ * segment count x [offset (long) | byte length (int) | record count (int) | CRC32 (int)]
+ * segments: record count x [record length (int) | {@link PersonRecordCodec} record]
+ * </pre>
+ *
+ * <p>
+ * Because the directory gives the position and size of every segment, {@link #read(Path)} reads, checks and decodes
+ * segments in parallel, one task per segment, instead of replaying records one by one. Family members are stored as IDs
+ * and linked by the caller once every record is decoded.
+ *
+ * <p>
+ * Snapshots are written to a temporary file and atomically moved into place, so a crash while writing leaves the
+ * previous snapshot intact.
+ */
+final class PersonSnapshot {
+
+    /**
+     * Default number of records per segment.
+     */
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 16;
+
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_BYTES = Long.BYTES + 3 * Integer.BYTES;
+
+    private final long nextId;
+    private final PersonRecordCodec.PersonRecord[][] segments;
+    private final int size;
+
+    private PersonSnapshot(long nextId, PersonRecordCodec.PersonRecord[][] segments, int size) {
+        this.nextId = nextId;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Writes a snapshot using the default segment size.
+     *
+     * @see #write(Path, List, long, int)
+     */
+    static void write(Path file, List<Person> persons, long nextId) throws IOException {
+        write(file, persons, nextId, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Writes a snapshot of the given persons, replacing any existing file. Segments are encoded in parallel, a few at a
+     * time, and written in order. The file is renamed into place and its directory synced, so once this returns the new
+     * snapshot survives a crash and the caller may drop the data it replaces.
+     *
+     * @param file
+     *            the snapshot file
+     * @param persons
+     *            the persons to store, which must all have an ID
+     * @param nextId
+     *            the next ID the repository would assign
+     * @param segmentRecords
+     *            the number of records per segment
+     * @throws IOException
+     *             if the file cannot be written
+     * @throws IllegalArgumentException
+     *             if segmentRecords is not positive
+     */
+    static void write(Path file, List<Person> persons, long nextId, int segmentRecords) throws IOException {
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("Segment records must be positive");
+        }
+        int segmentCount = (persons.size() + segmentRecords - 1) / segmentRecords;
+        int batchSize = Runtime.getRuntime().availableProcessors();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + segmentCount * DIRECTORY_ENTRY_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(nextId).putLong(persons.size()).putInt(segmentCount);
+            long position = header.capacity();
+            for (int first = 0; first < segmentCount; first += batchSize) {
+                ByteBuffer[] encoded = IntStream.range(first, Math.min(first + batchSize, segmentCount)).parallel()
+                        .mapToObj(segment -> encodeSegment(persons, segment * segmentRecords,
+                                Math.min((segment + 1) * segmentRecords, persons.size())))
+                        .toArray(ByteBuffer[]::new);
+                for (int i = 0; i < encoded.length; i++) {
+                    int segment = first + i;
+                    int records = Math.min((segment + 1) * segmentRecords, persons.size()) - segment * segmentRecords;
+                    int length = encoded[i].remaining();
+                    header.putLong(position).putInt(length).putInt(records).putInt(checksum(encoded[i]));
+                    writeFully(channel, encoded[i], position);
+                    position += length;
+                }
+            }
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LogEntries.forceDirectoryOf(file);
+    }
+
+    /**
+     * Reads a snapshot, decoding its segments in parallel.
+     *
+     * @param file
+     *            the snapshot file
+     * @return the decoded snapshot
+     * @throws IOException
+     *             if the file cannot be read or a segment fails its checksum
+     * @throws IllegalArgumentException
+     *             if the file is not a snapshot
+     */
+    static PersonSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a snapshot file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+            }
+            long nextId = header.getLong();
+            long recordCount = header.getLong();
+            int segmentCount = header.getInt();
+            ByteBuffer directory = ByteBuffer.allocate(segmentCount * DIRECTORY_ENTRY_BYTES);
+            readFully(channel, directory, HEADER_BYTES);
+
+            PersonRecordCodec.PersonRecord[][] segments;
+            try {
+                segments = IntStream.range(0, segmentCount).parallel()
+                        .mapToObj(segment -> readSegment(channel, directory, segment))
+                        .toArray(PersonRecordCodec.PersonRecord[][]::new);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return new PersonSnapshot(nextId, segments, (int) recordCount);
+        }
+    }
+
+    /**
+     * Returns the next ID the repository would have assigned when the snapshot was taken.
+     *
+     * @return the next ID
+     */
+    long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the number of records in the snapshot.
+     *
+     * @return the record count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every record to the given action, in the order they were written.
+     *
+     * @param action
+     *            the action to run for each record
+     */
+    void forEachRecord(Consumer<PersonRecordCodec.PersonRecord> action) {
+        for (PersonRecordCodec.PersonRecord[] segment : segments) {
+            for (PersonRecordCodec.PersonRecord record : segment) {
+                action.accept(record);
+            }
+        }
+    }
+
+    private static ByteBuffer encodeSegment(List<Person> persons, int from, int to) {
+        byte[][] records = new byte[to - from][];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            records[i - from] = PersonRecordCodec.encode(persons.get(i));
+            size += Integer.BYTES + records[i - from].length;
+        }
+        ByteBuffer segment = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            segment.putInt(record.length).put(record);
+        }
+        segment.flip();
+        return segment;
+    }
+
+    private static PersonRecordCodec.PersonRecord[] readSegment(FileChannel channel, ByteBuffer directory,
+            int segment) {
+        int entry = segment * DIRECTORY_ENTRY_BYTES;
+        long offset = directory.getLong(entry);
+        int length = directory.getInt(entry + Long.BYTES);
+        int records = directory.getInt(entry + Long.BYTES + Integer.BYTES);
+        int expectedChecksum = directory.getInt(entry + Long.BYTES + 2 * Integer.BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            readFully(channel, buffer, offset);
+            buffer.flip();
+            if (checksum(buffer) != expectedChecksum) {
+                throw new IOException("Corrupt snapshot segment " + segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        PersonRecordCodec.PersonRecord[] decoded = new PersonRecordCodec.PersonRecord[records];
+        for (int i = 0; i < records; i++) {
+            int recordLength = buffer.getInt();
+            int start = buffer.position();
+            decoded[i] = PersonRecordCodec.decode(buffer);
+            buffer.position(start + recordLength);
+        }
+        return decoded;
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
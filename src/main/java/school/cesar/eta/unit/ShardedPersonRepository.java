@@ -0,0 +1,506 @@
+package school.cesar.eta.unit;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory {@link PersonRepository} split into independent shards to let writes scale across cores.
+ *
+ * <p>
+ * Persons are partitioned by ID over a fixed number of {@link IndexedPersonRepository} shards, each with its own lock
+ * and its own last name and birthday indexes. Saves, lookups and deletes by ID only lock the shard that owns the ID, so
+ * threads working on different persons rarely contend. Sequential IDs are spread round-robin, which keeps the shards
+ * evenly filled.
+ *
+ * <p>
+ * {@link #findAll()}, {@link #count()}, {@link #findByLastName(String)} and {@link #findBirthdayToday()} fan out to
+ * every shard and merge the results. Each shard is read under its own lock, so the merged result is not a single
+ * point-in-time view while writes are running; every person in it is as it was when its shard was read.
+ *
+ * <p>
+ * CPFs are unique across shards. A save with a CPF takes one repository-wide lock while it checks every shard's CPF
+ * index and stores the person, so two persons cannot claim the same CPF in different shards; saves without a CPF do not
+ * take it. {@link #findByCpf(String)} asks each shard's index in turn.
+ *
+ * <p>
+ * IDs are generated from one shared atomic sequence rather than under a lock, which is the only state shared by all
+ * writers.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * PersonRepository repository = new ShardedPersonRepository(64);
+ * PersonService service = new PersonService(repository, emailService);
+ * }</pre>
+ */
+public class ShardedPersonRepository implements PersonRepository {
+
+    private final IndexedPersonRepository[] shards;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ReentrantLock cpfLock = new ReentrantLock();
+
+    /**
+     * Creates an empty repository with four shards per available processor, using the system clock.
+     */
+    public ShardedPersonRepository() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an empty repository with the given number of shards, using the system clock.
+     *
+     * @param shardCount
+     *            the number of shards
+     * @throws IllegalArgumentException
+     *             if shardCount is not positive
+     */
+    public ShardedPersonRepository(int shardCount) {
+        this(shardCount, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates an empty repository with the given number of shards.
+     *
+     * @param shardCount
+     *            the number of shards
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @throws IllegalArgumentException
+     *             if shardCount is not positive or clock is null
+     */
+    public ShardedPersonRepository(int shardCount, Clock clock) {
+        this(shardCount, clock, LeapDayPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates an empty repository with the given number of shards and leap day policy.
+     *
+     * @param shardCount
+     *            the number of shards
+     * @param clock
+     *            the clock used by {@link #findBirthdayToday()}
+     * @param leapDayPolicy
+     *            when {@link #findBirthdayToday()} includes persons born on February 29 in common years
+     * @throws IllegalArgumentException
+     *             if shardCount is not positive or clock or leapDayPolicy is null
+     */
+    public ShardedPersonRepository(int shardCount, Clock clock, LeapDayPolicy leapDayPolicy) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (leapDayPolicy == null) {
+            throw new IllegalArgumentException("Leap day policy cannot be null");
+        }
+        this.shards = new IndexedPersonRepository[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new IndexedPersonRepository(clock, leapDayPolicy);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        long cpf = PersonBatch.cpfOf(person);
+        if (cpf == PersonBatch.NO_CPF) {
+            return saveToShard(person);
+        }
+        cpfLock.lock();
+        try {
+            PersonBatch.checkCpfOwner(person, findIdByCpf(cpf));
+            return saveToShard(person);
+        } finally {
+            cpfLock.unlock();
+        }
+    }
+
+    private Person saveToShard(Person person) {
+        if (person.getId() == null) {
+            person.setId(nextId.getAndIncrement());
+        } else {
+            long id = person.getId();
+            nextId.accumulateAndGet(id + 1, Math::max);
+        }
+        return shardFor(person.getId()).save(person);
+    }
+
+    /**
+     * Checks the CPFs of the batch against every shard, assigns the missing IDs, then saves each shard's part of the
+     * batch under one acquisition of that shard's lock.
+     */
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        if (batch.stream().noneMatch(person -> person.getCpf() != null)) {
+            return saveAllToShards(batch);
+        }
+        cpfLock.lock();
+        try {
+            PersonBatch.checkUniqueCpfs(batch, this::findIdByCpf);
+            return saveAllToShards(batch);
+        } finally {
+            cpfLock.unlock();
+        }
+    }
+
+    private List<Person> saveAllToShards(List<Person> batch) {
+        List<List<Person>> parts = new ArrayList<>(Collections.nCopies(shards.length, null));
+        for (Person person : batch) {
+            if (person.getId() == null) {
+                person.setId(nextId.getAndIncrement());
+            } else {
+                long id = person.getId();
+                nextId.accumulateAndGet(id + 1, Math::max);
+            }
+            int shard = shardIndex(person.getId());
+            if (parts.get(shard) == null) {
+                parts.set(shard, new ArrayList<>());
+            }
+            parts.get(shard).add(person);
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (parts.get(shard) != null) {
+                shards[shard].saveAll(parts.get(shard));
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        long owner = findIdByCpf(CpfValidator.toLong(cpf));
+        return owner != PersonBatch.NO_OWNER ? findById(owner) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        return shardFor(id).findById(id);
+    }
+
+    /**
+     * Reads each shard's part of the batch under one acquisition of that shard's lock.
+     */
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        LongObjectMap<Person> found = new LongObjectMap<>();
+        List<List<Long>> parts = partition(distinct);
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (parts.get(shard) != null) {
+                for (Person person : shards[shard].findAllById(parts.get(shard))) {
+                    found.put(person.getId(), person);
+                }
+            }
+        }
+        List<Person> result = new ArrayList<>(found.size());
+        for (long id : distinct) {
+            Person person = found.get(id);
+            if (person != null) {
+                result.add(person);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return merge(shard -> shard.findByLastName(lastName));
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return merge(IndexedPersonRepository::findAll);
+    }
+
+    /**
+     * Streams the persons a page at a time in ID order, merging one page from every shard per page.
+     */
+    @Override
+    public Stream<Person> streamAll() {
+        return PageSpliterator.stream(this::findPage, count());
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        PageCursor.checkLimit(limit);
+        long afterId = PageCursor.decode(cursor, lastName);
+        int wanted = PageCursor.fetchSize(limit);
+        List<Person> fetched = mergePage(shard -> shard.findByLastNameAfter(lastName, afterId, wanted), wanted);
+        return PageCursor.toPage(fetched, limit, lastName);
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        PageCursor.checkLimit(limit);
+        return mergePage(shard -> shard.findPage(afterId, limit), limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        return shardFor(id).deleteById(id);
+    }
+
+    /**
+     * Deletes each shard's part of the batch under one acquisition of that shard's lock.
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        List<List<Long>> parts = partition(PersonBatch.distinctIds(ids));
+        int deleted = 0;
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (parts.get(shard) != null) {
+                deleted += shards[shard].deleteAllById(parts.get(shard));
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (IndexedPersonRepository shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return shardFor(id).existsById(id);
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return merge(IndexedPersonRepository::findBirthdayToday);
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        if (day == null) {
+            throw new IllegalArgumentException("Day cannot be null");
+        }
+        return merge(shard -> shard.findBirthdaysOn(day));
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name cannot be null");
+        }
+        return merge(shard -> shard.findByNormalizedLastName(lastName));
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        return merge(shard -> shard.findByLastNameStartingWith(prefix));
+    }
+
+    /**
+     * Takes the first names of every shard and keeps the overall first, each spelled as its lowest ID spells it.
+     */
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        TreeMap<String, IndexedPersonRepository.LastNameSuggestion> byName = new TreeMap<>();
+        for (IndexedPersonRepository shard : shards) {
+            for (IndexedPersonRepository.LastNameSuggestion suggestion : shard.suggestLastNameOwners(prefix, limit)) {
+                byName.merge(suggestion.normalized, suggestion,
+                        (current, candidate) -> candidate.firstId < current.firstId ? candidate : current);
+            }
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, byName.size()));
+        for (IndexedPersonRepository.LastNameSuggestion suggestion : byName.values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(suggestion.lastName);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        return mergeByBirthday(shard -> shard.findBornOnOrBefore(date));
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        if (fromInclusive == null || toExclusive == null) {
+            throw new IllegalArgumentException("Range bounds cannot be null");
+        }
+        return mergeByBirthday(shard -> shard.findBornBetween(fromInclusive, toExclusive));
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        long count = 0;
+        for (IndexedPersonRepository shard : shards) {
+            count += shard.countBornOnOrBefore(date);
+        }
+        return count;
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        Address.City key = Address.City.of(city, state);
+        List<Person> result = merge(shard -> shard.findByCity(key.getName(), key.getState()));
+        result.sort(Comparator.comparing(Person::getId));
+        return result;
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        TreeMap<Address.City, long[]> result = new TreeMap<>();
+        for (IndexedPersonRepository shard : shards) {
+            shard.groupByCity().forEach((city, ids) -> result.merge(city, ids, (current, more) -> {
+                long[] merged = Arrays.copyOf(current, current.length + more.length);
+                System.arraycopy(more, 0, merged, current.length, more.length);
+                Arrays.sort(merged);
+                return merged;
+            }));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        List<Person> result = merge(shard -> shard.findByZipCodeValueBetween(fromInclusive, toExclusive));
+        result.sort(Comparator.comparingInt((Person person) -> person.getAddress().getZipCodeValue())
+                .thenComparing(Person::getId));
+        return result;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of persons stored in one shard.
+     *
+     * @param shard
+     *            the shard index, from 0 to {@link #getShardCount()} - 1
+     * @return the number of persons in that shard
+     */
+    long countInShard(int shard) {
+        return shards[shard].count();
+    }
+
+    private int shardIndex(long id) {
+        return (int) Math.floorMod(id, (long) shards.length);
+    }
+
+    /**
+     * Splits IDs by shard. Shards without any of the IDs get null instead of an empty list.
+     */
+    private List<List<Long>> partition(long[] ids) {
+        List<List<Long>> parts = new ArrayList<>(Collections.nCopies(shards.length, null));
+        for (long id : ids) {
+            int shard = shardIndex(id);
+            if (parts.get(shard) == null) {
+                parts.set(shard, new ArrayList<>());
+            }
+            parts.get(shard).add(id);
+        }
+        return parts;
+    }
+
+    private IndexedPersonRepository shardFor(long id) {
+        return shards[shardIndex(id)];
+    }
+
+    /**
+     * Returns the ID of the person with a packed CPF, asking each shard's CPF index in turn.
+     */
+    private long findIdByCpf(long cpf) {
+        for (IndexedPersonRepository shard : shards) {
+            long owner = shard.findIdByCpf(cpf);
+            if (owner != PersonBatch.NO_OWNER) {
+                return owner;
+            }
+        }
+        return PersonBatch.NO_OWNER;
+    }
+
+    /**
+     * Merges the first {@code limit} persons of every shard, each in ID order, into the overall first {@code limit}.
+     */
+    private List<Person> mergePage(Function<IndexedPersonRepository, List<Person>> query, int limit) {
+        List<Person> result = merge(query);
+        result.sort(Comparator.comparing(Person::getId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Merges the results of every shard, each oldest first, into one list ordered by birthday and then by ID.
+     */
+    private List<Person> mergeByBirthday(Function<IndexedPersonRepository, List<Person>> query) {
+        List<Person> result = merge(query);
+        result.sort(Comparator.comparing(Person::getBirthday).thenComparing(Person::getId));
+        return result;
+    }
+
+    private List<Person> merge(Function<IndexedPersonRepository, List<Person>> query) {
+        List<List<Person>> parts = new ArrayList<>(shards.length);
+        int size = 0;
+        for (IndexedPersonRepository shard : shards) {
+            List<Person> part = query.apply(shard);
+            parts.add(part);
+            size += part.size();
+        }
+        List<Person> result = new ArrayList<>(size);
+        for (List<Person> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,305 @@
+package school.cesar.eta.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Trigram index over {@link NameNormalizer normalized} names, answering "which names are within edit distance d of this
+ * one" without comparing the query to every name.
+ *
+ * <p>
+ * Each name is padded with two spaces in front and one behind and split into overlapping three-character grams, so
+ * "ana" gives "{@code   a}", "{@code  an}", "{@code ana}" and "{@code na }". Every gram keeps a sorted posting list of
+ * the IDs whose name contains it. One insertion, deletion or substitution changes at most three grams, so a name within
+ * distance d of the query shares at least {@code g - 3d} of the query's g distinct grams. A search only reads the
+ * {@code 3d + 1} shortest posting lists of the query grams to collect candidates, since a name missing from all of them
+ * cannot reach that count, then checks each candidate against the longer lists by binary search. The survivors within
+ * the length bound are verified with a Levenshtein distance that stops as soon as it exceeds d.
+ *
+ * <p>
+ * Queries too short for the count to prune anything fall back to the names whose length is within d of the query's,
+ * which are kept in per-length posting lists.
+ *
+ * <p>
+ * This class is not thread-safe. {@link PersonSearch} only uses it under its own lock.
+ */
+final class TrigramIndex {
+
+    private static final Comparator<Hit> BY_DISTANCE = Comparator.comparingInt((Hit hit) -> hit.distance)
+            .thenComparingLong(hit -> hit.id);
+
+    private final LongObjectMap<String> names = new LongObjectMap<>();
+    private final LongObjectMap<PostingList> byGram = new LongObjectMap<>();
+    private final LongObjectMap<PostingList> byLength = new LongObjectMap<>();
+
+    /**
+     * Indexes a name under an ID, replacing the name previously indexed under it.
+     *
+     * @param id
+     *            the ID
+     * @param name
+     *            the name, normalized before it is indexed
+     */
+    void put(long id, String name) {
+        String normalized = NameNormalizer.normalize(name);
+        String previous = names.put(id, normalized);
+        if (normalized.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(id, previous);
+        }
+        for (long gram : distinctGrams(normalized)) {
+            PostingList ids = byGram.get(gram);
+            if (ids == null) {
+                ids = new PostingList();
+                byGram.put(gram, ids);
+            }
+            ids.add(id);
+        }
+        PostingList sameLength = byLength.get(normalized.length());
+        if (sameLength == null) {
+            sameLength = new PostingList();
+            byLength.put(normalized.length(), sameLength);
+        }
+        sameLength.add(id);
+    }
+
+    /**
+     * Removes the name indexed under an ID.
+     *
+     * @param id
+     *            the ID
+     * @return true if a name was indexed under the ID
+     */
+    boolean remove(long id) {
+        String previous = names.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        unindex(id, previous);
+        return true;
+    }
+
+    /**
+     * Returns the number of names indexed.
+     */
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * Finds the names within an edit distance of the query, closest first and then in ID order.
+     *
+     * @param query
+     *            the name to search, normalized before comparing
+     * @param maxDistance
+     *            the largest Levenshtein distance accepted
+     * @param limit
+     *            the maximum number of hits
+     * @return up to {@code limit} hits
+     */
+    List<Hit> search(String query, int maxDistance, int limit) {
+        String normalized = NameNormalizer.normalize(query);
+        long[] grams = distinctGrams(normalized);
+        int minShared = grams.length - 3 * maxDistance;
+        List<Hit> hits = new ArrayList<>();
+        if (minShared <= 0) {
+            for (int length = Math.max(0, normalized.length() - maxDistance); length <= normalized.length()
+                    + maxDistance; length++) {
+                PostingList ids = byLength.get(length);
+                if (ids != null) {
+                    for (int i = 0; i < ids.size; i++) {
+                        verify(ids.ids[i], normalized, maxDistance, hits);
+                    }
+                }
+            }
+        } else {
+            collectCandidates(grams, minShared, normalized, maxDistance, hits);
+        }
+        hits.sort(BY_DISTANCE);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Reads the shortest posting lists to find candidates, counts how many query grams each candidate shares, and
+     * verifies those sharing enough.
+     */
+    private void collectCandidates(long[] grams, int minShared, String query, int maxDistance, List<Hit> hits) {
+        PostingList[] lists = new PostingList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            PostingList ids = byGram.get(grams[i]);
+            lists[i] = ids != null ? ids : PostingList.EMPTY;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        int probed = grams.length - minShared + 1;
+        LongLongMap seen = new LongLongMap();
+        for (int i = 0; i < probed; i++) {
+            PostingList list = lists[i];
+            for (int j = 0; j < list.size; j++) {
+                long id = list.ids[j];
+                if (seen.containsKey(id)) {
+                    continue;
+                }
+                seen.put(id, 0L);
+                // Earlier lists did not contain the ID, so only this list and later ones add to the count
+                int shared = 1;
+                for (int k = i + 1; k < lists.length && shared + lists.length - k >= minShared; k++) {
+                    if (lists[k].contains(id)) {
+                        shared++;
+                    }
+                }
+                if (shared >= minShared) {
+                    verify(id, query, maxDistance, hits);
+                }
+            }
+        }
+    }
+
+    private void verify(long id, String query, int maxDistance, List<Hit> hits) {
+        String name = names.get(id);
+        if (Math.abs(name.length() - query.length()) > maxDistance) {
+            return;
+        }
+        int distance = boundedDistance(query, name, maxDistance);
+        if (distance <= maxDistance) {
+            hits.add(new Hit(id, distance));
+        }
+    }
+
+    private void unindex(long id, String name) {
+        for (long gram : distinctGrams(name)) {
+            removeFrom(byGram, gram, id);
+        }
+        removeFrom(byLength, name.length(), id);
+    }
+
+    private static void removeFrom(LongObjectMap<PostingList> index, long key, long id) {
+        PostingList ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.size == 0) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of a normalized name padded with two leading spaces and one trailing space, each
+     * packed into a long as three 16-bit characters.
+     */
+    static long[] distinctGrams(String name) {
+        String padded = "  " + name + " ";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Returns the Levenshtein distance between two strings, or {@code maxDistance + 1} as soon as it is known to be
+     * larger. Only the diagonal band of width {@code 2 * maxDistance + 1} is computed.
+     */
+    static int boundedDistance(String a, String b, int maxDistance) {
+        int tooFar = maxDistance + 1;
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return tooFar;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(b.length(), i + maxDistance);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = tooFar;
+            }
+            int rowMin = from == 1 ? i : tooFar;
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int above = j <= i - 1 + maxDistance ? previous[j] + 1 : tooFar;
+                int value = Math.min(Math.min(above, current[j - 1] + 1), previous[j - 1] + cost);
+                current[j] = Math.min(value, tooFar);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length()) {
+                current[to + 1] = tooFar;
+            }
+            if (rowMin > maxDistance) {
+                return tooFar;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * An ID whose name is within the searched distance, with that distance.
+     */
+    static final class Hit {
+        final long id;
+        final int distance;
+
+        Hit(long id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Sorted, growable array of IDs. IDs are usually assigned in increasing order, so adding one is normally an append.
+     */
+    private static final class PostingList {
+        static final PostingList EMPTY = new PostingList();
+
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void insertAt(int index, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package school.cesar.eta.unit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors that run each task on a virtual thread when the JVM supports them (JDK 21 and later).
+ *
+ * <p>
+ * The project targets Java 11, so the virtual thread factory method is looked up at runtime instead of being compiled
+ * against. On older JVMs the executors fall back to a cached pool of daemon platform threads.
+ */
+final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    private VirtualThreads() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Tells whether executors created by {@link #newPerTaskExecutor(String)} use virtual threads.
+     *
+     * @return true on JDK 21 and later
+     */
+    static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task, or a cached pool of daemon threads when
+     * virtual threads are not available.
+     *
+     * @param name
+     *            prefix of the names of the fallback platform threads
+     * @return the executor
+     */
+    static ExecutorService newPerTaskExecutor(String name) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create virtual thread executor", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static MethodHandle findVirtualThreadExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
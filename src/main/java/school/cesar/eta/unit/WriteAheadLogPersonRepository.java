@@ -0,0 +1,1034 @@
+package school.cesar.eta.unit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Durable {@link PersonRepository} that appends every change to a write-ahead log.
+ *
+ * <p>
+ * Reads are served by an in-memory {@link IndexedPersonRepository}. Every {@link #save(Person)} and
+ * {@link #deleteById(long)} first appends an entry to the log file, and applies it in memory only once the entry is as
+ * durable as the {@link Durability} promises, so readers never see a change that could still be lost. Changes are
+ * applied in log order. If the append or the sync fails, the change is not applied and an ID generated for it is taken
+ * back from the person; after a failed sync the entry may still reach the disk and be replayed on the next start, as
+ * with any write whose commit failed. When the repository is opened, the log is replayed to rebuild the in-memory
+ * state; a torn entry at the end of the log, left by a crash during a write, is discarded. A save that would give a CPF
+ * to a second person is rejected with a {@link DuplicateCpfException} before anything is appended.
+ *
+ * <p>
+ * The cost of {@code fsync} is controlled by {@link Durability}:
+ * <ul>
+ * <li>{@link Durability#GROUP_COMMIT}: a write returns only once it is on disk, but concurrent writers share one
+ * {@code fsync}. The first waiting writer becomes the leader, optionally waits {@code groupCommitWindow} for more
+ * writers to join, and syncs the log for all of them.</li>
+ * <li>{@link Durability#PERIODIC}: a write returns as soon as it reaches the operating system, and a background thread
+ * syncs the log every {@code groupCommitWindow}. At most one window of writes can be lost on a power failure.</li>
+ * </ul>
+ *
+ * <p>
+ * Updates supersede earlier entries of the same person, so the log grows faster than the data. When the log is larger
+ * than {@code compactionRatio} times the live data, a background thread rewrites it with only the latest entry of each
+ * person. Writers are only blocked while the entries appended during the rewrite are copied over.
+ *
+ * <p>
+ * Replaying a long log makes startup slow. {@link #checkpoint()} writes a binary snapshot of the whole repository next
+ * to the log and empties the log; on the next start the snapshot is decoded in parallel and only the entries logged
+ * after it are replayed.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * WriteAheadLogPersonRepository repository = new WriteAheadLogPersonRepository.Builder()
+ *         .logFile(Paths.get("persons.wal")).durability(Durability.GROUP_COMMIT)
+ *         .groupCommitWindow(Duration.ofMillis(2)).build();
+ * }</pre>
+ */
+public class WriteAheadLogPersonRepository implements PersonRepository, Closeable {
+
+    /**
+     * How a write waits for the log to reach the disk.
+     */
+    public enum Durability {
+        /**
+         * Writes wait for an {@code fsync} shared with concurrent writers.
+         */
+        GROUP_COMMIT,
+        /**
+         * Writes do not wait; the log is synced in the background every group commit window.
+         */
+        PERIODIC
+    }
+
+    private static final int MAGIC = 0x5057414C; // "PWAL"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final byte SEQUENCE = 3;
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final Durability durability;
+    private final long groupCommitNanos;
+    private final double compactionRatio;
+    private final long compactionMinBytes;
+    private final IndexedPersonRepository state;
+    private final Object appendLock = new Object();
+    private final Object syncMonitor = new Object();
+    private final Object compactionLock = new Object();
+    private final LongLongMap liveSizes = new LongLongMap();
+    private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+    private final ExecutorService compactor;
+    private final ScheduledExecutorService periodicSyncer;
+    private final AtomicLong syncCount = new AtomicLong();
+    private volatile FileChannel channel;
+    private volatile long appendedSeq;
+    private long logSize;
+    private long liveBytes;
+    private long nextId = 1;
+    private boolean compactionScheduled;
+    private boolean hasSnapshot;
+    private long durableSeq;
+    private boolean syncing;
+
+    private WriteAheadLogPersonRepository(Builder builder) throws IOException {
+        this.logFile = builder.logFile;
+        this.snapshotFile = builder.snapshotFile != null ? builder.snapshotFile
+                : logFile.resolveSibling(logFile.getFileName() + ".snapshot");
+        this.durability = builder.durability;
+        this.groupCommitNanos = builder.groupCommitWindow.toNanos();
+        this.compactionRatio = builder.compactionRatio;
+        this.compactionMinBytes = builder.compactionMinBytes;
+        this.state = new IndexedPersonRepository(builder.clock, builder.leapDayPolicy);
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.compactor = Executors.newSingleThreadExecutor(daemonThreads("person-wal-compactor"));
+        if (durability == Durability.PERIODIC) {
+            this.periodicSyncer = Executors.newSingleThreadScheduledExecutor(daemonThreads("person-wal-syncer"));
+            periodicSyncer.scheduleWithFixedDelay(this::syncInBackground, groupCommitNanos, groupCommitNanos,
+                    TimeUnit.NANOSECONDS);
+        } else {
+            this.periodicSyncer = null;
+        }
+    }
+
+    /**
+     * Builder for {@link WriteAheadLogPersonRepository}.
+     */
+    public static class Builder {
+        private Path logFile;
+        private Path snapshotFile;
+        private Durability durability = Durability.GROUP_COMMIT;
+        private Duration groupCommitWindow = Duration.ZERO;
+        private double compactionRatio = 2.0;
+        private long compactionMinBytes = 4L * 1024 * 1024;
+        private Clock clock = Clock.systemDefaultZone();
+        private LeapDayPolicy leapDayPolicy = LeapDayPolicy.DEFAULT;
+
+        public Builder logFile(Path logFile) {
+            this.logFile = logFile;
+            return this;
+        }
+
+        /**
+         * Sets the file written by {@link #checkpoint()}. Defaults to the log file name followed by {@code .snapshot}.
+         */
+        public Builder snapshotFile(Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        public Builder durability(Durability durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        /**
+         * Sets how long a group commit leader waits for more writers before syncing, or the sync interval in
+         * {@link Durability#PERIODIC} mode. Longer windows mean fewer {@code fsync} calls and slower acknowledgements.
+         */
+        public Builder groupCommitWindow(Duration groupCommitWindow) {
+            this.groupCommitWindow = groupCommitWindow;
+            return this;
+        }
+
+        /**
+         * Sets how many times larger than the live data the log may grow before it is compacted.
+         */
+        public Builder compactionRatio(double compactionRatio) {
+            this.compactionRatio = compactionRatio;
+            return this;
+        }
+
+        /**
+         * Sets the log size below which compaction never runs.
+         */
+        public Builder compactionMinBytes(long compactionMinBytes) {
+            this.compactionMinBytes = compactionMinBytes;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets when {@link #findBirthdayToday()} includes persons born on February 29 in common years. Defaults to
+         * {@link LeapDayPolicy#DEFAULT}.
+         */
+        public Builder leapDayPolicy(LeapDayPolicy leapDayPolicy) {
+            this.leapDayPolicy = leapDayPolicy;
+            return this;
+        }
+
+        /**
+         * Opens the log, replaying any existing entries.
+         *
+         * @return the repository
+         * @throws IOException
+         *             if the log cannot be opened or read
+         * @throws IllegalArgumentException
+         *             if a setting is missing or invalid
+         */
+        public WriteAheadLogPersonRepository build() throws IOException {
+            if (logFile == null) {
+                throw new IllegalArgumentException("Log file is required");
+            }
+            if (durability == null) {
+                throw new IllegalArgumentException("Durability is required");
+            }
+            if (groupCommitWindow == null || groupCommitWindow.isNegative()) {
+                throw new IllegalArgumentException("Group commit window cannot be negative");
+            }
+            if (durability == Durability.PERIODIC && groupCommitWindow.isZero()) {
+                throw new IllegalArgumentException("Periodic durability requires a positive group commit window");
+            }
+            if (compactionRatio <= 1.0) {
+                throw new IllegalArgumentException("Compaction ratio must be greater than 1");
+            }
+            if (compactionMinBytes < 0) {
+                throw new IllegalArgumentException("Compaction minimum size cannot be negative");
+            }
+            if (clock == null) {
+                throw new IllegalArgumentException("Clock is required");
+            }
+            if (leapDayPolicy == null) {
+                throw new IllegalArgumentException("Leap day policy is required");
+            }
+            return new WriteAheadLogPersonRepository(this);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        long cpf = PersonBatch.cpfOf(person);
+        Long previousId = person.getId();
+        PendingWrite write;
+        synchronized (appendLock) {
+            // Only this lock changes the state and the pending writes, so a CPF found free here is still free when the
+            // person is applied
+            if (cpf != PersonBatch.NO_CPF) {
+                PersonBatch.checkCpfOwner(person, cpfOwner(cpf));
+            }
+            if (previousId == null) {
+                person.setId(nextId);
+            }
+            long seq;
+            byte[] record;
+            try {
+                record = PersonRecordCodec.encode(person);
+                seq = append(SAVE, record);
+            } catch (RuntimeException e) {
+                person.setId(previousId);
+                throw e;
+            }
+            long id = person.getId();
+            nextId = Math.max(nextId, id + 1);
+            trackSave(id, record.length);
+            write = enqueue(new PendingWrite(seq, List.of(person), new long[] { cpf }, List.of()));
+            scheduleCompactionIfNeeded();
+        }
+        commit(write, () -> person.setId(previousId));
+        return person;
+    }
+
+    /**
+     * Saves the batch with a single log write and, with {@link Durability#GROUP_COMMIT}, a single sync. Every record is
+     * encoded before anything is written, so a person that cannot be encoded leaves the whole batch unsaved and the
+     * generated IDs unassigned.
+     */
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        Long[] previousIds = new Long[batch.size()];
+        Runnable rollback = () -> {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setId(previousIds[i]);
+            }
+        };
+        PendingWrite write;
+        synchronized (appendLock) {
+            PersonBatch.checkUniqueCpfs(batch, this::cpfOwner);
+            List<byte[]> records = new ArrayList<>(batch.size());
+            long[] cpfs = new long[batch.size()];
+            long next = nextId;
+            long seq;
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Person person = batch.get(i);
+                    previousIds[i] = person.getId();
+                    if (person.getId() == null) {
+                        person.setId(next);
+                    }
+                    next = Math.max(next, person.getId() + 1);
+                    cpfs[i] = PersonBatch.cpfOf(person);
+                    records.add(PersonRecordCodec.encode(person));
+                }
+                seq = appendAll(SAVE, records);
+            } catch (RuntimeException e) {
+                rollback.run();
+                throw e;
+            }
+            nextId = next;
+            for (int i = 0; i < batch.size(); i++) {
+                trackSave(batch.get(i).getId(), records.get(i).length);
+            }
+            write = enqueue(new PendingWrite(seq, batch, cpfs, List.of()));
+            scheduleCompactionIfNeeded();
+        }
+        commit(write, rollback);
+        return batch;
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return state.findById(id);
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        return state.findById(id);
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        return state.findByCpf(cpf);
+    }
+
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        return state.findAllById(ids);
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        return state.findByLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        return state.findByNormalizedLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        return state.findByLastNameStartingWith(prefix);
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        return state.suggestLastNames(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        return state.findAll();
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        return state.streamAll();
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        return state.findByLastName(lastName, cursor, limit);
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        return state.findPage(afterId, limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        PendingWrite write;
+        synchronized (appendLock) {
+            if (!exists(id)) {
+                return false;
+            }
+            long seq = append(DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+            trackDelete(id);
+            write = enqueue(new PendingWrite(seq, List.of(), new long[0], List.of(id)));
+            scheduleCompactionIfNeeded();
+        }
+        commit(write, () -> {
+        });
+        return true;
+    }
+
+    /**
+     * Deletes the batch with a single log write and, with {@link Durability#GROUP_COMMIT}, a single sync.
+     */
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        List<Long> deleted = new ArrayList<>(distinct.length);
+        PendingWrite write;
+        synchronized (appendLock) {
+            List<byte[]> payloads = new ArrayList<>(distinct.length);
+            for (long id : distinct) {
+                if (exists(id)) {
+                    deleted.add(id);
+                    payloads.add(ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+                }
+            }
+            if (deleted.isEmpty()) {
+                return 0;
+            }
+            long seq = appendAll(DELETE, payloads);
+            for (long id : deleted) {
+                trackDelete(id);
+            }
+            write = enqueue(new PendingWrite(seq, List.of(), new long[0], deleted));
+            scheduleCompactionIfNeeded();
+        }
+        commit(write, () -> {
+        });
+        return deleted.size();
+    }
+
+    @Override
+    public long count() {
+        return state.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return state.existsById(id);
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return state.existsById(id);
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        return state.findBirthdayToday();
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        return state.findBirthdaysOn(day);
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        return state.findBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        return state.findBornBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        return state.countBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        return this.state.findByCity(city, state);
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        return state.groupByCity();
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        return state.findByZipCodeValueBetween(fromInclusive, toExclusive);
+    }
+
+    /**
+     * Rewrites the log keeping only the latest entry of each person. Runs in the calling thread; it is also triggered
+     * automatically in the background when the log outgrows the compaction ratio.
+     *
+     * @throws UncheckedIOException
+     *             if the log cannot be rewritten; the current log is left untouched
+     */
+    public void compact() {
+        Path compacted = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        synchronized (compactionLock) {
+            try {
+                compactInto(compacted);
+            } catch (IOException e) {
+                deleteQuietly(compacted);
+                throw new UncheckedIOException("Could not compact write-ahead log", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the whole repository and empties the log, so the next start only decodes the snapshot.
+     * Writes are blocked until the snapshot is on disk.
+     *
+     * <p>
+     * The snapshot is moved into place before the log is emptied. If the process stops in between, the next start loads
+     * the new snapshot and replays the old log over it, which leads to the same state.
+     *
+     * @throws UncheckedIOException
+     *             if the snapshot cannot be written or the log cannot be emptied
+     */
+    public void checkpoint() {
+        synchronized (compactionLock) {
+            synchronized (appendLock) {
+                acquireSyncLeadership(Long.MAX_VALUE);
+                try {
+                    channel.force(false);
+                    applyPending(appendedSeq);
+                    state.writeSnapshot(snapshotFile);
+                    channel.truncate(FILE_HEADER_BYTES);
+                    channel.force(true);
+                    logSize = FILE_HEADER_BYTES;
+                    liveSizes.clear();
+                    liveBytes = 0;
+                    hasSnapshot = true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not write checkpoint", e);
+                } finally {
+                    releaseSyncLeadership(appendedSeq);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current size of the log file in bytes.
+     *
+     * @return the log size
+     */
+    public long getLogSize() {
+        synchronized (appendLock) {
+            return logSize;
+        }
+    }
+
+    /**
+     * Returns how many times the log has been synced to disk, a measure of how well writes are being grouped.
+     *
+     * @return the number of {@code fsync} calls
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Syncs pending writes, stops the background threads and closes the log.
+     *
+     * @throws IOException
+     *             if the log cannot be synced or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (periodicSyncer != null) {
+            periodicSyncer.shutdown();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (appendLock) {
+            try {
+                sync(appendedSeq, 0);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Appends one entry at the end of the log. Must be called while holding the append lock.
+     */
+    private long append(byte type, byte[] payload) {
+        ByteBuffer entry = LogEntries.encode(type, payload);
+        try {
+            LogEntries.writeFully(channel, entry, logSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to write-ahead log", e);
+        }
+        logSize += entry.capacity();
+        return ++appendedSeq;
+    }
+
+    /**
+     * Appends entries at the end of the log with a single write, returning the sequence number of the last one. Must be
+     * called while holding the append lock.
+     */
+    private long appendAll(byte type, List<byte[]> payloads) {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += LogEntries.size(payload.length);
+        }
+        ByteBuffer entries = ByteBuffer.allocate(size);
+        for (byte[] payload : payloads) {
+            entries.put(LogEntries.encode(type, payload));
+        }
+        entries.flip();
+        try {
+            LogEntries.writeFully(channel, entries, logSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to write-ahead log", e);
+        }
+        logSize += size;
+        appendedSeq += payloads.size();
+        return appendedSeq;
+    }
+
+    private void awaitDurable(long seq) {
+        if (durability == Durability.GROUP_COMMIT) {
+            sync(seq, groupCommitNanos);
+        }
+    }
+
+    /**
+     * Queues a logged change until its entries are durable. In {@link Durability#PERIODIC} mode a change is applied as
+     * soon as it is appended. Must be called while holding the append lock.
+     */
+    private PendingWrite enqueue(PendingWrite write) {
+        pending.addLast(write);
+        if (durability == Durability.PERIODIC) {
+            applyPending(appendedSeq);
+        }
+        return write;
+    }
+
+    /**
+     * Waits until the change is durable, then applies it along with every earlier pending change, in log order. If the
+     * sync fails and no other sync has covered the change since, drops the change and runs the rollback instead.
+     */
+    private void commit(PendingWrite write, Runnable rollback) {
+        UncheckedIOException failure = null;
+        try {
+            awaitDurable(write.seq);
+        } catch (UncheckedIOException e) {
+            failure = e;
+        }
+        synchronized (appendLock) {
+            long durableUpTo = durableSeq();
+            if (failure != null && durableUpTo < write.seq) {
+                pending.remove(write);
+                rollback.run();
+                throw failure;
+            }
+            applyPending(durableUpTo);
+        }
+    }
+
+    /**
+     * Applies the pending changes logged up to the given entry to the in-memory state. Must be called while holding the
+     * append lock.
+     */
+    private void applyPending(long durableUpTo) {
+        while (!pending.isEmpty() && pending.peekFirst().seq <= durableUpTo) {
+            PendingWrite write = pending.pollFirst();
+            if (!write.saves.isEmpty()) {
+                state.saveAll(write.saves);
+            }
+            if (!write.deletes.isEmpty()) {
+                state.deleteAllById(write.deletes);
+            }
+        }
+    }
+
+    private long durableSeq() {
+        synchronized (syncMonitor) {
+            return durableSeq;
+        }
+    }
+
+    /**
+     * Returns the ID of the person holding a packed CPF once the pending changes are applied, or
+     * {@link PersonBatch#NO_OWNER}. Must be called while holding the append lock.
+     */
+    private long cpfOwner(long cpf) {
+        long owner = state.findIdByCpf(cpf);
+        for (PendingWrite write : pending) {
+            for (int i = 0; i < write.saves.size(); i++) {
+                long id = write.saves.get(i).getId();
+                if (write.cpfs[i] == cpf) {
+                    owner = id;
+                } else if (owner == id) {
+                    owner = PersonBatch.NO_OWNER;
+                }
+            }
+            if (write.deletes.contains(owner)) {
+                owner = PersonBatch.NO_OWNER;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Returns whether a person exists once the pending changes are applied. Must be called while holding the append
+     * lock.
+     */
+    private boolean exists(long id) {
+        boolean exists = state.existsById(id);
+        for (PendingWrite write : pending) {
+            for (Person person : write.saves) {
+                if (person.getId() == id) {
+                    exists = true;
+                }
+            }
+            if (write.deletes.contains(id)) {
+                exists = false;
+            }
+        }
+        return exists;
+    }
+
+    /**
+     * Makes the log durable up to the given entry. If another thread is already syncing, waits for it and only syncs
+     * again if its sync did not cover the entry.
+     */
+    private void sync(long seq, long windowNanos) {
+        if (!acquireSyncLeadership(seq)) {
+            return;
+        }
+        long target = 0;
+        try {
+            if (windowNanos > 0) {
+                LockSupport.parkNanos(windowNanos);
+            }
+            target = appendedSeq;
+            channel.force(false);
+            syncCount.incrementAndGet();
+        } catch (IOException e) {
+            target = 0;
+            throw new UncheckedIOException("Could not sync write-ahead log", e);
+        } finally {
+            releaseSyncLeadership(target);
+        }
+    }
+
+    /**
+     * Waits until the given entry is durable or no other thread is syncing. Returns true if the caller became the sync
+     * leader and must sync and then call {@link #releaseSyncLeadership(long)}.
+     */
+    private boolean acquireSyncLeadership(long seq) {
+        synchronized (syncMonitor) {
+            boolean interrupted = false;
+            while (durableSeq < seq && syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableSeq >= seq) {
+                return false;
+            }
+            syncing = true;
+            return true;
+        }
+    }
+
+    private void releaseSyncLeadership(long durableUpTo) {
+        synchronized (syncMonitor) {
+            durableSeq = Math.max(durableSeq, durableUpTo);
+            syncing = false;
+            syncMonitor.notifyAll();
+        }
+    }
+
+    private void syncInBackground() {
+        try {
+            sync(appendedSeq, 0);
+        } catch (UncheckedIOException e) {
+            // Keep the previous durable point; the next run retries.
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (!compactionScheduled && logSize > compactionMinBytes && logSize > liveBytes * compactionRatio) {
+            compactionScheduled = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (UncheckedIOException e) {
+                    // The current log stays valid; compaction is retried after the next write.
+                } finally {
+                    synchronized (appendLock) {
+                        compactionScheduled = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies the latest entry of each person to a new file, then, under the append lock, copies the entries appended
+     * meanwhile and atomically replaces the log.
+     */
+    private void compactInto(Path compacted) throws IOException {
+        FileChannel source;
+        long end;
+        boolean keepDeletes;
+        synchronized (appendLock) {
+            source = channel;
+            end = logSize;
+            keepDeletes = hasSnapshot;
+        }
+
+        // Deletes must survive compaction while a snapshot still holds the deleted persons.
+        LongLongMap latest = new LongLongMap();
+        LogEntries.read(source, FILE_HEADER_BYTES, end, (type, offset, payload) -> {
+            if (type == SAVE) {
+                latest.put(PersonRecordCodec.readId(payload, payload.position()), offset);
+            } else if (type == DELETE && keepDeletes) {
+                latest.put(payload.getLong(payload.position()), offset);
+            } else if (type == DELETE) {
+                latest.remove(payload.getLong(payload.position()));
+            }
+        });
+        long[] offsets = new long[latest.size()];
+        int[] count = { 0 };
+        latest.forEach((id, offset) -> offsets[count[0]++] = offset);
+        Arrays.sort(offsets);
+
+        FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long position = writeFileHeader(target);
+            for (long offset : offsets) {
+                position += LogEntries.copy(source, offset, target, position);
+            }
+            synchronized (appendLock) {
+                ByteBuffer sequence = LogEntries.encode(SEQUENCE,
+                        ByteBuffer.allocate(Long.BYTES).putLong(nextId).array());
+                LogEntries.writeFully(target, sequence, position);
+                position += sequence.capacity();
+                for (long offset = end; offset < logSize;) {
+                    long copied = LogEntries.copy(channel, offset, target, position);
+                    offset += copied;
+                    position += copied;
+                }
+                acquireSyncLeadership(Long.MAX_VALUE);
+                try {
+                    target.force(true);
+                    Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    LogEntries.forceDirectoryOf(logFile);
+                    FileChannel previous = channel;
+                    channel = target;
+                    logSize = position;
+                    previous.close();
+                } finally {
+                    releaseSyncLeadership(appendedSeq);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (channel != target) {
+                target.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the log into the in-memory state and truncates a torn tail.
+     */
+    private void recover() throws IOException {
+        PersonSnapshot snapshot = null;
+        if (Files.exists(snapshotFile)) {
+            snapshot = PersonSnapshot.read(snapshotFile);
+            hasSnapshot = true;
+            nextId = snapshot.getNextId();
+        }
+        if (channel.size() == 0) {
+            logSize = writeFileHeader(channel);
+            channel.force(true);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            LogEntries.readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a write-ahead log file: " + logFile);
+            }
+            if (header.getInt(Integer.BYTES) != VERSION) {
+                throw new IllegalArgumentException(
+                        "Unsupported write-ahead log version: " + header.getInt(Integer.BYTES));
+            }
+        }
+
+        LongObjectMap<PersonRecordCodec.PersonRecord> replayed = new LongObjectMap<>();
+        LongLongMap deleted = new LongLongMap();
+        long[] maxId = { 0 };
+        long validEnd = LogEntries.read(channel, FILE_HEADER_BYTES, channel.size(), (type, offset, payload) -> {
+            if (type == SAVE) {
+                int size = payload.remaining();
+                PersonRecordCodec.PersonRecord record = PersonRecordCodec.decode(payload);
+                long id = record.getPerson().getId();
+                replayed.put(id, record);
+                deleted.remove(id);
+                trackSave(id, size);
+                maxId[0] = Math.max(maxId[0], id);
+            } else if (type == DELETE) {
+                long id = payload.getLong();
+                replayed.remove(id);
+                deleted.put(id, offset);
+                trackDelete(id);
+                maxId[0] = Math.max(maxId[0], id);
+            } else if (type == SEQUENCE) {
+                nextId = Math.max(nextId, payload.getLong());
+            }
+        });
+        if (validEnd < channel.size()) {
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        logSize = validEnd;
+        nextId = Math.max(nextId, maxId[0] + 1);
+
+        List<PersonRecordCodec.PersonRecord> records = new ArrayList<>(
+                (snapshot != null ? snapshot.size() : 0) + replayed.size());
+        if (snapshot != null) {
+            snapshot.forEachRecord(record -> {
+                long id = record.getPerson().getId();
+                if (!replayed.containsKey(id) && !deleted.containsKey(id)) {
+                    records.add(record);
+                }
+            });
+        }
+        replayed.forEachValue(records::add);
+        state.restore(records, nextId);
+    }
+
+    /**
+     * Accounts for a save entry in the live data size. Must be called while holding the append lock.
+     */
+    private void trackSave(long id, int payloadLength) {
+        liveBytes += LogEntries.size(payloadLength) - liveSizes.get(id, 0);
+        liveSizes.put(id, LogEntries.size(payloadLength));
+    }
+
+    /**
+     * Accounts for a delete entry in the live data size. Once a snapshot exists, the delete entry is live data itself,
+     * since it hides the person stored in the snapshot. Must be called while holding the append lock.
+     */
+    private void trackDelete(long id) {
+        liveBytes -= liveSizes.get(id, 0);
+        if (hasSnapshot) {
+            liveSizes.put(id, LogEntries.size(Long.BYTES));
+            liveBytes += LogEntries.size(Long.BYTES);
+        } else {
+            liveSizes.remove(id);
+        }
+    }
+
+    /**
+     * A logged change waiting for its entries to become durable before it is applied to the in-memory state. The
+     * sequence number is the one of its last entry, and the CPFs are those of the saved persons when they were logged.
+     */
+    private static final class PendingWrite {
+        final long seq;
+        final List<Person> saves;
+        final long[] cpfs;
+        final List<Long> deletes;
+
+        PendingWrite(long seq, List<Person> saves, long[] cpfs, List<Long> deletes) {
+            this.seq = seq;
+            this.saves = saves;
+            this.cpfs = cpfs;
+            this.deletes = deletes;
+        }
+    }
+
+    private static long writeFileHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        LogEntries.writeFully(target, header, 0);
+        return FILE_HEADER_BYTES;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Leftover file is overwritten by the next compaction.
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
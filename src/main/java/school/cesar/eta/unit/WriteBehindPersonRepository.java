@@ -0,0 +1,716 @@
+package school.cesar.eta.unit;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link PersonRepository} decorator that buffers saves of existing persons and writes them to the delegate in batches.
+ *
+ * <p>
+ * Saving a person that already has an ID only records it as dirty. Saving it again before the buffer is flushed
+ * replaces the buffered copy, so a burst of updates to the same person, like the ones {@link PersonService} makes when
+ * adding family members, reaches the delegate as a single write. The buffer is flushed with
+ * {@link PersonRepository#saveAll(Collection)} once it holds the maximum batch size, every flush interval from a
+ * background thread, and on {@link #flush()} or {@link #close()}.
+ *
+ * <p>
+ * Persons without an ID are saved straight away, since only the delegate can assign their ID. Deletes are also written
+ * through and drop any buffered copy. Lookups by ID are answered from the buffer first, so callers always read their
+ * own writes; every other query flushes the buffer before delegating, because a buffered save may change which persons
+ * match.
+ *
+ * <p>
+ * Since a buffered save reaches the delegate later, its CPF is checked when it is saved: a save that would give a
+ * person the CPF of another person, stored or buffered, is rejected straight away with a {@link DuplicateCpfException}.
+ * Saves that carry a CPF are checked and stored one at a time, so two concurrent saves cannot both claim the same CPF.
+ *
+ * <p>
+ * A buffered person stays in the buffer until the delegate has stored it. If a background flush fails, the persons stay
+ * buffered and are written by the next flush; {@link #flush()} reports the failure to its caller. If instead the
+ * delegate rejects a batch because of one of its persons, with an {@link IllegalArgumentException} or a
+ * {@link DuplicateCpfException}, the batch is saved again one person at a time, so only the rejected persons are
+ * dropped from the buffer. They are kept, with the reason, until {@link #drainRejected()} is called, and the
+ * {@link #flush()} that rejected them throws the first reason; queries that flush do not, so a bad save never blocks
+ * other callers. Only the most recent rejections, up to a configurable maximum, are kept; older ones are forgotten, so
+ * a caller that never drains them does not leak memory.
+ *
+ * <p>
+ * <b>Example usage:</b>
+ *
+ * <pre>{@code
+ * try (WriteBehindPersonRepository repository = new WriteBehindPersonRepository.Builder().delegate(mappedRepository)
+ *         .maxBatchSize(512).flushInterval(Duration.ofMillis(50)).build()) {
+ *     PersonService service = new PersonService(repository, emailService);
+ *     // ...
+ * }
+ * }</pre>
+ */
+public class WriteBehindPersonRepository implements PersonRepository, AutoCloseable {
+
+    private final PersonRepository delegate;
+    private final int maxBatchSize;
+    private final int maxRejected;
+    private final ReentrantLock cpfLock = new ReentrantLock();
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<Long, Pending> dirty = new LinkedHashMap<>();
+    private final Deque<RejectedSave> rejected = new ArrayDeque<>();
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong flushedBatchCount = new AtomicLong();
+
+    private WriteBehindPersonRepository(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxRejected = builder.maxRejected;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "person-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = builder.flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flushInBackground, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Builder for {@link WriteBehindPersonRepository}.
+     */
+    public static class Builder {
+        private PersonRepository delegate;
+        private int maxBatchSize = 256;
+        private Duration flushInterval = Duration.ofMillis(100);
+        private int maxRejected = 1024;
+
+        public Builder delegate(PersonRepository delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets how many dirty persons trigger a flush, which is also the size of each batch written to the delegate.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets how often the background thread flushes, which bounds how long a save stays buffered.
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Sets how many rejected saves are kept for {@link WriteBehindPersonRepository#drainRejected()}; beyond it the
+         * oldest are forgotten.
+         */
+        public Builder maxRejected(int maxRejected) {
+            this.maxRejected = maxRejected;
+            return this;
+        }
+
+        /**
+         * Creates the repository and starts its background flush thread.
+         *
+         * @return the write-behind repository
+         * @throws IllegalArgumentException
+         *             if a setting is missing or invalid
+         */
+        public WriteBehindPersonRepository build() {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate repository is required");
+            }
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("Maximum batch size must be positive");
+            }
+            if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive");
+            }
+            if (maxRejected <= 0) {
+                throw new IllegalArgumentException("Maximum rejected saves must be positive");
+            }
+            return new WriteBehindPersonRepository(this);
+        }
+    }
+
+    @Override
+    public Person save(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+        List<Person> batch = List.of(person);
+        boolean full;
+        boolean locked = lockCpfs(batch);
+        try {
+            checkCpfs(batch);
+            if (person.getId() == null) {
+                writeLock.lock();
+                try {
+                    return delegate.save(person);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            full = buffer(batch);
+        } finally {
+            if (locked) {
+                cpfLock.unlock();
+            }
+        }
+        if (full) {
+            writeBuffer();
+        }
+        return person;
+    }
+
+    /**
+     * Saves the persons without an ID straight away in one batch and buffers the others.
+     */
+    @Override
+    public List<Person> saveAll(Collection<Person> persons) {
+        List<Person> batch = PersonBatch.distinctPersons(persons);
+        boolean full;
+        boolean locked = lockCpfs(batch);
+        try {
+            checkCpfs(batch);
+            List<Person> withoutId = new ArrayList<>();
+            List<Person> withId = new ArrayList<>();
+            for (Person person : batch) {
+                (person.getId() == null ? withoutId : withId).add(person);
+            }
+            if (!withoutId.isEmpty()) {
+                writeLock.lock();
+                try {
+                    delegate.saveAll(withoutId);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            full = buffer(withId);
+        } finally {
+            if (locked) {
+                cpfLock.unlock();
+            }
+        }
+        if (full) {
+            writeBuffer();
+        }
+        return batch;
+    }
+
+    @Override
+    public Optional<Person> findById(Long id) {
+        return id != null ? findById(id.longValue()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Person> findById(long id) {
+        Pending pending = pending(id);
+        return pending != null ? Optional.of(pending.person) : delegate.findById(id);
+    }
+
+    @Override
+    public Optional<Person> findByCpf(String cpf) {
+        writeBuffer();
+        return delegate.findByCpf(cpf);
+    }
+
+    /**
+     * Answers buffered IDs from the buffer and reads the rest from the delegate in one batch.
+     */
+    @Override
+    public List<Person> findAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        Person[] found = new Person[distinct.length];
+        List<Long> missing = new ArrayList<>();
+        bufferLock.lock();
+        try {
+            for (int i = 0; i < distinct.length; i++) {
+                Pending pending = dirty.get(distinct[i]);
+                if (pending != null) {
+                    found[i] = pending.person;
+                } else {
+                    missing.add(distinct[i]);
+                }
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+        if (!missing.isEmpty()) {
+            LongObjectMap<Person> loaded = new LongObjectMap<>(missing.size());
+            delegate.findAllById(missing).forEach(person -> loaded.put(person.getId(), person));
+            for (int i = 0; i < distinct.length; i++) {
+                if (found[i] == null) {
+                    found[i] = loaded.get(distinct[i]);
+                }
+            }
+        }
+        List<Person> result = new ArrayList<>(distinct.length);
+        for (Person person : found) {
+            if (person != null) {
+                result.add(person);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Person> findByLastName(String lastName) {
+        writeBuffer();
+        return delegate.findByLastName(lastName);
+    }
+
+    @Override
+    public Page<Person> findByLastName(String lastName, String cursor, int limit) {
+        writeBuffer();
+        return delegate.findByLastName(lastName, cursor, limit);
+    }
+
+    @Override
+    public List<Person> findByNormalizedLastName(String lastName) {
+        writeBuffer();
+        return delegate.findByNormalizedLastName(lastName);
+    }
+
+    @Override
+    public List<Person> findByLastNameStartingWith(String prefix) {
+        writeBuffer();
+        return delegate.findByLastNameStartingWith(prefix);
+    }
+
+    @Override
+    public List<String> suggestLastNames(String prefix, int limit) {
+        writeBuffer();
+        return delegate.suggestLastNames(prefix, limit);
+    }
+
+    @Override
+    public List<Person> findByLastNameBetween(String fromInclusive, String toExclusive) {
+        writeBuffer();
+        return delegate.findByLastNameBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public List<Person> findAll() {
+        writeBuffer();
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Person> streamAll() {
+        writeBuffer();
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<Person> findPage(long afterId, int limit) {
+        writeBuffer();
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return id != null && deleteById(id.longValue());
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        writeLock.lock();
+        try {
+            boolean buffered = removePending(id);
+            return delegate.deleteById(id) || buffered;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Collection<Long> ids) {
+        long[] distinct = PersonBatch.distinctIds(ids);
+        List<Long> batch = new ArrayList<>(distinct.length);
+        writeLock.lock();
+        try {
+            int bufferedOnly = 0;
+            for (long id : distinct) {
+                if (removePending(id) && !delegate.existsById(id)) {
+                    bufferedOnly++;
+                }
+                batch.add(id);
+            }
+            return delegate.deleteAllById(batch) + bufferedOnly;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        writeBuffer();
+        return delegate.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && existsById(id.longValue());
+    }
+
+    @Override
+    public boolean existsById(long id) {
+        return pending(id) != null || delegate.existsById(id);
+    }
+
+    @Override
+    public List<Person> findBirthdayToday() {
+        writeBuffer();
+        return delegate.findBirthdayToday();
+    }
+
+    @Override
+    public List<Person> findBirthdaysOn(MonthDay day) {
+        writeBuffer();
+        return delegate.findBirthdaysOn(day);
+    }
+
+    @Override
+    public List<Person> findBornOnOrBefore(LocalDate date) {
+        writeBuffer();
+        return delegate.findBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findBornBetween(LocalDate fromInclusive, LocalDate toExclusive) {
+        writeBuffer();
+        return delegate.findBornBetween(fromInclusive, toExclusive);
+    }
+
+    @Override
+    public long countBornOnOrBefore(LocalDate date) {
+        writeBuffer();
+        return delegate.countBornOnOrBefore(date);
+    }
+
+    @Override
+    public List<Person> findByCity(String city, String state) {
+        writeBuffer();
+        return delegate.findByCity(city, state);
+    }
+
+    @Override
+    public SortedMap<Address.City, long[]> groupByCity() {
+        writeBuffer();
+        return delegate.groupByCity();
+    }
+
+    @Override
+    public List<Person> findByZipCodeValueBetween(int fromInclusive, int toExclusive) {
+        writeBuffer();
+        return delegate.findByZipCodeValueBetween(fromInclusive, toExclusive);
+    }
+
+    /**
+     * Writes every buffered person to the delegate, in batches of at most the maximum batch size, and waits until they
+     * are stored. Persons saved while the flush runs may be left for the next one.
+     *
+     * @throws RuntimeException
+     *             the reason the delegate rejected the first person it rejected, once every other person is stored; or
+     *             whatever else the delegate throws, in which case the persons not yet stored stay buffered
+     */
+    public void flush() {
+        List<RejectedSave> rejectedNow = writeBuffer();
+        if (!rejectedNow.isEmpty()) {
+            throw rejectedNow.get(0).getCause();
+        }
+    }
+
+    /**
+     * Returns the buffered saves the delegate rejected since the last call, oldest first, and forgets them. Only the
+     * most recent ones, up to the maximum set on the builder, are kept between calls.
+     *
+     * @return the rejected saves
+     */
+    public List<RejectedSave> drainRejected() {
+        bufferLock.lock();
+        try {
+            List<RejectedSave> drained = new ArrayList<>(rejected);
+            rejected.clear();
+            return drained;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of persons waiting to be written to the delegate.
+     *
+     * @return the number of buffered persons
+     */
+    public int getPendingCount() {
+        bufferLock.lock();
+        try {
+            return dirty.size();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of saves that replaced a buffered copy of the same person instead of adding a write.
+     *
+     * @return the number of coalesced saves
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of batches written to the delegate.
+     *
+     * @return the number of flushed batches
+     */
+    public long getFlushedBatchCount() {
+        return flushedBatchCount.get();
+    }
+
+    /**
+     * Stops the background flush thread and writes every buffered person to the delegate.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Writes the buffered persons to the delegate and returns the saves it rejected, which are no longer buffered.
+     */
+    private List<RejectedSave> writeBuffer() {
+        writeLock.lock();
+        try {
+            List<RejectedSave> rejectedNow = new ArrayList<>();
+            int remaining = getPendingCount();
+            while (remaining > 0) {
+                List<Pending> batch = peekBatch();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<RejectedSave> rejectedInBatch = write(batch);
+                flushedBatchCount.incrementAndGet();
+                bufferLock.lock();
+                try {
+                    // A person saved again during the write has a newer copy buffered, which must stay
+                    for (Pending pending : batch) {
+                        dirty.remove(pending.id, pending);
+                    }
+                    for (RejectedSave rejectedSave : rejectedInBatch) {
+                        if (rejected.size() == maxRejected) {
+                            rejected.removeFirst();
+                        }
+                        rejected.addLast(rejectedSave);
+                    }
+                } finally {
+                    bufferLock.unlock();
+                }
+                rejectedNow.addAll(rejectedInBatch);
+                remaining -= batch.size();
+            }
+            return rejectedNow;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Saves a batch to the delegate. If the delegate rejects it because of its persons, saves them again one at a time
+     * and returns the ones it rejects.
+     */
+    private List<RejectedSave> write(List<Pending> batch) {
+        List<Person> persons = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            persons.add(pending.person);
+        }
+        try {
+            delegate.saveAll(persons);
+            return List.of();
+        } catch (IllegalArgumentException | DuplicateCpfException batchFailure) {
+            List<RejectedSave> rejectedInBatch = new ArrayList<>();
+            for (Person person : persons) {
+                try {
+                    delegate.save(person);
+                } catch (IllegalArgumentException | DuplicateCpfException e) {
+                    rejectedInBatch.add(new RejectedSave(person, e));
+                }
+            }
+            return rejectedInBatch;
+        }
+    }
+
+    /**
+     * Takes the CPF lock if any of the persons has a CPF and tells whether it did. Holding it from the CPF check until
+     * the persons are stored keeps another save from claiming the same CPF in between; saves without a CPF skip it.
+     */
+    private boolean lockCpfs(List<Person> persons) {
+        for (Person person : persons) {
+            if (person.getCpf() != null) {
+                cpfLock.lock();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that saving the persons keeps every CPF unique, against the buffered persons as well as the stored ones.
+     */
+    private void checkCpfs(List<Person> persons) {
+        PersonBatch.checkUniqueCpfs(persons, this::cpfOwner);
+    }
+
+    /**
+     * Returns the ID of the person that will own a packed CPF once the buffer is flushed, or
+     * {@link PersonBatch#NO_OWNER}. A stored owner whose buffered copy has another CPF is giving it up.
+     */
+    private long cpfOwner(long cpf) {
+        bufferLock.lock();
+        try {
+            for (Pending pending : dirty.values()) {
+                if (pending.cpf == cpf) {
+                    return pending.id;
+                }
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+        Optional<Person> stored = delegate.findByCpf(CpfValidator.fromLong(cpf));
+        if (stored.isEmpty()) {
+            return PersonBatch.NO_OWNER;
+        }
+        long id = stored.get().getId();
+        Pending pending = pending(id);
+        return pending != null && pending.cpf != cpf ? PersonBatch.NO_OWNER : id;
+    }
+
+    /**
+     * Records the persons as dirty, replacing any buffered copies, and tells whether the buffer is now full.
+     */
+    private boolean buffer(List<Person> persons) {
+        if (persons.isEmpty()) {
+            return false;
+        }
+        bufferLock.lock();
+        try {
+            for (Person person : persons) {
+                long id = person.getId();
+                if (dirty.put(id, new Pending(id, person, PersonBatch.cpfOf(person))) != null) {
+                    coalescedCount.incrementAndGet();
+                }
+            }
+            return dirty.size() >= maxBatchSize;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private Pending pending(long id) {
+        bufferLock.lock();
+        try {
+            return dirty.get(id);
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private boolean removePending(long id) {
+        bufferLock.lock();
+        try {
+            return dirty.remove(id) != null;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest buffered persons, up to the maximum batch size, leaving them buffered until they are stored.
+     */
+    private List<Pending> peekBatch() {
+        bufferLock.lock();
+        try {
+            List<Pending> batch = new ArrayList<>(Math.min(dirty.size(), maxBatchSize));
+            Iterator<Pending> iterator = dirty.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(iterator.next());
+            }
+            return batch;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            writeBuffer();
+        } catch (RuntimeException e) {
+            // The persons stay buffered and are written by the next flush.
+        }
+    }
+
+    /**
+     * A buffered save. Each save creates a new one, so a flush can tell whether the person was saved again while it was
+     * being written.
+     */
+    private static final class Pending {
+        final long id;
+        final Person person;
+        final long cpf;
+
+        Pending(long id, Person person, long cpf) {
+            this.id = id;
+            this.person = person;
+            this.cpf = cpf;
+        }
+    }
+
+    /**
+     * A buffered save the delegate rejected, with the reason it gave.
+     */
+    public static final class RejectedSave {
+        private final Person person;
+        private final RuntimeException cause;
+
+        RejectedSave(Person person, RuntimeException cause) {
+            this.person = person;
+            this.cause = cause;
+        }
+
+        public Person getPerson() {
+            return person;
+        }
+
+        public RuntimeException getCause() {
+            return cause;
+        }
+    }
+}
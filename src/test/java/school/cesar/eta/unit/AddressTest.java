@@ -5,6 +5,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 
@@ -136,6 +137,61 @@ public class AddressTest {
         }
     }
 
+    @Nested
+    @DisplayName("Numeric Zip Code Tests")
+    class ZipCodeValueTests {
+
+        @ParameterizedTest
+        @CsvSource({ "50000-000, 500000000", "12345, 123450000", "12345-6789, 123456789", "01310-100, 13101000" })
+        @DisplayName("Should parse zip codes into numbers padded to nine digits")
+        void getZipCodeValue_validFormats_padsToNineDigits(String zipCode, int expected) {
+            // Arrange
+            Address address = new Address.Builder().street("Rua Test").number("123").city("Recife").state("PE")
+                    .zipCode(zipCode).build();
+
+            // Act & Assert
+            assertEquals(expected, address.getZipCodeValue());
+            assertEquals(expected, Address.zipCodeValue(zipCode));
+        }
+
+        @Test
+        @DisplayName("Should turn zip code prefixes into numeric ranges")
+        void zipCodePrefixRange_variousPrefixes_coverMatchingCodes() {
+            assertArrayEquals(new int[] { 500000000, 510000000 }, Address.zipCodePrefixRange("50"));
+            assertArrayEquals(new int[] { 500001000, 500002000 }, Address.zipCodePrefixRange("50000-1"));
+            assertArrayEquals(new int[] { 500000000, 500010000 }, Address.zipCodePrefixRange("50000-"));
+            assertArrayEquals(new int[] { 900000000, 1000000000 }, Address.zipCodePrefixRange("9"));
+        }
+
+        @Test
+        @DisplayName("Should keep CEPs and other countries' ZIP codes with the same digits apart")
+        void getZipCodeValue_cepAndUsZipWithSameDigits_doNotCollide() {
+            // Arrange
+            Address cep = new Address.Builder().street("Rua Test").number("123").city("Recife").state("PE")
+                    .zipCode("12345-000").build();
+            Address usZip = new Address.Builder().street("Main St").number("1").city("Springfield").state("IL")
+                    .zipCode("12345").country("USA").build();
+
+            // Act & Assert
+            assertEquals(Address.ZipCodeKind.CEP, cep.getZipCodeKind());
+            assertEquals(Address.ZipCodeKind.ZIP, usZip.getZipCodeKind());
+            assertNotEquals(cep.getZipCodeValue(), usZip.getZipCodeValue());
+            assertEquals(usZip.getZipCodeValue(), Address.zipCodeValue("12345", Address.ZipCodeKind.ZIP));
+            int[] cepRange = Address.zipCodePrefixRange("12345");
+            assertTrue(usZip.getZipCodeValue() >= cepRange[1]);
+            int[] zipRange = Address.zipCodePrefixRange("12345", Address.ZipCodeKind.ZIP);
+            assertTrue(usZip.getZipCodeValue() >= zipRange[0] && usZip.getZipCodeValue() < zipRange[1]);
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = { "", "123456", "1234-5", "50000-12345", "5a" })
+        @DisplayName("Should reject invalid zip codes and prefixes")
+        void zipCodeValue_invalidInput_throwsException(String input) {
+            assertThrows(IllegalArgumentException.class, () -> Address.zipCodePrefixRange(input));
+            assertThrows(IllegalArgumentException.class, () -> Address.zipCodeValue(input));
+        }
+    }
+
     @Nested
     @DisplayName("Formatted Address Tests")
     class FormattedAddressTests {
@@ -241,6 +297,28 @@ public class AddressTest {
             // Act & Assert
             assertFalse(address1.isSameCity(null));
         }
+
+        @Test
+        @DisplayName("Should give equal city keys to addresses in the same city")
+        void getCityKey_sameCity_equalKeys() {
+            // Arrange
+            address2 = new Address.Builder().street("Rua B").number("200").city("Recife").state("PE")
+                    .zipCode("51000-000").build();
+            Address otherState = new Address.Builder().street("Rua C").number("300").city("Recife").state("RJ")
+                    .zipCode("20000-000").build();
+
+            // Act
+            Address.City key = address1.getCityKey();
+
+            // Assert
+            assertEquals(key, address2.getCityKey());
+            assertEquals(key.hashCode(), address2.getCityKey().hashCode());
+            assertEquals(Address.City.of("Recife", "PE"), key);
+            assertNotEquals(key, otherState.getCityKey());
+            assertTrue(key.compareTo(otherState.getCityKey()) < 0);
+            assertEquals("Recife/PE", key.toString());
+            assertThrows(IllegalArgumentException.class, () -> Address.City.of("Recife", null));
+        }
     }
 
     @Nested
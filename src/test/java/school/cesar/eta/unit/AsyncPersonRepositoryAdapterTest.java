@@ -0,0 +1,138 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for AsyncPersonRepositoryAdapter class.
+ */
+@DisplayName("AsyncPersonRepositoryAdapter Test Suite")
+public class AsyncPersonRepositoryAdapterTest {
+
+    @Test
+    @DisplayName("Should complete every operation with the blocking repository's result")
+    void operations_blockingRepository_completeWithResults() {
+        // Arrange
+        try (AsyncPersonRepositoryAdapter repository = new AsyncPersonRepositoryAdapter(
+                new IndexedPersonRepository())) {
+            // Act
+            Person unsaved = createPerson("Jane", "Doe");
+            unsaved.setBirthday(LocalDate.of(1990, 5, 15));
+            Person jane = repository.save(unsaved).join();
+            List<Person> batch = repository.saveAll(List.of(createPerson("John", "Doe"), createPerson("Bob", "Smith")))
+                    .join();
+
+            // Assert
+            assertEquals(1L, jane.getId());
+            assertEquals(2, batch.size());
+            assertSame(jane, repository.findById(1L).join().orElseThrow());
+            assertEquals(2, repository.findAllById(List.of(1L, 3L)).join().size());
+            assertEquals(2, repository.findByLastName("Doe").join().size());
+            assertEquals(3, repository.findAll().join().size());
+            assertEquals(List.of(jane), repository.findBornOnOrBefore(LocalDate.of(2000, 1, 1)).join());
+            assertEquals(3L, repository.count().join());
+            assertTrue(repository.existsById(2L).join());
+            assertTrue(repository.deleteById(2L).join());
+            assertEquals(1, repository.deleteAllById(List.of(3L, 99L)).join());
+            assertTrue(repository.findBirthdayToday().join().isEmpty());
+            assertEquals(1L, repository.count().join());
+        }
+    }
+
+    @Test
+    @DisplayName("Should complete the primitive ID, paging, prefix and range operations like the blocking repository")
+    void pagingAndRangeOperations_blockingRepository_completeWithResults() {
+        // Arrange
+        IndexedPersonRepository blocking = new IndexedPersonRepository();
+        Person jane = blocking.save(createPerson("Jane", "Doe"));
+        Person john = blocking.save(createPerson("John", "Doe"));
+        Person bob = blocking.save(createPerson("Bob", "Smith"));
+        try (AsyncPersonRepositoryAdapter repository = new AsyncPersonRepositoryAdapter(blocking)) {
+            // Act
+            Page<Person> firstPage = repository.findByLastName("Doe", null, 1).join();
+            Page<Person> secondPage = repository.findByLastName("Doe", firstPage.getNextCursor(), 1).join();
+
+            // Assert
+            assertEquals(List.of(jane), firstPage.getItems());
+            assertEquals(List.of(john), secondPage.getItems());
+            assertEquals(List.of(john, bob), repository.findPage(jane.getId(), 10).join());
+            assertEquals(List.of(bob), repository.findByLastNameStartingWith("smi").join());
+            assertEquals(Set.of(jane, john), Set.copyOf(repository.findByLastNameBetween("D", "E").join()));
+            assertSame(jane, repository.findById(jane.getId().longValue()).join().orElseThrow());
+            assertTrue(repository.existsById(bob.getId().longValue()).join());
+            assertTrue(repository.deleteById(bob.getId().longValue()).join());
+            assertFalse(repository.existsById(bob.getId().longValue()).join());
+            CompletionException exception = assertThrows(CompletionException.class,
+                    () -> repository.findPage(0, 0).join());
+            assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Should complete exceptionally with the blocking repository's exception")
+    void save_invalidPerson_completesExceptionally() {
+        // Arrange
+        try (AsyncPersonRepositoryAdapter repository = new AsyncPersonRepositoryAdapter(
+                new IndexedPersonRepository())) {
+            // Act
+            CompletableFuture<Person> future = repository.save(null);
+
+            // Assert
+            CompletionException exception = assertThrows(CompletionException.class, future::join);
+            assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Should run operations on the given executor and leave it running on close")
+    void close_givenExecutor_isNotShutDown() throws InterruptedException {
+        // Arrange
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "caller-executor"));
+        AtomicReference<String> thread = new AtomicReference<>();
+        IndexedPersonRepository delegate = new IndexedPersonRepository() {
+            @Override
+            public long count() {
+                thread.set(Thread.currentThread().getName());
+                return super.count();
+            }
+        };
+        AsyncPersonRepositoryAdapter repository = new AsyncPersonRepositoryAdapter(delegate, executor);
+
+        // Act
+        repository.count().join();
+        repository.close();
+
+        // Assert
+        assertEquals("caller-executor", thread.get());
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Should use virtual threads exactly when the JVM provides them")
+    void usesVirtualThreads_matchesJavaVersion() {
+        assertEquals(Runtime.version().feature() >= 21, AsyncPersonRepositoryAdapter.usesVirtualThreads());
+    }
+
+    @Test
+    @DisplayName("Should reject null constructor arguments")
+    void constructor_nullArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncPersonRepositoryAdapter(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncPersonRepositoryAdapter(new IndexedPersonRepository(), null));
+    }
+}
@@ -0,0 +1,134 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test suite for AsyncPersonService class. Runs the repository operations in the calling thread, so every future is
+ * already complete when a method returns.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AsyncPersonService Test Suite")
+public class AsyncPersonServiceTest {
+
+    @Mock
+    private EmailService emailService;
+
+    private IndexedPersonRepository blockingRepository;
+    private AsyncPersonService service;
+
+    @BeforeEach
+    void setUp() {
+        blockingRepository = new IndexedPersonRepository();
+        service = new AsyncPersonService(new AsyncPersonRepositoryAdapter(blockingRepository, Runnable::run),
+                emailService);
+    }
+
+    @Test
+    @DisplayName("Should create a person and send a welcome email")
+    void createPerson_validPerson_savesAndSendsEmail() {
+        // Act
+        Person saved = service.createPerson(createPerson("John", "Doe")).join();
+
+        // Assert
+        assertEquals(1L, saved.getId());
+        assertTrue(blockingRepository.existsById(1L));
+        verify(emailService).sendWelcomeEmail("john.doe@example.com", "John Doe");
+    }
+
+    @Test
+    @DisplayName("Should fail the future without saving when a person is invalid")
+    void createPersons_invalidPerson_failsFuture() {
+        // Act
+        CompletableFuture<List<Person>> future = service
+                .createPersons(List.of(createPerson("John", "Doe"), new Person()));
+
+        // Assert
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        assertEquals(0, blockingRepository.count());
+        verify(emailService, never()).sendWelcomeEmail(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should fail the future with PersonNotFoundException for missing persons")
+    void findAndDelete_missingPerson_failWithNotFound() {
+        // Act & Assert
+        assertInstanceOf(PersonNotFoundException.class,
+                assertThrows(CompletionException.class, () -> service.findPerson(99L).join()).getCause());
+        assertInstanceOf(PersonNotFoundException.class,
+                assertThrows(CompletionException.class, () -> service.findPersons(List.of(99L)).join()).getCause());
+        assertInstanceOf(PersonNotFoundException.class,
+                assertThrows(CompletionException.class, () -> service.deletePerson(99L).join()).getCause());
+    }
+
+    @Test
+    @DisplayName("Should update, link family members and delete persons")
+    void updateLinkAndDelete_existingPersons_succeed() {
+        // Arrange
+        Person parent = blockingRepository.save(createPerson("Parent", "Doe"));
+        Person child = blockingRepository.save(createPerson("Child", "Doe"));
+        Person update = new Person();
+        update.setFirstName("Mother");
+
+        // Act
+        service.updatePerson(parent.getId(), update).join();
+        service.addFamilyMember(parent.getId(), child.getId()).join();
+        List<Person> family = service.findFamilyMembers(child.getId()).join();
+        service.deletePerson(child.getId()).join();
+
+        // Assert
+        assertEquals("Mother", parent.getFirstName());
+        assertEquals(List.of(parent), family);
+        assertFalse(blockingRepository.existsById(child.getId()));
+        assertThrows(CompletionException.class, () -> service.addFamilyMember(1L, 1L).join());
+    }
+
+    @Test
+    @DisplayName("Should compute adults and statistics like PersonService")
+    void findAdultsAndStatistics_mixedAges_matchPersonService() {
+        // Arrange
+        Person adult = createPerson("Adult", "Doe");
+        adult.setBirthday(LocalDate.now().minusYears(30));
+        Person minor = createPerson("Minor", "Doe");
+        minor.setBirthday(LocalDate.now().minusYears(10).plusDays(1));
+        blockingRepository.saveAll(List.of(adult, minor));
+        PersonService blockingService = new PersonService(blockingRepository, emailService);
+
+        // Act
+        List<Person> adults = service.findAdults().join();
+        PersonService.PersonStatistics statistics = service.getStatistics().join();
+        int greetings = service.sendBirthdayGreetings().join();
+
+        // Assert
+        assertEquals(List.of(adult), adults);
+        assertEquals(blockingService.findAdults(), adults);
+        assertEquals(blockingService.getStatistics().getAdultCount(), statistics.getAdultCount());
+        assertEquals(blockingService.getStatistics().getAverageAge(), statistics.getAverageAge());
+        assertEquals(2, statistics.getTotalCount());
+        assertEquals(blockingService.sendBirthdayGreetings(), greetings);
+    }
+
+    @Test
+    @DisplayName("Should reject null dependencies")
+    void constructor_nullArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncPersonService(null, emailService));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncPersonService(new AsyncPersonRepositoryAdapter(blockingRepository, Runnable::run),
+                        null));
+    }
+}
@@ -0,0 +1,124 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for BirthdayCalendarIndex class.
+ */
+@DisplayName("BirthdayCalendarIndex Test Suite")
+public class BirthdayCalendarIndexTest {
+
+    @Test
+    @DisplayName("Should return the keys of a day in ascending order, whatever the year of birth")
+    void keysOn_severalYears_returnsSortedKeys() {
+        // Arrange
+        BirthdayCalendarIndex index = new BirthdayCalendarIndex();
+        index.put(30L, LocalDate.of(1990, 5, 15));
+        index.put(10L, LocalDate.of(2001, 5, 15));
+        index.put(20L, LocalDate.of(1975, 5, 16));
+
+        // Act & Assert
+        assertArrayEquals(new long[] { 10L, 30L }, index.keysOn(MonthDay.of(5, 15)));
+        assertArrayEquals(new long[] { 20L }, index.keysOn(MonthDay.of(5, 16)));
+        assertArrayEquals(new long[0], index.keysOn(MonthDay.of(5, 17)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    @DisplayName("Should keep February 29 in its own bucket")
+    void keysOn_leapDay_separateFromNeighbours() {
+        // Arrange
+        BirthdayCalendarIndex index = new BirthdayCalendarIndex();
+        index.put(1L, LocalDate.of(2000, 2, 28));
+        index.put(2L, LocalDate.of(2000, 2, 29));
+        index.put(3L, LocalDate.of(2000, 3, 1));
+        index.put(4L, LocalDate.of(2000, 12, 31));
+
+        // Act & Assert
+        assertArrayEquals(new long[] { 1L }, index.keysOn(MonthDay.of(2, 28)));
+        assertArrayEquals(new long[] { 2L }, index.keysOn(MonthDay.of(2, 29)));
+        assertArrayEquals(new long[] { 3L }, index.keysOn(MonthDay.of(3, 1)));
+        assertArrayEquals(new long[] { 4L }, index.keysOn(MonthDay.of(12, 31)));
+    }
+
+    @Test
+    @DisplayName("Should move keys on update and drop them on removal or null birthday")
+    void putAndRemove_existingKeys_updateBuckets() {
+        // Arrange
+        BirthdayCalendarIndex index = new BirthdayCalendarIndex();
+        index.put(1L, LocalDate.of(1990, 1, 1));
+        index.put(2L, LocalDate.of(1990, 1, 1));
+        index.put(3L, LocalDate.of(1990, 1, 1));
+
+        // Act
+        index.put(1L, LocalDate.of(1990, 1, 2));
+        boolean removed = index.remove(2L);
+        boolean removedTwice = index.remove(2L);
+        index.put(3L, null);
+
+        // Assert
+        assertTrue(removed);
+        assertFalse(removedTwice);
+        assertArrayEquals(new long[0], index.keysOn(MonthDay.of(1, 1)));
+        assertArrayEquals(new long[] { 1L }, index.keysOn(MonthDay.of(1, 2)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @DisplayName("Should match a reference map under many random updates")
+    void randomUpdates_matchReferenceMap() {
+        // Arrange
+        Random random = new Random(7);
+        BirthdayCalendarIndex index = new BirthdayCalendarIndex();
+        Map<Long, MonthDay> expected = new HashMap<>();
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                index.remove(key);
+                expected.remove(key);
+            } else {
+                LocalDate birthday = LocalDate.of(2000, 1, 1).plusDays(random.nextInt(60));
+                index.put(key, birthday);
+                expected.put(key, MonthDay.from(birthday));
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), index.size());
+        for (int day = 0; day < 60; day++) {
+            MonthDay monthDay = MonthDay.from(LocalDate.of(2000, 1, 1).plusDays(day));
+            long[] keys = index.keysOn(monthDay);
+            assertEquals(expected.values().stream().filter(monthDay::equals).count(), keys.length);
+            for (long key : keys) {
+                assertEquals(monthDay, expected.get(key));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should empty every bucket on clear and reject a null day")
+    void clearAndNullDay() {
+        // Arrange
+        BirthdayCalendarIndex index = new BirthdayCalendarIndex();
+        index.put(1L, LocalDate.of(1990, 1, 1));
+
+        // Act
+        index.clear();
+
+        // Assert
+        assertEquals(0, index.size());
+        assertArrayEquals(new long[0], index.keysOn(MonthDay.of(1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> index.keysOn(null));
+    }
+}
@@ -0,0 +1,167 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for BloomFilterPersonRepository class.
+ */
+@DisplayName("BloomFilterPersonRepository Test Suite")
+public class BloomFilterPersonRepositoryTest {
+
+    private CountingRepository delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingRepository();
+    }
+
+    @Test
+    @DisplayName("Should report never saved IDs absent without asking the delegate")
+    void findById_unknownIds_skipsDelegate() {
+        // Arrange
+        BloomFilterPersonRepository repository = filtered(1_000);
+        for (int i = 0; i < 500; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        delegate.lookups.set(0);
+
+        // Act
+        int found = 0;
+        for (long id = 1; id <= 10_500; id++) {
+            found += repository.findById(id).isPresent() ? 1 : 0;
+        }
+
+        // Assert
+        assertEquals(500, found);
+        assertEquals(10_000, repository.getFilteredCount() + repository.getFalsePositiveCount());
+        assertEquals(500 + repository.getFalsePositiveCount(), delegate.lookups.get());
+        assertTrue(repository.getObservedFalsePositiveRate() < 0.05);
+        assertTrue(repository.getExpectedFalsePositiveRate() < 0.05);
+    }
+
+    @Test
+    @DisplayName("Should include persons already in the delegate when built")
+    void build_existingPersons_areFound() {
+        // Arrange
+        Person jane = delegate.save(createPerson("Jane", "Doe"));
+
+        // Act
+        BloomFilterPersonRepository repository = filtered(100);
+
+        // Assert
+        assertEquals(Optional.of(jane), repository.findById(jane.getId()));
+        assertTrue(repository.existsById(jane.getId()));
+        assertEquals(List.of(jane), repository.findAllById(List.of(99L, jane.getId())));
+    }
+
+    @Test
+    @DisplayName("Should forget deleted IDs after a rebuild")
+    void rebuild_afterDeletes_filtersDeletedIds() {
+        // Arrange
+        BloomFilterPersonRepository repository = filtered(100);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person john = repository.save(createPerson("John", "Doe"));
+        assertTrue(repository.deleteById(jane.getId()));
+        assertEquals(1, repository.deleteAllById(List.of(john.getId(), 99L)));
+        delegate.lookups.set(0);
+
+        // Act
+        repository.rebuild();
+        boolean janeExists = repository.existsById(jane.getId());
+        boolean johnDeleted = repository.deleteById(john.getId());
+
+        // Assert
+        assertFalse(janeExists);
+        assertFalse(johnDeleted);
+        assertEquals(0, delegate.lookups.get());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should rebuild on its own once saves exceed the capacity")
+    void save_beyondCapacity_rebuildsFilter() {
+        // Arrange
+        BloomFilterPersonRepository repository = filtered(100);
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+
+        // Act
+        for (Person person : persons) {
+            repository.save(person);
+        }
+
+        // Assert
+        assertTrue(repository.getExpectedFalsePositiveRate() < 0.05);
+        for (Person person : persons) {
+            assertTrue(repository.existsById(person.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should delegate queries other than lookups by ID")
+    void queries_delegateToRepository() {
+        // Arrange
+        BloomFilterPersonRepository repository = filtered(100);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+
+        // Act & Assert
+        assertEquals(List.of(jane), repository.findByLastName("Doe"));
+        assertEquals(List.of(jane), repository.findAll());
+        assertEquals(1, repository.count());
+        assertFalse(repository.findById((Long) null).isPresent());
+        assertFalse(repository.existsById((Long) null));
+        assertFalse(repository.deleteById((Long) null));
+        assertTrue(repository.findAllById(List.of(99L)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid settings")
+    void builder_invalidSettings_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilterPersonRepository.Builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new BloomFilterPersonRepository.Builder().delegate(delegate).expectedPersons(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new BloomFilterPersonRepository.Builder().delegate(delegate).falsePositiveRate(1).build());
+    }
+
+    private BloomFilterPersonRepository filtered(long expectedPersons) {
+        return new BloomFilterPersonRepository.Builder().delegate(delegate).expectedPersons(expectedPersons).build();
+    }
+
+    /**
+     * Repository that counts the lookups by ID that reach it.
+     */
+    private static final class CountingRepository extends IndexedPersonRepository {
+        final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public Optional<Person> findById(long id) {
+            lookups.incrementAndGet();
+            return super.findById(id);
+        }
+
+        @Override
+        public boolean existsById(long id) {
+            lookups.incrementAndGet();
+            return super.existsById(id);
+        }
+
+        @Override
+        public boolean deleteById(long id) {
+            lookups.incrementAndGet();
+            return super.deleteById(id);
+        }
+    }
+}
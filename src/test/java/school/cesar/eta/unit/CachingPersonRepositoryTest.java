@@ -0,0 +1,269 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for CachingPersonRepository class.
+ */
+@DisplayName("CachingPersonRepository Test Suite")
+public class CachingPersonRepositoryTest {
+
+    private IndexedPersonRepository delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new IndexedPersonRepository();
+    }
+
+    @Test
+    @DisplayName("Should answer repeated lookups from the cache")
+    void findById_repeatedLookup_countsHitsAndMisses() {
+        // Arrange
+        CachingPersonRepository repository = cache(100);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+
+        // Act
+        Person first = repository.findById(jane.getId()).orElseThrow();
+        Person second = repository.findById(jane.getId()).orElseThrow();
+        boolean unknownFound = repository.findById(99L).isPresent();
+
+        // Assert
+        assertSame(jane, first);
+        assertSame(jane, second);
+        assertFalse(unknownFound);
+        assertEquals(1, repository.getHitCount());
+        assertEquals(2, repository.getMissCount());
+        assertEquals(1, repository.estimatedSize());
+    }
+
+    @Test
+    @DisplayName("Should never hold more entries than the maximum size")
+    void findById_moreKeysThanCapacity_staysBounded() {
+        // Arrange
+        CachingPersonRepository repository = cache(50);
+        for (int i = 0; i < 500; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Act
+        for (long id = 1; id <= 500; id++) {
+            repository.findById(id);
+        }
+
+        // Assert
+        assertEquals(50, repository.estimatedSize());
+        assertEquals(50, repository.getWeightedSize());
+        assertEquals(450, repository.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Should keep frequently read persons through a scan of one-off lookups")
+    void findById_scanAfterHotKeys_keepsHotKeys() {
+        // Arrange
+        CachingPersonRepository repository = cache(100);
+        for (int i = 0; i < 2_000; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        for (int round = 0; round < 10; round++) {
+            for (long id = 1; id <= 50; id++) {
+                repository.findById(id);
+            }
+        }
+        repository.cleanUp();
+
+        // Act
+        for (long id = 1_000; id < 2_000; id++) {
+            repository.findById(id);
+        }
+        long hitsBefore = repository.getHitCount();
+        for (long id = 1; id <= 50; id++) {
+            repository.findById(id);
+        }
+
+        // Assert: a plain LRU cache would have lost all of them; the sketch may overestimate a rare scanned key
+        assertTrue(repository.getHitCount() - hitsBefore >= 45);
+    }
+
+    @Test
+    @DisplayName("Should reload persons after they are saved or deleted")
+    void saveAndDelete_cachedPerson_invalidatesEntry() {
+        // Arrange
+        CachingPersonRepository repository = cache(100);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        repository.findById(jane.getId());
+        Person replacement = createPerson("Janet", "Doe");
+        replacement.setId(jane.getId());
+
+        // Act
+        repository.save(replacement);
+        Person afterSave = repository.findById(jane.getId()).orElseThrow();
+        boolean deleted = repository.deleteById(jane.getId());
+
+        // Assert
+        assertSame(replacement, afterSave);
+        assertTrue(deleted);
+        assertFalse(repository.findById(jane.getId()).isPresent());
+        assertFalse(repository.existsById(jane.getId()));
+        assertEquals(0, repository.estimatedSize());
+        assertEquals(0, repository.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Should only skip caching a load that overlaps a write to the same person")
+    void findById_writeDuringLoad_onlySameIdSkipsCaching() {
+        // Arrange
+        List<Runnable> duringLoad = new ArrayList<>();
+        delegate = new IndexedPersonRepository() {
+            @Override
+            public Optional<Person> findById(long id) {
+                Optional<Person> loaded = super.findById(id);
+                duringLoad.forEach(Runnable::run);
+                return loaded;
+            }
+        };
+        CachingPersonRepository repository = cache(100);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person john = repository.save(createPerson("John", "Doe"));
+
+        // Act
+        duringLoad.add(() -> repository.save(john));
+        repository.findById(jane.getId());
+        duringLoad.set(0, () -> repository.save(jane));
+        repository.findById(john.getId());
+        repository.findById(jane.getId());
+        duringLoad.clear();
+        long cachedAfterLoads = repository.estimatedSize();
+        long hitsBefore = repository.getHitCount();
+        repository.findById(john.getId());
+        long johnHits = repository.getHitCount() - hitsBefore;
+        repository.findById(jane.getId());
+
+        // Assert
+        assertEquals(1, cachedAfterLoads);
+        assertEquals(1, johnHits);
+        assertEquals(1, repository.getHitCount() - hitsBefore);
+    }
+
+    @Test
+    @DisplayName("Should serve batches from the cache and the delegate in request order")
+    void findAllById_partlyCached_keepsOrder() {
+        // Arrange
+        CachingPersonRepository repository = cache(100);
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+        repository.saveAll(persons);
+        repository.findById(3L);
+
+        // Act
+        List<Person> found = repository.findAllById(List.of(4L, 3L, 99L, 1L));
+        int deleted = repository.deleteAllById(List.of(3L, 4L));
+
+        // Assert
+        assertEquals(List.of(persons.get(3), persons.get(2), persons.get(0)), found);
+        assertEquals(1, repository.getHitCount());
+        assertEquals(2, deleted);
+        assertEquals(List.of(persons.get(0)), repository.findAllById(List.of(1L, 3L, 4L)));
+    }
+
+    @Test
+    @DisplayName("Should bound the total weight of cached persons")
+    void maximumWeight_weigher_boundsTotalWeight() {
+        // Arrange
+        CachingPersonRepository repository = new CachingPersonRepository.Builder().delegate(delegate)
+                .maximumWeight(100, person -> person.getFirstName().length()).build();
+        for (int i = 0; i < 100; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Act
+        for (long id = 1; id <= 100; id++) {
+            repository.findById(id);
+        }
+
+        // Assert
+        assertTrue(repository.getWeightedSize() <= 100);
+        assertTrue(repository.estimatedSize() < 100);
+        assertTrue(repository.getEvictionCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Should stay within its bound under concurrent readers")
+    void findById_concurrentReaders_staysBounded() throws Exception {
+        // Arrange
+        CachingPersonRepository repository = cache(64);
+        for (int i = 0; i < 1_000; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> readers = new ArrayList<>();
+
+        // Act
+        for (int r = 0; r < 4; r++) {
+            int seed = r;
+            readers.add(executor.submit(() -> {
+                boolean allFound = true;
+                for (int i = 0; i < 20_000; i++) {
+                    long id = 1 + (i * 31L + seed) % (i % 2 == 0 ? 32 : 1_000);
+                    allFound &= repository.findById(id).isPresent();
+                }
+                return allFound;
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Assert
+        for (Future<Boolean> reader : readers) {
+            assertTrue(reader.get());
+        }
+        repository.cleanUp();
+        assertTrue(repository.estimatedSize() <= 64);
+        assertEquals(80_000, repository.getHitCount() + repository.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should delegate queries other than lookups by ID")
+    void queries_delegateToRepository() {
+        // Arrange
+        CachingPersonRepository repository = cache(10);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+
+        // Act & Assert
+        assertEquals(List.of(jane), repository.findByLastName("Doe"));
+        assertEquals(List.of(jane), repository.findAll());
+        assertEquals(1, repository.count());
+        assertTrue(repository.existsById(jane.getId()));
+        assertFalse(repository.findById((Long) null).isPresent());
+        assertFalse(repository.deleteById((Long) null));
+    }
+
+    @Test
+    @DisplayName("Should reject a missing delegate or bound")
+    void builder_invalidConfiguration_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingPersonRepository.Builder().maximumSize(10).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingPersonRepository.Builder().delegate(delegate).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingPersonRepository.Builder().delegate(delegate).maximumSize(-1).build());
+    }
+
+    private CachingPersonRepository cache(long maximumSize) {
+        return new CachingPersonRepository.Builder().delegate(delegate).maximumSize(maximumSize).build();
+    }
+}
@@ -127,4 +127,22 @@ public class CpfValidatorTest {
             fail("Constructor should exist");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should pack CPF digits into a long and format them back")
+    void toLong_fromLong_roundTrip() {
+        assertEquals(12345678909L, CpfValidator.toLong("123.456.789-09"));
+        assertEquals(12345678909L, CpfValidator.toLong("12345678909"));
+        assertEquals("123.456.789-09", CpfValidator.fromLong(12345678909L));
+        assertEquals("012.345.678-90", CpfValidator.fromLong(1234567890L));
+    }
+
+    @Test
+    @DisplayName("Should reject values that are not 11 digits when packing")
+    void toLong_fromLong_invalidInput_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> CpfValidator.toLong(null));
+        assertThrows(IllegalArgumentException.class, () -> CpfValidator.toLong("123.456.789"));
+        assertThrows(IllegalArgumentException.class, () -> CpfValidator.fromLong(-1L));
+        assertThrows(IllegalArgumentException.class, () -> CpfValidator.fromLong(100_000_000_000L));
+    }
+}
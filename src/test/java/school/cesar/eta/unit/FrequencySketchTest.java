@@ -0,0 +1,71 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for FrequencySketch class.
+ */
+@DisplayName("FrequencySketch Test Suite")
+public class FrequencySketchTest {
+
+    @Test
+    @DisplayName("Should count increments up to the maximum frequency")
+    void increment_repeatedKey_saturatesAtMaximum() {
+        // Arrange
+        FrequencySketch sketch = new FrequencySketch(1_000);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(42L);
+        }
+        int afterFive = sketch.frequency(42L);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42L);
+        }
+
+        // Assert
+        assertEquals(5, afterFive);
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(42L));
+        assertEquals(0, sketch.frequency(7L));
+    }
+
+    @Test
+    @DisplayName("Should never underestimate a frequency among many keys")
+    void increment_manyKeys_neverUnderestimates() {
+        // Arrange
+        FrequencySketch sketch = new FrequencySketch(1_000);
+
+        // Act
+        for (long key = 0; key < 500; key++) {
+            for (int i = 0; i < key % 4; i++) {
+                sketch.increment(key);
+            }
+        }
+
+        // Assert
+        for (long key = 0; key < 500; key++) {
+            assertTrue(sketch.frequency(key) >= key % 4);
+        }
+    }
+
+    @Test
+    @DisplayName("Should halve frequencies once the sample size is reached")
+    void increment_sampleSizeReached_agesCounters() {
+        // Arrange
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(-1L);
+        }
+
+        // Act
+        for (long key = 0; key < 10_000; key++) {
+            sketch.increment(key);
+        }
+
+        // Assert
+        assertTrue(sketch.frequency(-1L) < 8);
+    }
+}
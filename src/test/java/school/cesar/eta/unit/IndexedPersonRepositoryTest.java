@@ -0,0 +1,624 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for IndexedPersonRepository class.
+ */
+@DisplayName("IndexedPersonRepository Test Suite")
+public class IndexedPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+
+    private Clock clock;
+    private IndexedPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = new IndexedPersonRepository(clock);
+    }
+
+    @Nested
+    @DisplayName("Save Tests")
+    class SaveTests {
+
+        @Test
+        @DisplayName("Should generate sequential IDs for new persons")
+        void save_newPersons_generatesIds() {
+            // Act
+            Person first = repository.save(createPerson("John", "Doe"));
+            Person second = repository.save(createPerson("Jane", "Doe"));
+
+            // Assert
+            assertEquals(1L, first.getId());
+            assertEquals(2L, second.getId());
+            assertEquals(2, repository.count());
+        }
+
+        @Test
+        @DisplayName("Should keep explicit IDs and never generate them again")
+        void save_explicitId_keepsIdAndAdvancesGenerator() {
+            // Arrange
+            Person explicit = createPerson("John", "Doe");
+            explicit.setId(10L);
+
+            // Act
+            repository.save(explicit);
+            Person generated = repository.save(createPerson("Jane", "Doe"));
+
+            // Assert
+            assertEquals(10L, explicit.getId());
+            assertEquals(11L, generated.getId());
+        }
+
+        @Test
+        @DisplayName("Should throw exception when person is null")
+        void save_nullPerson_throwsException() {
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> repository.save(null));
+            assertEquals("Person cannot be null", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Should throw exception when clock is null")
+        void constructor_nullClock_throwsException() {
+            assertThrows(IllegalArgumentException.class, () -> new IndexedPersonRepository(null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Lookup Tests")
+    class LookupTests {
+
+        @Test
+        @DisplayName("Should find saved person by ID")
+        void findById_existingId_returnsPerson() {
+            // Arrange
+            Person saved = repository.save(createPerson("John", "Doe"));
+
+            // Act & Assert
+            assertSame(saved, repository.findById(saved.getId()).orElseThrow());
+            assertTrue(repository.existsById(saved.getId()));
+        }
+
+        @Test
+        @DisplayName("Should return empty for unknown or null IDs")
+        void findById_unknownId_returnsEmpty() {
+            assertFalse(repository.findById(99L).isPresent());
+            assertFalse(repository.findById(null).isPresent());
+            assertFalse(repository.existsById(99L));
+        }
+
+        @Test
+        @DisplayName("Should find persons by exact last name")
+        void findByLastName_matchingPersons_returnsOnlyMatches() {
+            // Arrange
+            Person john = repository.save(createPerson("John", "Doe"));
+            Person jane = repository.save(createPerson("Jane", "Doe"));
+            repository.save(createPerson("Bob", "Smith"));
+
+            // Act
+            List<Person> result = repository.findByLastName("Doe");
+
+            // Assert
+            assertEquals(2, result.size());
+            assertTrue(result.contains(john));
+            assertTrue(result.contains(jane));
+            assertTrue(repository.findByLastName("Unknown").isEmpty());
+            assertTrue(repository.findByLastName(null).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should move person between last name buckets when saved again")
+        void findByLastName_updatedPerson_reindexed() {
+            // Arrange
+            Person person = repository.save(createPerson("Jane", "Doe"));
+
+            // Act
+            person.setLastName("Smith");
+            repository.save(person);
+
+            // Assert
+            assertTrue(repository.findByLastName("Doe").isEmpty());
+            assertEquals(1, repository.findByLastName("Smith").size());
+        }
+
+        @Test
+        @DisplayName("Should find last names by normalized prefix and range")
+        void findByLastNamePrefixAndRange_mixedNames_returnsMatches() {
+            // Arrange
+            Person conceicao = repository.save(createPerson("Ana", "Conceição"));
+            Person costa = repository.save(createPerson("Bia", "Costa"));
+            repository.save(createPerson("Caio", "Dias"));
+
+            // Act & Assert
+            assertEquals(List.of(conceicao), repository.findByLastNameStartingWith("CONCEI"));
+            assertEquals(Set.of(conceicao, costa), new HashSet<>(repository.findByLastNameBetween("c", "d")));
+            assertThrows(IllegalArgumentException.class, () -> repository.findByLastNameStartingWith(null));
+            assertThrows(IllegalArgumentException.class, () -> repository.findByLastNameBetween("a", null));
+        }
+
+        @Test
+        @DisplayName("Should find and suggest last names ignoring case and accents, following updates")
+        void findByNormalizedLastNameAndSuggest_mixedSpellings_useTrie() {
+            // Arrange
+            Person accented = repository.save(createPerson("Ana", "Conceição"));
+            Person plain = repository.save(createPerson("Bia", "CONCEICAO"));
+            Person conde = repository.save(createPerson("Caio", "Conde"));
+            Person moved = repository.save(createPerson("Davi", "Conceicao"));
+            repository.save(createPerson("Eva", "Costa"));
+
+            // Act
+            moved.setLastName("Dias");
+            repository.save(moved);
+            repository.deleteById(conde.getId());
+
+            // Assert
+            assertEquals(List.of(accented, plain), repository.findByNormalizedLastName("conceicao"));
+            assertEquals(List.of(accented, plain), repository.findByLastNameStartingWith("Conc"));
+            assertEquals(List.of("Conceição", "Costa"), repository.suggestLastNames("co", 5));
+            assertEquals(List.of("Conceição"), repository.suggestLastNames("CO", 1));
+            assertEquals(List.of(moved), repository.findByNormalizedLastName("DIAS"));
+            assertTrue(repository.suggestLastNames("cond", 5).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> repository.findByNormalizedLastName(null));
+            assertThrows(IllegalArgumentException.class, () -> repository.suggestLastNames("co", 0));
+        }
+
+        @Test
+        @DisplayName("Should find and group persons by city, following moves and deletes")
+        void findByCityAndGroupByCity_mixedAddresses_useCityIndex() {
+            // Arrange
+            Person ana = repository.save(createPersonInCity("Ana", "Souza", "Recife", "PE"));
+            Person bia = repository.save(createPersonInCity("Bia", "Lima", "Olinda", "PE"));
+            Person caio = repository.save(createPersonInCity("Caio", "Costa", "Recife", "PE"));
+            Person davi = repository.save(createPersonInCity("Davi", "Dias", "Recife", "PE"));
+            repository.save(createPerson("Eva", "Alves"));
+
+            // Act
+            davi.setAddress(address("Rio de Janeiro", "RJ"));
+            repository.save(davi);
+            repository.deleteById(bia.getId());
+            SortedMap<Address.City, long[]> groups = repository.groupByCity();
+
+            // Assert
+            assertEquals(List.of(ana, caio), repository.findByCity("Recife", "PE"));
+            assertTrue(repository.findByCity("Recife", "RJ").isEmpty());
+            assertTrue(repository.findByCity("Olinda", "PE").isEmpty());
+            assertEquals(List.of(Address.City.of("Recife", "PE"), Address.City.of("Rio de Janeiro", "RJ")),
+                    new ArrayList<>(groups.keySet()));
+            assertArrayEquals(new long[] { ana.getId(), caio.getId() }, groups.get(Address.City.of("Recife", "PE")));
+            assertArrayEquals(new long[] { davi.getId() }, groups.get(Address.City.of("Rio de Janeiro", "RJ")));
+            assertThrows(IllegalArgumentException.class, () -> repository.findByCity(null, "PE"));
+        }
+
+        @Test
+        @DisplayName("Should find persons by zip code range and prefix in zip code order")
+        void findByZipRangeAndPrefix_mixedZipCodes_useSortedIndex() {
+            // Arrange
+            Person boaViagem = repository.save(createPersonWithZip("Ana", "51020-000"));
+            Person centro = repository.save(createPersonWithZip("Bia", "50010-000"));
+            Person olinda = repository.save(createPersonWithZip("Caio", "53000-100"));
+            Person rio = repository.save(createPersonWithZip("Davi", "20000-000"));
+            Person sameZip = repository.save(createPersonWithZip("Eva", "50010-000"));
+            repository.save(createPerson("Fabio", "Alves"));
+
+            // Act
+            rio.setAddress(new Address.Builder().street("Rua A").number("1").city("Recife").state("PE")
+                    .zipCode("50700-000").build());
+            repository.save(rio);
+            repository.deleteById(olinda.getId());
+
+            // Assert
+            assertEquals(List.of(centro, sameZip, rio, boaViagem), repository.findByZipRange("50000-000", "57000-000"));
+            assertEquals(List.of(centro, sameZip, rio), repository.findByZipPrefix("50"));
+            assertEquals(List.of(centro, sameZip), repository.findByZipPrefix("50010-0"));
+            assertTrue(repository.findByZipPrefix("2").isEmpty());
+            assertTrue(repository.findByZipRange("57000-000", "50000-000").isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> repository.findByZipRange(null, "57000-000"));
+            assertThrows(IllegalArgumentException.class, () -> repository.findByZipPrefix("5x"));
+        }
+
+        @Test
+        @DisplayName("Should not return US ZIP codes from CEP range queries")
+        void findByZipRangeAndPrefix_cepAndUsZipWithSameDigits_keptApart() {
+            // Arrange
+            Person recife = repository.save(createPersonWithZip("Ana", "12345-000"));
+            Person springfield = createPerson("Bob", "Smith");
+            springfield.setAddress(new Address.Builder().street("Main St").number("1").city("Springfield").state("IL")
+                    .zipCode("12345").country("USA").build());
+            repository.save(springfield);
+
+            // Act & Assert
+            assertEquals(List.of(recife), repository.findByZipPrefix("12345"));
+            assertEquals(List.of(recife), repository.findByZipRange("12000-000", "13000-000"));
+            assertEquals(List.of(springfield), repository.findByZipPrefix("12345", Address.ZipCodeKind.ZIP));
+            assertEquals(List.of(springfield), repository.findByZipRange("12000", "13000", Address.ZipCodeKind.ZIP));
+        }
+
+        @Test
+        @DisplayName("Should find persons by CPF and reject a CPF owned by another person")
+        void findByCpfAndSave_uniqueCpfIndex_rejectsDuplicates() {
+            // Arrange
+            Person ana = repository.save(createPersonWithCpf("Ana", "111.444.777-35"));
+            Person bia = repository.save(createPersonWithCpf("Bia", "123.456.789-09"));
+            Person copy = createPersonWithCpf("Caio", "11144477735");
+
+            // Act
+            DuplicateCpfException exception = assertThrows(DuplicateCpfException.class, () -> repository.save(copy));
+            ana.setLastName("Lima");
+            repository.save(ana);
+            bia.setCpf(null);
+            repository.save(bia);
+            Person moved = repository.save(createPersonWithCpf("Davi", "123.456.789-09"));
+
+            // Assert
+            assertEquals("CPF already registered: 111.444.777-35", exception.getMessage());
+            assertNull(copy.getId());
+            assertEquals(3, repository.count());
+            assertEquals(ana, repository.findByCpf("11144477735").orElseThrow());
+            assertEquals(moved, repository.findByCpf("123.456.789-09").orElseThrow());
+            repository.deleteById(ana.getId());
+            assertFalse(repository.findByCpf("111.444.777-35").isPresent());
+            assertThrows(IllegalArgumentException.class, () -> repository.findByCpf("123"));
+        }
+
+        @Test
+        @DisplayName("Should reject a whole batch when any CPF is duplicated")
+        void saveAll_duplicateCpfs_savesNothing() {
+            // Arrange
+            repository.save(createPersonWithCpf("Ana", "111.444.777-35"));
+
+            // Act & Assert
+            assertThrows(DuplicateCpfException.class, () -> repository.saveAll(List
+                    .of(createPersonWithCpf("Bia", "123.456.789-09"), createPersonWithCpf("Caio", "111.444.777-35"))));
+            assertThrows(DuplicateCpfException.class, () -> repository.saveAll(
+                    List.of(createPersonWithCpf("Davi", "529.982.247-25"), createPersonWithCpf("Eva", "52998224725"))));
+            assertEquals(1, repository.count());
+            assertFalse(repository.findByCpf("123.456.789-09").isPresent());
+        }
+
+        @Test
+        @DisplayName("Should find only persons whose birthday is today")
+        void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+            // Arrange
+            Person birthday = createPerson("Alice", "Smith");
+            birthday.setBirthday(TODAY.minusYears(30));
+            Person otherDay = createPerson("Bob", "Jones");
+            otherDay.setBirthday(TODAY.minusYears(30).minusDays(1));
+            repository.save(birthday);
+            repository.save(otherDay);
+            repository.save(createPerson("No", "Birthday"));
+
+            // Act
+            List<Person> result = repository.findBirthdayToday();
+
+            // Assert
+            assertEquals(1, result.size());
+            assertSame(birthday, result.get(0));
+        }
+
+        @Test
+        @DisplayName("Should include February 29 birthdays on the day the leap day policy chooses")
+        void findBirthdaysCelebratedOn_commonYear_appliesLeapDayPolicy() {
+            // Arrange
+            Person leapling = createPerson("Leap", "Day");
+            leapling.setBirthday(LocalDate.of(2000, 2, 29));
+            Person february = createPerson("Feb", "Day");
+            february.setBirthday(LocalDate.of(1990, 2, 28));
+            Person march = createPerson("Mar", "Day");
+            march.setBirthday(LocalDate.of(1990, 3, 1));
+            repository.saveAll(List.of(leapling, february, march));
+            LocalDate february28 = LocalDate.of(2023, 2, 28);
+            LocalDate march1 = LocalDate.of(2023, 3, 1);
+
+            // Act & Assert
+            assertEquals(List.of(february, leapling),
+                    repository.findBirthdaysCelebratedOn(february28, LeapDayPolicy.FEBRUARY_28));
+            assertEquals(List.of(march), repository.findBirthdaysCelebratedOn(march1, LeapDayPolicy.FEBRUARY_28));
+            assertEquals(List.of(march, leapling), repository.findBirthdaysCelebratedOn(march1, LeapDayPolicy.MARCH_1));
+            assertEquals(List.of(february),
+                    repository.findBirthdaysCelebratedOn(february28, LeapDayPolicy.LEAP_YEARS_ONLY));
+            assertEquals(List.of(leapling),
+                    repository.findBirthdaysCelebratedOn(LocalDate.of(2024, 2, 29), LeapDayPolicy.FEBRUARY_28));
+            assertEquals(List.of(february),
+                    repository.findBirthdaysCelebratedOn(LocalDate.of(2024, 2, 28), LeapDayPolicy.FEBRUARY_28));
+        }
+
+        @Test
+        @DisplayName("Should include February 29 birthdays today according to the configured leap day policy")
+        void findBirthdayToday_commonYear_appliesConfiguredLeapDayPolicy() {
+            // Arrange
+            Clock february28 = Clock.fixed(LocalDate.of(2023, 2, 28).atStartOfDay().toInstant(ZoneOffset.UTC),
+                    ZoneOffset.UTC);
+            Clock march1 = Clock.fixed(LocalDate.of(2023, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC),
+                    ZoneOffset.UTC);
+            IndexedPersonRepository byDefault = new IndexedPersonRepository(february28);
+            IndexedPersonRepository onMarch1 = new IndexedPersonRepository(march1, LeapDayPolicy.MARCH_1);
+            IndexedPersonRepository leapYearsOnly = new IndexedPersonRepository(february28,
+                    LeapDayPolicy.LEAP_YEARS_ONLY);
+            Person leapling = createPerson("Leap", "Day");
+            leapling.setBirthday(LocalDate.of(2000, 2, 29));
+            byDefault.save(leapling);
+            onMarch1.save(leapling);
+            leapYearsOnly.save(leapling);
+
+            // Act & Assert
+            assertEquals(List.of(leapling), byDefault.findBirthdayToday());
+            assertEquals(List.of(leapling), onMarch1.findBirthdayToday());
+            assertTrue(leapYearsOnly.findBirthdayToday().isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> new IndexedPersonRepository(february28, null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Delete Tests")
+    class DeleteTests {
+
+        @Test
+        @DisplayName("Should delete person and remove it from indexes")
+        void deleteById_existingPerson_removedEverywhere() {
+            // Arrange
+            Person person = createPerson("Alice", "Smith");
+            person.setBirthday(TODAY.minusYears(20));
+            repository.save(person);
+
+            // Act
+            boolean deleted = repository.deleteById(person.getId());
+
+            // Assert
+            assertTrue(deleted);
+            assertEquals(0, repository.count());
+            assertTrue(repository.findByLastName("Smith").isEmpty());
+            assertTrue(repository.findBirthdayToday().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should return false when deleting unknown ID")
+        void deleteById_unknownId_returnsFalse() {
+            assertFalse(repository.deleteById(42L));
+        }
+    }
+
+    @Test
+    @DisplayName("Should assign unique IDs under concurrent saves")
+    void save_concurrentWriters_uniqueIds() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> repository.save(createPerson("Concurrent", "Doe")).getId()));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<Long> future : futures) {
+            ids.add(future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(1000, ids.size());
+        assertEquals(1000, repository.count());
+        assertEquals(1000, repository.findByLastName("Doe").size());
+    }
+
+    @Test
+    @DisplayName("Should restore persons, indexes, family links and ID sequence from a snapshot")
+    void loadSnapshot_writtenSnapshot_restoresRepository(@TempDir Path tempDir) throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("persons.snapshot");
+        Person parent = createPerson("Parent", "Family");
+        parent.setBirthday(TODAY.minusYears(40));
+        Person child = createPerson("Child", "Family");
+        repository.save(parent);
+        repository.save(child);
+        parent.addToFamily(child);
+        repository.save(createPerson("Deleted", "Doe"));
+        repository.deleteById(3L);
+        repository.writeSnapshot(file);
+
+        // Act
+        IndexedPersonRepository restored = IndexedPersonRepository.loadSnapshot(file, clock);
+
+        // Assert
+        assertEquals(2, restored.count());
+        Person restoredParent = restored.findById(1L).orElseThrow();
+        assertEquals(parent, restoredParent);
+        assertSame(restored.findById(2L).orElseThrow(), restoredParent.getFamily().get(0));
+        assertEquals(2, restored.findByLastName("Family").size());
+        assertEquals(List.of(restoredParent), restored.findBirthdayToday());
+        assertEquals(4L, restored.save(createPerson("New", "Person")).getId());
+    }
+
+    @Test
+    @DisplayName("Should build every secondary index in bulk when loading a snapshot")
+    void loadSnapshot_bulkBuiltIndexes_answerAndUpdateLikeSavedOnes(@TempDir Path tempDir) throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("persons.snapshot");
+        repository.save(createPersonWithCpf("Ana", "111.444.777-35"));
+        repository.save(createPersonInCity("Bia", "Conceição", "Recife", "PE"));
+        repository.save(createPersonWithZip("Caio", "50010-000"));
+        repository.save(createPersonInCity("Duda", "Conceicao", "Recife", "PE"));
+        repository.writeSnapshot(file);
+
+        // Act
+        IndexedPersonRepository restored = IndexedPersonRepository.loadSnapshot(file, clock);
+        Person duda = restored.findById(4L).orElseThrow();
+        duda.setLastName("Lima");
+        restored.save(duda);
+        restored.deleteById(3L);
+
+        // Assert
+        assertEquals(1L, restored.findByCpf("11144477735").orElseThrow().getId());
+        assertThrows(DuplicateCpfException.class, () -> restored.save(createPersonWithCpf("Other", "111.444.777-35")));
+        assertEquals(List.of(2L), restored.findByNormalizedLastName("conceicao").stream().map(Person::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of("Conceição"), restored.suggestLastNames("conc", 5));
+        assertEquals(List.of(2L, 4L),
+                restored.findByCity("Recife", "PE").stream().map(Person::getId).collect(Collectors.toList()));
+        assertTrue(restored.findByZipPrefix("50010").isEmpty());
+        assertEquals(List.of(duda), restored.findByLastName("Lima"));
+        assertEquals(3, restored.findPage(0L, 10).size());
+    }
+
+    @Test
+    @DisplayName("Should page through persons and last names in ID order with cursors")
+    void findPage_andLastNameCursor_pageInIdOrder() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, i % 3 == 0 ? "Silva" : "Souza"));
+        }
+        repository.deleteById(4L);
+
+        // Act
+        List<Person> firstPage = repository.findPage(0L, 4);
+        List<Person> secondPage = repository.findPage(firstPage.get(3).getId(), 4);
+        Page<Person> silva = repository.findByLastName("Silva", null, 2);
+        Page<Person> nextSilva = repository.findByLastName("Silva", silva.getNextCursor(), 2);
+
+        // Assert
+        assertEquals(List.of(1L, 2L, 3L, 5L), firstPage.stream().map(Person::getId).collect(Collectors.toList()));
+        assertEquals(List.of(6L, 7L, 8L, 9L), secondPage.stream().map(Person::getId).collect(Collectors.toList()));
+        assertTrue(repository.findPage(10L, 4).isEmpty());
+        assertEquals(List.of(1L, 7L), silva.getItems().stream().map(Person::getId).collect(Collectors.toList()));
+        assertTrue(silva.hasNext());
+        assertEquals(List.of(10L), nextSilva.getItems().stream().map(Person::getId).collect(Collectors.toList()));
+        assertFalse(nextSilva.hasNext());
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findByLastName("Souza", silva.getNextCursor(), 2));
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(0L, -1));
+    }
+
+    @Test
+    @DisplayName("Should save, find and delete batches, skipping duplicates")
+    void batchOperations_duplicatesAndUnknownIds_areSkipped() {
+        // Arrange
+        Person jane = createPerson("Jane", "Doe");
+        Person john = createPerson("John", "Doe");
+
+        // Act
+        List<Person> saved = repository.saveAll(Arrays.asList(jane, john, jane));
+        List<Person> found = repository.findAllById(Arrays.asList(2L, null, 99L, 1L, 2L));
+        int deleted = repository.deleteAllById(Arrays.asList(1L, 1L, 99L));
+
+        // Assert
+        assertEquals(List.of(jane, john), saved);
+        assertEquals(List.of(1L, 2L), List.of(jane.getId(), john.getId()));
+        assertEquals(List.of(john, jane), found);
+        assertEquals(1, deleted);
+        assertEquals(List.of(john), repository.findByLastName("Doe"));
+        assertThrows(IllegalArgumentException.class, () -> repository.saveAll(Arrays.asList(jane, null)));
+        assertThrows(IllegalArgumentException.class, () -> repository.saveAll(null));
+        assertThrows(IllegalArgumentException.class, () -> repository.findAllById(null));
+        assertThrows(IllegalArgumentException.class, () -> repository.deleteAllById(null));
+    }
+
+    @Test
+    @DisplayName("Should find and count persons by birthdate range, oldest first")
+    void birthdateRangeQueries_mixedBirthdates_useSortedIndex() {
+        // Arrange
+        Person oldest = createPerson("Oldest", "Doe");
+        oldest.setBirthday(LocalDate.of(1950, 3, 1));
+        Person cutoff = createPerson("Cutoff", "Doe");
+        cutoff.setBirthday(TODAY.minusYears(18));
+        Person sameDay = createPerson("Same", "Day");
+        sameDay.setBirthday(TODAY.minusYears(18));
+        Person earlierThatYear = createPerson("Earlier", "Doe");
+        earlierThatYear.setBirthday(TODAY.minusYears(18).withDayOfYear(1));
+        Person minor = createPerson("Minor", "Doe");
+        minor.setBirthday(TODAY.minusYears(18).plusDays(1));
+        Person moved = createPerson("Moved", "Doe");
+        moved.setBirthday(LocalDate.of(1960, 1, 1));
+        repository.saveAll(List.of(minor, cutoff, oldest, sameDay, earlierThatYear, moved));
+        repository.save(createPerson("No", "Birthday"));
+
+        // Act
+        moved.setBirthday(TODAY);
+        repository.save(moved);
+        repository.deleteById(oldest.getId());
+        LocalDate adultCutoff = TODAY.minusYears(18);
+
+        // Assert
+        assertEquals(List.of(earlierThatYear, cutoff, sameDay), repository.findBornOnOrBefore(adultCutoff));
+        assertEquals(3, repository.countBornOnOrBefore(adultCutoff));
+        assertEquals(1, repository.countBornOnOrBefore(adultCutoff.minusDays(1)));
+        assertEquals(List.of(cutoff, sameDay, minor), repository.findBornBetween(adultCutoff, TODAY));
+        assertTrue(repository.findBornBetween(TODAY, adultCutoff).isEmpty());
+        assertEquals(5, repository.countBornOnOrBefore(TODAY));
+        assertThrows(IllegalArgumentException.class, () -> repository.findBornOnOrBefore(null));
+        assertThrows(IllegalArgumentException.class, () -> repository.findBornBetween(null, TODAY));
+        assertThrows(IllegalArgumentException.class, () -> repository.countBornOnOrBefore(null));
+    }
+
+    @Test
+    @DisplayName("Should stream persons a page at a time in ID order, skipping persons deleted meanwhile")
+    void streamAll_morePersonsThanAPage_weaklyConsistent() {
+        // Arrange
+        for (int i = 0; i < 600; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        Iterator<Person> iterator = repository.streamAll().iterator();
+        List<Long> seen = new ArrayList<>();
+        seen.add(iterator.next().getId());
+
+        // Act
+        repository.deleteById(500L);
+        iterator.forEachRemaining(person -> seen.add(person.getId()));
+
+        // Assert
+        assertEquals(599, seen.size());
+        assertFalse(seen.contains(500L));
+        assertEquals(seen.stream().sorted().collect(Collectors.toList()), seen);
+        assertEquals(599, repository.streamAll().parallel().count());
+    }
+
+    private static Person createPersonInCity(String firstName, String lastName, String city, String state) {
+        Person person = createPerson(firstName, lastName);
+        person.setAddress(address(city, state));
+        return person;
+    }
+
+    private static Person createPersonWithZip(String firstName, String zipCode) {
+        Person person = createPerson(firstName, "Souza");
+        person.setAddress(
+                new Address.Builder().street("Rua A").number("1").city("Recife").state("PE").zipCode(zipCode).build());
+        return person;
+    }
+
+    private static Person createPersonWithCpf(String firstName, String cpf) {
+        Person person = createPerson(firstName, "Souza");
+        person.setCpf(cpf);
+        return person;
+    }
+
+    private static Address address(String city, String state) {
+        return new Address.Builder().street("Rua A").number("1").city(city).state(state).zipCode("50000-000").build();
+    }
+}
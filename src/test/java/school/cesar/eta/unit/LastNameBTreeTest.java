@@ -0,0 +1,204 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LastNameBTree class.
+ */
+@DisplayName("LastNameBTree Test Suite")
+public class LastNameBTreeTest {
+
+    private static final String[] NAMES = { "Almeida", "Barros", "Cardoso", "Costa", "Dias", "Lima", "Melo", "Rocha",
+            "Silva", "Souza" };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should find every ID of a name after many splits")
+    void findExact_manyKeys_returnsAllIdsInOrder() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            fill(tree, 20_000);
+
+            // Act
+            List<Long> ids = collect(action -> tree.findExact("Silva", action));
+
+            // Assert
+            assertTrue(tree.height() >= 2);
+            assertEquals(2_000, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(8L + i * NAMES.length, ids.get(i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should match prefixes and half-open ranges on normalized names")
+    void findPrefixAndRange_normalizedNames_returnMatches() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            tree.insert("Conceição", 1);
+            tree.insert("CONCEICAO", 2);
+            tree.insert("Cordeiro", 3);
+            tree.insert("Costa", 4);
+            tree.insert("Dias", 5);
+
+            // Act
+            List<Long> prefix = collect(action -> tree.findPrefix("conc", action));
+            List<Long> range = collect(action -> tree.findRange("cord", "Dias", action));
+            List<Long> all = collect(action -> tree.findPrefix("", action));
+
+            // Assert
+            assertEquals(List.of(1L, 2L), prefix);
+            assertEquals(List.of(3L, 4L), range);
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), all);
+        }
+    }
+
+    @Test
+    @DisplayName("Should not match a longer name on an exact lookup")
+    void findExact_longerNameWithSamePrefix_isExcluded() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            tree.insert("Sá", 1);
+            tree.insert("Sales", 2);
+
+            // Act & Assert
+            assertEquals(List.of(1L), collect(action -> tree.findExact("sa", action)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should remove entries and ignore duplicate inserts")
+    void remove_existingEntry_isNoLongerFound() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            fill(tree, 5_000);
+            tree.insert("Lima", 5L);
+
+            // Act
+            boolean removed = tree.remove("Lima", 5L);
+            boolean removedTwice = tree.remove("Lima", 5L);
+
+            // Assert
+            assertTrue(removed);
+            assertFalse(removedTwice);
+            List<Long> ids = collect(action -> tree.findExact("Lima", action));
+            assertEquals(499, ids.size());
+            assertFalse(ids.contains(5L));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep entries after a clean close and report the clean shutdown")
+    void reopen_afterClose_keepsEntries() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("names.idx");
+        try (LastNameBTree tree = new LastNameBTree(file, 16)) {
+            assertFalse(tree.wasClosedCleanly());
+            fill(tree, 10_000);
+        }
+
+        // Act & Assert
+        try (LastNameBTree tree = new LastNameBTree(file, 16)) {
+            assertTrue(tree.wasClosedCleanly());
+            assertEquals(1_000, collect(action -> tree.findExact("Rocha", action)).size());
+            assertEquals(2_000, collect(action -> tree.findRange("Melo", "S", action)).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Should read only a logarithmic number of pages for a lookup")
+    void findExact_coldCache_readsFewPages() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("names.idx");
+        try (LastNameBTree tree = new LastNameBTree(file, 16)) {
+            for (long id = 1; id <= 50_000; id++) {
+                tree.insert("Name" + id, id);
+            }
+        }
+
+        try (LastNameBTree tree = new LastNameBTree(file, 16)) {
+            // Act
+            List<Long> ids = collect(action -> tree.findExact("Name31337", action));
+
+            // Assert
+            assertEquals(List.of(31337L), ids);
+            assertTrue(tree.getPageReads() <= tree.height() + 1, "page reads: " + tree.getPageReads());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop every entry on clear")
+    void clear_populatedTree_isEmpty() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            fill(tree, 5_000);
+
+            // Act
+            tree.clear();
+
+            // Assert
+            assertTrue(collect(action -> tree.findPrefix("", action)).isEmpty());
+            assertEquals(1, tree.height());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject files that are not last name indexes")
+    void open_foreignFile_throwsException() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("other.bin");
+        Files.write(file, new byte[LastNameBTree.PAGE_SIZE]);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new LastNameBTree(file, 16));
+    }
+
+    @Test
+    @DisplayName("Should resume an exact name lookup after an ID, including negative IDs")
+    void findExact_afterId_returnsNextIdsInOrder() throws IOException {
+        try (LastNameBTree tree = new LastNameBTree(tempDir.resolve("names.idx"), 16)) {
+            // Arrange
+            for (long id = -5; id < 2_000; id++) {
+                tree.insert(id % 2 == 0 ? "Silva" : "Souza", id);
+            }
+            List<Long> ids = new ArrayList<>();
+
+            // Act
+            int first = tree.findExact("Silva", Long.MIN_VALUE, 3, ids::add);
+            int next = tree.findExact("Silva", 1_990, 10, ids::add);
+
+            // Assert
+            assertEquals(3, first);
+            assertEquals(4, next);
+            assertEquals(List.of(-4L, -2L, 0L, 1_992L, 1_994L, 1_996L, 1_998L), ids);
+            assertEquals(0, tree.findExact("Silva", Long.MAX_VALUE, 10, ids::add));
+        }
+    }
+
+    private static void fill(LastNameBTree tree, int count) {
+        for (long id = 0; id < count; id++) {
+            tree.insert(NAMES[(int) (id % NAMES.length)], id);
+        }
+    }
+
+    private static List<Long> collect(Consumer<LongConsumer> query) {
+        List<Long> ids = new ArrayList<>();
+        query.accept(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,152 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LastNameTrie class.
+ */
+@DisplayName("LastNameTrie Test Suite")
+public class LastNameTrieTest {
+
+    @Test
+    @DisplayName("Should find IDs ignoring case and accents")
+    void idsOf_accentedAndPlainSpellings_shareKey() {
+        // Arrange
+        LastNameTrie trie = new LastNameTrie();
+        trie.add("Conceição", 3L);
+        trie.add("conceicao", 1L);
+        trie.add("Conceicao", 1L);
+        trie.add("Conde", 2L);
+
+        // Act & Assert
+        assertArrayEquals(new long[] { 1L, 3L }, trie.idsOf("CONCEIÇÃO"));
+        assertArrayEquals(new long[] { 2L }, trie.idsOf("conde"));
+        assertArrayEquals(new long[0], trie.idsOf("Conc"));
+        assertArrayEquals(new long[0], trie.idsOf("Conceicaos"));
+        assertEquals(1L, trie.firstIdOf("CONCEIÇÃO", -1L));
+        assertEquals(-1L, trie.firstIdOf("Conc", -1L));
+        assertEquals(3, trie.size());
+        assertEquals(2, trie.nameCount());
+    }
+
+    @Test
+    @DisplayName("Should find prefixes ending inside an edge, ordered by name and then ID")
+    void idsWithPrefixAndComplete_sharedPrefixes_returnInNameOrder() {
+        // Arrange
+        LastNameTrie trie = new LastNameTrie();
+        trie.add("Silvestre", 4L);
+        trie.add("Silva", 2L);
+        trie.add("Silveira", 1L);
+        trie.add("Silva", 5L);
+        trie.add("Souza", 3L);
+
+        // Act & Assert
+        assertArrayEquals(new long[] { 2L, 5L, 1L, 4L }, trie.idsWithPrefix("SIL"));
+        assertArrayEquals(new long[] { 1L, 4L }, trie.idsWithPrefix("silve"));
+        assertArrayEquals(new long[0], trie.idsWithPrefix("silx"));
+        assertEquals(List.of("silva", "silveira", "silvestre", "souza"), trie.complete("", 10));
+        assertEquals(List.of("silva", "silveira"), trie.complete("Sí", 2));
+        assertTrue(trie.complete("x", 5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> trie.complete("s", 0));
+        assertThrows(IllegalArgumentException.class, () -> trie.idsOf(null));
+    }
+
+    @Test
+    @DisplayName("Should drop and merge nodes on removal until it is as small as a fresh trie")
+    void remove_allButOneName_shrinksBackToFreshSize() {
+        // Arrange
+        LastNameTrie trie = new LastNameTrie();
+        LastNameTrie fresh = new LastNameTrie();
+        fresh.add("Silvestre", 1L);
+        trie.add("Silvestre", 1L);
+        trie.add("Silva", 2L);
+        trie.add("Silveira", 3L);
+        trie.add("Sil", 4L);
+
+        // Act
+        boolean removedUnknownId = trie.remove("Silva", 99L);
+        boolean removedUnknownName = trie.remove("Silvia", 2L);
+        trie.remove("Silveira", 3L);
+        trie.remove("Sil", 4L);
+        trie.remove("silva", 2L);
+
+        // Assert
+        assertFalse(removedUnknownId);
+        assertFalse(removedUnknownName);
+        assertEquals(1, trie.size());
+        assertEquals(1, trie.nameCount());
+        assertEquals(fresh.estimatedBytes(), trie.estimatedBytes());
+        assertArrayEquals(new long[] { 1L }, trie.idsOf("Silvestre"));
+        assertEquals(List.of("silvestre"), trie.complete("s", 10));
+    }
+
+    @Test
+    @DisplayName("Should match a sorted map under many random adds and removes")
+    void randomUpdates_matchReferenceMap() {
+        // Arrange
+        Random random = new Random(42);
+        String[] names = { "Silva", "Silveira", "Silvestre", "Santos", "Santana", "Sant", "Souza", "Sousa", "Costa",
+                "Conceição", "Conde", "Cruz" };
+        Map<String, TreeSet<Long>> expected = new TreeMap<>();
+        LastNameTrie trie = new LastNameTrie();
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            String name = names[random.nextInt(names.length)];
+            long id = random.nextInt(200);
+            String key = NameNormalizer.normalize(name);
+            if (random.nextInt(3) == 0) {
+                TreeSet<Long> ids = expected.get(key);
+                assertEquals(ids != null && ids.remove(id), trie.remove(name, id));
+                if (ids != null && ids.isEmpty()) {
+                    expected.remove(key);
+                }
+            } else {
+                assertEquals(expected.computeIfAbsent(key, k -> new TreeSet<>()).add(id), trie.add(name, id));
+            }
+        }
+
+        // Assert
+        List<Long> allIds = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, TreeSet<Long>> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue().stream().mapToLong(Long::longValue).toArray(),
+                    trie.idsOf(entry.getKey()));
+            allIds.addAll(entry.getValue());
+            size += entry.getValue().size();
+        }
+        assertEquals(size, trie.size());
+        assertEquals(expected.size(), trie.nameCount());
+        assertEquals(new ArrayList<>(expected.keySet()), trie.complete("", 100));
+        assertArrayEquals(allIds.stream().mapToLong(Long::longValue).toArray(), trie.idsWithPrefix(""));
+    }
+
+    @Test
+    @DisplayName("Should store shared names in a few bytes per entry")
+    void estimatedBytes_manyPersonsPerName_staysCompact() {
+        // Arrange
+        LastNameTrie trie = new LastNameTrie();
+
+        // Act
+        for (long id = 0; id < 100_000; id++) {
+            trie.add("Sobrenome" + id % 1_000, id);
+        }
+
+        // Assert
+        assertEquals(1_000, trie.nameCount());
+        assertTrue(trie.estimatedBytes() < 16L * trie.size(), trie.estimatedBytes() + " bytes");
+        trie.clear();
+        assertEquals(0, trie.size());
+        assertTrue(trie.complete("", 1).isEmpty());
+    }
+}
@@ -0,0 +1,42 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LeapDayPolicy enum.
+ */
+@DisplayName("LeapDayPolicy Test Suite")
+public class LeapDayPolicyTest {
+
+    private static final MonthDay LEAP_DAY = MonthDay.of(2, 29);
+
+    @Test
+    @DisplayName("Should add February 29 to the substitute day in common years only")
+    void birthdaysCelebratedOn_substituteDay_addsLeapDayInCommonYears() {
+        assertEquals(List.of(MonthDay.of(2, 28), LEAP_DAY),
+                LeapDayPolicy.FEBRUARY_28.birthdaysCelebratedOn(LocalDate.of(2023, 2, 28)));
+        assertEquals(List.of(MonthDay.of(2, 28)),
+                LeapDayPolicy.FEBRUARY_28.birthdaysCelebratedOn(LocalDate.of(2024, 2, 28)));
+        assertEquals(List.of(MonthDay.of(3, 1), LEAP_DAY),
+                LeapDayPolicy.MARCH_1.birthdaysCelebratedOn(LocalDate.of(2023, 3, 1)));
+        assertEquals(List.of(MonthDay.of(3, 1)), LeapDayPolicy.MARCH_1.birthdaysCelebratedOn(LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    @DisplayName("Should celebrate February 29 only on that day when leap years only")
+    void birthdaysCelebratedOn_leapYearsOnly_neverSubstitutes() {
+        assertEquals(List.of(MonthDay.of(2, 28)),
+                LeapDayPolicy.LEAP_YEARS_ONLY.birthdaysCelebratedOn(LocalDate.of(2023, 2, 28)));
+        assertEquals(List.of(MonthDay.of(3, 1)),
+                LeapDayPolicy.LEAP_YEARS_ONLY.birthdaysCelebratedOn(LocalDate.of(2023, 3, 1)));
+        assertEquals(List.of(LEAP_DAY), LeapDayPolicy.LEAP_YEARS_ONLY.birthdaysCelebratedOn(LocalDate.of(2024, 2, 29)));
+        assertThrows(IllegalArgumentException.class, () -> LeapDayPolicy.FEBRUARY_28.birthdaysCelebratedOn(null));
+    }
+}
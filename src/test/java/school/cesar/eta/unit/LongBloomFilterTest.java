@@ -0,0 +1,91 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LongBloomFilter class.
+ */
+@DisplayName("LongBloomFilter Test Suite")
+public class LongBloomFilterTest {
+
+    @Test
+    @DisplayName("Should never report an added key as absent")
+    void mightContain_addedKeys_returnsTrue() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.put(key * 7919);
+        }
+
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key * 7919));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep false positives close to the configured rate")
+    void mightContain_absentKeys_respectsFalsePositiveRate() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long key = 1; key <= 10_000; key++) {
+            filter.put(key);
+        }
+
+        int falsePositives = 0;
+        for (long key = 1_000_000; key < 1_100_000; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Should estimate a false positive rate that grows past the configured one when overfilled")
+    void expectedFalsePositiveRate_growsWithKeys() {
+        LongBloomFilter filter = new LongBloomFilter(1_000, 0.01);
+        double empty = filter.expectedFalsePositiveRate();
+        for (long key = 0; key < 1_000; key++) {
+            filter.put(key);
+        }
+        double full = filter.expectedFalsePositiveRate();
+        for (long key = 1_000; key < 3_000; key++) {
+            filter.put(key);
+        }
+
+        assertEquals(0.0, empty);
+        assertEquals(0.01, full, 0.005);
+        assertTrue(filter.expectedFalsePositiveRate() > 0.1);
+    }
+
+    @Test
+    @DisplayName("Should read back an identical filter")
+    void readFrom_writtenFilter_keepsKeys() {
+        LongBloomFilter filter = new LongBloomFilter(100, 0.05);
+        filter.put(42L);
+        filter.put(-7L);
+        ByteBuffer buffer = ByteBuffer.allocate(filter.serializedSize());
+
+        filter.writeTo(buffer);
+        buffer.flip();
+        LongBloomFilter read = LongBloomFilter.readFrom(buffer);
+
+        assertEquals(filter.bitSize(), read.bitSize());
+        assertTrue(read.mightContain(42L));
+        assertTrue(read.mightContain(-7L));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid arguments and data")
+    void invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(-1, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(10, 1));
+        assertThrows(IllegalArgumentException.class, () -> LongBloomFilter.readFrom(ByteBuffer.allocate(8)));
+    }
+}
@@ -0,0 +1,67 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LongLongMap class.
+ */
+@DisplayName("LongLongMap Test Suite")
+public class LongLongMapTest {
+
+    @Test
+    @DisplayName("Should put, get and replace values")
+    void put_newAndExistingKeys_storesLatestValue() {
+        LongLongMap map = new LongLongMap();
+
+        assertTrue(map.put(0L, 10L));
+        assertFalse(map.put(0L, 20L));
+
+        assertEquals(20L, map.get(0L, -1L));
+        assertEquals(-1L, map.get(1L, -1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("Should behave like HashMap under random operations")
+    void randomOperations_matchHashMap() {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 1_000;
+            if (random.nextBoolean()) {
+                assertEquals(!reference.containsKey(key), map.put(key, i));
+                reference.put(key, (long) i);
+            } else {
+                assertEquals(reference.remove(key) != null, map.remove(key));
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(reference, visited);
+    }
+
+    @Test
+    @DisplayName("Should clear all entries")
+    void clear_nonEmptyMap_becomesEmpty() {
+        LongLongMap map = new LongLongMap(100);
+        map.put(1L, 1L);
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(1L));
+        assertThrows(IllegalArgumentException.class, () -> new LongLongMap(-1));
+        assertThrows(IllegalArgumentException.class, () -> new LongLongMap(LongObjectMap.MAX_SIZE + 1));
+    }
+}
@@ -0,0 +1,157 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for LongObjectMap class.
+ */
+@DisplayName("LongObjectMap Test Suite")
+public class LongObjectMapTest {
+
+    @Test
+    @DisplayName("Should put, get and replace values")
+    void put_newAndExistingKeys_storesLatestValue() {
+        // Arrange
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        // Act
+        assertNull(map.put(1L, "one"));
+        String previous = map.put(1L, "uno");
+
+        // Assert
+        assertEquals("one", previous);
+        assertEquals("uno", map.get(1L));
+        assertEquals(1, map.size());
+        assertNull(map.get(2L));
+    }
+
+    @Test
+    @DisplayName("Should support negative and extreme keys")
+    void put_extremeKeys_success() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, "max");
+        map.put(0L, "zero");
+        map.put(-1L, "minus one");
+
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertEquals("zero", map.get(0L));
+        assertEquals("minus one", map.get(-1L));
+    }
+
+    @Test
+    @DisplayName("Should grow past the initial capacity")
+    void put_manyEntries_resizes() {
+        LongObjectMap<Long> map = new LongObjectMap<>(4);
+        for (long i = 0; i < 10_000; i++) {
+            map.put(i, i * 2);
+        }
+
+        assertEquals(10_000, map.size());
+        for (long i = 0; i < 10_000; i++) {
+            assertEquals(i * 2, map.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should remove entries without breaking probe runs")
+    void remove_existingKeys_keepsOtherKeysReachable() {
+        // Arrange
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i, i);
+        }
+
+        // Act
+        for (long i = 0; i < 1_000; i += 2) {
+            assertEquals(i, map.remove(i));
+        }
+
+        // Assert
+        assertEquals(500, map.size());
+        for (long i = 0; i < 1_000; i++) {
+            assertEquals(i % 2 == 1, map.containsKey(i));
+        }
+        assertNull(map.remove(0L));
+    }
+
+    @Test
+    @DisplayName("Should behave like HashMap under random operations")
+    void randomOperations_matchHashMap() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        reference.forEach((key, value) -> assertEquals(value, map.get(key)));
+        List<Long> values = map.values();
+        assertEquals(reference.size(), values.size());
+        assertTrue(values.containsAll(reference.values()));
+    }
+
+    @Test
+    @DisplayName("Should clear all entries")
+    void clear_nonEmptyMap_becomesEmpty() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1L, "one");
+        map.put(2L, "two");
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(1L));
+    }
+
+    @Test
+    @DisplayName("Should keep entries when growing ahead of a bulk load")
+    void ensureCapacity_existingEntries_keepsEntries() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1L, "one");
+        map.put(2L, "two");
+
+        map.ensureCapacity(10_000);
+        map.ensureCapacity(1);
+
+        assertEquals(2, map.size());
+        assertEquals("one", map.get(1L));
+        assertEquals("two", map.get(2L));
+    }
+
+    @Test
+    @DisplayName("Should reject null values and negative sizes")
+    void invalidArguments_throwException() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertThrows(IllegalArgumentException.class, () -> map.put(1L, null));
+        assertThrows(IllegalArgumentException.class, () -> new LongObjectMap<String>(-1));
+    }
+
+    @Test
+    @DisplayName("Should refuse to grow past the maximum capacity")
+    void maxCapacity_reached_throwsException() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> new LongObjectMap<String>(LongObjectMap.MAX_SIZE + 1));
+        assertThrows(IllegalArgumentException.class, () -> map.ensureCapacity(Integer.MAX_VALUE));
+        assertDoesNotThrow(() -> LongObjectMap.checkNotFull(LongObjectMap.MAX_SIZE - 1));
+        assertThrows(IllegalStateException.class, () -> LongObjectMap.checkNotFull(LongObjectMap.MAX_SIZE));
+        assertEquals(1 << 30, LongObjectMap.capacityFor(LongObjectMap.MAX_SIZE));
+    }
+}
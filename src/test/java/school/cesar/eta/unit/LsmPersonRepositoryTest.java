@@ -0,0 +1,296 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for LsmPersonRepository class.
+ */
+@DisplayName("LsmPersonRepository Test Suite")
+public class LsmPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    private static final long MEMTABLE_BYTES = 2048;
+
+    @TempDir
+    Path directory;
+
+    private Clock clock;
+    private LsmPersonRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = builder().build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    @DisplayName("Should round-trip every stored field from the memtable and from runs")
+    void findById_savedPerson_readsAllFields() {
+        // Arrange
+        Address address = new Address.Builder().street("Rua da Aurora").number("10").city("Recife").state("PE")
+                .zipCode("50050-000").build();
+        Person person = createPerson("José", "Conceição");
+        person.setBirthday(LocalDate.of(1985, 2, 28));
+        person.setCpf("111.444.777-35");
+        person.setAddress(address);
+
+        // Act
+        repository.save(person);
+        Person fromMemtable = repository.findById(person.getId()).orElseThrow();
+        saveMany(100, "Filler");
+        repository.awaitBackgroundWork();
+        Person fromRun = repository.findById(person.getId()).orElseThrow();
+
+        // Assert
+        assertNotSame(person, fromMemtable);
+        assertEquals(person, fromMemtable);
+        assertEquals(person, fromRun);
+        assertEquals(address, fromRun.getAddress());
+        assertTrue(repository.getRunCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Should see the newest version across memtable and runs")
+    void save_updatesAcrossRuns_returnsNewestVersion() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+        saveMany(60, "Filler");
+        repository.awaitBackgroundWork();
+
+        // Act
+        person.setLastName("Smith");
+        repository.save(person);
+
+        // Assert
+        assertEquals("Smith", repository.findById(person.getId()).orElseThrow().getLastName());
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+        assertEquals(1, repository.findByLastName("Smith").size());
+        assertEquals(61, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should hide deleted persons stored in older runs")
+    void deleteById_personInRun_hidesPerson() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+        saveMany(60, "Filler");
+        repository.awaitBackgroundWork();
+
+        // Act
+        boolean deleted = repository.deleteById(person.getId());
+
+        // Assert
+        assertTrue(deleted);
+        assertFalse(repository.existsById(person.getId()));
+        assertFalse(repository.deleteById(person.getId()));
+        assertEquals(60, repository.count());
+        assertFalse(repository.deleteById(999L));
+    }
+
+    @Test
+    @DisplayName("Should merge runs with size-tiered compaction and keep every person")
+    void save_manyMemtables_compactsRuns() {
+        // Act
+        List<Person> saved = saveMany(1000, "Doe");
+        for (int i = 0; i < 1000; i += 2) {
+            repository.deleteById(saved.get(i).getId());
+        }
+        repository.awaitBackgroundWork();
+
+        // Assert
+        assertTrue(repository.getRunCount() < 8, "Runs: " + repository.getRunCount());
+        assertEquals(500, repository.count());
+        List<Person> all = repository.findAll();
+        assertEquals(500, all.size());
+        assertTrue(all.stream().allMatch(person -> person.getId() % 2 == 0));
+        assertEquals(saved.get(999), repository.findById(1000L).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should replay the memtable log and keep the ID sequence after reopening")
+    void reopen_existingDirectory_restoresState() throws IOException {
+        // Arrange
+        saveMany(150, "Doe");
+        repository.deleteById(3L);
+        repository.deleteById(150L);
+        repository.close();
+
+        // Act
+        repository = builder().build();
+        Person added = repository.save(createPerson("After", "Restart"));
+
+        // Assert
+        assertEquals(149, repository.count());
+        assertFalse(repository.existsById(3L));
+        assertEquals("Person3", repository.findById(4L).orElseThrow().getFirstName());
+        assertEquals(151L, added.getId());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".log")).count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop runs already replaced by an interrupted merge")
+    void reopen_leftoverMergedRuns_dropsReplacedRuns() throws IOException {
+        // Arrange
+        saveMany(400, "Doe");
+        repository.awaitBackgroundWork();
+        repository.close();
+        List<Path> runs;
+        try (Stream<Path> files = Files.list(directory)) {
+            runs = files.filter(file -> file.toString().endsWith(".sst")).collect(Collectors.toList());
+        }
+        Path merged = runs.stream().filter(file -> !isSingleMemtableRun(file)).findFirst().orElseThrow();
+        String[] sequences = merged.getFileName().toString().replace("run-", "").replace(".sst", "").split("-");
+        Path leftover = directory.resolve("run-" + sequences[0] + "-" + sequences[0] + ".sst");
+        Files.copy(merged, leftover);
+
+        // Act
+        repository = builder().build();
+
+        // Assert
+        assertFalse(Files.exists(leftover));
+        assertEquals(400, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should load family links one level deep")
+    void findById_personWithFamily_linksMembers() {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+        repository.save(child);
+
+        // Act
+        Person loaded = repository.findById(parent.getId()).orElseThrow();
+
+        // Assert
+        assertEquals(1, loaded.getFamily().size());
+        assertEquals("Child", loaded.getFamily().get(0).getFirstName());
+    }
+
+    @Test
+    @DisplayName("Should find only persons whose birthday is today")
+    void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        Person otherDay = createPerson("Bob", "Jones");
+        otherDay.setBirthday(TODAY.minusDays(1));
+        repository.save(birthday);
+        repository.save(otherDay);
+
+        // Act
+        List<Person> result = repository.findBirthdayToday();
+
+        // Assert
+        assertEquals(List.of(birthday), result);
+    }
+
+    @Test
+    @DisplayName("Should reject writes after closing")
+    void save_closedRepository_throwsException() throws IOException {
+        // Arrange
+        repository.close();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> repository.save(createPerson("Late", "Doe")));
+    }
+
+    @Test
+    @DisplayName("Should page in ID order across memtable and runs, skipping deleted persons")
+    void findPage_acrossRuns_pagesInIdOrder() {
+        // Arrange
+        List<Person> saved = saveMany(300, "Doe");
+        repository.deleteById(saved.get(100).getId());
+        Person updated = saved.get(150);
+        updated.setFirstName("Updated");
+        repository.save(updated);
+        repository.awaitBackgroundWork();
+
+        // Act
+        List<Long> paged = new ArrayList<>();
+        List<Person> page = repository.findPage(0L, 7);
+        while (!page.isEmpty()) {
+            page.forEach(person -> paged.add(person.getId()));
+            page = repository.findPage(page.get(page.size() - 1).getId(), 7);
+        }
+
+        // Assert
+        assertEquals(repository.findAll().stream().map(Person::getId).collect(Collectors.toList()), paged);
+        assertEquals(299, paged.size());
+        assertFalse(paged.contains(saved.get(100).getId()));
+        assertEquals("Updated", repository.findPage(updated.getId() - 1, 1).get(0).getFirstName());
+        assertEquals(List.of(131L, 132L),
+                repository.findPage(130L, 2).stream().map(Person::getId).collect(Collectors.toList()));
+        assertTrue(repository.findPage(Long.MAX_VALUE, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should stream the same persons as findAll, a page at a time")
+    void streamAll_acrossRuns_matchesFindAll() {
+        // Arrange
+        List<Person> saved = saveMany(600, "Doe");
+        repository.deleteById(saved.get(300).getId());
+        repository.awaitBackgroundWork();
+
+        // Act
+        List<Long> streamed = repository.streamAll().map(Person::getId).collect(Collectors.toList());
+
+        // Assert
+        assertEquals(repository.findAll().stream().map(Person::getId).collect(Collectors.toList()), streamed);
+        assertEquals(599, streamed.size());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid settings")
+    void build_invalidSettings_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> builder().directory(null).build());
+        assertThrows(IllegalArgumentException.class, () -> builder().memtableBytes(0).build());
+        assertThrows(IllegalArgumentException.class, () -> builder().compactionThreshold(1).build());
+        assertThrows(IllegalArgumentException.class, () -> builder().falsePositiveRate(1.5).build());
+    }
+
+    private LsmPersonRepository.Builder builder() {
+        return new LsmPersonRepository.Builder().directory(directory).memtableBytes(MEMTABLE_BYTES)
+                .compactionThreshold(4).clock(clock);
+    }
+
+    private List<Person> saveMany(int count, String lastName) {
+        List<Person> saved = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            saved.add(repository.save(createPerson("Person" + saved.size(), lastName)));
+        }
+        return saved;
+    }
+
+    private static boolean isSingleMemtableRun(Path file) {
+        String[] sequences = file.getFileName().toString().replace("run-", "").replace(".sst", "").split("-");
+        return sequences[0].equals(sequences[1]);
+    }
+}
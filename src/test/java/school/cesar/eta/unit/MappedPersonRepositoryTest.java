@@ -0,0 +1,455 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for MappedPersonRepository class.
+ */
+@DisplayName("MappedPersonRepository Test Suite")
+public class MappedPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    private static final int SLOT_SIZE = 256;
+    private static final int CHUNK_SLOTS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private Clock clock;
+    private MappedPersonRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("persons.db");
+        clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    @DisplayName("Should round-trip every stored field")
+    void findById_savedPerson_readsAllFields() {
+        // Arrange
+        Address address = new Address.Builder().street("Rua da Aurora").number("10").complement("Apto 1")
+                .neighborhood("Boa Vista").city("Recife").state("PE").zipCode("50050-000").build();
+        Person person = createPerson("José", "Conceição");
+        person.setBirthday(LocalDate.of(1985, 2, 28));
+        person.setCpf("111.444.777-35");
+        person.setAddress(address);
+
+        // Act
+        repository.save(person);
+        Person found = repository.findById(person.getId()).orElseThrow();
+
+        // Assert
+        assertNotSame(person, found);
+        assertEquals(person, found);
+        assertEquals("111.444.777-35", found.getCpf());
+        assertEquals(address, found.getAddress());
+    }
+
+    @Test
+    @DisplayName("Should keep persons and ID sequence after reopening the file")
+    void reopen_existingFile_restoresState() throws IOException {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        repository.deleteById(3L);
+        repository.deleteById(10L);
+        repository.close();
+
+        // Act
+        repository = open();
+        Person added = repository.save(createPerson("After", "Restart"));
+
+        // Assert
+        assertEquals(9, repository.count());
+        assertFalse(repository.existsById(3L));
+        assertEquals("Person4", repository.findById(5L).orElseThrow().getFirstName());
+        assertEquals(11L, added.getId());
+        assertEquals(8, repository.findByLastName("Doe").size());
+    }
+
+    @Test
+    @DisplayName("Should grow the file one chunk at a time")
+    void save_moreSlotsThanOneChunk_growsFile() throws IOException {
+        // Act
+        for (int i = 0; i < 9; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Assert
+        assertEquals(SLOT_SIZE + 3L * CHUNK_SLOTS * SLOT_SIZE, Files.size(file));
+        assertEquals(9, repository.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Should reuse slots freed by deletes")
+    void deleteById_thenSave_reusesSlot() throws IOException {
+        // Arrange
+        for (int i = 0; i < CHUNK_SLOTS; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        long size = Files.size(file);
+
+        // Act
+        assertTrue(repository.deleteById(1L));
+        repository.save(createPerson("New", "Person"));
+
+        // Assert
+        assertEquals(size, Files.size(file));
+        assertFalse(repository.deleteById(1L));
+        assertEquals(CHUNK_SLOTS, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should update records in place")
+    void save_existingPerson_overwritesRecord() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+
+        // Act
+        Person loaded = repository.findById(person.getId()).orElseThrow();
+        loaded.setLastName("Smith");
+        repository.save(loaded);
+
+        // Assert
+        assertEquals(1, repository.count());
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+        assertEquals("Smith", repository.findById(person.getId()).orElseThrow().getLastName());
+    }
+
+    @Test
+    @DisplayName("Should discard a slot torn by a crash mid-update and still open the file")
+    void reopen_tornSlot_discardedAsFree() throws IOException {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person john = repository.save(createPerson("John", "Doe"));
+        repository.close();
+        long johnRecord = SLOT_SIZE + (john.getId() - 1) * SLOT_SIZE + 9;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F, 0x7F, 0x7F, 0x7F }), johnRecord + 12);
+        }
+
+        // Act
+        repository = open();
+        Person next = repository.save(createPerson("Next", "Doe"));
+
+        // Assert
+        assertEquals(2, repository.count());
+        assertEquals(jane, repository.findById(jane.getId()).orElseThrow());
+        assertFalse(repository.existsById(john.getId()));
+        assertEquals(List.of(jane, next), repository.findByLastName("Doe"));
+        assertEquals(3L, next.getId());
+    }
+
+    @Test
+    @DisplayName("Should page in ID order over dense and sparse IDs, also after reopening")
+    void findPage_denseAndSparseIds_pagesInIdOrder() throws IOException {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        repository.deleteById(4L);
+        Person far = createPerson("Far", "Doe");
+        far.setId(1_000_000L);
+        repository.save(far);
+        Person negative = createPerson("Negative", "Doe");
+        negative.setId(-5L);
+        repository.save(negative);
+        repository.close();
+
+        // Act
+        repository = open();
+
+        // Assert
+        assertEquals(List.of(-5L, 1L, 2L), ids(repository.findPage(Long.MIN_VALUE, 3)));
+        assertEquals(List.of(3L, 5L, 6L), ids(repository.findPage(2L, 3)));
+        assertEquals(List.of(10L, 1_000_000L), ids(repository.findPage(9L, 5)));
+        assertTrue(repository.findPage(1_000_000L, 5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(0L, 0));
+    }
+
+    @Test
+    @DisplayName("Should find last names through the index, matching exact names exactly")
+    void findByLastName_indexedNames_returnsExactMatches() {
+        // Arrange
+        Person silva = repository.save(createPerson("Ana", "Silva"));
+        repository.save(createPerson("Bia", "SILVA"));
+        repository.save(createPerson("Caio", "Souza"));
+
+        // Act
+        List<Person> found = repository.findByLastName("Silva");
+
+        // Assert
+        assertEquals(List.of(silva), found);
+    }
+
+    @Test
+    @DisplayName("Should find last names by prefix ignoring case and accents")
+    void findByLastNameStartingWith_mixedNames_returnsMatches() {
+        // Arrange
+        repository.save(createPerson("Ana", "Conceição"));
+        repository.save(createPerson("Bia", "CONCEICAO"));
+        repository.save(createPerson("Caio", "Cordeiro"));
+        repository.save(createPerson("Davi", "Araújo"));
+
+        // Act
+        List<Person> found = repository.findByLastNameStartingWith("conc");
+
+        // Assert
+        assertEquals(2, found.size());
+        assertTrue(found.stream().allMatch(person -> person.getLastName().toUpperCase().startsWith("CONC")));
+        assertEquals(4, repository.findByLastNameStartingWith("").size());
+        assertThrows(IllegalArgumentException.class, () -> repository.findByLastNameStartingWith(null));
+    }
+
+    @Test
+    @DisplayName("Should find last names in a half-open range")
+    void findByLastNameBetween_range_returnsNamesInRange() {
+        // Arrange
+        repository.save(createPerson("Ana", "Almeida"));
+        repository.save(createPerson("Bia", "Barros"));
+        repository.save(createPerson("Caio", "Costa"));
+        repository.save(createPerson("Davi", "Dias"));
+
+        // Act
+        List<Person> found = repository.findByLastNameBetween("b", "Dias");
+
+        // Assert
+        assertEquals(List.of("Barros", "Costa"), found.stream().map(Person::getLastName).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should keep the index in step with renames and deletes")
+    void save_renameAndDelete_updatesIndex() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+        Person other = repository.save(createPerson("John", "Doe"));
+
+        // Act
+        person.setLastName("Smith");
+        repository.save(person);
+        repository.deleteById(other.getId());
+
+        // Assert
+        assertTrue(repository.findByLastNameStartingWith("d").isEmpty());
+        assertEquals(List.of(person), repository.findByLastNameStartingWith("sm"));
+    }
+
+    @Test
+    @DisplayName("Should rebuild a missing last name index when reopening")
+    void reopen_missingIndex_rebuildsIt() throws IOException {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, i % 2 == 0 ? "Lima" : "Melo"));
+        }
+        repository.close();
+        Files.delete(tempDir.resolve("persons.db.lastname"));
+
+        // Act
+        repository = open();
+
+        // Assert
+        assertEquals(5, repository.findByLastName("Lima").size());
+        assertEquals(5, repository.findByLastNameStartingWith("me").size());
+    }
+
+    @Test
+    @DisplayName("Should load family links one level deep")
+    void findById_personWithFamily_linksMembers() {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+        repository.save(child);
+
+        // Act
+        Person loaded = repository.findById(parent.getId()).orElseThrow();
+        List<Person> byLastName = repository.findByLastName("Family");
+
+        // Assert
+        assertEquals(1, loaded.getFamily().size());
+        assertEquals("Child", loaded.getFamily().get(0).getFirstName());
+        assertTrue(byLastName.stream().allMatch(p -> p.getFamily().size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should find only persons whose birthday is today")
+    void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        Person otherDay = createPerson("Bob", "Jones");
+        otherDay.setBirthday(TODAY.minusDays(1));
+        repository.save(birthday);
+        repository.save(otherDay);
+
+        // Act
+        List<Person> result = repository.findBirthdayToday();
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("Alice", result.get(0).getFirstName());
+    }
+
+    @Test
+    @DisplayName("Should include February 29 birthdays today according to the configured leap day policy")
+    void findBirthdayToday_commonYear_appliesConfiguredLeapDayPolicy() throws IOException {
+        // Arrange
+        Clock march1 = Clock.fixed(LocalDate.of(2023, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        Person leapling = createPerson("Leap", "Day");
+        leapling.setBirthday(LocalDate.of(2000, 2, 29));
+        try (MappedPersonRepository byDefault = new MappedPersonRepository(tempDir.resolve("default.db"), SLOT_SIZE,
+                CHUNK_SLOTS, march1);
+                MappedPersonRepository onMarch1 = new MappedPersonRepository(tempDir.resolve("march1.db"), SLOT_SIZE,
+                        CHUNK_SLOTS, march1, LeapDayPolicy.MARCH_1)) {
+            byDefault.save(leapling);
+            onMarch1.save(leapling);
+
+            // Act & Assert
+            assertTrue(byDefault.findBirthdayToday().isEmpty());
+            assertEquals(List.of(leapling), onMarch1.findBirthdayToday());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new MappedPersonRepository(tempDir.resolve("other.db"), SLOT_SIZE, CHUNK_SLOTS, march1, null));
+    }
+
+    @Test
+    @DisplayName("Should keep the birthday calendar across updates, deletes and reopening")
+    void findBirthdaysOn_afterUpdateDeleteAndReopen_usesCalendar() throws IOException {
+        // Arrange
+        Person alice = createPerson("Alice", "Smith");
+        alice.setBirthday(LocalDate.of(1990, 3, 10));
+        Person bob = createPerson("Bob", "Jones");
+        bob.setBirthday(LocalDate.of(1985, 3, 10));
+        Person carol = createPerson("Carol", "Lee");
+        carol.setBirthday(LocalDate.of(2000, 2, 29));
+        repository.save(alice);
+        repository.save(bob);
+        repository.save(carol);
+        bob.setBirthday(LocalDate.of(1985, 3, 11));
+        repository.save(bob);
+        repository.deleteById(alice.getId());
+        repository.close();
+
+        // Act
+        repository = open();
+
+        // Assert
+        assertTrue(repository.findBirthdaysOn(MonthDay.of(3, 10)).isEmpty());
+        assertEquals("Bob", repository.findBirthdaysOn(MonthDay.of(3, 11)).get(0).getFirstName());
+        assertEquals("Carol", repository.findBirthdaysOn(MonthDay.of(2, 29)).get(0).getFirstName());
+        assertThrows(IllegalArgumentException.class, () -> repository.findBirthdaysOn(null));
+    }
+
+    @Test
+    @DisplayName("Should reject records larger than a slot without assigning an ID")
+    void save_recordLargerThanSlot_throwsException() {
+        // Arrange
+        Person person = createPerson("A".repeat(SLOT_SIZE), "Doe");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> repository.save(person));
+        assertNull(person.getId());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should reject files created with another slot size")
+    void open_differentSlotSize_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MappedPersonRepository(file, SLOT_SIZE * 2, CHUNK_SLOTS, clock));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid slot sizes")
+    void open_invalidSlotSize_throwsException() {
+        Path other = tempDir.resolve("other.db");
+        assertThrows(IllegalArgumentException.class, () -> new MappedPersonRepository(other, 100, 4, clock));
+        assertThrows(IllegalArgumentException.class, () -> new MappedPersonRepository(other, 8192, 4, clock));
+    }
+
+    @Test
+    @DisplayName("Should page through a last name in ID order, skipping longer names that share the indexed prefix")
+    void findByLastName_cursor_pagesThroughExactMatches() throws IOException {
+        String longName = "S".repeat(LastNameBTree.MAX_NAME_BYTES);
+        try (MappedPersonRepository wide = new MappedPersonRepository(tempDir.resolve("wide.db"), 1024, CHUNK_SLOTS,
+                clock)) {
+            // Arrange
+            for (int i = 0; i < 12; i++) {
+                wide.save(createPerson("Person" + i, i % 3 == 0 ? longName : longName + "x"));
+            }
+
+            // Act
+            Page<Person> first = wide.findByLastName(longName, null, 3);
+            Page<Person> second = wide.findByLastName(longName, first.getNextCursor(), 3);
+
+            // Assert
+            assertEquals(List.of(1L, 4L, 7L),
+                    first.getItems().stream().map(Person::getId).collect(Collectors.toList()));
+            assertEquals(List.of(10L), second.getItems().stream().map(Person::getId).collect(Collectors.toList()));
+            assertFalse(second.hasNext());
+            assertEquals(List.of(5L, 6L),
+                    wide.findPage(4L, 2).stream().map(Person::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should stream persons a batch of slots at a time, skipping persons deleted meanwhile")
+    void streamAll_moreSlotsThanABatch_weaklyConsistent() {
+        // Arrange
+        for (int i = 0; i < 600; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        Iterator<Person> iterator = repository.streamAll().iterator();
+        List<Long> seen = new ArrayList<>();
+        seen.add(iterator.next().getId());
+
+        // Act
+        repository.deleteById(500L);
+        iterator.forEachRemaining(person -> seen.add(person.getId()));
+
+        // Assert
+        assertEquals(599, seen.size());
+        assertFalse(seen.contains(500L));
+        assertEquals(599, repository.streamAll().parallel().map(Person::getId).distinct().count());
+    }
+
+    private MappedPersonRepository open() throws IOException {
+        return new MappedPersonRepository(file, SLOT_SIZE, CHUNK_SLOTS, clock);
+    }
+
+    private static List<Long> ids(List<Person> persons) {
+        return persons.stream().map(Person::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,308 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for MvccPersonRepository class.
+ */
+@DisplayName("MvccPersonRepository Test Suite")
+public class MvccPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+
+    private MvccPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = new MvccPersonRepository(clock);
+    }
+
+    @Test
+    @DisplayName("Should keep a snapshot unchanged by later writes")
+    void snapshot_laterWrites_areNotVisible() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        MvccPersonRepository.Snapshot snapshot = repository.snapshot();
+
+        // Act
+        repository.save(createPerson("John", "Doe"));
+        repository.deleteById(jane.getId());
+
+        // Assert
+        assertEquals(1, snapshot.count());
+        assertEquals(List.of(jane), snapshot.findAll());
+        assertEquals(List.of(jane), snapshot.findByLastName("Doe"));
+        assertTrue(snapshot.findById(jane.getId()).isPresent());
+        assertEquals(1, repository.count());
+        assertFalse(repository.existsById(jane.getId()));
+        assertEquals(snapshot.getVersion() + 2, repository.snapshot().getVersion());
+    }
+
+    @Test
+    @DisplayName("Should generate sequential IDs and keep explicit ones")
+    void save_newAndExplicitIds_assignsIds() {
+        // Arrange
+        Person explicit = createPerson("John", "Doe");
+        explicit.setId(10L);
+
+        // Act
+        Person first = repository.save(createPerson("Jane", "Doe"));
+        repository.save(explicit);
+        Person generated = repository.save(createPerson("Bob", "Doe"));
+
+        // Assert
+        assertEquals(1L, first.getId());
+        assertEquals(11L, generated.getId());
+        assertEquals(explicit, repository.findById(10L).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should keep snapshots unchanged when saved or returned persons are modified")
+    void snapshot_personModifiedAfterSave_keepsSavedState() {
+        // Arrange
+        Person spouse = repository.save(createPerson("John", "Doe"));
+        Person person = createPerson("Jane", "Doe");
+        person.addToFamily(spouse);
+        repository.save(person);
+        MvccPersonRepository.Snapshot snapshot = repository.snapshot();
+
+        // Act
+        person.setLastName("Smith");
+        Person read = repository.findById(person.getId()).orElseThrow();
+        read.setFirstName("Janet");
+
+        // Assert
+        assertNotSame(person, read);
+        assertEquals("Doe", read.getLastName());
+        assertEquals("Jane", snapshot.findById(person.getId()).orElseThrow().getFirstName());
+        assertEquals(1, snapshot.findByLastName("Doe").stream().filter(p -> p.getId().equals(person.getId())).count());
+        assertEquals(List.of(spouse), read.getFamily());
+    }
+
+    @Test
+    @DisplayName("Should move persons between last name and birthday indexes when saved again")
+    void save_updatedPerson_reindexed() {
+        // Arrange
+        Person person = createPerson("Jane", "Doe");
+        person.setBirthday(TODAY.minusYears(30));
+        repository.save(person);
+
+        // Act
+        person.setLastName("Smith");
+        person.setBirthday(TODAY.minusYears(30).minusDays(1));
+        repository.save(person);
+
+        // Assert
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+        assertEquals(List.of(person), repository.findByLastName("Smith"));
+        assertTrue(repository.findBirthdayToday().isEmpty());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should find only persons whose birthday is today")
+    void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        Person otherDay = createPerson("Bob", "Jones");
+        otherDay.setBirthday(TODAY.minusYears(30).minusDays(1));
+        repository.save(birthday);
+        repository.save(otherDay);
+        repository.save(createPerson("No", "Birthday"));
+
+        // Act & Assert
+        assertEquals(List.of(birthday), repository.findBirthdayToday());
+    }
+
+    @Test
+    @DisplayName("Should include February 29 birthdays today according to the configured leap day policy")
+    void findBirthdayToday_commonYear_appliesConfiguredLeapDayPolicy() {
+        // Arrange
+        Clock march1 = Clock.fixed(LocalDate.of(2023, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        MvccPersonRepository byDefault = new MvccPersonRepository(march1);
+        MvccPersonRepository onMarch1 = new MvccPersonRepository(march1, LeapDayPolicy.MARCH_1);
+        Person leapling = createPerson("Leap", "Day");
+        leapling.setBirthday(LocalDate.of(2000, 2, 29));
+        byDefault.save(leapling);
+        onMarch1.save(leapling);
+
+        // Act & Assert
+        assertTrue(byDefault.findBirthdayToday().isEmpty());
+        assertEquals(List.of(leapling), onMarch1.findBirthdayToday());
+        assertThrows(IllegalArgumentException.class, () -> new MvccPersonRepository(march1, null));
+    }
+
+    @Test
+    @DisplayName("Should stream a snapshot with exact sizes for each split")
+    void streamAll_parallel_splitsWithExactSizes() {
+        // Arrange
+        for (int i = 0; i < 5_000; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        MvccPersonRepository.Snapshot snapshot = repository.snapshot();
+        repository.deleteById(1L);
+
+        // Act
+        Spliterator<Person> spliterator = snapshot.stream().parallel().spliterator();
+        Spliterator<Person> prefix = spliterator.trySplit();
+
+        // Assert
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        assertEquals(5_000, prefix.estimateSize() + spliterator.estimateSize());
+        assertEquals(prefix.estimateSize(), StreamSupport.stream(prefix, false).count());
+        assertEquals(spliterator.estimateSize(), StreamSupport.stream(spliterator, false).count());
+        assertEquals(4_999, repository.streamAll().parallel().map(Person::getId).distinct().count());
+    }
+
+    @Test
+    @DisplayName("Should find and group persons by city by scanning a snapshot")
+    void findByCityAndGroupByCity_defaultScan_matchesAddresses() {
+        // Arrange
+        Address recife = new Address.Builder().street("Rua A").number("1").city("Recife").state("PE")
+                .zipCode("50000-000").build();
+        Address olinda = new Address.Builder().street("Rua B").number("2").city("Olinda").state("PE")
+                .zipCode("53000-000").build();
+        Person ana = createPerson("Ana", "Souza");
+        ana.setAddress(recife);
+        Person bia = createPerson("Bia", "Lima");
+        bia.setAddress(olinda);
+        Person caio = createPerson("Caio", "Costa");
+        caio.setAddress(recife);
+        repository.saveAll(List.of(ana, bia, caio, createPerson("Davi", "Dias")));
+
+        // Act
+        SortedMap<Address.City, long[]> groups = repository.groupByCity();
+
+        // Assert
+        assertEquals(List.of(ana, caio), repository.findByCity("Recife", "PE"));
+        assertEquals(List.of(olinda.getCityKey(), recife.getCityKey()), new ArrayList<>(groups.keySet()));
+        assertArrayEquals(new long[] { ana.getId(), caio.getId() }, groups.get(recife.getCityKey()));
+    }
+
+    @Test
+    @DisplayName("Should handle null and unknown IDs")
+    void nullAndUnknownIds_returnEmpty() {
+        assertFalse(repository.findById((Long) null).isPresent());
+        assertFalse(repository.findById(99L).isPresent());
+        assertFalse(repository.existsById((Long) null));
+        assertFalse(repository.deleteById((Long) null));
+        assertFalse(repository.deleteById(99L));
+        assertTrue(repository.findByLastName(null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.save(null));
+        assertThrows(IllegalArgumentException.class, () -> new MvccPersonRepository(null));
+    }
+
+    @Test
+    @DisplayName("Should give readers consistent snapshots while writers keep saving")
+    void snapshot_concurrentWriters_readersSeeConsistentVersions() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    repository.save(createPerson("Writer", "Doe"));
+                }
+                return null;
+            }));
+        }
+
+        // Act
+        Future<Boolean> reader = executor.submit(() -> {
+            start.await();
+            boolean consistent = true;
+            for (int i = 0; i < 200; i++) {
+                MvccPersonRepository.Snapshot snapshot = repository.snapshot();
+                consistent &= snapshot.findAll().size() == snapshot.count()
+                        && snapshot.findByLastName("Doe").size() == snapshot.count()
+                        && snapshot.count() == snapshot.getVersion();
+            }
+            return consistent;
+        });
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertTrue(reader.get());
+        assertEquals(4_000, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should publish each batch as a single new version")
+    void saveAllAndDeleteAll_batch_publishOneVersion() {
+        // Arrange
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+        long version = repository.snapshot().getVersion();
+
+        // Act
+        repository.saveAll(persons);
+        MvccPersonRepository.Snapshot afterSave = repository.snapshot();
+        int deleted = repository.deleteAllById(List.of(1L, 2L, 99L));
+
+        // Assert
+        assertEquals(version + 1, afterSave.getVersion());
+        assertEquals(5, afterSave.count());
+        assertEquals(2, deleted);
+        assertEquals(version + 2, repository.snapshot().getVersion());
+        assertEquals(List.of(persons.get(4), persons.get(2)), repository.findAllById(List.of(5L, 1L, 3L)));
+        assertEquals(3, repository.findByLastName("Doe").size());
+    }
+
+    @Test
+    @DisplayName("Should page in ID order over dense and sparse IDs")
+    void findPage_denseAndSparseIds_pagesInIdOrder() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        repository.deleteById(4L);
+        Person far = createPerson("Far", "Doe");
+        far.setId(1_000_000L);
+        repository.save(far);
+        Person negative = createPerson("Negative", "Doe");
+        negative.setId(-5L);
+        repository.save(negative);
+
+        // Act & Assert
+        assertEquals(List.of(-5L, 1L, 2L), ids(repository.findPage(Long.MIN_VALUE, 3)));
+        assertEquals(List.of(3L, 5L, 6L), ids(repository.findPage(2L, 3)));
+        assertEquals(List.of(10L, 1_000_000L), ids(repository.findPage(9L, 5)));
+        assertTrue(repository.findPage(1_000_000L, 5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(0L, 0));
+    }
+
+    private static List<Long> ids(List<Person> persons) {
+        return persons.stream().map(Person::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,39 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for NameNormalizer class.
+ */
+@DisplayName("NameNormalizer Test Suite")
+public class NameNormalizerTest {
+
+    @Test
+    @DisplayName("Should remove accents, lower-case and trim")
+    void normalize_accentedName_returnsPlainLowerCase() {
+        assertEquals("conceicao", NameNormalizer.normalize(" Conceição "));
+        assertEquals("araujo", NameNormalizer.normalize("ARAÚJO"));
+        assertEquals("muller", NameNormalizer.normalize("Müller"));
+    }
+
+    @Test
+    @DisplayName("Should give equal keys for names differing only in case and accents")
+    void normalize_equivalentNames_returnsSameKey() {
+        assertEquals(NameNormalizer.normalize("Gonçalves"), NameNormalizer.normalize("GONCALVES"));
+    }
+
+    @Test
+    @DisplayName("Should keep empty names empty")
+    void normalize_blankName_returnsEmpty() {
+        assertEquals("", NameNormalizer.normalize("   "));
+    }
+
+    @Test
+    @DisplayName("Should reject null names")
+    void normalize_null_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> NameNormalizer.normalize(null));
+    }
+}
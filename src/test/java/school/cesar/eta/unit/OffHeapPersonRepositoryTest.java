@@ -0,0 +1,366 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for OffHeapPersonRepository class.
+ */
+@DisplayName("OffHeapPersonRepository Test Suite")
+public class OffHeapPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    private static final int CHUNK_ROWS = 4;
+
+    private OffHeapPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = new OffHeapPersonRepository(clock, CHUNK_ROWS);
+    }
+
+    @Test
+    @DisplayName("Should round-trip every stored field")
+    void findById_savedPerson_materializesAllFields() {
+        // Arrange
+        Address address = new Address.Builder().street("Rua A").number("1").city("Recife").state("PE")
+                .zipCode("50000-000").build();
+        Person person = createPerson("John", "Doe");
+        person.setBirthday(LocalDate.of(1990, 5, 15));
+        person.setCpf("123.456.789-09");
+        person.setAddress(address);
+
+        // Act
+        repository.save(person);
+        Person found = repository.findById(person.getId()).orElseThrow();
+
+        // Assert
+        assertNotSame(person, found);
+        assertEquals(person, found);
+        assertEquals("123.456.789-09", found.getCpf());
+        assertEquals(address, found.getAddress());
+    }
+
+    @Test
+    @DisplayName("Should keep optional fields empty")
+    void findById_personWithOnlyLastName_leavesOtherFieldsNull() {
+        // Arrange
+        Person person = new Person();
+        person.setLastName("Doe");
+        repository.save(person);
+
+        // Act
+        Person found = repository.findById(person.getId()).orElseThrow();
+
+        // Assert
+        assertNull(found.getFirstName());
+        assertNull(found.getBirthday());
+        assertNull(found.getCpf());
+        assertNull(found.getAddress());
+    }
+
+    @Test
+    @DisplayName("Should grow across several chunks")
+    void save_moreRowsThanOneChunk_allocatesChunks() {
+        // Act
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, i % 2 == 0 ? "Even" : "Odd"));
+        }
+
+        // Assert
+        assertEquals(10, repository.count());
+        assertEquals(5, repository.findByLastName("Even").size());
+        assertEquals(3L * CHUNK_ROWS * OffHeapPersonRepository.ROW_BYTES, repository.getOffHeapBytes());
+        assertEquals("Person9", repository.findById(10L).orElseThrow().getFirstName());
+    }
+
+    @Test
+    @DisplayName("Should reflect updates in last name queries")
+    void save_updatedLastName_foundUnderNewName() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+
+        // Act
+        Person loaded = repository.findById(person.getId()).orElseThrow();
+        loaded.setLastName("Smith");
+        repository.save(loaded);
+
+        // Assert
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+        assertEquals(1, repository.findByLastName("Smith").size());
+        assertTrue(repository.findByLastName("Unknown").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should drop strings no row uses anymore instead of keeping them forever")
+    void saveAndDelete_renamesAndMoves_dictionaryDoesNotGrow() {
+        // Arrange
+        Address home = new Address.Builder().street("Rua A").number("1").complement("Apto 101")
+                .neighborhood("Boa Vista").city("Recife").state("PE").zipCode("50000-000").build();
+        Person person = createPerson("Jane", "Doe");
+        person.setAddress(home);
+        repository.save(person);
+        int initial = repository.getDistinctStringCount();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            person.setLastName("Doe" + i);
+            person.setAddress(new Address.Builder().street("Rua " + i).number(String.valueOf(i)).city("Recife")
+                    .state("PE").zipCode("50000-000").build());
+            repository.save(person);
+        }
+        person.setLastName("Doe");
+        person.setAddress(home);
+        repository.save(person);
+        int afterUpdates = repository.getDistinctStringCount();
+        repository.deleteById(person.getId());
+
+        // Assert
+        assertEquals(initial, afterUpdates);
+        assertEquals(0, repository.getDistinctStringCount());
+        Person other = repository.save(createPerson("John", "Smith"));
+        assertEquals("Smith", repository.findById(other.getId()).orElseThrow().getLastName());
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should round-trip optional address fields")
+    void findById_addressWithOptionalFields_materializesThem() {
+        // Arrange
+        Address address = new Address.Builder().street("Rua B").number("20").complement("Casa 2").neighborhood("Graças")
+                .city("Recife").state("PE").zipCode("52011-000").country("Brasil").build();
+        Person person = createPerson("Bia", "Lima");
+        person.setAddress(address);
+
+        // Act
+        repository.save(person);
+
+        // Assert
+        Address found = repository.findById(person.getId()).orElseThrow().getAddress();
+        assertEquals(address, found);
+        assertEquals("Casa 2", found.getComplement());
+        assertEquals("Graças", found.getNeighborhood());
+        assertEquals("Brasil", found.getCountry());
+    }
+
+    @Test
+    @DisplayName("Should reuse rows freed by deletes")
+    void deleteById_thenSave_reusesRow() {
+        // Arrange
+        for (int i = 0; i < CHUNK_ROWS; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        long bytes = repository.getOffHeapBytes();
+
+        // Act
+        assertTrue(repository.deleteById(2L));
+        repository.save(createPerson("New", "Person"));
+
+        // Assert
+        assertFalse(repository.existsById(2L));
+        assertFalse(repository.deleteById(2L));
+        assertEquals(CHUNK_ROWS, repository.count());
+        assertEquals(bytes, repository.getOffHeapBytes());
+        assertEquals(CHUNK_ROWS, repository.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Should materialize family links one level deep")
+    void findById_personWithFamily_linksMembers() {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+        repository.save(child);
+
+        // Act
+        Person loadedParent = repository.findById(parent.getId()).orElseThrow();
+        Person loadedChild = repository.findById(child.getId()).orElseThrow();
+
+        // Assert
+        assertTrue(loadedParent.isFamily(loadedChild));
+        assertTrue(loadedChild.isFamily(loadedParent));
+        assertEquals(1, loadedParent.getFamily().size());
+    }
+
+    @Test
+    @DisplayName("Should skip deleted family members")
+    void findById_deletedFamilyMember_notLinked() {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+
+        // Act
+        repository.deleteById(child.getId());
+
+        // Assert
+        assertTrue(repository.findById(parent.getId()).orElseThrow().getFamily().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should find only persons whose birthday is today")
+    void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        Person otherDay = createPerson("Bob", "Jones");
+        otherDay.setBirthday(TODAY.minusDays(1));
+        repository.save(birthday);
+        repository.save(otherDay);
+        repository.save(createPerson("No", "Birthday"));
+
+        // Act
+        List<Person> result = repository.findBirthdayToday();
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("Alice", result.get(0).getFirstName());
+    }
+
+    @Test
+    @DisplayName("Should include February 29 birthdays today according to the configured leap day policy")
+    void findBirthdayToday_commonYear_appliesConfiguredLeapDayPolicy() {
+        // Arrange
+        Clock march1 = Clock.fixed(LocalDate.of(2023, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        OffHeapPersonRepository byDefault = new OffHeapPersonRepository(march1, 16);
+        OffHeapPersonRepository onMarch1 = new OffHeapPersonRepository(march1, 16, LeapDayPolicy.MARCH_1);
+        Person leapling = createPerson("Leap", "Day");
+        leapling.setBirthday(LocalDate.of(2000, 2, 29));
+        byDefault.save(leapling);
+        onMarch1.save(leapling);
+
+        // Act & Assert
+        assertTrue(byDefault.findBirthdayToday().isEmpty());
+        assertEquals(List.of(leapling), onMarch1.findBirthdayToday());
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapPersonRepository(march1, 16, null));
+    }
+
+    @Test
+    @DisplayName("Should move persons between calendar days when saved again and drop them when deleted")
+    void findBirthdaysOn_updatedAndDeleted_followsChanges() {
+        // Arrange
+        Person alice = createPerson("Alice", "Smith");
+        alice.setBirthday(LocalDate.of(1990, 3, 10));
+        Person bob = createPerson("Bob", "Jones");
+        bob.setBirthday(LocalDate.of(1985, 3, 10));
+        repository.save(alice);
+        repository.save(bob);
+
+        // Act
+        alice.setBirthday(LocalDate.of(1990, 3, 11));
+        repository.save(alice);
+        repository.deleteById(bob.getId());
+        Person reused = createPerson("Carol", "Lee");
+        reused.setBirthday(LocalDate.of(2000, 3, 11));
+        repository.save(reused);
+
+        // Assert
+        assertTrue(repository.findBirthdaysOn(MonthDay.of(3, 10)).isEmpty());
+        assertEquals(List.of("Alice", "Carol"), repository.findBirthdaysOn(MonthDay.of(3, 11)).stream()
+                .map(Person::getFirstName).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should stream every live row with the live row counts as split sizes")
+    void streamAll_afterDeletes_estimatesSplitSizes() {
+        // Arrange
+        for (int i = 0; i < 30; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        for (long id = 1; id <= 30; id += 3) {
+            repository.deleteById(id);
+        }
+
+        // Act
+        Spliterator<Person> spliterator = repository.streamAll().spliterator();
+        Spliterator<Person> prefix = spliterator.trySplit();
+
+        // Assert
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertNotNull(prefix);
+        long prefixSize = prefix.estimateSize();
+        long suffixSize = spliterator.estimateSize();
+        assertEquals(20, prefixSize + suffixSize);
+        assertEquals(prefixSize, StreamSupport.stream(prefix, false).count());
+        assertEquals(suffixSize, StreamSupport.stream(spliterator, false).count());
+        assertEquals(20, repository.streamAll().parallel().filter(person -> person.getId() % 3 != 1).count());
+    }
+
+    @Test
+    @DisplayName("Should keep streaming when persons are saved and deleted while it runs")
+    void streamAll_concurrentWrites_weaklyConsistent() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        Iterator<Person> iterator = repository.streamAll().iterator();
+        List<Long> seen = new ArrayList<>();
+        seen.add(iterator.next().getId());
+
+        // Act
+        repository.deleteById(5L);
+        repository.save(createPerson("Late", "Doe"));
+        iterator.forEachRemaining(person -> seen.add(person.getId()));
+
+        // Assert
+        assertFalse(seen.contains(5L));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 6L, 7L, 8L, 9L, 10L),
+                seen.stream().filter(id -> id <= 10).collect(Collectors.toList()));
+        assertEquals(10, repository.streamAll().toArray().length);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid arguments")
+    void invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> repository.save(null));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapPersonRepository(null, 16));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapPersonRepository(Clock.systemUTC(), 0));
+        assertFalse(repository.findById((Long) null).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should page in ID order over dense and sparse IDs")
+    void findPage_denseAndSparseIds_pagesInIdOrder() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        repository.deleteById(4L);
+        Person far = createPerson("Far", "Doe");
+        far.setId(1_000_000L);
+        repository.save(far);
+        Person negative = createPerson("Negative", "Doe");
+        negative.setId(-5L);
+        repository.save(negative);
+
+        // Act & Assert
+        assertEquals(List.of(-5L, 1L, 2L), ids(repository.findPage(Long.MIN_VALUE, 3)));
+        assertEquals(List.of(3L, 5L, 6L), ids(repository.findPage(2L, 3)));
+        assertEquals(List.of(10L, 1_000_000L), ids(repository.findPage(9L, 5)));
+        assertTrue(repository.findPage(1_000_000L, 5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(0L, 0));
+    }
+
+    private static List<Long> ids(List<Person> persons) {
+        return persons.stream().map(Person::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for Page and PageCursor classes.
+ */
+@DisplayName("Page Test Suite")
+public class PageTest {
+
+    @Test
+    @DisplayName("Should round-trip the last ID through a cursor")
+    void encodeDecode_sameQuery_returnsLastId() {
+        // Arrange
+        String cursor = PageCursor.encode("Silva", 42L);
+
+        // Act & Assert
+        assertEquals(42L, PageCursor.decode(cursor, "Silva"));
+        assertEquals(Long.MIN_VALUE, PageCursor.decode(null, "Silva"));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursors and cursors from another query")
+    void decode_invalidCursor_throwsException() {
+        // Arrange
+        String cursor = PageCursor.encode("Silva", 42L);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor, "Souza"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!", "Silva"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("AAAA", "Silva"));
+    }
+
+    @Test
+    @DisplayName("Should only return a next cursor when more persons were fetched than the limit")
+    void toPage_extraPerson_setsNextCursor() {
+        // Arrange
+        List<Person> fetched = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            Person person = new Person();
+            person.setId(id);
+            fetched.add(person);
+        }
+
+        // Act
+        Page<Person> full = PageCursor.toPage(fetched, 2, "Silva");
+        Page<Person> last = PageCursor.toPage(fetched, 3, "Silva");
+
+        // Assert
+        assertEquals(fetched.subList(0, 2), full.getItems());
+        assertTrue(full.hasNext());
+        assertEquals(2L, PageCursor.decode(full.getNextCursor(), "Silva"));
+        assertEquals(fetched, last.getItems());
+        assertFalse(last.hasNext());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Should page through the default implementation in ID order")
+    void findByLastName_defaultImplementation_pagesInIdOrder() {
+        // Arrange
+        PersonRepository repository = new MvccPersonRepository();
+        for (int i = 0; i < 5; i++) {
+            Person person = new Person();
+            person.setFirstName("Person" + i);
+            person.setLastName(i % 2 == 0 ? "Silva" : "Souza");
+            repository.save(person);
+        }
+
+        // Act
+        Page<Person> first = repository.findByLastName("Silva", null, 2);
+        Page<Person> second = repository.findByLastName("Silva", first.getNextCursor(), 2);
+
+        // Assert
+        assertEquals(List.of(1L, 3L), ids(first.getItems()));
+        assertEquals(List.of(5L), ids(second.getItems()));
+        assertFalse(second.hasNext());
+        assertEquals(List.of(2L, 3L), ids(repository.findPage(1L, 2)));
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(0L, 0));
+        assertThrows(IllegalArgumentException.class, () -> repository.findByLastName(null, null, 2));
+    }
+
+    @Test
+    @DisplayName("Should reject null items and expose an unmodifiable list")
+    void constructor_items_areValidated() {
+        assertThrows(IllegalArgumentException.class, () -> new Page<Person>(null, null));
+        Page<Person> page = new Page<>(new ArrayList<>(), null);
+        assertThrows(UnsupportedOperationException.class, () -> page.getItems().add(new Person()));
+    }
+
+    private static List<Long> ids(List<Person> persons) {
+        List<Long> ids = new ArrayList<>();
+        for (Person person : persons) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}
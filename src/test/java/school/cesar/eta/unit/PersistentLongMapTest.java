@@ -0,0 +1,136 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for PersistentLongMap class.
+ */
+@DisplayName("PersistentLongMap Test Suite")
+public class PersistentLongMapTest {
+
+    @Test
+    @DisplayName("Should leave older versions unchanged after puts and removes")
+    void putAndRemove_olderVersion_isUnchanged() {
+        // Arrange
+        PersistentLongMap<String> empty = PersistentLongMap.empty();
+        PersistentLongMap<String> first = empty.put(1L, "one").put(2L, "two");
+
+        // Act
+        PersistentLongMap<String> second = first.put(1L, "uno").remove(2L).put(3L, "three");
+
+        // Assert
+        assertEquals(0, empty.size());
+        assertNull(empty.get(1L));
+        assertEquals(2, first.size());
+        assertEquals("one", first.get(1L));
+        assertEquals("two", first.get(2L));
+        assertEquals(2, second.size());
+        assertEquals("uno", second.get(1L));
+        assertNull(second.get(2L));
+        assertEquals("three", second.get(3L));
+    }
+
+    @Test
+    @DisplayName("Should return the same map when nothing changes")
+    void putSameValueOrRemoveMissing_returnsSameMap() {
+        // Arrange
+        String value = "one";
+        PersistentLongMap<String> map = PersistentLongMap.<String> empty().put(1L, value);
+
+        // Act & Assert
+        assertSame(map, map.put(1L, value));
+        assertSame(map, map.remove(2L));
+    }
+
+    @Test
+    @DisplayName("Should match a HashMap under many random updates")
+    void randomUpdates_matchReferenceMap() {
+        // Arrange
+        Random random = new Random(42);
+        Map<Long, Long> expected = new HashMap<>();
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(5_000) - 100L;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, (long) i);
+                map = map.put(key, (long) i);
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        List<Long> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+
+    @Test
+    @DisplayName("Should split values with exact sizes down to single leaves")
+    void valueSpliterator_recursiveSplits_sizesAddUp() {
+        // Arrange
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        for (long key = 0; key < 10_000; key++) {
+            map = map.put(key, key);
+        }
+
+        // Act
+        long total = countBySplitting(map.valueSpliterator());
+
+        // Assert
+        assertEquals(10_000, total);
+        assertEquals(10_000, StreamSupport.stream(map.valueSpliterator(), true).distinct().count());
+    }
+
+    @Test
+    @DisplayName("Should become empty after removing every key")
+    void removeAll_returnsEmptyMap() {
+        // Arrange
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        for (long key = 0; key < 1_000; key++) {
+            map = map.put(key, key);
+        }
+
+        // Act
+        for (long key = 0; key < 1_000; key++) {
+            map = map.remove(key);
+        }
+
+        // Assert
+        assertEquals(0, map.size());
+        assertNull(map.get(0L));
+        map.forEachValue(value -> fail("Map should be empty"));
+    }
+
+    private static long countBySplitting(Spliterator<Long> spliterator) {
+        long expected = spliterator.estimateSize();
+        Spliterator<Long> prefix = spliterator.trySplit();
+        long counted;
+        if (prefix == null) {
+            counted = StreamSupport.stream(spliterator, false).count();
+        } else {
+            counted = countBySplitting(prefix) + countBySplitting(spliterator);
+        }
+        assertEquals(expected, counted);
+        return counted;
+    }
+}
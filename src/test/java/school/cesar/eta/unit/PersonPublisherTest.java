@@ -0,0 +1,214 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for the Flow publishers of PersonRepository.
+ */
+@DisplayName("PersonPublisher Test Suite")
+public class PersonPublisherTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    private static final int COUNT = 1_000;
+
+    private List<Integer> pageRequests;
+    private IndexedPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        pageRequests = new ArrayList<>();
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = new IndexedPersonRepository(clock) {
+            @Override
+            public List<Person> findPage(long afterId, int limit) {
+                pageRequests.add(limit);
+                return super.findPage(afterId, limit);
+            }
+        };
+        for (int i = 0; i < COUNT; i++) {
+            Person person = new Person();
+            person.setFirstName("Person" + i);
+            person.setLastName(i % 2 == 0 ? "Silva" : "Souza");
+            if (i % 100 == 0) {
+                person.setBirthday(TODAY.minusYears(20));
+            }
+            repository.save(person);
+        }
+    }
+
+    @Test
+    @DisplayName("Should only read a page when the subscriber has demand")
+    void publishAll_slowSubscriber_readsOnePageAtATime() {
+        // Arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        repository.publishAll().subscribe(subscriber);
+
+        // Act & Assert
+        assertTrue(pageRequests.isEmpty());
+        subscriber.subscription.request(10);
+        assertEquals(10, subscriber.received.size());
+        assertEquals(1, pageRequests.size());
+        subscriber.subscription.request(PersonPublisher.PAGE_SIZE);
+        assertEquals(10 + PersonPublisher.PAGE_SIZE, subscriber.received.size());
+        assertEquals(2, pageRequests.size());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    @DisplayName("Should publish every person in ID order when requesting one at a time from onNext")
+    void publishAll_requestFromOnNext_deliversAllInOrder() {
+        // Arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(s -> s.request(1));
+        repository.publishAll().subscribe(subscriber);
+
+        // Act
+        subscriber.subscription.request(1);
+
+        // Assert
+        assertTrue(subscriber.completed);
+        assertEquals(COUNT, subscriber.received.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i + 1L, subscriber.received.get(i).getId());
+        }
+        assertEquals(COUNT / PersonPublisher.PAGE_SIZE + 1, pageRequests.size());
+    }
+
+    @Test
+    @DisplayName("Should publish last name and birthday matches")
+    void publishByLastNameAndBirthday_unboundedDemand_deliverMatches() {
+        // Arrange
+        RecordingSubscriber silva = new RecordingSubscriber(null);
+        RecordingSubscriber birthdays = new RecordingSubscriber(null);
+        repository.publishByLastName("Silva").subscribe(silva);
+        repository.publishBirthdayToday().subscribe(birthdays);
+
+        // Act
+        silva.subscription.request(Long.MAX_VALUE);
+        birthdays.subscription.request(Long.MAX_VALUE);
+
+        // Assert
+        assertTrue(silva.completed);
+        assertEquals(COUNT / 2, silva.received.size());
+        assertTrue(silva.received.stream().allMatch(person -> person.getLastName().equals("Silva")));
+        assertTrue(birthdays.completed);
+        assertEquals(COUNT / 100, birthdays.received.size());
+        assertThrows(IllegalArgumentException.class, () -> repository.publishByLastName(null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2 })
+    @DisplayName("Should complete when the last name matches fill whole pages exactly")
+    void publishByLastName_matchesMultipleOfPageSize_completes(int pages) {
+        // Arrange
+        for (int i = 0; i < pages * PersonPublisher.PAGE_SIZE; i++) {
+            Person person = new Person();
+            person.setFirstName("Person" + i);
+            person.setLastName("Exact");
+            repository.save(person);
+        }
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        repository.publishByLastName("Exact").subscribe(subscriber);
+
+        // Act
+        subscriber.subscription.request(10 * PersonPublisher.PAGE_SIZE);
+
+        // Assert
+        assertTrue(subscriber.completed);
+        assertEquals(pages * PersonPublisher.PAGE_SIZE, subscriber.received.size());
+        assertEquals(subscriber.received.size(), subscriber.received.stream().distinct().count());
+    }
+
+    @Test
+    @DisplayName("Should stop after cancel and signal an error for non-positive requests")
+    void cancelAndInvalidRequest_stopPublishing() {
+        // Arrange
+        RecordingSubscriber cancelled = new RecordingSubscriber(null);
+        RecordingSubscriber invalid = new RecordingSubscriber(null);
+        repository.publishAll().subscribe(cancelled);
+        repository.publishAll().subscribe(invalid);
+
+        // Act
+        cancelled.subscription.request(5);
+        cancelled.subscription.cancel();
+        cancelled.subscription.request(5);
+        invalid.subscription.request(0);
+
+        // Assert
+        assertEquals(5, cancelled.received.size());
+        assertFalse(cancelled.completed);
+        assertInstanceOf(IllegalArgumentException.class, invalid.error);
+        assertTrue(invalid.received.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should pass repository failures to onError")
+    void publishAll_failingRepository_signalsError() {
+        // Arrange
+        PersonRepository failing = new IndexedPersonRepository() {
+            @Override
+            public List<Person> findPage(long afterId, int limit) {
+                throw new IllegalStateException("Store unavailable");
+            }
+        };
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        failing.publishAll().subscribe(subscriber);
+
+        // Act
+        subscriber.subscription.request(1);
+
+        // Assert
+        assertInstanceOf(IllegalStateException.class, subscriber.error);
+    }
+
+    /**
+     * Records every signal, optionally running an action on the subscription after each item.
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<Person> {
+        private final Consumer<Flow.Subscription> onEach;
+        private final List<Person> received = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        RecordingSubscriber(Consumer<Flow.Subscription> onEach) {
+            this.onEach = onEach;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Person item) {
+            received.add(item);
+            if (onEach != null) {
+                onEach.accept(subscription);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
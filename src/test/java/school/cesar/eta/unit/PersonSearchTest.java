@@ -0,0 +1,101 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for PersonSearch class.
+ */
+@DisplayName("PersonSearch Test Suite")
+public class PersonSearchTest {
+
+    private IndexedPersonRepository delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new IndexedPersonRepository();
+    }
+
+    @Test
+    @DisplayName("Should find misspelled names, closest first, ignoring case and accents")
+    void search_misspelledName_returnsClosestMatches() {
+        // Arrange
+        Person joao = delegate.save(createPerson("João", "Conceição"));
+        Person joana = delegate.save(createPerson("Joana", "Conceição"));
+        delegate.save(createPerson("Pedro", "Alvares"));
+        PersonSearch search = new PersonSearch.Builder().delegate(delegate).build();
+
+        // Act
+        List<PersonSearch.Match> matches = search.search("Joana Conceicao", 10);
+        List<PersonSearch.Match> misspelled = search.search("JOAN CONSEICAO", 10);
+
+        // Assert
+        assertEquals(List.of(joana, joao),
+                matches.stream().map(PersonSearch.Match::getPerson).collect(Collectors.toList()));
+        assertEquals(List.of(0, 2), matches.stream().map(PersonSearch.Match::getDistance).collect(Collectors.toList()));
+        assertEquals(List.of(joao, joana),
+                misspelled.stream().map(PersonSearch.Match::getPerson).collect(Collectors.toList()));
+        assertEquals(List.of(joao), search.search("JOAN CONSEICAO", 1).stream().map(PersonSearch.Match::getPerson)
+                .collect(Collectors.toList()));
+        assertEquals(3, search.getIndexedCount());
+    }
+
+    @Test
+    @DisplayName("Should keep the index in step with saves, renames and deletes made through it")
+    void writes_throughDecorator_updateIndex() {
+        // Arrange
+        PersonSearch search = new PersonSearch.Builder().delegate(delegate).maxDistance(1).build();
+        Person ana = search.save(createPerson("Ana", "Souza"));
+        List<Person> batch = search.saveAll(List.of(createPerson("Bia", "Lima"), createPerson("Caio", "Lima")));
+
+        // Act
+        ana.setLastName("Santos");
+        search.save(ana);
+        search.deleteById(batch.get(0).getId());
+        search.deleteAllById(List.of(batch.get(1).getId(), 99L));
+
+        // Assert
+        assertTrue(search.search("Ana Souza", 5).isEmpty());
+        assertEquals(ana, search.search("ana santo", 5).get(0).getPerson());
+        assertTrue(search.search("Bia Lima", 5).isEmpty());
+        assertTrue(search.search("Caio Lima", 5).isEmpty());
+        assertEquals(1, search.getIndexedCount());
+        assertEquals(1, delegate.count());
+    }
+
+    @Test
+    @DisplayName("Should match short names by length when trigrams cannot prune")
+    void search_shortQuery_fallsBackToLengthBuckets() {
+        // Arrange
+        PersonSearch search = new PersonSearch.Builder().delegate(delegate).build();
+        Person boLi = search.save(createPerson("Bo", "Li"));
+        Person alLu = search.save(createPerson("Al", "Lu"));
+        search.save(createPerson("Bartholomew", "Lu"));
+
+        // Act
+        List<Person> found = search.search("Bo Lu", 10).stream().map(PersonSearch.Match::getPerson)
+                .collect(Collectors.toList());
+
+        // Assert
+        assertEquals(List.of(boLi, alLu), found);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid settings and arguments")
+    void invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new PersonSearch.Builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new PersonSearch.Builder().delegate(delegate).maxDistance(-1).build());
+        PersonSearch search = new PersonSearch.Builder().delegate(delegate).build();
+        assertThrows(IllegalArgumentException.class, () -> search.search(null, 5));
+        assertThrows(IllegalArgumentException.class, () -> search.search("Ana", 0));
+        assertThrows(IllegalArgumentException.class, () -> search.save(null));
+    }
+}
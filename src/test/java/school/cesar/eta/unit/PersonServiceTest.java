@@ -12,10 +12,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
+import java.time.Period;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -139,6 +141,76 @@ public class PersonServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Batch Operation Tests")
+    class BatchOperationTests {
+
+        @Test
+        @DisplayName("Should save a batch with one call and send a welcome email to each person")
+        void createPersons_validPersons_savesBatch() {
+            // Arrange
+            Person jane = new Person();
+            jane.setFirstName("Jane");
+            List<Person> persons = Arrays.asList(testPerson, jane);
+            when(repository.saveAll(persons)).thenReturn(persons);
+
+            // Act
+            List<Person> result = service.createPersons(persons);
+
+            // Assert
+            assertEquals(persons, result);
+            verify(repository, never()).save(any(Person.class));
+            verify(emailService).sendWelcomeEmail("john.doe@example.com", "John Doe");
+            verify(emailService).sendWelcomeEmail("jane@example.com", "Jane");
+        }
+
+        @Test
+        @DisplayName("Should reject the whole batch when one person is invalid")
+        void createPersons_invalidPerson_savesNothing() {
+            // Arrange
+            List<Person> persons = Arrays.asList(testPerson, new Person());
+
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> service.createPersons(persons));
+            assertEquals("Person must have at least one name", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> service.createPersons(null));
+            verify(repository, never()).saveAll(any());
+            verify(emailService, never()).sendWelcomeEmail(anyString(), anyString());
+        }
+
+        @Test
+        @DisplayName("Should find persons with one call")
+        void findPersons_existingIds_returnsPersons() {
+            // Arrange
+            testPerson.setId(1L);
+            List<Long> ids = Arrays.asList(1L, 1L);
+            when(repository.findAllById(ids)).thenReturn(List.of(testPerson));
+
+            // Act
+            List<Person> result = service.findPersons(ids);
+
+            // Assert
+            assertEquals(List.of(testPerson), result);
+            verify(repository, never()).findById(any(Long.class));
+        }
+
+        @Test
+        @DisplayName("Should report every missing ID")
+        void findPersons_missingIds_throwsException() {
+            // Arrange
+            testPerson.setId(1L);
+            List<Long> ids = Arrays.asList(1L, 998L, 999L, 998L);
+            when(repository.findAllById(ids)).thenReturn(List.of(testPerson));
+
+            // Act & Assert
+            PersonNotFoundException exception = assertThrows(PersonNotFoundException.class,
+                    () -> service.findPersons(ids));
+            assertEquals("Persons not found with ids: [998, 999]", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> service.findPersons(null));
+        }
+    }
+
     @Nested
     @DisplayName("Find Person Tests")
     class FindPersonTests {
@@ -171,6 +243,35 @@ public class PersonServiceTest {
                     () -> service.findPerson(id));
             assertEquals("Person not found with id: 999", exception.getMessage());
         }
+
+        @Test
+        @DisplayName("Should find person by primitive ID without boxing")
+        void findPerson_primitiveId_usesPrimitiveLookup() {
+            // Arrange
+            long id = 1L;
+            when(repository.findById(id)).thenReturn(Optional.of(testPerson));
+
+            // Act
+            Person result = service.findPerson(id);
+
+            // Assert
+            assertEquals(testPerson, result);
+            verify(repository).findById(id);
+            verify(repository, never()).findById(any(Long.class));
+        }
+
+        @Test
+        @DisplayName("Should throw exception when primitive ID is not found")
+        void findPerson_nonExistingPrimitiveId_throwsException() {
+            // Arrange
+            long id = 999L;
+            when(repository.findById(id)).thenReturn(Optional.empty());
+
+            // Act & Assert
+            PersonNotFoundException exception = assertThrows(PersonNotFoundException.class,
+                    () -> service.findPerson(id));
+            assertEquals("Person not found with id: 999", exception.getMessage());
+        }
     }
 
     @Nested
@@ -281,7 +382,8 @@ public class PersonServiceTest {
             Person exactlyEighteen = createPersonWithAge(18);
 
             List<Person> allPersons = Arrays.asList(adult1, adult2, minor, exactlyEighteen);
-            when(repository.findAll()).thenReturn(allPersons);
+            when(repository.findBornOnOrBefore(LocalDate.now().minusYears(18))).thenCallRealMethod();
+            when(repository.streamAll()).thenReturn(allPersons.stream());
 
             // Act
             List<Person> adults = service.findAdults();
@@ -303,7 +405,8 @@ public class PersonServiceTest {
             withoutBirthday.setFirstName("No");
             withoutBirthday.setLastName("Birthday");
 
-            when(repository.findAll()).thenReturn(Arrays.asList(withBirthday, withoutBirthday));
+            when(repository.findBornOnOrBefore(LocalDate.now().minusYears(18))).thenCallRealMethod();
+            when(repository.streamAll()).thenReturn(Stream.of(withBirthday, withoutBirthday));
 
             // Act
             List<Person> adults = service.findAdults();
@@ -313,6 +416,21 @@ public class PersonServiceTest {
             assertTrue(adults.contains(withBirthday));
         }
 
+        @Test
+        @DisplayName("Should ask the repository for persons born on or before the date 18 years ago")
+        void findAdults_queriesRepositoryByCutoffDate() {
+            // Arrange
+            Person adult = createPersonWithAge(40);
+            when(repository.findBornOnOrBefore(LocalDate.now().minusYears(18))).thenReturn(List.of(adult));
+
+            // Act
+            List<Person> adults = service.findAdults();
+
+            // Assert
+            assertEquals(List.of(adult), adults);
+            verify(repository, never()).streamAll();
+        }
+
         private Person createPersonWithAge(int age) {
             Person person = new Person();
             person.setFirstName("Person");
@@ -364,6 +482,26 @@ public class PersonServiceTest {
             assertEquals(0, count);
             verify(emailService, never()).sendBirthdayGreeting(anyString(), anyString(), anyInt());
         }
+
+        @Test
+        @DisplayName("Should greet the persons celebrating on a date under the leap day policy")
+        void sendBirthdayGreetings_dateAndPolicy_usesCelebrants() {
+            // Arrange
+            LocalDate date = LocalDate.of(2023, 2, 28);
+            Person leapling = new Person();
+            leapling.setFirstName("Leap");
+            leapling.setLastName("Day");
+            leapling.setBirthday(LocalDate.of(2000, 2, 29));
+            when(repository.findBirthdaysCelebratedOn(date, LeapDayPolicy.FEBRUARY_28)).thenReturn(List.of(leapling));
+
+            // Act
+            int count = service.sendBirthdayGreetings(date, LeapDayPolicy.FEBRUARY_28);
+
+            // Assert
+            assertEquals(1, count);
+            verify(emailService).sendBirthdayGreeting(eq("leap.day@example.com"), eq("Leap Day"), anyInt());
+            verify(repository, never()).findBirthdayToday();
+        }
     }
 
     @Nested
@@ -378,14 +516,16 @@ public class PersonServiceTest {
             Long familyMemberId = 2L;
 
             Person person = new Person();
+            person.setId(personId);
             person.setFirstName("Person");
 
             Person familyMember = new Person();
+            familyMember.setId(familyMemberId);
             familyMember.setFirstName("Family");
 
-            when(repository.findById(personId)).thenReturn(Optional.of(person));
-            when(repository.findById(familyMemberId)).thenReturn(Optional.of(familyMember));
-            when(repository.save(any(Person.class))).thenAnswer(i -> i.getArguments()[0]);
+            when(repository.findAllById(Arrays.asList(personId, familyMemberId)))
+                    .thenReturn(Arrays.asList(person, familyMember));
+            when(repository.saveAll(anyCollection())).thenAnswer(i -> i.getArguments()[0]);
 
             // Act
             service.addFamilyMember(personId, familyMemberId);
@@ -393,7 +533,26 @@ public class PersonServiceTest {
             // Assert
             assertTrue(person.isFamily(familyMember));
             assertTrue(familyMember.isFamily(person));
-            verify(repository, times(2)).save(any(Person.class));
+            verify(repository).saveAll(Arrays.asList(person, familyMember));
+            verify(repository, never()).save(any(Person.class));
+        }
+
+        @Test
+        @DisplayName("Should name the missing person when adding a family member that does not exist")
+        void addFamilyMember_missingFamilyMember_throwsException() {
+            // Arrange
+            Long personId = 1L;
+            Long familyMemberId = 999L;
+            Person person = new Person();
+            person.setId(personId);
+            person.setFirstName("Person");
+            when(repository.findAllById(Arrays.asList(personId, familyMemberId))).thenReturn(List.of(person));
+
+            // Act & Assert
+            PersonNotFoundException exception = assertThrows(PersonNotFoundException.class,
+                    () -> service.addFamilyMember(personId, familyMemberId));
+            assertEquals("Person not found with id: 999", exception.getMessage());
+            verify(repository, never()).saveAll(any());
         }
 
         @Test
@@ -447,7 +606,7 @@ public class PersonServiceTest {
             Person adult2 = createPersonWithAge(35);
             Person minor = createPersonWithAge(10);
 
-            when(repository.findAll()).thenReturn(Arrays.asList(adult1, adult2, minor));
+            when(repository.streamAll()).thenReturn(Stream.of(adult1, adult2, minor));
 
             // Act
             PersonService.PersonStatistics stats = service.getStatistics();
@@ -462,7 +621,7 @@ public class PersonServiceTest {
         @DisplayName("Should handle empty repository")
         void getStatistics_emptyRepository_zeroValues() {
             // Arrange
-            when(repository.findAll()).thenReturn(Collections.emptyList());
+            when(repository.streamAll()).thenReturn(Stream.empty());
 
             // Act
             PersonService.PersonStatistics stats = service.getStatistics();
@@ -473,6 +632,28 @@ public class PersonServiceTest {
             assertEquals(0.0, stats.getAverageAge());
         }
 
+        @Test
+        @DisplayName("Should compute the same age as Period, including leap day birthdays and days before birth")
+        void calculateAge_variousBirthdays_matchesPeriod() {
+            // Arrange
+            LocalDate[] birthdays = { LocalDate.of(2000, 2, 29), LocalDate.of(2001, 3, 1), LocalDate.of(1990, 12, 31) };
+            LocalDate[] days = { LocalDate.of(1980, 6, 1), LocalDate.of(2018, 2, 28), LocalDate.of(2018, 3, 1),
+                    LocalDate.of(2020, 2, 29), LocalDate.of(2024, 12, 30), LocalDate.of(2024, 12, 31) };
+
+            for (LocalDate birthday : birthdays) {
+                for (LocalDate day : days) {
+                    Person person = new Person();
+                    person.setBirthday(birthday);
+
+                    // Act & Assert
+                    assertEquals(Period.between(birthday, day).getYears(), PersonService.calculateAge(person, day),
+                            birthday + " on " + day);
+                    assertEquals(!birthday.isAfter(PersonService.adultCutoff(day)),
+                            Period.between(birthday, day).getYears() >= 18, birthday + " on " + day);
+                }
+            }
+        }
+
         private Person createPersonWithAge(int age) {
             Person person = new Person();
             person.setFirstName("Test");
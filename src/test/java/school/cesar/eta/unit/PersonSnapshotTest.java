@@ -0,0 +1,131 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for PersonSnapshot class.
+ */
+@DisplayName("PersonSnapshot Test Suite")
+public class PersonSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should read back every record across many segments, in order")
+    void read_manySegments_returnsRecordsInOrder() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("persons.snapshot");
+        List<Person> persons = createPersons(103);
+        persons.get(0).setBirthday(LocalDate.of(1990, 1, 1));
+        persons.get(0).setCpf("111.444.777-35");
+        persons.get(0).addToFamily(persons.get(1));
+
+        // Act
+        PersonSnapshot.write(file, persons, 200L, 10);
+        PersonSnapshot snapshot = PersonSnapshot.read(file);
+        List<PersonRecordCodec.PersonRecord> records = new ArrayList<>();
+        snapshot.forEachRecord(records::add);
+
+        // Assert
+        assertEquals(200L, snapshot.getNextId());
+        assertEquals(103, snapshot.size());
+        assertEquals(103, records.size());
+        for (int i = 0; i < persons.size(); i++) {
+            assertEquals(persons.get(i), records.get(i).getPerson());
+        }
+        assertEquals("111.444.777-35", records.get(0).getPerson().getCpf());
+        assertArrayEquals(new long[] { 2L }, records.get(0).getFamilyIds());
+    }
+
+    @Test
+    @DisplayName("Should write and read an empty snapshot")
+    void read_emptySnapshot_returnsNoRecords() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("empty.snapshot");
+
+        // Act
+        PersonSnapshot.write(file, List.of(), 1L);
+        PersonSnapshot snapshot = PersonSnapshot.read(file);
+
+        // Assert
+        assertEquals(0, snapshot.size());
+        assertEquals(1L, snapshot.getNextId());
+    }
+
+    @Test
+    @DisplayName("Should replace an existing snapshot without leaving temporary files")
+    void write_existingFile_replacesIt() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("persons.snapshot");
+        PersonSnapshot.write(file, createPersons(5), 6L);
+
+        // Act
+        PersonSnapshot.write(file, createPersons(2), 3L);
+
+        // Assert
+        assertEquals(2, PersonSnapshot.read(file).size());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a segment that fails its checksum")
+    void read_corruptSegment_throwsException() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("persons.snapshot");
+        PersonSnapshot.write(file, createPersons(20), 21L, 5);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), Files.size(file) - 2);
+        }
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> PersonSnapshot.read(file));
+    }
+
+    @Test
+    @DisplayName("Should reject files that are not snapshots")
+    void read_foreignFile_throwsException() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("other.bin");
+        Files.write(file, new byte[32]);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PersonSnapshot.read(file));
+    }
+
+    @Test
+    @DisplayName("Should reject non-positive segment sizes")
+    void write_invalidSegmentSize_throwsException() {
+        Path file = tempDir.resolve("persons.snapshot");
+        assertThrows(IllegalArgumentException.class, () -> PersonSnapshot.write(file, createPersons(1), 2L, 0));
+    }
+
+    private static List<Person> createPersons(int count) {
+        List<Person> persons = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Person person = new Person();
+            person.setId((long) i);
+            person.setFirstName("Person" + i);
+            person.setLastName("Doe");
+            persons.add(person);
+        }
+        return persons;
+    }
+}
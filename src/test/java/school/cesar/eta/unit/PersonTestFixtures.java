@@ -0,0 +1,26 @@
+package school.cesar.eta.unit;
+
+/**
+ * Test fixtures shared by the repository and service test suites.
+ */
+public final class PersonTestFixtures {
+
+    private PersonTestFixtures() {
+    }
+
+    /**
+     * Creates an unsaved person with only a name.
+     *
+     * @param firstName
+     *            the first name
+     * @param lastName
+     *            the last name
+     * @return the person, without an ID
+     */
+    public static Person createPerson(String firstName, String lastName) {
+        Person person = new Person();
+        person.setFirstName(firstName);
+        person.setLastName(lastName);
+        return person;
+    }
+}
@@ -0,0 +1,334 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test suite for ShardedPersonRepository class.
+ */
+@DisplayName("ShardedPersonRepository Test Suite")
+public class ShardedPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+    private static final int SHARDS = 4;
+
+    private ShardedPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = new ShardedPersonRepository(SHARDS, clock);
+    }
+
+    @Test
+    @DisplayName("Should spread sequential IDs evenly over the shards")
+    void save_sequentialIds_fillsShardsEvenly() {
+        // Act
+        for (int i = 0; i < 100; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Assert
+        assertEquals(SHARDS, repository.getShardCount());
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals(25, repository.countInShard(shard));
+        }
+        assertEquals(100, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should keep explicit IDs and never generate them again")
+    void save_explicitId_advancesSequence() {
+        // Arrange
+        Person explicit = createPerson("John", "Doe");
+        explicit.setId(10L);
+
+        // Act
+        repository.save(explicit);
+        Person generated = repository.save(createPerson("Jane", "Doe"));
+
+        // Assert
+        assertEquals(11L, generated.getId());
+        assertSame(explicit, repository.findById(10L).orElseThrow());
+        assertTrue(repository.existsById(10L));
+    }
+
+    @Test
+    @DisplayName("Should merge last name, birthday and full scans across shards")
+    void fanOutQueries_personsInEveryShard_mergesResults() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        repository.save(birthday);
+        for (int i = 0; i < 7; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Act & Assert
+        assertEquals(7, repository.findByLastName("Doe").size());
+        assertTrue(repository.findByLastName(null).isEmpty());
+        assertEquals(List.of(birthday), repository.findBirthdayToday());
+        assertEquals(8, repository.findAll().size());
+        assertEquals(List.of(birthday), repository.findByLastNameStartingWith("sm"));
+    }
+
+    @Test
+    @DisplayName("Should merge normalized last name lookups and suggestions across shards")
+    void normalizedLastNames_acrossShards_mergeInNameOrder() {
+        // Arrange
+        repository.save(createPerson("Ana", "Souza"));
+        repository.save(createPerson("Bia", "Araújo"));
+        repository.save(createPerson("Caio", "ARAUJO"));
+        repository.save(createPerson("Davi", "Silva"));
+
+        // Act
+        List<String> suggestions = repository.suggestLastNames("", 2);
+
+        // Assert
+        assertEquals(List.of("Araújo", "Silva"), suggestions);
+        assertEquals(List.of(2L, 3L), repository.findByNormalizedLastName("araujo").stream().map(Person::getId).sorted()
+                .collect(Collectors.toList()));
+        assertEquals(List.of("Souza"), repository.suggestLastNames("só", 3));
+    }
+
+    @Test
+    @DisplayName("Should merge city lookups and groups across shards in ID order")
+    void cityQueries_acrossShards_mergeInIdOrder() {
+        // Arrange
+        Address recife = new Address.Builder().street("Rua A").number("1").city("Recife").state("PE")
+                .zipCode("50000-000").build();
+        List<Long> recifeIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Person person = createPerson("Person" + i, "Souza");
+            if (i % 3 != 0) {
+                person.setAddress(recife);
+            }
+            Person saved = repository.save(person);
+            if (i % 3 != 0) {
+                recifeIds.add(saved.getId());
+            }
+        }
+
+        // Act
+        List<Long> found = repository.findByCity("Recife", "PE").stream().map(Person::getId)
+                .collect(Collectors.toList());
+        long[] grouped = repository.groupByCity().get(recife.getCityKey());
+
+        // Assert
+        assertEquals(recifeIds, found);
+        assertEquals(recifeIds, Arrays.stream(grouped).boxed().collect(Collectors.toList()));
+        assertEquals(1, repository.groupByCity().size());
+    }
+
+    @Test
+    @DisplayName("Should merge zip code range lookups across shards in zip code order")
+    void zipCodeQueries_acrossShards_mergeInZipOrder() {
+        // Arrange
+        String[] zipCodes = { "50300-000", "50100-000", "20000-000", "50200-000", "50100-000", "51000-000" };
+        for (int i = 0; i < zipCodes.length; i++) {
+            Person person = createPerson("Person" + i, "Souza");
+            person.setAddress(new Address.Builder().street("Rua A").number("1").city("Recife").state("PE")
+                    .zipCode(zipCodes[i]).build());
+            repository.save(person);
+        }
+
+        // Act
+        List<Long> found = repository.findByZipPrefix("50").stream().map(Person::getId).collect(Collectors.toList());
+
+        // Assert
+        assertEquals(List.of(2L, 5L, 4L, 1L), found);
+        assertEquals(5, repository.findByZipRange("50000-000", "57000-000").size());
+    }
+
+    @Test
+    @DisplayName("Should keep CPFs unique across shards")
+    void save_cpfOwnedInAnotherShard_throwsException() {
+        // Arrange
+        Person ana = createPerson("Ana", "Souza");
+        ana.setCpf("111.444.777-35");
+        repository.save(ana);
+        Person copy = createPerson("Bia", "Lima");
+        copy.setCpf("11144477735");
+        copy.setId(2L);
+        Person batchCopy = createPerson("Caio", "Costa");
+        batchCopy.setCpf("111.444.777-35");
+
+        // Act & Assert
+        assertThrows(DuplicateCpfException.class, () -> repository.save(copy));
+        assertThrows(DuplicateCpfException.class,
+                () -> repository.saveAll(List.of(createPerson("Davi", "Dias"), batchCopy)));
+        assertEquals(1, repository.count());
+        assertEquals(ana, repository.findByCpf("111.444.777-35").orElseThrow());
+        assertFalse(repository.findByCpf("123.456.789-09").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should delete only from the owning shard")
+    void deleteById_existingPerson_removesIt() {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+
+        // Act & Assert
+        assertTrue(repository.deleteById(person.getId()));
+        assertFalse(repository.deleteById(person.getId()));
+        assertFalse(repository.deleteById((Long) null));
+        assertFalse(repository.findById(person.getId()).isPresent());
+        assertFalse(repository.findById((Long) null).isPresent());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should link family members stored in different shards")
+    void addFamilyMember_acrossShards_linksBoth() {
+        // Arrange
+        PersonService service = new PersonService(repository, mock(EmailService.class));
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+
+        // Act
+        service.addFamilyMember(parent.getId(), child.getId());
+
+        // Assert
+        assertTrue(repository.findById(parent.getId()).orElseThrow().isFamily(child));
+        assertTrue(repository.findById(child.getId()).orElseThrow().isFamily(parent));
+    }
+
+    @Test
+    @DisplayName("Should assign unique IDs under concurrent saves")
+    void save_concurrentSaves_uniqueIds() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> repository.save(createPerson("Concurrent", "Doe")).getId()));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<Long> future : futures) {
+            ids.add(future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(1000, ids.size());
+        assertEquals(1000, repository.count());
+        assertEquals(1000, repository.findByLastName("Doe").size());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid construction arguments and null persons")
+    void invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedPersonRepository(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedPersonRepository(2, null));
+        assertThrows(IllegalArgumentException.class, () -> repository.save(null));
+    }
+
+    @Test
+    @DisplayName("Should merge shard pages into global ID order")
+    void findPage_andLastNameCursor_mergeInIdOrder() {
+        // Arrange
+        for (int i = 0; i < 20; i++) {
+            repository.save(createPerson("Person" + i, i % 2 == 0 ? "Silva" : "Souza"));
+        }
+
+        // Act
+        List<Person> page = repository.findPage(5L, 6);
+        List<Long> silvaIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Person> silva = repository.findByLastName("Silva", cursor, 3);
+            silva.getItems().forEach(person -> silvaIds.add(person.getId()));
+            cursor = silva.getNextCursor();
+        } while (cursor != null);
+
+        // Assert
+        assertEquals(List.of(6L, 7L, 8L, 9L, 10L, 11L), page.stream().map(Person::getId).collect(Collectors.toList()));
+        assertEquals(List.of(1L, 3L, 5L, 7L, 9L, 11L, 13L, 15L, 17L, 19L), silvaIds);
+    }
+
+    @Test
+    @DisplayName("Should spread batches over the shards and keep the requested order")
+    void batchOperations_acrossShards_keepOrder() {
+        // Arrange
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+
+        // Act
+        repository.saveAll(persons);
+        List<Person> found = repository.findAllById(Arrays.asList(10L, 3L, 7L, 42L));
+        int deleted = repository.deleteAllById(Arrays.asList(1L, 2L, 3L, 4L, 42L));
+
+        // Assert
+        assertEquals(List.of(10L, 3L, 7L), found.stream().map(Person::getId).collect(Collectors.toList()));
+        assertEquals(4, deleted);
+        assertEquals(6, repository.count());
+        for (int shard = 0; shard < repository.getShardCount(); shard++) {
+            assertTrue(repository.countInShard(shard) > 0);
+        }
+        assertEquals(11L, repository.save(createPerson("Next", "Doe")).getId());
+    }
+
+    @Test
+    @DisplayName("Should merge birthdate ranges from every shard, oldest first, and sum their counts")
+    void birthdateRangeQueries_acrossShards_mergeByBirthday() {
+        // Arrange
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Person person = createPerson("Person" + i, "Doe");
+            person.setBirthday(TODAY.minusYears(10 + i % 4 * 5));
+            persons.add(person);
+        }
+        repository.saveAll(persons);
+        LocalDate adultCutoff = TODAY.minusYears(18);
+
+        // Act
+        List<Person> adults = repository.findBornOnOrBefore(adultCutoff);
+        List<Person> teens = repository.findBornBetween(adultCutoff.plusDays(1), TODAY);
+
+        // Assert
+        assertEquals(6, adults.size());
+        assertEquals(List.of(4L, 8L, 12L, 3L, 7L, 11L),
+                adults.stream().map(Person::getId).collect(Collectors.toList()));
+        assertEquals(6, repository.countBornOnOrBefore(adultCutoff));
+        assertEquals(List.of(2L, 6L, 10L, 1L, 5L, 9L), teens.stream().map(Person::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should stream persons from every shard in ID order")
+    void streamAll_acrossShards_streamsInIdOrder() {
+        // Arrange
+        List<Long> saved = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            saved.add(repository.save(createPerson("Person" + i, "Doe")).getId());
+        }
+
+        // Act
+        List<Long> streamed = repository.streamAll().map(Person::getId).collect(Collectors.toList());
+
+        // Assert
+        assertEquals(saved, streamed);
+    }
+}
@@ -0,0 +1,156 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for TrigramIndex class.
+ */
+@DisplayName("TrigramIndex Test Suite")
+public class TrigramIndexTest {
+
+    @Test
+    @DisplayName("Should split padded names into distinct trigrams")
+    void distinctGrams_repeatedGrams_countedOnce() {
+        assertEquals(4, TrigramIndex.distinctGrams("ana").length);
+        assertEquals(4, TrigramIndex.distinctGrams("aaaa").length);
+        assertEquals(1, TrigramIndex.distinctGrams("").length);
+    }
+
+    @Test
+    @DisplayName("Should compute the Levenshtein distance up to the bound")
+    void boundedDistance_variousPairs_matchesFullDistance() {
+        // Arrange
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            String a = randomWord(random);
+            String b = random.nextBoolean() ? mutate(a, random) : randomWord(random);
+            int bound = random.nextInt(4);
+
+            // Act
+            int distance = TrigramIndex.boundedDistance(a, b, bound);
+
+            // Assert
+            int expected = levenshtein(a, b);
+            assertEquals(Math.min(expected, bound + 1), distance, a + " / " + b + " within " + bound);
+        }
+    }
+
+    @Test
+    @DisplayName("Should return the same hits as comparing the query to every name")
+    void search_randomNames_matchesBruteForce() {
+        // Arrange
+        Random random = new Random(7);
+        TrigramIndex index = new TrigramIndex();
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < 2_000; id++) {
+            String name = randomWord(random) + " " + randomWord(random);
+            names.add(name);
+            index.put(id, name);
+        }
+        for (int id = 0; id < 2_000; id += 3) {
+            index.remove(id);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            int target = random.nextInt(names.size());
+            String query = i % 10 == 0 ? randomWord(random) : mutate(mutate(names.get(target), random), random);
+            int maxDistance = random.nextInt(3);
+
+            // Act
+            List<Long> found = index.search(query, maxDistance, Integer.MAX_VALUE).stream().map(hit -> hit.id)
+                    .collect(Collectors.toList());
+
+            // Assert
+            List<Long> expected = new ArrayList<>();
+            for (int d = 0; d <= maxDistance; d++) {
+                for (int id = 0; id < names.size(); id++) {
+                    if (id % 3 != 0 && levenshtein(NameNormalizer.normalize(query), names.get(id)) == d) {
+                        expected.add((long) id);
+                    }
+                }
+            }
+            assertEquals(expected, found, query + " within " + maxDistance);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reindex a renamed ID and ignore case and accents")
+    void put_renamedId_replacesOldName() {
+        // Arrange
+        TrigramIndex index = new TrigramIndex();
+        index.put(1L, "Maria Conceição");
+        index.put(2L, "Mario Conceicao");
+
+        // Act
+        index.put(1L, "Ana Souza");
+        List<TrigramIndex.Hit> hits = index.search("MARIA CONCEICAO", 1, 10);
+
+        // Assert
+        assertEquals(1, hits.size());
+        assertEquals(2L, hits.get(0).id);
+        assertEquals(1, hits.get(0).distance);
+        assertEquals(1L, index.search("ana sousa", 1, 10).get(0).id);
+        assertEquals(2, index.size());
+        assertTrue(index.remove(1L));
+        assertFalse(index.remove(1L));
+        assertTrue(index.search("ana souza", 2, 10).isEmpty());
+    }
+
+    private static String randomWord(Random random) {
+        int length = 2 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(6)));
+        }
+        return word.toString();
+    }
+
+    private static String mutate(String word, Random random) {
+        StringBuilder result = new StringBuilder(word);
+        int position = random.nextInt(word.length() + 1);
+        char letter = (char) ('a' + random.nextInt(6));
+        switch (random.nextInt(3)) {
+            case 0:
+                result.insert(position, letter);
+                break;
+            case 1:
+                if (position < result.length()) {
+                    result.deleteCharAt(position);
+                }
+                break;
+            default:
+                if (position < result.length()) {
+                    result.setCharAt(position, letter);
+                }
+                break;
+        }
+        return result.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] distance = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            distance[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            distance[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                distance[i][j] = Math.min(Math.min(distance[i - 1][j] + 1, distance[i][j - 1] + 1),
+                        distance[i - 1][j - 1] + cost);
+            }
+        }
+        return distance[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,463 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for WriteAheadLogPersonRepository class.
+ */
+@DisplayName("WriteAheadLogPersonRepository Test Suite")
+public class WriteAheadLogPersonRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 15);
+
+    @TempDir
+    Path tempDir;
+
+    private Path logFile;
+    private Clock clock;
+    private WriteAheadLogPersonRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = tempDir.resolve("persons.wal");
+        clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        repository = builder().build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    @DisplayName("Should replay saves, updates and deletes after reopening")
+    void reopen_existingLog_replaysChanges() throws IOException {
+        // Arrange
+        Address address = new Address.Builder().street("Rua da Aurora").number("10").city("Recife").state("PE")
+                .zipCode("50050-000").build();
+        Person person = createPerson("José", "Conceição");
+        person.setBirthday(LocalDate.of(1985, 2, 28));
+        person.setCpf("111.444.777-35");
+        person.setAddress(address);
+        repository.save(person);
+        for (int i = 0; i < 5; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+        person.setLastName("Silva");
+        repository.save(person);
+        repository.deleteById(3L);
+        repository.deleteById(6L);
+        repository.close();
+
+        // Act
+        repository = builder().build();
+        Person added = repository.save(createPerson("After", "Restart"));
+
+        // Assert
+        assertEquals(5, repository.count());
+        assertEquals(person, repository.findById(1L).orElseThrow());
+        assertEquals(address, repository.findById(1L).orElseThrow().getAddress());
+        assertEquals(3, repository.findByLastName("Doe").size());
+        assertTrue(repository.findByLastName("Conceição").isEmpty());
+        assertFalse(repository.existsById(3L));
+        assertEquals(7L, added.getId());
+    }
+
+    @Test
+    @DisplayName("Should reject a duplicate CPF before logging it")
+    void save_duplicateCpf_isNotLogged() throws IOException {
+        // Arrange
+        Person ana = createPerson("Ana", "Souza");
+        ana.setCpf("111.444.777-35");
+        repository.save(ana);
+        Person copy = createPerson("Bia", "Lima");
+        copy.setCpf("11144477735");
+
+        // Act
+        assertThrows(DuplicateCpfException.class, () -> repository.save(copy));
+        assertThrows(DuplicateCpfException.class, () -> repository.saveAll(List.of(copy)));
+        repository.close();
+        repository = builder().build();
+
+        // Assert
+        assertNull(copy.getId());
+        assertEquals(1, repository.count());
+        assertEquals(ana, repository.findByCpf("111.444.777-35").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should restore family links after reopening")
+    void reopen_personsWithFamily_linksMembers() throws IOException {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+        repository.save(child);
+        repository.close();
+
+        // Act
+        repository = builder().build();
+        Person loadedParent = repository.findById(parent.getId()).orElseThrow();
+        Person loadedChild = repository.findById(child.getId()).orElseThrow();
+
+        // Assert
+        assertEquals(List.of(loadedChild), loadedParent.getFamily());
+        assertSame(loadedParent, loadedChild.getFamily().get(0));
+    }
+
+    @Test
+    @DisplayName("Should discard a torn entry at the end of the log")
+    void reopen_tornTail_discardsIncompleteEntry() throws IOException {
+        // Arrange
+        repository.save(createPerson("Jane", "Doe"));
+        repository.save(createPerson("John", "Doe"));
+        repository.close();
+        long validSize = Files.size(logFile);
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2, 3 }));
+        }
+
+        // Act
+        repository = builder().build();
+
+        // Assert
+        assertEquals(2, repository.count());
+        assertEquals(validSize, Files.size(logFile));
+        assertEquals(3L, repository.save(createPerson("Next", "Doe")).getId());
+    }
+
+    @Test
+    @DisplayName("Should stop replaying at an entry with a bad checksum")
+    void reopen_corruptEntry_stopsReplay() throws IOException {
+        // Arrange
+        repository.save(createPerson("Jane", "Doe"));
+        long firstEnd = repository.getLogSize();
+        repository.save(createPerson("John", "Doe"));
+        repository.close();
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), Files.size(logFile) - 1);
+        }
+
+        // Act
+        repository = builder().build();
+
+        // Assert
+        assertEquals(1, repository.count());
+        assertEquals(firstEnd, Files.size(logFile));
+    }
+
+    @Test
+    @DisplayName("Should share syncs between concurrent writers")
+    void save_concurrentWriters_groupsSyncs() throws Exception {
+        // Arrange
+        repository.close();
+        repository = builder().groupCommitWindow(Duration.ofMillis(5)).build();
+        int threads = 8;
+        int perThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    repository.save(createPerson("Person" + i, "Thread" + thread));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(threads * perThread, repository.count());
+        assertTrue(repository.getSyncCount() < threads * perThread);
+        repository.close();
+        repository = builder().build();
+        assertEquals(threads * perThread, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should not show a save to readers until its entry is synced")
+    void save_awaitingGroupCommit_notVisibleUntilSynced() throws Exception {
+        // Arrange
+        repository.close();
+        repository = builder().groupCommitWindow(Duration.ofMillis(500)).build();
+        long emptyLogSize = repository.getLogSize();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        Future<Person> saved = executor.submit(() -> repository.save(createPerson("Jane", "Doe")));
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (repository.getLogSize() == emptyLogSize && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        long countWhileSyncing = repository.count();
+        Person jane = saved.get();
+        executor.shutdown();
+
+        // Assert
+        assertEquals(0, countWhileSyncing);
+        assertSame(jane, repository.findById(jane.getId()).orElseThrow());
+        assertEquals(1, repository.getSyncCount());
+    }
+
+    @Test
+    @DisplayName("Should take back the generated ID and leave the state untouched when the append fails")
+    void save_appendFails_rollsBackIdAndState() throws IOException {
+        // Arrange
+        repository.close();
+        Person jane = createPerson("Jane", "Doe");
+        Person john = createPerson("John", "Doe");
+
+        // Act
+        assertThrows(UncheckedIOException.class, () -> repository.save(jane));
+        assertThrows(UncheckedIOException.class, () -> repository.saveAll(List.of(john)));
+
+        // Assert
+        assertNull(jane.getId());
+        assertNull(john.getId());
+        assertEquals(0, repository.count());
+        repository = builder().build();
+        assertEquals(0, repository.count());
+        assertEquals(1L, repository.save(jane).getId());
+    }
+
+    @Test
+    @DisplayName("Should not sync on each write in periodic mode")
+    void save_periodicDurability_returnsBeforeSync() throws IOException {
+        // Arrange
+        repository.close();
+        repository = builder().durability(WriteAheadLogPersonRepository.Durability.PERIODIC)
+                .groupCommitWindow(Duration.ofHours(1)).build();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            repository.save(createPerson("Person" + i, "Doe"));
+        }
+
+        // Assert
+        assertEquals(0, repository.getSyncCount());
+        repository.close();
+        assertEquals(1, repository.getSyncCount());
+        repository = builder().build();
+        assertEquals(10, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should drop superseded entries when compacting")
+    void compact_updatedAndDeletedPersons_shrinksLog() throws IOException {
+        // Arrange
+        Person person = repository.save(createPerson("Jane", "Doe"));
+        for (int i = 0; i < 50; i++) {
+            person.setFirstName("Jane" + i);
+            repository.save(person);
+        }
+        Person deleted = repository.save(createPerson("Gone", "Doe"));
+        repository.deleteById(deleted.getId());
+        long before = repository.getLogSize();
+
+        // Act
+        repository.compact();
+        repository.save(createPerson("After", "Compaction"));
+        repository.close();
+        repository = builder().build();
+
+        // Assert
+        assertTrue(repository.getLogSize() < before / 10);
+        assertEquals(Files.size(logFile), repository.getLogSize());
+        assertEquals(2, repository.count());
+        assertEquals("Jane49", repository.findById(person.getId()).orElseThrow().getFirstName());
+        assertEquals(4L, repository.save(createPerson("Next", "Doe")).getId());
+    }
+
+    @Test
+    @DisplayName("Should compact in the background once the log outgrows the live data")
+    void save_logOutgrowsRatio_compactsInBackground() throws Exception {
+        // Arrange
+        repository.close();
+        repository = builder().compactionMinBytes(1024).compactionRatio(2.0).build();
+        Person person = repository.save(createPerson("Jane", "Doe"));
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            person.setFirstName("Jane" + i);
+            repository.save(person);
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (repository.getLogSize() > 2048 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertTrue(repository.getLogSize() <= 2048);
+        repository.close();
+        repository = builder().build();
+        assertEquals("Jane199", repository.findById(person.getId()).orElseThrow().getFirstName());
+    }
+
+    @Test
+    @DisplayName("Should restore from the checkpoint and replay only later entries")
+    void checkpoint_thenMoreChanges_restoresSnapshotAndLog() throws IOException {
+        // Arrange
+        Person parent = repository.save(createPerson("Parent", "Family"));
+        Person child = repository.save(createPerson("Child", "Family"));
+        parent.addToFamily(child);
+        repository.save(parent);
+        repository.save(createPerson("Deleted", "Later"));
+
+        // Act
+        repository.checkpoint();
+        long emptyLogSize = repository.getLogSize();
+        repository.deleteById(3L);
+        child.setFirstName("Renamed");
+        repository.save(child);
+        repository.close();
+        repository = builder().build();
+
+        // Assert
+        assertTrue(Files.exists(tempDir.resolve("persons.wal.snapshot")));
+        assertTrue(emptyLogSize < 16);
+        assertEquals(2, repository.count());
+        assertFalse(repository.existsById(3L));
+        Person loadedParent = repository.findById(parent.getId()).orElseThrow();
+        Person loadedChild = repository.findById(child.getId()).orElseThrow();
+        assertEquals("Renamed", loadedChild.getFirstName());
+        assertSame(loadedChild, loadedParent.getFamily().get(0));
+        assertEquals(4L, repository.save(createPerson("Next", "Doe")).getId());
+    }
+
+    @Test
+    @DisplayName("Should keep deletes of checkpointed persons when compacting")
+    void compact_afterCheckpoint_keepsDeletes() throws IOException {
+        // Arrange
+        repository.save(createPerson("Jane", "Doe"));
+        repository.save(createPerson("John", "Doe"));
+        repository.checkpoint();
+        repository.deleteById(1L);
+
+        // Act
+        repository.compact();
+        repository.close();
+        repository = builder().build();
+
+        // Assert
+        assertEquals(1, repository.count());
+        assertFalse(repository.existsById(1L));
+    }
+
+    @Test
+    @DisplayName("Should find only persons whose birthday is today")
+    void findBirthdayToday_mixedBirthdays_returnsOnlyToday() {
+        // Arrange
+        Person birthday = createPerson("Alice", "Smith");
+        birthday.setBirthday(TODAY.minusYears(30));
+        Person otherDay = createPerson("Bob", "Jones");
+        otherDay.setBirthday(TODAY.minusDays(1));
+        repository.save(birthday);
+        repository.save(otherDay);
+
+        // Act
+        List<Person> result = repository.findBirthdayToday();
+
+        // Assert
+        assertEquals(List.of(birthday), result);
+    }
+
+    @Test
+    @DisplayName("Should return false when deleting unknown IDs")
+    void deleteById_unknownId_returnsFalse() {
+        // Arrange
+        long size = repository.getLogSize();
+
+        // Act & Assert
+        assertFalse(repository.deleteById(42L));
+        assertFalse(repository.deleteById((Long) null));
+        assertEquals(size, repository.getLogSize());
+    }
+
+    @Test
+    @DisplayName("Should reject null persons")
+    void save_nullPerson_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> repository.save(null));
+    }
+
+    @Test
+    @DisplayName("Should reject files that are not write-ahead logs")
+    void build_foreignFile_throwsException() throws IOException {
+        Path other = tempDir.resolve("other.wal");
+        Files.write(other, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertThrows(IllegalArgumentException.class, () -> builder().logFile(other).build());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid settings")
+    void build_invalidSettings_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> builder().logFile(null).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> builder().durability(WriteAheadLogPersonRepository.Durability.PERIODIC).build());
+        assertThrows(IllegalArgumentException.class, () -> builder().compactionRatio(1.0).build());
+        assertThrows(IllegalArgumentException.class, () -> builder().groupCommitWindow(Duration.ofMillis(-1)).build());
+    }
+
+    @Test
+    @DisplayName("Should write and sync each batch once and replay it after reopening")
+    void saveAllAndDeleteAll_batch_syncsOncePerBatch() throws IOException {
+        // Arrange
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+        long syncs = repository.getSyncCount();
+
+        // Act
+        repository.saveAll(persons);
+        int deleted = repository.deleteAllById(List.of(1L, 2L, 3L, 999L));
+
+        // Assert
+        assertEquals(syncs + 2, repository.getSyncCount());
+        assertEquals(3, deleted);
+        assertEquals(List.of(persons.get(99), persons.get(3)), repository.findAllById(List.of(100L, 1L, 4L)));
+        repository.close();
+        repository = builder().build();
+        assertEquals(97, repository.count());
+        assertEquals("Person99", repository.findById(100L).orElseThrow().getFirstName());
+        assertEquals(101L, repository.save(createPerson("Next", "Doe")).getId());
+    }
+
+    private WriteAheadLogPersonRepository.Builder builder() {
+        return new WriteAheadLogPersonRepository.Builder().logFile(logFile).clock(clock);
+    }
+}
@@ -0,0 +1,382 @@
+package school.cesar.eta.unit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static school.cesar.eta.unit.PersonTestFixtures.createPerson;
+
+/**
+ * Test suite for WriteBehindPersonRepository class.
+ */
+@DisplayName("WriteBehindPersonRepository Test Suite")
+public class WriteBehindPersonRepositoryTest {
+
+    private CountingRepository delegate;
+    private WriteBehindPersonRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingRepository();
+        repository = new WriteBehindPersonRepository.Builder().delegate(delegate).maxBatchSize(100)
+                .flushInterval(Duration.ofHours(1)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    @DisplayName("Should merge repeated saves of the same person into one write")
+    void save_repeatedUpdates_coalescedIntoOneWrite() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        int writesAfterInsert = delegate.savedPersons.get();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            jane.setFirstName("Jane" + i);
+            repository.save(jane);
+        }
+        repository.flush();
+
+        // Assert
+        assertEquals(1, writesAfterInsert);
+        assertEquals(2, delegate.savedPersons.get());
+        assertEquals(9, repository.getCoalescedCount());
+        assertEquals(1, repository.getFlushedBatchCount());
+        assertEquals(0, repository.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Should read its own buffered writes before they are flushed")
+    void findById_bufferedSave_returnsBufferedPerson() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person replacement = createPerson("Janet", "Doe");
+        replacement.setId(jane.getId());
+        Person explicit = createPerson("John", "Doe");
+        explicit.setId(50L);
+
+        // Act
+        repository.save(replacement);
+        repository.save(explicit);
+
+        // Assert
+        assertSame(jane, delegate.findById(jane.getId()).orElseThrow());
+        assertSame(replacement, repository.findById(jane.getId()).orElseThrow());
+        assertTrue(repository.existsById(50L));
+        assertFalse(delegate.existsById(50L));
+        assertEquals(List.of(explicit, replacement), repository.findAllById(List.of(50L, jane.getId(), 99L)));
+        assertEquals(2, repository.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Should flush before queries that are not lookups by ID")
+    void findByLastName_bufferedRename_flushesFirst() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        jane.setLastName("Smith");
+        repository.save(jane);
+
+        // Act
+        List<Person> smiths = repository.findByLastName("Smith");
+
+        // Assert
+        assertEquals(List.of(jane), smiths);
+        assertTrue(repository.findByLastName("Doe").isEmpty());
+        assertEquals(0, repository.getPendingCount());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should flush in batches once the buffer reaches the maximum batch size")
+    void save_bufferFull_flushesBatch() {
+        // Arrange
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            persons.add(createPerson("Person" + i, "Doe"));
+        }
+        repository.saveAll(persons);
+        int writesAfterInsert = delegate.savedPersons.get();
+
+        // Act
+        for (Person person : persons) {
+            repository.save(person);
+        }
+
+        // Assert
+        assertEquals(150, writesAfterInsert);
+        assertEquals(1, repository.getFlushedBatchCount());
+        assertEquals(50, repository.getPendingCount());
+        assertEquals(250, delegate.savedPersons.get());
+    }
+
+    @Test
+    @DisplayName("Should flush from the background thread after the flush interval")
+    void flushInterval_elapsed_writesBufferedPersons() throws Exception {
+        // Arrange
+        try (WriteBehindPersonRepository timed = new WriteBehindPersonRepository.Builder().delegate(delegate)
+                .flushInterval(Duration.ofMillis(10)).build()) {
+            Person jane = timed.save(createPerson("Jane", "Doe"));
+            jane.setFirstName("Janet");
+
+            // Act
+            timed.save(jane);
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (timed.getPendingCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // Assert
+            assertEquals(0, timed.getPendingCount());
+            assertEquals(2, delegate.savedPersons.get());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop buffered saves of deleted persons")
+    void deleteById_bufferedPerson_isNotWrittenLater() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        repository.save(jane);
+        Person explicit = createPerson("John", "Doe");
+        explicit.setId(50L);
+        repository.save(explicit);
+
+        // Act
+        boolean deleted = repository.deleteById(jane.getId());
+        int deletedBatch = repository.deleteAllById(List.of(50L, 99L));
+        repository.flush();
+
+        // Assert
+        assertTrue(deleted);
+        assertEquals(1, deletedBatch);
+        assertEquals(0, delegate.count());
+        assertEquals(1, delegate.savedPersons.get());
+        assertFalse(repository.deleteById((Long) null));
+    }
+
+    @Test
+    @DisplayName("Should keep persons buffered when a flush fails")
+    void flush_delegateFails_keepsPersonsBuffered() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        repository.save(jane);
+        delegate.failing.set(true);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> repository.flush());
+        int pendingAfterFailure = repository.getPendingCount();
+        delegate.failing.set(false);
+        repository.flush();
+
+        // Assert
+        assertEquals(1, pendingAfterFailure);
+        assertEquals(0, repository.getPendingCount());
+        assertEquals(2, delegate.savedPersons.get());
+    }
+
+    @Test
+    @DisplayName("Should reject a buffered save that takes another person's CPF when it is saved")
+    void save_cpfOfAnotherPerson_rejectedUpFront() {
+        // Arrange
+        Person jane = createPerson("Jane", "Doe");
+        jane.setCpf("111.444.777-35");
+        repository.save(jane);
+        Person john = repository.save(createPerson("John", "Doe"));
+        Person bia = repository.save(createPerson("Bia", "Lima"));
+        john.setCpf("111.444.777-35");
+        Person beatriz = createPerson("Beatriz", "Lima");
+        beatriz.setId(bia.getId());
+
+        // Act
+        assertThrows(DuplicateCpfException.class, () -> repository.save(john));
+        repository.save(beatriz);
+
+        // Assert
+        assertEquals(1, repository.getPendingCount());
+        assertEquals(3, repository.count());
+        assertSame(beatriz, delegate.findById(bia.getId()).orElseThrow());
+        assertEquals(jane.getId(), repository.findByCpf("11144477735").orElseThrow().getId());
+    }
+
+    @Test
+    @DisplayName("Should drop only the persons the delegate rejects and keep writing the others")
+    void flush_delegateRejectsOnePerson_othersWrittenAndRejectionReported() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person bia = repository.save(createPerson("Bia", "Lima"));
+        jane.setCpf("111.444.777-35");
+        Person beatriz = createPerson("Beatriz", "Lima");
+        beatriz.setId(bia.getId());
+        repository.save(jane);
+        repository.save(beatriz);
+        // Another writer takes the CPF in the delegate after Jane's save was buffered
+        Person other = createPerson("John", "Doe");
+        other.setCpf("111.444.777-35");
+        delegate.save(other);
+
+        // Act
+        assertThrows(DuplicateCpfException.class, () -> repository.flush());
+        List<WriteBehindPersonRepository.RejectedSave> rejected = repository.drainRejected();
+
+        // Assert
+        assertEquals(0, repository.getPendingCount());
+        assertSame(beatriz, delegate.findById(bia.getId()).orElseThrow());
+        assertEquals(1, rejected.size());
+        assertSame(jane, rejected.get(0).getPerson());
+        assertInstanceOf(DuplicateCpfException.class, rejected.get(0).getCause());
+        assertEquals(3, repository.count());
+        assertTrue(repository.drainRejected().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should let only one of two concurrent saves claim the same CPF")
+    void save_concurrentSavesOfSameCpf_onlyOneAccepted() throws Exception {
+        // Arrange
+        delegate.slowCpfLookups.set(true);
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        Person john = repository.save(createPerson("John", "Doe"));
+        jane.setCpf("111.444.777-35");
+        john.setCpf("111.444.777-35");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger duplicates = new AtomicInteger();
+
+        // Act
+        List<Future<?>> saves = new ArrayList<>();
+        for (Person person : List.of(jane, john)) {
+            saves.add(executor.submit(() -> {
+                start.await();
+                try {
+                    repository.save(person);
+                } catch (DuplicateCpfException e) {
+                    duplicates.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> save : saves) {
+            save.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        repository.flush();
+
+        // Assert
+        assertEquals(1, duplicates.get());
+        assertTrue(repository.drainRejected().isEmpty());
+        assertTrue(repository.findByCpf("11144477735").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should keep only the most recent rejected saves")
+    void drainRejected_moreThanMaximum_keepsMostRecent() {
+        // Arrange
+        repository.close();
+        repository = new WriteBehindPersonRepository.Builder().delegate(delegate).maxBatchSize(100)
+                .flushInterval(Duration.ofHours(1)).maxRejected(2).build();
+        String[] cpfs = { "111.444.777-35", "529.982.247-25", "390.533.447-05" };
+        List<Person> buffered = new ArrayList<>();
+        for (String cpf : cpfs) {
+            Person person = repository.save(createPerson("Jane", "Doe"));
+            person.setCpf(cpf);
+            buffered.add(repository.save(person));
+            // Another writer takes the CPF in the delegate after the save was buffered
+            Person other = createPerson("John", "Doe");
+            other.setCpf(cpf);
+            delegate.save(other);
+        }
+
+        // Act
+        assertThrows(DuplicateCpfException.class, () -> repository.flush());
+        List<WriteBehindPersonRepository.RejectedSave> rejected = repository.drainRejected();
+
+        // Assert
+        assertEquals(2, rejected.size());
+        assertSame(buffered.get(1), rejected.get(0).getPerson());
+        assertSame(buffered.get(2), rejected.get(1).getPerson());
+    }
+
+    @Test
+    @DisplayName("Should write buffered persons on close")
+    void close_bufferedPersons_flushed() {
+        // Arrange
+        Person jane = repository.save(createPerson("Jane", "Doe"));
+        repository.save(jane);
+
+        // Act
+        repository.close();
+
+        // Assert
+        assertEquals(0, repository.getPendingCount());
+        assertEquals(2, delegate.savedPersons.get());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid arguments and settings")
+    void invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> repository.save(null));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindPersonRepository.Builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new WriteBehindPersonRepository.Builder().delegate(delegate).maxBatchSize(0).build());
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindPersonRepository.Builder().delegate(delegate)
+                .flushInterval(Duration.ZERO).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> new WriteBehindPersonRepository.Builder().delegate(delegate).maxRejected(0).build());
+    }
+
+    /**
+     * Repository that counts the persons written to it, can be made to fail and can slow down CPF lookups.
+     */
+    private static final class CountingRepository extends IndexedPersonRepository {
+        final AtomicInteger savedPersons = new AtomicInteger();
+        final AtomicBoolean failing = new AtomicBoolean();
+        final AtomicBoolean slowCpfLookups = new AtomicBoolean();
+
+        @Override
+        public Optional<Person> findByCpf(String cpf) {
+            if (slowCpfLookups.get()) {
+                try {
+                    // Widens the window between a save's CPF check and its buffering
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.findByCpf(cpf);
+        }
+
+        @Override
+        public Person save(Person person) {
+            savedPersons.incrementAndGet();
+            return super.save(person);
+        }
+
+        @Override
+        public List<Person> saveAll(Collection<Person> persons) {
+            if (failing.get()) {
+                throw new IllegalStateException("Repository unavailable");
+            }
+            // The inherited batch save goes through save, which does the counting
+            return super.saveAll(persons);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package school.cesar.eta.unit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import school.cesar.eta.unit.IndexedPersonRepository;
+import school.cesar.eta.unit.Person;
+import school.cesar.eta.unit.WriteAheadLogPersonRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH Benchmarks comparing {@code saveAll} against calling {@code save} once per person.
+ *
+ * <p>
+ * Each invocation saves a batch of persons, either in a loop or as one batch. With the write-ahead log in group commit
+ * mode the loop syncs the log once per person, while the batch syncs it once.
+ *
+ * <p>
+ * To run these benchmarks:
+ *
+ * <pre>{@code
+ * mvn clean install
+ * java -jar target/benchmarks.jar BatchSaveBenchmark
+ * }</pre>
+ *
+ * @author CESAR School
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchSaveBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private Path directory;
+    private WriteAheadLogPersonRepository log;
+    private IndexedPersonRepository indexed;
+    private List<Person> persons;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("batch-benchmark");
+        log = new WriteAheadLogPersonRepository.Builder().logFile(directory.resolve("persons.wal")).build();
+        indexed = new IndexedPersonRepository();
+        persons = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            Person person = new Person();
+            person.setFirstName("Person" + i);
+            person.setLastName("Doe");
+            persons.add(person);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Person logSaveLoop() {
+        Person last = null;
+        for (Person person : persons) {
+            last = log.save(person);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Person> logSaveAll() {
+        return log.saveAll(persons);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Person indexedSaveLoop() {
+        Person last = null;
+        for (Person person : persons) {
+            last = indexed.save(person);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Person> indexedSaveAll() {
+        return indexed.saveAll(persons);
+    }
+
+    /**
+     * Main method to run benchmarks standalone.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(BatchSaveBenchmark.class.getSimpleName()).forks(1).build();
+
+        new Runner(opt).run();
+    }
+}
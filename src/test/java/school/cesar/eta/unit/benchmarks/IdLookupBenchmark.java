@@ -0,0 +1,102 @@
+package school.cesar.eta.unit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import school.cesar.eta.unit.LongObjectMap;
+import school.cesar.eta.unit.Person;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH Benchmarks comparing ID lookups in {@link LongObjectMap} against a {@code HashMap<Long, Person>} baseline.
+ *
+ * <p>
+ * Each invocation looks up a batch of random IDs, half of which are present. Run with {@code -prof gc} to compare the
+ * allocation rate of both maps.
+ *
+ * <p>
+ * To run these benchmarks:
+ *
+ * <pre>{@code
+ * mvn clean install
+ * java -jar target/benchmarks.jar IdLookupBenchmark -prof gc
+ * }</pre>
+ *
+ * @author CESAR School
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IdLookupBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "10000", "1000000" })
+    private int size;
+
+    private Map<Long, Person> hashMap;
+    private LongObjectMap<Person> longObjectMap;
+    private long[] lookupIds;
+
+    @Setup
+    public void setup() {
+        hashMap = new HashMap<>();
+        longObjectMap = new LongObjectMap<>();
+        for (long id = 1; id <= size; id++) {
+            Person person = new Person();
+            person.setId(id);
+            person.setFirstName("Person" + id);
+            hashMap.put(id, person);
+            longObjectMap.put(id, person);
+        }
+
+        Random random = new Random(42);
+        lookupIds = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookupIds[i] = 1 + random.nextInt(size * 2);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int hashMapLookup() {
+        int found = 0;
+        for (long id : lookupIds) {
+            if (hashMap.get(id) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int longObjectMapLookup() {
+        int found = 0;
+        for (long id : lookupIds) {
+            if (longObjectMap.get(id) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Main method to run benchmarks standalone.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(IdLookupBenchmark.class.getSimpleName()).forks(1).build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,90 @@
+package school.cesar.eta.unit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import school.cesar.eta.unit.LastNameTrie;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH Benchmarks for case and accent insensitive last name lookups in {@link LastNameTrie}.
+ *
+ * <p>
+ * The trie is filled with one entry per person, spread over a pool of Brazilian surnames with numbered variants, so
+ * many persons share each name as they do in practice. Setup prints the estimated heap used per million entries.
+ *
+ * <p>
+ * To run these benchmarks:
+ *
+ * <pre>{@code
+ * mvn clean install
+ * java -jar target/benchmarks.jar LastNameAutocompleteBenchmark
+ * }</pre>
+ *
+ * @author CESAR School
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LastNameAutocompleteBenchmark {
+
+    private static final String[] SURNAMES = { "Silva", "Santos", "Oliveira", "Souza", "Rodrigues", "Ferreira", "Alves",
+            "Pereira", "Lima", "Gomes", "Conceição", "Araújo", "Gonçalves", "Ribeiro", "Carvalho", "Almeida" };
+
+    @Param({ "10000", "1000000" })
+    private int size;
+
+    private LastNameTrie trie;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        trie = new LastNameTrie();
+        Random random = new Random(42);
+        for (long id = 1; id <= size; id++) {
+            trie.add(SURNAMES[random.nextInt(SURNAMES.length)] + " " + random.nextInt(10_000), id);
+        }
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+            prefixes[i] = surname.substring(0, 1 + random.nextInt(surname.length())).toUpperCase();
+        }
+        System.out.printf("%n%d entries, %d names, ~%d bytes per million entries%n", trie.size(), trie.nameCount(),
+                trie.estimatedBytes() * 1_000_000 / trie.size());
+    }
+
+    @Benchmark
+    public List<String> completeTen() {
+        return trie.complete(nextPrefix(), 10);
+    }
+
+    @Benchmark
+    public long[] exactLookup() {
+        return trie.idsOf(SURNAMES[next++ & (SURNAMES.length - 1)].toUpperCase() + " 42");
+    }
+
+    private String nextPrefix() {
+        next = (next + 1) & (prefixes.length - 1);
+        return prefixes[next];
+    }
+
+    /**
+     * Main method to run benchmarks standalone.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(LastNameAutocompleteBenchmark.class.getSimpleName()).forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}